@@ -10,15 +10,19 @@ import com.ajlopez.blockchain.core.types.Address;
 import com.ajlopez.blockchain.core.types.Coin;
 import com.ajlopez.blockchain.core.types.DataWord;
 import com.ajlopez.blockchain.config.MinerConfiguration;
+import com.ajlopez.blockchain.db.KeyIndexType;
 import com.ajlopez.blockchain.net.messages.BlockMessage;
 import com.ajlopez.blockchain.processors.MinerProcessor;
 import com.ajlopez.blockchain.state.Trie;
-import com.ajlopez.blockchain.store.AccountStore;
-import com.ajlopez.blockchain.store.MemoryKeyValueStores;
+import com.ajlopez.blockchain.store.*;
 import com.ajlopez.blockchain.utils.HexUtils;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by ajlopez on 24/11/2018.
@@ -27,11 +31,30 @@ public class Start {
     private static NodeRunner nodeRunner;
 
     public static void main(String[] args) throws IOException {
-        ObjectContext objectContext = new ObjectContext(new MemoryKeyValueStores());
+        ArgumentsProcessor argsproc = processArguments(args);
 
-        Wallet wallet = createWallet(objectContext);
+        String datadir = argsproc.getString("datadir");
+        boolean secureKeys = argsproc.getBoolean("securekeys");
 
-        ArgumentsProcessor argsproc = processArguments(args);
+        int keyValueShards = argsproc.getInteger("keyvalueshards");
+
+        // the trie keys of the stored states are raw or hashed, and the keys are in their shards, the settings cannot be changed
+        if (!datadir.isEmpty()) {
+            DiskKeyValueStores.checkSetting(datadir, "securekeys", String.valueOf(secureKeys));
+            DiskKeyValueStores.checkSetting(datadir, "keyvalueshards", String.valueOf(keyValueShards));
+        }
+
+        KeyValueStores keyValueStores = createKeyValueStores(datadir, argsproc.getInteger("keyvaluecache"), argsproc.getInteger("hotstore"), argsproc.getBoolean("compressed"), keyValueShards, !argsproc.getBoolean("groupcommit"));
+        ObjectContext objectContext = new ObjectContext(keyValueStores, argsproc.getInteger("triecache"), argsproc.getInteger("blockcache"), argsproc.getBoolean("parallelcommit"), secureKeys);
+
+        loadAccountSnapshots(objectContext);
+
+        int pruning = argsproc.getInteger("pruning");
+
+        if (pruning > 0)
+            launchStatePruner(objectContext, pruning, argsproc.getInteger("pruningcheckpoint"));
+
+        Wallet wallet = objectContext.getStores().getBlocksInformationStore().getBestHeight() < 0 ? createWallet(objectContext, datadir) : loadWallet(datadir);
 
         NetworkConfiguration networkConfiguration = new NetworkConfiguration((short)1);
 
@@ -59,7 +82,85 @@ public class Start {
         }
     }
 
-    private static Wallet createWallet(ObjectContext objectContext) throws IOException {
+    private static KeyValueStores createKeyValueStores(String datadir, int keyValueCacheSize, int hotStoreSize, boolean compressed, int keyValueShards, boolean syncWrites) throws IOException {
+        if (datadir.isEmpty())
+            return new MemoryKeyValueStores();
+
+        DiskKeyValueStores diskKeyValueStores = new DiskKeyValueStores(datadir, KeyIndexType.MEMORY, compressed, keyValueShards, syncWrites);
+        TieredKeyValueStores tieredKeyValueStores = hotStoreSize > 0 ? new TieredKeyValueStores(diskKeyValueStores, getSizes(hotStoreSize)) : null;
+
+        // the pending writes are written to the disk stores before closing them
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (tieredKeyValueStores != null)
+                    tieredKeyValueStores.stop();
+
+                diskKeyValueStores.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }));
+
+        KeyValueStores keyValueStores = diskKeyValueStores;
+
+        if (tieredKeyValueStores != null) {
+            tieredKeyValueStores.start();
+            keyValueStores = tieredKeyValueStores;
+        }
+
+        if (keyValueCacheSize <= 0)
+            return keyValueStores;
+
+        return new CachedKeyValueStores(keyValueStores, getSizes(keyValueCacheSize));
+    }
+
+    // the size is shared by the stores, the state tries get most of it, the blocks are also kept by the block cache
+    private static Map<KeyValueStoreType, Long> getSizes(int size) {
+        Map<KeyValueStoreType, Long> sizes = new EnumMap<>(KeyValueStoreType.class);
+
+        sizes.put(KeyValueStoreType.ACCOUNTS, size * 3L / 10);
+        sizes.put(KeyValueStoreType.STORAGE, size * 3L / 10);
+        sizes.put(KeyValueStoreType.BLOCKS, size * 2L / 10);
+        sizes.put(KeyValueStoreType.CODES, size / 10L);
+        sizes.put(KeyValueStoreType.BLOCKS_INFORMATION, size / 10L);
+
+        return sizes;
+    }
+
+    // the snapshots are kept in memory, the base is rebuilt from the state of the best block
+    private static void loadAccountSnapshots(ObjectContext objectContext) throws IOException {
+        ExtendedBlockInformation bestBlockInformation = objectContext.getBlockChain().getBestBlockInformation();
+
+        if (bestBlockInformation == null)
+            return;
+
+        Stores stores = objectContext.getStores();
+
+        stores.getAccountSnapshots().rebuild(bestBlockInformation.getBlock().getStateRootHash(), stores.getAccountTrieStore());
+    }
+
+    private static void launchStatePruner(ObjectContext objectContext, int noRetainedRoots, int checkpointInterval) {
+        KeyValueStores keyValueStores = objectContext.getKeyValueStores();
+
+        if (!(keyValueStores.getAccountKeyValueStore() instanceof CompactableKeyValueStore) || !(keyValueStores.getStorageKeyValueStore() instanceof CompactableKeyValueStore))
+            throw new IllegalStateException("state pruning is not supported by the key value stores");
+
+        StatePruner statePruner = new StatePruner(objectContext.getBlockChain(), (CompactableKeyValueStore)keyValueStores.getAccountKeyValueStore(), (CompactableKeyValueStore)keyValueStores.getStorageKeyValueStore(), noRetainedRoots, checkpointInterval, noRetainedRoots);
+
+        Stores stores = objectContext.getStores();
+
+        statePruner.onPruned((accountsResult, storageResult) -> {
+            stores.getAccountTrieStore().clearCache();
+            stores.getStorageTrieStore().clearCache();
+        });
+
+        objectContext.getBlockChain().onConnectedBlock(statePruner::processBlock);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(statePruner::stop));
+    }
+
+    // the wallet is written before the genesis block, a restart finds the funded accounts
+    private static Wallet createWallet(ObjectContext objectContext, String datadir) throws IOException {
         AccountStore accountStore = objectContext.getStores().getAccountStoreProvider().retrieve(Trie.EMPTY_TRIE_HASH);
         WalletCreator walletCreator = new WalletCreator(accountStore);
         DataWord oneMillion = DataWord.fromUnsignedLong(1_000_000L);
@@ -67,6 +168,9 @@ public class Start {
         Wallet wallet = walletCreator.createWallet(10, balance);
         accountStore.save();
 
+        if (!datadir.isEmpty())
+            wallet.save(getWalletFileName(datadir));
+
         Block genesis = GenesisGenerator.generateGenesis(accountStore);
 
         objectContext.getBlockChain().connectBlock(genesis);
@@ -74,6 +178,20 @@ public class Start {
         return wallet;
     }
 
+    // the data written before the wallet file was kept has no wallet
+    private static Wallet loadWallet(String datadir) throws IOException {
+        String filename = getWalletFileName(datadir);
+
+        if (datadir.isEmpty() || !Files.exists(Paths.get(filename)))
+            return new Wallet();
+
+        return Wallet.load(filename);
+    }
+
+    private static String getWalletFileName(String datadir) {
+        return Paths.get(datadir, "wallet").toString();
+    }
+
     private static void launchRpcServer(ObjectContext objectContext, Wallet wallet, NetworkConfiguration networkConfiguration, int rpcport) {
         RpcRunner rpcrunner = new RpcRunner(objectContext.getBlockChain(), rpcport, objectContext.getStores().getAccountStoreProvider(), objectContext.getTransactionPool(), networkConfiguration, wallet);
 
@@ -115,6 +233,19 @@ public class Start {
         processor.defineBoolean("m", "miner", false);
         processor.defineString("k", "coinbase", "");
 
+        processor.defineString("d", "datadir", "");
+        processor.defineBoolean("z", "compressed", false);
+        processor.defineInteger("kc", "keyvaluecache", 0);
+        processor.defineInteger("hs", "hotstore", 0);
+        processor.defineInteger("ks", "keyvalueshards", 1);
+        processor.defineBoolean("gm", "groupcommit", false);
+        processor.defineInteger("tc", "triecache", 0);
+        processor.defineInteger("bc", "blockcache", 0);
+        processor.defineBoolean("pc", "parallelcommit", false);
+        processor.defineBoolean("sk", "securekeys", false);
+        processor.defineInteger("pr", "pruning", 0);
+        processor.defineInteger("pk", "pruningcheckpoint", 10_000);
+
         processor.processArguments(args);
 
         return processor;
@@ -6,7 +6,11 @@ import com.ajlopez.blockchain.core.types.Difficulty;
 import com.ajlopez.blockchain.store.Stores;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Created by ajlopez on 15/08/2017.
@@ -23,6 +27,8 @@ public class BlockChain implements BlockProvider {
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private final List<Consumer<Block>> connectedBlockConsumers = new ArrayList<>();
+
     public BlockChain(Stores stores) {
         this.blockStore = stores.getBlockStore();
         this.blockInformationStore = stores.getBlocksInformationStore();
@@ -78,12 +84,18 @@ public class BlockChain implements BlockProvider {
 
             if (isBetterBlock)
                 this.saveBestBlock(block, totalDifficulty);
-
-            return true;
         }
         finally {
             this.lock.writeLock().unlock();
         }
+
+        this.emitConnectedBlock(block);
+
+        return true;
+    }
+
+    public void onConnectedBlock(Consumer<Block> consumer) {
+        this.connectedBlockConsumers.add(consumer);
     }
 
     private Difficulty getParentTotalDifficulty(Block block) throws IOException {
@@ -153,6 +165,51 @@ public class BlockChain implements BlockProvider {
         }
     }
 
+    public List<Block> getBlocksByNumber(long number) throws IOException {
+        this.lock.readLock().lock();
+
+        try {
+            if (!initialized)
+                initialize();
+
+            List<Block> blocks = new ArrayList<>();
+            BlocksInformation blocksInformation = this.blockInformationStore.get(number);
+
+            if (blocksInformation == null)
+                return blocks;
+
+            for (BlockInformation blockInformation : blocksInformation.getBlockInformationList())
+                blocks.add(this.blockStore.getBlock(blockInformation.getBlockHash()));
+
+            return blocks;
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // the heights in range are scanned in order, the blocks out of the best chain are included
+    public List<Block> getBlocksByNumbers(long fromNumber, long toNumber) throws IOException {
+        this.lock.readLock().lock();
+
+        try {
+            if (!initialized)
+                initialize();
+
+            List<Block> blocks = new ArrayList<>();
+            Iterator<BlocksInformation> iterator = this.blockInformationStore.scan(fromNumber, toNumber);
+
+            while (iterator.hasNext())
+                for (BlockInformation blockInformation : iterator.next().getBlockInformationList())
+                    blocks.add(this.blockStore.getBlock(blockInformation.getBlockHash()));
+
+            return blocks;
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
     @Override
     public BlockInformation getBlockInformation(long number, BlockHash blockHash) throws IOException {
         BlocksInformation blocksInformation = this.blockInformationStore.get(number);
@@ -187,6 +244,10 @@ public class BlockChain implements BlockProvider {
         this.blockInformationStore.put(block.getNumber(), blocksInformation);
     }
 
+    private void emitConnectedBlock(Block block) {
+        this.connectedBlockConsumers.forEach(c -> c.accept(block));
+    }
+
     private void saveBestBlock(Block block, Difficulty totalDifficulty) throws IOException {
         this.bestBlockInformation = new ExtendedBlockInformation(block, totalDifficulty);
 
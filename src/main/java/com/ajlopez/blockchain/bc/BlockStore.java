@@ -4,6 +4,8 @@ import com.ajlopez.blockchain.core.Block;
 import com.ajlopez.blockchain.core.types.BlockHash;
 import com.ajlopez.blockchain.encoding.BlockEncoder;
 import com.ajlopez.blockchain.store.KeyValueStore;
+import com.ajlopez.blockchain.store.WriteBatch;
+import com.ajlopez.blockchain.utils.LruCache;
 
 import java.io.IOException;
 
@@ -12,25 +14,61 @@ import java.io.IOException;
  */
 public class BlockStore {
     private final KeyValueStore keyValueStore;
+    private final LruCache<BlockHash, Block> cache;
 
     public BlockStore(KeyValueStore keyValueStore) {
+        this(keyValueStore, 0);
+    }
+
+    public BlockStore(KeyValueStore keyValueStore, int cacheSize) {
         this.keyValueStore = keyValueStore;
+        this.cache = cacheSize > 0 ? new LruCache<>(cacheSize) : null;
     }
 
     public void saveBlock(Block block) throws IOException {
-        this.keyValueStore.setValue(block.getHash().getBytes(), BlockEncoder.encode(block));
+        WriteBatch batch = new WriteBatch();
+
+        batch.put(block.getHash().getBytes(), BlockEncoder.encode(block));
+
+        this.keyValueStore.write(batch);
+
+        if (this.cache != null)
+            this.cache.put(block.getHash(), block);
     }
 
     public Block getBlock(BlockHash hash) throws IOException {
+        if (this.cache != null) {
+            Block block = this.cache.get(hash);
+
+            if (block != null)
+                return block;
+        }
+
         byte[] encoded = this.keyValueStore.getValue(hash.getBytes());
 
         if (encoded == null)
             return null;
 
-        return BlockEncoder.decode(encoded);
+        Block block = BlockEncoder.decode(encoded);
+
+        if (this.cache != null)
+            this.cache.put(hash, block);
+
+        return block;
     }
 
     public boolean containsBlock(BlockHash hash) throws IOException {
-        return this.keyValueStore.getValue(hash.getBytes()) != null;
+        if (this.cache != null && this.cache.containsKey(hash))
+            return true;
+
+        return this.keyValueStore.containsKey(hash.getBytes());
+    }
+
+    public long getCacheHits() {
+        return this.cache == null ? 0 : this.cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return this.cache == null ? 0 : this.cache.getMisses();
     }
 }
@@ -3,11 +3,13 @@ package com.ajlopez.blockchain.bc;
 import com.ajlopez.blockchain.core.Block;
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.encoding.BlocksInformationEncoder;
+import com.ajlopez.blockchain.store.KeyValue;
 import com.ajlopez.blockchain.store.KeyValueStore;
 import com.ajlopez.blockchain.utils.ByteUtils;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -21,14 +23,14 @@ public class BlocksInformationStore {
     }
 
     public void put(long height, BlocksInformation blocksInformation) throws IOException {
-        byte[] key = ByteUtils.unsignedLongToNormalizedBytes(height);
+        byte[] key = getKey(height);
         byte[] encoded = BlocksInformationEncoder.encode(blocksInformation);
 
         this.store.setValue(key, encoded);
     }
 
     public BlocksInformation get(long height) throws IOException {
-        byte[] key = ByteUtils.unsignedLongToNormalizedBytes(height);
+        byte[] key = getKey(height);
 
         byte[] encoded = this.store.getValue(key);
 
@@ -38,6 +40,23 @@ public class BlocksInformationStore {
         return BlocksInformationEncoder.decode(encoded);
     }
 
+    // the keys are ordered by length, then by their bytes, as in the padded stores, so the heights are scanned in order
+    public Iterator<BlocksInformation> scan(long fromHeight, long toHeight) throws IOException {
+        Iterator<KeyValue> iterator = this.store.scan(getKey(fromHeight), getKey(toHeight));
+
+        return new Iterator<BlocksInformation>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public BlocksInformation next() {
+                return BlocksInformationEncoder.decode(iterator.next().getValue());
+            }
+        };
+    }
+
     public void putBestHeight(long height) throws IOException {
         byte[] key = ByteUtils.EMPTY_BYTE_ARRAY;
         byte[] value = ByteUtils.unsignedLongToNormalizedBytes(height);
@@ -53,4 +72,8 @@ public class BlocksInformationStore {
 
         return ByteUtils.bytesToUnsignedLong(value);
     }
+
+    private static byte[] getKey(long height) {
+        return ByteUtils.unsignedLongToNormalizedBytes(height);
+    }
 }
@@ -8,6 +8,8 @@ import com.ajlopez.blockchain.merkle.MerkleTree;
 import com.ajlopez.blockchain.state.Trie;
 import com.ajlopez.blockchain.store.AccountStore;
 
+import java.io.IOException;
+
 /**
  * Created by ajlopez on 29/11/2018.
  */
@@ -16,11 +18,11 @@ public class GenesisGenerator {
 
     }
 
-    public static Block generateGenesis() {
+    public static Block generateGenesis() throws IOException {
         return generateGenesis(new AccountStore(new Trie()));
     }
 
-    public static Block generateGenesis(AccountStore accountStore) {
+    public static Block generateGenesis(AccountStore accountStore) throws IOException {
         return new Block(0, BlockHash.EMPTY_BLOCK_HASH, MerkleTree.EMPTY_MERKLE_TREE_HASH, accountStore.getRootHash(), 0, Address.ZERO, Difficulty.ONE, 0, 0, null, 0);
     }
 }
@@ -1,6 +1,7 @@
 package com.ajlopez.blockchain.bc;
 
 import com.ajlopez.blockchain.processors.TransactionPool;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 import com.ajlopez.blockchain.store.KeyValueStores;
 import com.ajlopez.blockchain.store.Stores;
 
@@ -9,20 +10,40 @@ import com.ajlopez.blockchain.store.Stores;
  */
 public class ObjectContext {
     private final KeyValueStores keyValueStores;
+    private final int trieCacheSize;
+    private final int blockCacheSize;
+    private final boolean parallelCommit;
+    private final boolean secureKeys;
 
     private Stores stores;
     private BlockChain blockChain;
     private TransactionPool transactionPool;
 
     public ObjectContext(KeyValueStores keyValueStores) {
+        this(keyValueStores, 0, 0);
+    }
+
+    public ObjectContext(KeyValueStores keyValueStores, int trieCacheSize, int blockCacheSize) {
+        this(keyValueStores, trieCacheSize, blockCacheSize, false);
+    }
+
+    public ObjectContext(KeyValueStores keyValueStores, int trieCacheSize, int blockCacheSize, boolean parallelCommit) {
+        this(keyValueStores, trieCacheSize, blockCacheSize, parallelCommit, false);
+    }
+
+    public ObjectContext(KeyValueStores keyValueStores, int trieCacheSize, int blockCacheSize, boolean parallelCommit, boolean secureKeys) {
         this.keyValueStores = keyValueStores;
+        this.trieCacheSize = trieCacheSize;
+        this.blockCacheSize = blockCacheSize;
+        this.parallelCommit = parallelCommit;
+        this.secureKeys = secureKeys;
     }
 
     public Stores getStores() {
         if (this.stores != null)
             return this.stores;
 
-        this.stores = new Stores(this.keyValueStores);
+        this.stores = new Stores(this.keyValueStores, this.trieCacheSize, this.blockCacheSize, this.parallelCommit, this.secureKeys ? new TrieKeyHasher() : null);
 
         return this.stores;
     }
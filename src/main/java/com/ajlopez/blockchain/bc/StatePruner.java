@@ -0,0 +1,195 @@
+package com.ajlopez.blockchain.bc;
+
+import com.ajlopez.blockchain.core.Block;
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.db.KeyReferences;
+import com.ajlopez.blockchain.encoding.AccountEncoder;
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.store.CompactableKeyValueStore;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.utils.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class StatePruner {
+    private static final Logger logger = Logger.getLogger(StatePruner.class.getName());
+
+    private final BlockChain blockChain;
+    private final CompactableKeyValueStore accountKeyValueStore;
+    private final CompactableKeyValueStore storageKeyValueStore;
+    private final int noRetainedRoots;
+    private final long checkpointInterval;
+    private final int pruneInterval;
+
+    private final List<BiConsumer<CompactionResult, CompactionResult>> prunedConsumers = new ArrayList<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("state-pruner"));
+
+    private long noConnectedBlocks;
+    private boolean pruning;
+
+    public StatePruner(BlockChain blockChain, CompactableKeyValueStore accountKeyValueStore, CompactableKeyValueStore storageKeyValueStore, int noRetainedRoots, long checkpointInterval, int pruneInterval) {
+        if (noRetainedRoots <= 0)
+            throw new IllegalArgumentException("invalid number of retained roots");
+
+        if (pruneInterval <= 0)
+            throw new IllegalArgumentException("invalid prune interval");
+
+        this.blockChain = blockChain;
+        this.accountKeyValueStore = accountKeyValueStore;
+        this.storageKeyValueStore = storageKeyValueStore;
+        this.noRetainedRoots = noRetainedRoots;
+        this.checkpointInterval = checkpointInterval;
+        this.pruneInterval = pruneInterval;
+
+        // the states written from now on are kept by the next pruning, they could belong to blocks not connected yet
+        this.accountKeyValueStore.startCompaction();
+        this.storageKeyValueStore.startCompaction();
+    }
+
+    public void onPruned(BiConsumer<CompactionResult, CompactionResult> consumer) {
+        this.prunedConsumers.add(consumer);
+    }
+
+    // the retained roots are collected before returning, the pruning is completed in background
+    public void processBlock(Block block) {
+        synchronized (this) {
+            if (this.pruning || ++this.noConnectedBlocks % this.pruneInterval != 0)
+                return;
+
+            this.pruning = true;
+        }
+
+        List<byte[]> roots;
+
+        try {
+            roots = this.startPruning();
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.SEVERE, "state pruning failed", ex);
+            return;
+        }
+
+        this.executor.execute(() -> {
+            try {
+                this.completePruning(roots);
+            } catch (IOException | RuntimeException ex) {
+                logger.log(Level.SEVERE, "state pruning failed", ex);
+            }
+        });
+    }
+
+    // a running pruning is completed before returning
+    public void stop() {
+        this.executor.shutdown();
+
+        try {
+            this.executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void prune() throws IOException {
+        synchronized (this) {
+            if (this.pruning)
+                throw new IllegalStateException("pruning in progress");
+
+            this.pruning = true;
+        }
+
+        this.completePruning(this.startPruning());
+    }
+
+    public List<Hash> getRetainedRoots() throws IOException {
+        Set<Hash> roots = new LinkedHashSet<>();
+        ExtendedBlockInformation bestBlockInformation = this.blockChain.getBestBlockInformation();
+
+        if (bestBlockInformation == null)
+            return new ArrayList<>();
+
+        long fromHeight = Math.max(0, bestBlockInformation.getBlockNumber() - this.noRetainedRoots + 1);
+
+        if (this.checkpointInterval > 0)
+            for (long height = 0; height < fromHeight; height += this.checkpointInterval)
+                roots.add(this.blockChain.getBlockByNumber(height).getStateRootHash());
+
+        // the blocks out of the best chain are kept, they could be part of a new best chain
+        for (Block block : this.blockChain.getBlocksByNumbers(fromHeight, Long.MAX_VALUE))
+            roots.add(block.getStateRootHash());
+
+        return new ArrayList<>(roots);
+    }
+
+    // the pruning is ended if it cannot be started
+    private List<byte[]> startPruning() throws IOException {
+        try {
+            List<byte[]> roots = new ArrayList<>();
+
+            for (Hash root : this.getRetainedRoots())
+                roots.add(root.getBytes());
+
+            this.accountKeyValueStore.startCompaction();
+            this.storageKeyValueStore.startCompaction();
+
+            return roots;
+        }
+        catch (IOException | RuntimeException ex) {
+            this.endPruning();
+            throw ex;
+        }
+    }
+
+    // the pruning is ended before notifying the results, a new one could be started by the consumers
+    private void completePruning(List<byte[]> roots) throws IOException {
+        List<byte[]> storageRoots = new ArrayList<>();
+        CompactionResult accountsResult;
+        CompactionResult storageResult;
+
+        try {
+            accountsResult = this.accountKeyValueStore.compact(roots, getAccountReferences(storageRoots));
+            storageResult = this.storageKeyValueStore.compact(storageRoots, TrieStore::getReferences);
+        }
+        finally {
+            this.endPruning();
+        }
+
+        this.prunedConsumers.forEach(c -> c.accept(accountsResult, storageResult));
+    }
+
+    private synchronized void endPruning() {
+        this.pruning = false;
+    }
+
+    // the storage roots of the visited accounts are collected while the account tries are compacted
+    private static KeyReferences getAccountReferences(List<byte[]> storageRoots) {
+        return value -> {
+            Trie node = Trie.fromEncoded(value, null);
+
+            if (node.hasValue()) {
+                Hash storageHash = AccountEncoder.decode(node.getValue()).getStorageHash();
+
+                if (storageHash != null)
+                    storageRoots.add(storageHash.getBytes());
+            }
+
+            return getNodeReferences(node);
+        };
+    }
+
+    private static List<byte[]> getNodeReferences(Trie node) {
+        List<byte[]> references = new ArrayList<>();
+
+        for (Hash subhash : node.getSubHashes())
+            if (subhash != null)
+                references.add(subhash.getBytes());
+
+        return references;
+    }
+}
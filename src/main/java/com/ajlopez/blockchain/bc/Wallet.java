@@ -1,7 +1,14 @@
 package com.ajlopez.blockchain.bc;
 
 import com.ajlopez.blockchain.core.types.Address;
+import com.ajlopez.blockchain.utils.HexUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,4 +25,27 @@ public class Wallet {
     public List<Address> getAddresses() {
         return this.addresses;
     }
+
+    // one address by line, the file is written to a temporary file, then renamed
+    public void save(String filename) throws IOException {
+        List<String> lines = new ArrayList<>(this.addresses.size());
+
+        for (Address address : this.addresses)
+            lines.add(address.toString());
+
+        Path path = Paths.get(filename + ".tmp");
+
+        Files.write(path, lines, StandardCharsets.UTF_8);
+        Files.move(path, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Wallet load(String filename) throws IOException {
+        Wallet wallet = new Wallet();
+
+        for (String line : Files.readAllLines(Paths.get(filename), StandardCharsets.UTF_8))
+            if (!line.isEmpty())
+                wallet.addAddress(new Address(HexUtils.hexStringToBytes(line)));
+
+        return wallet;
+    }
 }
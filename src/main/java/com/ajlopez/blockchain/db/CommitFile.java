@@ -0,0 +1,84 @@
+package com.ajlopez.blockchain.db;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+public class CommitFile {
+    private static final int RECORD_SIZE = Long.BYTES + 1 + Integer.BYTES;
+
+    private final RandomAccessFile file;
+
+    public CommitFile(String name) throws IOException {
+        this.file = new RandomAccessFile(name, "rw");
+    }
+
+    public long readLength() throws IOException {
+        ByteBuffer buffer = this.readRecord();
+
+        if (buffer == null)
+            return -1;
+
+        return buffer.getLong(0);
+    }
+
+    // a pending length marks writes after it that were not committed
+    public boolean readPending() throws IOException {
+        ByteBuffer buffer = this.readRecord();
+
+        if (buffer == null)
+            return false;
+
+        return buffer.get(Long.BYTES) != 0;
+    }
+
+    public void writeLength(long length) throws IOException {
+        this.writeRecord(length, false);
+    }
+
+    public void writePending(long length) throws IOException {
+        this.writeRecord(length, true);
+    }
+
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    private ByteBuffer readRecord() throws IOException {
+        if (this.file.length() < RECORD_SIZE)
+            return null;
+
+        byte[] bytes = new byte[RECORD_SIZE];
+
+        this.file.seek(0);
+        this.file.readFully(bytes);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        if (buffer.getInt(Long.BYTES + 1) != getChecksum(buffer.getLong(0), buffer.get(Long.BYTES)))
+            return null;
+
+        return buffer;
+    }
+
+    private void writeRecord(long length, boolean pending) throws IOException {
+        byte flag = pending ? (byte)1 : (byte)0;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+
+        buffer.putLong(length);
+        buffer.put(flag);
+        buffer.putInt(getChecksum(length, flag));
+
+        this.file.seek(0);
+        this.file.write(buffer.array());
+        this.file.getFD().sync();
+    }
+
+    private static int getChecksum(long length, byte flag) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES + 1).putLong(length).put(flag).array());
+
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,19 @@
+package com.ajlopez.blockchain.db;
+
+public class CompactionResult {
+    private final long noKeys;
+    private final long reclaimedBytes;
+    private final long elapsedTime;
+
+    public CompactionResult(long noKeys, long reclaimedBytes, long elapsedTime) {
+        this.noKeys = noKeys;
+        this.reclaimedBytes = reclaimedBytes;
+        this.elapsedTime = elapsedTime;
+    }
+
+    public long getNoKeys() { return this.noKeys; }
+
+    public long getReclaimedBytes() { return this.reclaimedBytes; }
+
+    public long getElapsedTime() { return this.elapsedTime; }
+}
@@ -0,0 +1,94 @@
+package com.ajlopez.blockchain.db;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class KeyBloomFilter {
+    private static final int MIN_CAPACITY = 1024;
+    private static final int BITS_PER_KEY = 10;
+    private static final int NO_HASHES = 7;
+
+    private final LongAdder noNegatives = new LongAdder();
+    private final LongAdder noFalsePositives = new LongAdder();
+
+    private int capacity;
+    private long noBits;
+    private long[] bits;
+    private int noKeys;
+
+    public KeyBloomFilter(int capacity) {
+        this.reset(capacity);
+    }
+
+    // the metrics are kept, only the bits are cleared
+    public void reset(int capacity) {
+        this.capacity = Math.max(capacity, MIN_CAPACITY);
+        this.bits = new long[(int)(((long)this.capacity * BITS_PER_KEY + Long.SIZE - 1) / Long.SIZE)];
+        this.noBits = (long)this.bits.length * Long.SIZE;
+        this.noKeys = 0;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int getNoKeys() {
+        return this.noKeys;
+    }
+
+    public boolean isFull() {
+        return this.noKeys >= this.capacity;
+    }
+
+    public void add(byte[] key) {
+        long hash = MappedKeyFile.hash(key);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+
+        for (int k = 0; k < NO_HASHES; k++) {
+            long bit = Integer.toUnsignedLong(hash1 + k * hash2) % this.noBits;
+            this.bits[(int)(bit / Long.SIZE)] |= 1L << (bit % Long.SIZE);
+        }
+
+        this.noKeys++;
+    }
+
+    public boolean mightContain(byte[] key) {
+        long hash = MappedKeyFile.hash(key);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+
+        for (int k = 0; k < NO_HASHES; k++) {
+            long bit = Integer.toUnsignedLong(hash1 + k * hash2) % this.noBits;
+
+            if ((this.bits[(int)(bit / Long.SIZE)] & (1L << (bit % Long.SIZE))) == 0) {
+                this.noNegatives.increment();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void falsePositive() {
+        this.noFalsePositives.increment();
+    }
+
+    public long getNoNegatives() {
+        return this.noNegatives.sum();
+    }
+
+    public long getNoFalsePositives() {
+        return this.noFalsePositives.sum();
+    }
+
+    // the rate of missing keys that were not discarded by the filter
+    public double getFalsePositiveRate() {
+        long negatives = this.getNoNegatives();
+        long falsePositives = this.getNoFalsePositives();
+
+        if (negatives + falsePositives == 0)
+            return 0;
+
+        return (double)falsePositives / (negatives + falsePositives);
+    }
+}
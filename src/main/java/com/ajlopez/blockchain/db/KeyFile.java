@@ -4,46 +4,70 @@ import com.ajlopez.blockchain.utils.ByteArrayWrapper;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 /**
  * Created by ajlopez on 21/10/2019.
  */
-public class KeyFile {
+public class KeyFile implements KeyIndex {
     private final RandomAccessFile file;
     private final int keyLength;
-    private Map<ByteArrayWrapper, ValueInfo> keys = new HashMap<>();
+    private final ConcurrentNavigableMap<ByteArrayWrapper, ValueInfo> keys = new ConcurrentSkipListMap<>();
+    private long length;
 
     public KeyFile(String name, int keyLength) throws IOException {
         this.file = new RandomAccessFile(name, "rw");
         this.keyLength = keyLength;
 
+        this.load();
+    }
+
+    private void load() throws IOException {
+        this.keys.clear();
+        this.length = 0;
+
         int blockSize = this.getBlockSize();
-        long nkeys = this.getNoKeys(blockSize);
+        long nkeys = this.file.length() / blockSize;
+        byte[] block = new byte[blockSize];
 
         this.file.seek(0);
 
         for (long k = 0; k < nkeys; k++) {
-            byte[] buffer = new byte[this.keyLength];
+            this.file.readFully(block);
+
+            ByteBuffer buffer = ByteBuffer.wrap(block);
 
-            this.file.read(buffer);
+            if (buffer.getInt(blockSize - Integer.BYTES) != getChecksum(block, blockSize - Integer.BYTES))
+                break;
 
-            long position = this.file.readLong();
-            int length = this.file.readInt();
+            byte[] key = new byte[this.keyLength];
+            buffer.get(key);
 
-            this.keys.put(new ByteArrayWrapper(buffer), new ValueInfo(position, length));
+            long position = buffer.getLong();
+            int length = buffer.getInt();
+
+            this.keys.put(new ByteArrayWrapper(key), new ValueInfo(position, length));
+            this.length += blockSize;
         }
-    }
 
-    private int getBlockSize() {
-        return this.keyLength + Long.BYTES + Integer.BYTES;
+        // torn or corrupted records at the end of the file are discarded
+        if (this.length < this.file.length())
+            this.file.setLength(this.length);
     }
 
-    private long getNoKeys(int blockSize) throws IOException {
-        return this.file.length() / blockSize;
+    private int getBlockSize() {
+        return this.keyLength + Long.BYTES + Integer.BYTES + Integer.BYTES;
     }
 
+    @Override
     public void writeKey(byte[] key, long position, int length) throws IOException {
         if (key == null || key.length != this.keyLength)
             throw new IllegalArgumentException("invalid key");
@@ -53,25 +77,142 @@ public class KeyFile {
         if (this.keys.containsKey(bakey))
             throw new IllegalStateException("key already exists");
 
-        int blockSize = this.getBlockSize();
+        this.appendKey(key, position, length);
+    }
+
+    @Override
+    public void updateKey(byte[] key, long position, int length) throws IOException {
+        if (key == null || key.length != this.keyLength)
+            throw new IllegalArgumentException("invalid key");
+
+        this.appendKey(key, position, length);
+    }
 
-        this.file.seek(this.getNoKeys(blockSize) * blockSize);
-        this.file.write(key);
-        this.file.writeLong(position);
-        this.file.writeInt(length);
+    private void appendKey(byte[] key, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(this.getBlockSize());
+
+        this.putRecord(buffer, key, position, length);
+        this.append(buffer.array());
 
         this.keys.put(new ByteArrayWrapper(key), new ValueInfo(position, length));
     }
 
+    @Override
+    public void writeKeys(List<byte[]> keys, List<ValueInfo> valueInfos) throws IOException {
+        Set<ByteArrayWrapper> newKeys = new HashSet<>();
+
+        for (byte[] key : keys) {
+            if (key == null || key.length != this.keyLength)
+                throw new IllegalArgumentException("invalid key");
+
+            ByteArrayWrapper bakey = new ByteArrayWrapper(key);
+
+            if (this.keys.containsKey(bakey) || !newKeys.add(bakey))
+                throw new IllegalStateException("key already exists");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(keys.size() * this.getBlockSize());
+
+        for (int k = 0; k < keys.size(); k++) {
+            ValueInfo valueInfo = valueInfos.get(k);
+            this.putRecord(buffer, keys.get(k), valueInfo.position, valueInfo.length);
+        }
+
+        this.append(buffer.array());
+
+        for (int k = 0; k < keys.size(); k++)
+            this.keys.put(new ByteArrayWrapper(keys.get(k)), valueInfos.get(k));
+    }
+
+    private void putRecord(ByteBuffer buffer, byte[] key, long position, int length) {
+        int offset = buffer.position();
+
+        buffer.put(key);
+        buffer.putLong(position);
+        buffer.putInt(length);
+        buffer.putInt(getChecksum(buffer.array(), offset, buffer.position() - offset));
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        this.file.seek(this.length);
+        this.file.write(bytes);
+        this.length += bytes.length;
+    }
+
+    @Override
+    public void removeKeysFrom(long position) throws IOException {
+        int blockSize = this.getBlockSize();
+        long newLength = this.length;
+
+        // keys are appended in the same order as their values, so the keys to remove are at the end of the file
+        while (newLength >= blockSize) {
+            this.file.seek(newLength - blockSize + this.keyLength);
+
+            if (this.file.readLong() < position)
+                break;
+
+            newLength -= blockSize;
+        }
+
+        if (newLength == this.length)
+            return;
+
+        this.file.setLength(newLength);
+        this.load();
+    }
+
+    @Override
     public ValueInfo readKey(byte[] key) throws IOException {
         return this.keys.get(new ByteArrayWrapper(key));
     }
 
+    @Override
     public boolean containsKey(byte[] key) {
         return this.keys.containsKey(new ByteArrayWrapper(key));
     }
 
+    @Override
+    public Iterator<byte[]> getKeys(byte[] fromKey, byte[] toKey) {
+        ConcurrentNavigableMap<ByteArrayWrapper, ValueInfo> range = this.keys;
+
+        if (fromKey != null)
+            range = range.tailMap(new ByteArrayWrapper(fromKey), true);
+
+        if (toKey != null)
+            range = range.headMap(new ByteArrayWrapper(toKey), false);
+
+        return range.keySet().stream().map(ByteArrayWrapper::getBytes).iterator();
+    }
+
+    @Override
+    public void forEachKey(Consumer<byte[]> consumer) {
+        for (ByteArrayWrapper key : this.keys.keySet())
+            consumer.accept(key.getBytes());
+    }
+
+    @Override
+    public long getNoKeys() {
+        return this.keys.size();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.file.getFD().sync();
+    }
+
+    @Override
     public void close() throws IOException {
         this.file.close();
     }
+
+    private static int getChecksum(byte[] bytes, int length) {
+        return getChecksum(bytes, 0, length);
+    }
+
+    private static int getChecksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+
+        return (int)crc.getValue();
+    }
 }
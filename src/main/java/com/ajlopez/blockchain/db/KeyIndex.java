@@ -0,0 +1,31 @@
+package com.ajlopez.blockchain.db;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface KeyIndex {
+    void writeKey(byte[] key, long position, int length) throws IOException;
+
+    void updateKey(byte[] key, long position, int length) throws IOException;
+
+    void writeKeys(List<byte[]> keys, List<ValueInfo> valueInfos) throws IOException;
+
+    void removeKeysFrom(long position) throws IOException;
+
+    ValueInfo readKey(byte[] key) throws IOException;
+
+    boolean containsKey(byte[] key) throws IOException;
+
+    Iterator<byte[]> getKeys(byte[] fromKey, byte[] toKey) throws IOException;
+
+    // the keys are visited in index order
+    void forEachKey(Consumer<byte[]> consumer) throws IOException;
+
+    long getNoKeys();
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
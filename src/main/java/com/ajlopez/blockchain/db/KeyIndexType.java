@@ -0,0 +1,6 @@
+package com.ajlopez.blockchain.db;
+
+public enum KeyIndexType {
+    MEMORY,
+    MAPPED
+}
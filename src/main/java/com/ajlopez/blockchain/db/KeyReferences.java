@@ -0,0 +1,7 @@
+package com.ajlopez.blockchain.db;
+
+import java.util.List;
+
+public interface KeyReferences {
+    List<byte[]> getReferences(byte[] value);
+}
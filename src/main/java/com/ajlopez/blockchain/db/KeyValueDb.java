@@ -1,41 +1,233 @@
 package com.ajlopez.blockchain.db;
 
-import com.ajlopez.blockchain.store.KeyValueStore;
+import com.ajlopez.blockchain.store.CompactableKeyValueStore;
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.WriteBatch;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
 
 /**
  * Created by ajlopez on 20/10/2019.
  */
-public class KeyValueDb implements KeyValueStore {
-    private final ValueFile valueFile;
-    private final KeyFile keyFile;
+public class KeyValueDb implements CompactableKeyValueStore, Closeable, Flushable {
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int COMPRESSED_FLAG = Integer.MIN_VALUE;
+
+    private final String name;
+    private final int keyLength;
+    private final KeyIndexType keyIndexType;
+    private final boolean updatable;
+    private final boolean compressed;
+    private final boolean syncWrites;
+
+    private int generation;
+    private ValueFile valueFile;
+    private KeyIndex keyIndex;
+    private CommitFile commitFile;
+    private final KeyBloomFilter keyFilter = new KeyBloomFilter(0);
+    private volatile boolean keyFilterLoaded;
+    private boolean pending;
+    private List<byte[]> compactionKeys;
+    private boolean compacting;
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     public KeyValueDb(String name, int keyLength) throws IOException {
-        this.valueFile = new ValueFile(name + ".values");
-        this.keyFile = new KeyFile(name + ".keys", keyLength);
+        this(name, keyLength, KeyIndexType.MEMORY);
+    }
+
+    public KeyValueDb(String name, int keyLength, KeyIndexType keyIndexType) throws IOException {
+        this(name, keyLength, keyIndexType, false);
+    }
+
+    public KeyValueDb(String name, int keyLength, KeyIndexType keyIndexType, boolean updatable) throws IOException {
+        this(name, keyLength, keyIndexType, updatable, false);
+    }
+
+    public KeyValueDb(String name, int keyLength, KeyIndexType keyIndexType, boolean updatable, boolean compressed) throws IOException {
+        this(name, keyLength, keyIndexType, updatable, compressed, true);
+    }
+
+    // without synced writes, the batches are written to disk only by flush and close
+    public KeyValueDb(String name, int keyLength, KeyIndexType keyIndexType, boolean updatable, boolean compressed, boolean syncWrites) throws IOException {
+        this.name = name;
+        this.keyLength = keyLength;
+        this.keyIndexType = keyIndexType;
+        this.updatable = updatable;
+        this.compressed = compressed;
+        this.syncWrites = syncWrites;
+
+        // the mapped index updates the keys in place, the recovery could not restore their previous values
+        if (updatable && keyIndexType == KeyIndexType.MAPPED)
+            throw new IllegalArgumentException("updatable db requires memory key index");
+
+        this.generation = readGeneration(name);
+
+        // the files of an interrupted compaction, or of the replaced generation, are discarded
+        deleteFiles(getGenerationName(name, this.generation + 1), keyIndexType);
+
+        if (this.generation > 0)
+            deleteFiles(getGenerationName(name, this.generation - 1), keyIndexType);
+
+        String generationName = getGenerationName(name, this.generation);
+
+        this.valueFile = new ValueFile(getValueFileName(generationName));
+        this.keyIndex = openKeyIndex(generationName, keyLength, keyIndexType);
+        this.commitFile = new CommitFile(getCommitFileName(generationName));
+
+        this.recover();
+    }
+
+    public KeyBloomFilter getKeyFilter() {
+        try {
+            this.loadKeyFilter();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return this.keyFilter;
     }
 
     @Override
     public void setValue(byte[] key, byte[] value) throws IOException {
+        if (this.putValue(key, value) && this.syncWrites)
+            this.flush();
+    }
+
+    private boolean putValue(byte[] key, byte[] value) throws IOException {
+        if (key == null || key.length != this.keyLength)
+            throw new IllegalArgumentException("invalid key");
+
         this.lock.writeLock().lock();
 
         try {
-            if (this.keyFile.containsKey(key)) {
+            if (this.keyIndex.containsKey(key)) {
                 byte[] oldvalue = this.getValue(key);
 
-                if (!Arrays.equals(value, oldvalue))
+                if (Arrays.equals(value, oldvalue)) {
+                    // a rewritten key could be referenced again by new values
+                    if (this.compactionKeys != null)
+                        this.compactionKeys.add(key);
+
+                    return false;
+                }
+
+                if (!this.updatable)
                     throw new IllegalStateException("cannot change value for key");
 
-                return;
+                this.markPending();
+
+                ValueInfo valueInfo = this.writeRecord(this.valueFile, key, value);
+                this.keyIndex.updateKey(key, valueInfo.position, valueInfo.length);
+
+                if (this.compactionKeys != null)
+                    this.compactionKeys.add(key);
+
+                return true;
+            }
+
+            this.markPending();
+
+            ValueInfo valueInfo = this.writeRecord(this.valueFile, key, value);
+            this.keyIndex.writeKey(key, valueInfo.position, valueInfo.length);
+            this.addFilterKey(key);
+
+            if (this.compactionKeys != null)
+                this.compactionKeys.add(key);
+
+            return true;
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        if (this.updatable) {
+            boolean written = false;
+
+            for (int k = 0; k < batch.size(); k++)
+                written |= this.putValue(batch.getKey(k), batch.getValue(k));
+
+            if (written && this.syncWrites)
+                this.flush();
+
+            return;
+        }
+
+        this.lock.writeLock().lock();
+
+        try {
+            Map<ByteArrayWrapper, byte[]> newValues = new HashMap<>();
+            List<byte[]> keys = new ArrayList<>();
+            List<byte[]> values = new ArrayList<>();
+
+            for (int k = 0; k < batch.size(); k++) {
+                byte[] key = batch.getKey(k);
+                byte[] value = batch.getValue(k);
+
+                if (key == null || key.length != this.keyLength)
+                    throw new IllegalArgumentException("invalid key");
+
+                ByteArrayWrapper bakey = new ByteArrayWrapper(key);
+
+                if (this.keyIndex.containsKey(key) || newValues.containsKey(bakey)) {
+                    byte[] oldvalue = newValues.containsKey(bakey) ? newValues.get(bakey) : this.getValue(key);
+
+                    if (!Arrays.equals(value, oldvalue))
+                        throw new IllegalStateException("cannot change value for key");
+
+                    if (this.compactionKeys != null && !newValues.containsKey(bakey))
+                        this.compactionKeys.add(key);
+
+                    continue;
+                }
+
+                newValues.put(bakey, value);
+                keys.add(key);
+                values.add(value);
             }
 
-            long position = this.valueFile.writeValue(value);
-            this.keyFile.writeKey(key, position, value.length);
+            if (keys.isEmpty())
+                return;
+
+            if (!this.syncWrites)
+                this.markPending();
+
+            List<ValueInfo> valueInfos = this.writeRecords(this.valueFile, keys, values);
+
+            if (this.syncWrites)
+                this.valueFile.flush();
+
+            this.keyIndex.writeKeys(keys, valueInfos);
+
+            if (this.syncWrites)
+                this.keyIndex.flush();
+
+            for (byte[] key : keys)
+                this.addFilterKey(key);
+
+            if (this.syncWrites)
+                this.writeCommit();
+
+            if (this.compactionKeys != null)
+                this.compactionKeys.addAll(keys);
         }
         finally {
             this.lock.writeLock().unlock();
@@ -47,20 +239,560 @@ public class KeyValueDb implements KeyValueStore {
         this.lock.readLock().lock();
 
         try {
-            ValueInfo valueInfo = this.keyFile.readKey(key);
+            ValueInfo valueInfo = this.readKey(key);
 
             if (valueInfo == null)
                 return null;
 
-            byte[] buffer = new byte[valueInfo.length];
+            return this.readValue(valueInfo);
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        int nkeys = keys.size();
+        ValueInfo[] valueInfos = new ValueInfo[nkeys];
+        List<Integer> positions = new ArrayList<>(nkeys);
+        byte[][] values = new byte[nkeys][];
+
+        this.lock.readLock().lock();
+
+        try {
+            for (int k = 0; k < nkeys; k++) {
+                valueInfos[k] = this.readKey(keys.get(k));
+
+                if (valueInfos[k] != null)
+                    positions.add(k);
+            }
+
+            // values are read in file order
+            positions.sort(Comparator.comparingLong(k -> valueInfos[k].position));
+
+            for (int k : positions)
+                values[k] = this.readValue(valueInfos[k]);
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+
+        return Arrays.asList(values);
+    }
 
-            // TODO Check read
-            int read = this.valueFile.readValue(valueInfo.position, buffer);
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        this.lock.readLock().lock();
 
-            return buffer;
+        try {
+            return this.hasKey(key);
         }
         finally {
             this.lock.readLock().unlock();
         }
     }
+
+    @Override
+    public boolean[] containsKeys(List<byte[]> keys) throws IOException {
+        boolean[] result = new boolean[keys.size()];
+
+        this.lock.readLock().lock();
+
+        try {
+            for (int k = 0; k < result.length; k++)
+                result[k] = this.hasKey(keys.get(k));
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        Iterator<byte[]> keys;
+
+        this.lock.readLock().lock();
+
+        try {
+            keys = this.keyIndex.getKeys(fromKey, toKey);
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+
+        // values are read while iterating
+        return new Iterator<KeyValue>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public KeyValue next() {
+                byte[] key = keys.next();
+
+                try {
+                    return new KeyValue(key, getValue(key));
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void startCompaction() {
+        this.lock.writeLock().lock();
+
+        try {
+            if (this.compacting)
+                throw new IllegalStateException("compaction in progress");
+
+            if (this.compactionKeys == null)
+                this.compactionKeys = new ArrayList<>();
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CompactionResult compact(Collection<byte[]> roots, KeyReferences keyReferences) throws IOException {
+        long millis = System.currentTimeMillis();
+
+        this.lock.writeLock().lock();
+
+        try {
+            if (this.compacting)
+                throw new IllegalStateException("compaction in progress");
+
+            this.compacting = true;
+
+            if (this.compactionKeys == null)
+                this.compactionKeys = new ArrayList<>();
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+
+        int newGeneration = this.generation + 1;
+        String compactName = getGenerationName(this.name, newGeneration);
+        ValueFile newValueFile = null;
+        KeyIndex newKeyIndex = null;
+
+        try {
+            deleteFiles(compactName, this.keyIndexType);
+
+            newValueFile = new ValueFile(getValueFileName(compactName));
+            newKeyIndex = openKeyIndex(compactName, this.keyLength, this.keyIndexType);
+
+            long nkeys = this.copyKeys(new ArrayDeque<>(roots), keyReferences, newValueFile, newKeyIndex);
+
+            this.lock.writeLock().lock();
+
+            try {
+                Queue<byte[]> pending = new ArrayDeque<>();
+
+                // the references could write new keys, the list is traversed by index
+                for (int k = 0; k < this.compactionKeys.size(); k++) {
+                    byte[] key = this.compactionKeys.get(k);
+                    boolean copied = newKeyIndex.containsKey(key);
+
+                    if (copied && !this.updatable)
+                        continue;
+
+                    byte[] value = this.getValue(key);
+
+                    ValueInfo valueInfo = this.writeRecord(newValueFile, key, value);
+
+                    if (copied) {
+                        newKeyIndex.updateKey(key, valueInfo.position, valueInfo.length);
+                        continue;
+                    }
+
+                    newKeyIndex.writeKey(key, valueInfo.position, valueInfo.length);
+                    nkeys++;
+
+                    pending.addAll(keyReferences.getReferences(value));
+                }
+
+                // the written values could reference keys not reachable from the roots
+                nkeys += this.copyKeys(pending, keyReferences, newValueFile, newKeyIndex);
+
+                long reclaimedBytes = this.valueFile.length() - newValueFile.length();
+
+                newValueFile.flush();
+                newKeyIndex.flush();
+
+                CommitFile newCommitFile = new CommitFile(getCommitFileName(compactName));
+                newCommitFile.writeLength(newValueFile.length());
+
+                newValueFile.close();
+                newKeyIndex.close();
+                newValueFile = null;
+                newKeyIndex = null;
+
+                // the new generation replaces the values and the keys at once, an interrupted compaction keeps the old ones
+                try {
+                    writeGeneration(this.name, newGeneration);
+                }
+                catch (IOException ex) {
+                    newCommitFile.close();
+                    throw ex;
+                }
+
+                this.keyIndex.close();
+                this.valueFile.close();
+                this.commitFile.close();
+
+                deleteFiles(getGenerationName(this.name, this.generation), this.keyIndexType);
+
+                this.generation = newGeneration;
+                this.valueFile = new ValueFile(getValueFileName(compactName));
+                this.keyIndex = openKeyIndex(compactName, this.keyLength, this.keyIndexType);
+                this.commitFile = newCommitFile;
+                this.pending = false;
+                this.keyFilterLoaded = false;
+
+                this.compactionKeys = new ArrayList<>();
+
+                return new CompactionResult(nkeys, reclaimedBytes, System.currentTimeMillis() - millis);
+            }
+            finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+        finally {
+            if (newValueFile != null)
+                newValueFile.close();
+
+            if (newKeyIndex != null)
+                newKeyIndex.close();
+
+            this.lock.writeLock().lock();
+            this.compacting = false;
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private long copyKeys(Queue<byte[]> pending, KeyReferences keyReferences, ValueFile newValueFile, KeyIndex newKeyIndex) throws IOException {
+        long nkeys = 0;
+
+        while (!pending.isEmpty()) {
+            byte[] key = pending.poll();
+
+            if (newKeyIndex.containsKey(key))
+                continue;
+
+            byte[] value = this.getValue(key);
+
+            if (value == null)
+                continue;
+
+            ValueInfo valueInfo = this.writeRecord(newValueFile, key, value);
+            newKeyIndex.writeKey(key, valueInfo.position, valueInfo.length);
+            nkeys++;
+
+            pending.addAll(keyReferences.getReferences(value));
+        }
+
+        return nkeys;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.lock.writeLock().lock();
+
+        try {
+            this.valueFile.flush();
+            this.keyIndex.flush();
+            this.writeCommit();
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+
+        try {
+            this.flush();
+
+            this.keyIndex.close();
+            this.valueFile.close();
+            this.commitFile.close();
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        long length = this.valueFile.length();
+        long committed = this.commitFile.readLength();
+        boolean pending = this.commitFile.readPending();
+
+        if (committed < 0 || committed > length)
+            committed = 0;
+
+        long position = committed;
+
+        byte[] header = new byte[RECORD_HEADER_SIZE];
+
+        while (position + RECORD_HEADER_SIZE + this.keyLength <= length) {
+            this.valueFile.readValue(position, header);
+
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            int encodedLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            int valueLength = encodedLength & ~COMPRESSED_FLAG;
+
+            long end = position + RECORD_HEADER_SIZE + this.keyLength + valueLength;
+
+            if (end > length)
+                break;
+
+            byte[] data = new byte[this.keyLength + valueLength];
+            this.valueFile.readValue(position + RECORD_HEADER_SIZE, data);
+
+            if (checksum != getChecksum(encodedLength, data))
+                break;
+
+            byte[] key = Arrays.copyOf(data, this.keyLength);
+            ValueInfo valueInfo = new ValueInfo(position + RECORD_HEADER_SIZE + this.keyLength, encodedLength);
+            ValueInfo current = this.keyIndex.readKey(key);
+
+            if (current == null)
+                this.keyIndex.writeKey(key, valueInfo.position, valueInfo.length);
+            else if (current.position != valueInfo.position || current.length != valueInfo.length)
+                this.keyIndex.updateKey(key, valueInfo.position, valueInfo.length);
+
+            position = end;
+        }
+
+        // a torn or corrupted record ends the log, the values after it were never committed
+        if (position < length)
+            this.valueFile.truncate(position);
+
+        // the index could be written to disk before the values it refers to, only past the commit
+        if (pending || position != committed || position < length)
+            this.keyIndex.removeKeysFrom(position);
+
+        this.valueFile.flush();
+        this.keyIndex.flush();
+        this.commitFile.writeLength(position);
+    }
+
+    // the index could be written to disk before the values it refers to, until the next commit
+    private void markPending() throws IOException {
+        if (this.pending)
+            return;
+
+        this.commitFile.writePending(this.valueFile.length());
+        this.pending = true;
+    }
+
+    private void writeCommit() throws IOException {
+        this.commitFile.writeLength(this.valueFile.length());
+        this.pending = false;
+    }
+
+    // most missing keys are discarded by the filter, without reading the index
+    private boolean hasKey(byte[] key) throws IOException {
+        this.loadKeyFilter();
+
+        if (!this.keyFilter.mightContain(key))
+            return false;
+
+        if (this.keyIndex.containsKey(key))
+            return true;
+
+        this.keyFilter.falsePositive();
+
+        return false;
+    }
+
+    private ValueInfo readKey(byte[] key) throws IOException {
+        this.loadKeyFilter();
+
+        if (!this.keyFilter.mightContain(key))
+            return null;
+
+        ValueInfo valueInfo = this.keyIndex.readKey(key);
+
+        if (valueInfo == null)
+            this.keyFilter.falsePositive();
+
+        return valueInfo;
+    }
+
+    // a filter not loaded yet gets the key from the index
+    private void addFilterKey(byte[] key) throws IOException {
+        if (!this.keyFilterLoaded)
+            return;
+
+        this.keyFilter.add(key);
+
+        if (this.keyFilter.isFull())
+            this.rebuildKeyFilter();
+    }
+
+    // the filter is built on first use, opening the db does not visit the keys
+    private void loadKeyFilter() throws IOException {
+        if (this.keyFilterLoaded)
+            return;
+
+        synchronized (this.keyFilter) {
+            if (this.keyFilterLoaded)
+                return;
+
+            this.rebuildKeyFilter();
+            this.keyFilterLoaded = true;
+        }
+    }
+
+    // the filter doubles its capacity, the keys are visited without sorting them
+    private void rebuildKeyFilter() throws IOException {
+        this.keyFilter.reset((int)Math.min(Integer.MAX_VALUE / 2, this.keyIndex.getNoKeys()) * 2);
+        this.keyIndex.forEachKey(this.keyFilter::add);
+    }
+
+    // the length in the value information keeps the compressed flag of the record
+    private byte[] readValue(ValueInfo valueInfo) throws IOException {
+        byte[] value = this.valueFile.readValue(valueInfo.position, valueInfo.length & ~COMPRESSED_FLAG);
+
+        if ((valueInfo.length & COMPRESSED_FLAG) != 0)
+            return ValueCompressor.decompress(value);
+
+        return value;
+    }
+
+    private ValueInfo writeRecord(ValueFile valueFile, byte[] key, byte[] value) throws IOException {
+        byte[] record = this.encodeRecord(key, value);
+        long position = valueFile.writeValue(record);
+
+        return new ValueInfo(position + RECORD_HEADER_SIZE + key.length, getEncodedLength(record));
+    }
+
+    private List<ValueInfo> writeRecords(ValueFile valueFile, List<byte[]> keys, List<byte[]> values) throws IOException {
+        List<byte[]> records = new ArrayList<>(keys.size());
+
+        for (int k = 0; k < keys.size(); k++)
+            records.add(this.encodeRecord(keys.get(k), values.get(k)));
+
+        long position = valueFile.writeValues(records);
+        List<ValueInfo> valueInfos = new ArrayList<>(records.size());
+
+        for (int k = 0; k < records.size(); k++) {
+            valueInfos.add(new ValueInfo(position + RECORD_HEADER_SIZE + keys.get(k).length, getEncodedLength(records.get(k))));
+            position += records.get(k).length;
+        }
+
+        return valueInfos;
+    }
+
+    // the compressed value is written only if it is shorter than the original one
+    private byte[] encodeRecord(byte[] key, byte[] value) {
+        byte[] compressedValue = this.compressed ? ValueCompressor.compress(value) : null;
+        byte[] storedValue = compressedValue != null ? compressedValue : value;
+        int encodedLength = compressedValue != null ? storedValue.length | COMPRESSED_FLAG : storedValue.length;
+
+        byte[] data = new byte[key.length + storedValue.length];
+
+        System.arraycopy(key, 0, data, 0, key.length);
+        System.arraycopy(storedValue, 0, data, key.length, storedValue.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + data.length);
+
+        buffer.putInt(encodedLength);
+        buffer.putInt(getChecksum(encodedLength, data));
+        buffer.put(data);
+
+        return buffer.array();
+    }
+
+    private static int getEncodedLength(byte[] record) {
+        return ByteBuffer.wrap(record).getInt();
+    }
+
+    private static int getChecksum(int encodedLength, byte[] data) {
+        CRC32 crc = new CRC32();
+
+        crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(encodedLength).array());
+        crc.update(data);
+
+        return (int)crc.getValue();
+    }
+
+    private static KeyIndex openKeyIndex(String name, int keyLength, KeyIndexType keyIndexType) throws IOException {
+        if (keyIndexType == KeyIndexType.MAPPED)
+            return new MappedKeyFile(getKeyIndexFileName(name, keyIndexType), keyLength);
+
+        return new KeyFile(getKeyIndexFileName(name, keyIndexType), keyLength);
+    }
+
+    // the first generation uses the original file names
+    private static String getGenerationName(String name, int generation) {
+        if (generation == 0)
+            return name;
+
+        return name + "." + generation;
+    }
+
+    private static String getGenerationFileName(String name) {
+        return name + ".generation";
+    }
+
+    private static int readGeneration(String name) throws IOException {
+        Path path = Paths.get(getGenerationFileName(name));
+
+        if (!Files.exists(path))
+            return 0;
+
+        byte[] bytes = Files.readAllBytes(path);
+
+        if (bytes.length != Integer.BYTES)
+            throw new IOException("invalid generation file");
+
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    // the generation is written to a temporary file, then renamed
+    private static void writeGeneration(String name, int generation) throws IOException {
+        Path path = Paths.get(getGenerationFileName(name) + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, generation));
+            channel.force(true);
+        }
+
+        Files.move(path, Paths.get(getGenerationFileName(name)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String getValueFileName(String name) {
+        return name + ".values";
+    }
+
+    private static String getCommitFileName(String name) {
+        return name + ".commit";
+    }
+
+    private static String getKeyIndexFileName(String name, KeyIndexType keyIndexType) {
+        if (keyIndexType == KeyIndexType.MAPPED)
+            return name + ".index";
+
+        return name + ".keys";
+    }
+
+    private static void deleteFiles(String name, KeyIndexType keyIndexType) throws IOException {
+        Files.deleteIfExists(Paths.get(getValueFileName(name)));
+        Files.deleteIfExists(Paths.get(getKeyIndexFileName(name, keyIndexType)));
+        Files.deleteIfExists(Paths.get(getCommitFileName(name)));
+    }
 }
@@ -0,0 +1,61 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.utils.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class KeyValueDbCompactor {
+    private static final Logger logger = Logger.getLogger(KeyValueDbCompactor.class.getName());
+
+    private final KeyValueDb keyValueDb;
+    private final KeyReferences keyReferences;
+    private final List<Consumer<CompactionResult>> compactedConsumers = new ArrayList<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("key-value-db-compactor"));
+
+    public KeyValueDbCompactor(KeyValueDb keyValueDb, KeyReferences keyReferences) {
+        this.keyValueDb = keyValueDb;
+        this.keyReferences = keyReferences;
+    }
+
+    public void onCompacted(Consumer<CompactionResult> consumer) {
+        this.compactedConsumers.add(consumer);
+    }
+
+    public CompactionResult compact(Collection<byte[]> roots) throws IOException {
+        CompactionResult result = this.keyValueDb.compact(roots, this.keyReferences);
+
+        this.compactedConsumers.forEach(c -> c.accept(result));
+
+        return result;
+    }
+
+    public void start(Collection<byte[]> roots) {
+        this.executor.execute(() -> {
+            try {
+                this.compact(roots);
+            } catch (IOException | RuntimeException ex) {
+                logger.log(Level.SEVERE, "compaction failed", ex);
+            }
+        });
+    }
+
+    // a running compaction is completed before returning
+    public void stop() {
+        this.executor.shutdown();
+
+        try {
+            this.executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.store.KeyRange;
+import com.ajlopez.blockchain.utils.ByteUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class MappedKeyFile implements KeyIndex {
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int CAPACITY_OFFSET = Integer.BYTES;
+    private static final int COUNT_OFFSET = Integer.BYTES + Long.BYTES;
+
+    private static final long INITIAL_CAPACITY = 1024;
+    private static final int SEGMENT_SLOTS = 1 << 20;
+    private static final int MAX_LOAD_PERCENTAGE = 60;
+    private static final byte USED_SLOT = 1;
+
+    private final String name;
+    private final int keyLength;
+    private final int slotSize;
+
+    private RandomAccessFile file;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private boolean[] dirtySegments;
+    private long capacity;
+    private long count;
+
+    public MappedKeyFile(String name, int keyLength) throws IOException {
+        this.name = name;
+        this.keyLength = keyLength;
+        this.slotSize = getSlotSize(keyLength);
+
+        if (new File(name).length() == 0)
+            create(name, keyLength, INITIAL_CAPACITY);
+
+        this.open();
+    }
+
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public long getNoKeys() {
+        return this.count;
+    }
+
+    @Override
+    public void writeKey(byte[] key, long position, int length) throws IOException {
+        if (key == null || key.length != this.keyLength)
+            throw new IllegalArgumentException("invalid key");
+
+        if ((this.count + 1) * 100 > this.capacity * MAX_LOAD_PERCENTAGE)
+            this.grow();
+
+        long slot = this.findSlot(key);
+
+        if (this.isUsedSlot(slot))
+            throw new IllegalStateException("key already exists");
+
+        this.writeSlot(slot, key, position, length);
+
+        this.count++;
+        this.header.putLong(COUNT_OFFSET, this.count);
+    }
+
+    @Override
+    public void updateKey(byte[] key, long position, int length) throws IOException {
+        if (key == null || key.length != this.keyLength)
+            throw new IllegalArgumentException("invalid key");
+
+        long slot = this.findSlot(key);
+
+        if (!this.isUsedSlot(slot)) {
+            this.writeKey(key, position, length);
+            return;
+        }
+
+        MappedByteBuffer segment = this.getSegment(slot);
+        int offset = this.getSlotOffset(slot) + 1 + this.keyLength;
+
+        segment.putLong(offset, position);
+        segment.putInt(offset + Long.BYTES, length);
+
+        this.dirtySegments[getSegmentNumber(slot)] = true;
+    }
+
+    @Override
+    public void writeKeys(List<byte[]> keys, List<ValueInfo> valueInfos) throws IOException {
+        for (int k = 0; k < keys.size(); k++) {
+            ValueInfo valueInfo = valueInfos.get(k);
+            this.writeKey(keys.get(k), valueInfo.position, valueInfo.length);
+        }
+    }
+
+    @Override
+    public ValueInfo readKey(byte[] key) throws IOException {
+        if (key == null || key.length != this.keyLength)
+            return null;
+
+        long slot = this.findSlot(key);
+
+        if (!this.isUsedSlot(slot))
+            return null;
+
+        MappedByteBuffer segment = this.getSegment(slot);
+        int offset = this.getSlotOffset(slot) + 1 + this.keyLength;
+
+        return new ValueInfo(segment.getLong(offset), segment.getInt(offset + Long.BYTES));
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) {
+        if (key == null || key.length != this.keyLength)
+            return false;
+
+        return this.isUsedSlot(this.findSlot(key));
+    }
+
+    // slots are hash ordered, the keys in range are collected and sorted
+    @Override
+    public Iterator<byte[]> getKeys(byte[] fromKey, byte[] toKey) {
+        KeyRange keyRange = new KeyRange(fromKey, toKey);
+        List<byte[]> keys = new ArrayList<>();
+
+        for (long slot = 0; slot < this.capacity; slot++) {
+            if (!this.isUsedSlot(slot))
+                continue;
+
+            byte[] key = this.getSlotKey(slot);
+
+            if (keyRange.contains(key))
+                keys.add(key);
+        }
+
+        keys.sort(ByteUtils::compare);
+
+        return keys.iterator();
+    }
+
+    @Override
+    public void forEachKey(Consumer<byte[]> consumer) {
+        for (long slot = 0; slot < this.capacity; slot++)
+            if (this.isUsedSlot(slot))
+                consumer.accept(this.getSlotKey(slot));
+    }
+
+    // only the segments written since the last flush are forced
+    @Override
+    public void flush() {
+        for (int k = 0; k < this.segments.length; k++)
+            if (this.dirtySegments[k]) {
+                this.segments[k].force();
+                this.dirtySegments[k] = false;
+            }
+
+        this.header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    private void open() throws IOException {
+        this.file = new RandomAccessFile(this.name, "rw");
+
+        FileChannel channel = this.file.getChannel();
+
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        if (this.header.getInt(0) != this.keyLength)
+            throw new IllegalStateException("invalid key length");
+
+        this.capacity = this.header.getLong(CAPACITY_OFFSET);
+        this.count = this.header.getLong(COUNT_OFFSET);
+
+        int nsegments = (int)((this.capacity + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS);
+
+        this.segments = new MappedByteBuffer[nsegments];
+        this.dirtySegments = new boolean[nsegments];
+
+        for (int k = 0; k < nsegments; k++) {
+            long nslots = Math.min(SEGMENT_SLOTS, this.capacity - (long)k * SEGMENT_SLOTS);
+            long offset = HEADER_SIZE + (long)k * SEGMENT_SLOTS * this.slotSize;
+
+            this.segments[k] = channel.map(FileChannel.MapMode.READ_WRITE, offset, nslots * this.slotSize);
+        }
+    }
+
+    @Override
+    public void removeKeysFrom(long position) throws IOException {
+        for (long slot = 0; slot < this.capacity; slot++)
+            if (this.isUsedSlot(slot) && this.getSlotPosition(slot) >= position) {
+                this.rebuild(this.capacity, position);
+                return;
+            }
+    }
+
+    private void grow() throws IOException {
+        this.rebuild(this.capacity * 2, Long.MAX_VALUE);
+    }
+
+    private void rebuild(long newCapacity, long maxPosition) throws IOException {
+        String newName = this.name + ".resize";
+
+        Files.deleteIfExists(Paths.get(newName));
+        create(newName, this.keyLength, newCapacity);
+
+        MappedKeyFile newKeyFile = new MappedKeyFile(newName, this.keyLength);
+        long newCount = 0;
+
+        for (long slot = 0; slot < this.capacity; slot++) {
+            if (!this.isUsedSlot(slot))
+                continue;
+
+            MappedByteBuffer segment = this.getSegment(slot);
+            int offset = this.getSlotOffset(slot) + 1;
+
+            byte[] key = this.getSlotKey(slot);
+
+            long position = segment.getLong(offset + this.keyLength);
+            int length = segment.getInt(offset + this.keyLength + Long.BYTES);
+
+            if (position >= maxPosition)
+                continue;
+
+            newKeyFile.writeSlot(newKeyFile.findSlot(key), key, position, length);
+            newCount++;
+        }
+
+        newKeyFile.header.putLong(COUNT_OFFSET, newCount);
+        newKeyFile.flush();
+        newKeyFile.close();
+
+        this.close();
+
+        Files.move(Paths.get(newName), Paths.get(this.name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        this.open();
+    }
+
+    private long findSlot(byte[] key) {
+        long mask = this.capacity - 1;
+        long slot = hash(key) & mask;
+
+        while (this.isUsedSlot(slot) && !this.isSlotKey(slot, key))
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    private boolean isUsedSlot(long slot) {
+        return this.getSegment(slot).get(this.getSlotOffset(slot)) == USED_SLOT;
+    }
+
+    private long getSlotPosition(long slot) {
+        return this.getSegment(slot).getLong(this.getSlotOffset(slot) + 1 + this.keyLength);
+    }
+
+    private byte[] getSlotKey(long slot) {
+        byte[] key = new byte[this.keyLength];
+
+        ByteBuffer buffer = this.getSegment(slot).duplicate();
+        buffer.position(this.getSlotOffset(slot) + 1);
+        buffer.get(key);
+
+        return key;
+    }
+
+    private boolean isSlotKey(long slot, byte[] key) {
+        MappedByteBuffer segment = this.getSegment(slot);
+        int offset = this.getSlotOffset(slot) + 1;
+
+        for (int k = 0; k < this.keyLength; k++)
+            if (segment.get(offset + k) != key[k])
+                return false;
+
+        return true;
+    }
+
+    private void writeSlot(long slot, byte[] key, long position, int length) {
+        MappedByteBuffer segment = this.getSegment(slot);
+        int offset = this.getSlotOffset(slot);
+
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position(offset + 1);
+        buffer.put(key);
+        buffer.putLong(position);
+        buffer.putInt(length);
+
+        // the flag is written last, a partially written slot is never seen as used
+        segment.put(offset, USED_SLOT);
+
+        this.dirtySegments[getSegmentNumber(slot)] = true;
+    }
+
+    private MappedByteBuffer getSegment(long slot) {
+        return this.segments[getSegmentNumber(slot)];
+    }
+
+    private static int getSegmentNumber(long slot) {
+        return (int)(slot / SEGMENT_SLOTS);
+    }
+
+    private int getSlotOffset(long slot) {
+        return (int)(slot % SEGMENT_SLOTS) * this.slotSize;
+    }
+
+    private static int getSlotSize(int keyLength) {
+        return 1 + keyLength + Long.BYTES + Integer.BYTES;
+    }
+
+    private static void create(String name, int keyLength, long capacity) throws IOException {
+        try (RandomAccessFile newFile = new RandomAccessFile(name, "rw")) {
+            newFile.setLength(HEADER_SIZE + capacity * getSlotSize(keyLength));
+            newFile.seek(0);
+            newFile.writeInt(keyLength);
+            newFile.writeLong(capacity);
+            newFile.writeLong(0);
+        }
+    }
+
+    static long hash(byte[] key) {
+        long h = 0;
+
+        for (int k = 0; k < Long.BYTES && k < key.length; k++)
+            h = (h << 8) | (key[k] & 0xff);
+
+        for (int k = Math.max(Long.BYTES, key.length - Long.BYTES); k < key.length; k++)
+            h = (h * 31) ^ (key[k] & 0xff);
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
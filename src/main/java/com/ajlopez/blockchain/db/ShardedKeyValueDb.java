@@ -0,0 +1,232 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.store.CompactableKeyValueStore;
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.MergedKeyValueIterator;
+import com.ajlopez.blockchain.store.WriteBatch;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+public class ShardedKeyValueDb implements CompactableKeyValueStore, Closeable, Flushable {
+    private final KeyValueDb[] shards;
+
+    public ShardedKeyValueDb(String name, int keyLength, int nshards) throws IOException {
+        this(name, keyLength, nshards, KeyIndexType.MEMORY);
+    }
+
+    public ShardedKeyValueDb(String name, int keyLength, int nshards, KeyIndexType keyIndexType) throws IOException {
+        this(name, keyLength, nshards, keyIndexType, false);
+    }
+
+    public ShardedKeyValueDb(String name, int keyLength, int nshards, KeyIndexType keyIndexType, boolean compressed) throws IOException {
+        this(name, keyLength, nshards, keyIndexType, compressed, true);
+    }
+
+    public ShardedKeyValueDb(String name, int keyLength, int nshards, KeyIndexType keyIndexType, boolean compressed, boolean syncWrites) throws IOException {
+        if (nshards <= 0)
+            throw new IllegalArgumentException("invalid number of shards");
+
+        this.shards = new KeyValueDb[nshards];
+
+        for (int k = 0; k < nshards; k++)
+            this.shards[k] = new KeyValueDb(name + "." + k, keyLength, keyIndexType, false, compressed, syncWrites);
+    }
+
+    public int getNoShards() {
+        return this.shards.length;
+    }
+
+    @Override
+    public void setValue(byte[] key, byte[] value) throws IOException {
+        this.getShard(key).setValue(key, value);
+    }
+
+    @Override
+    public byte[] getValue(byte[] key) throws IOException {
+        return this.getShard(key).getValue(key);
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        return this.getShard(key).containsKey(key);
+    }
+
+    @Override
+    public boolean[] containsKeys(List<byte[]> keys) throws IOException {
+        List<List<Integer>> indexes = new ArrayList<>(this.shards.length);
+        List<List<byte[]>> shardKeys = new ArrayList<>(this.shards.length);
+
+        for (int k = 0; k < this.shards.length; k++) {
+            indexes.add(new ArrayList<>());
+            shardKeys.add(new ArrayList<>());
+        }
+
+        for (int k = 0; k < keys.size(); k++) {
+            int nshard = this.getShardNumber(keys.get(k));
+
+            indexes.get(nshard).add(k);
+            shardKeys.get(nshard).add(keys.get(k));
+        }
+
+        boolean[] result = new boolean[keys.size()];
+
+        for (int k = 0; k < this.shards.length; k++) {
+            if (shardKeys.get(k).isEmpty())
+                continue;
+
+            boolean[] shardResult = this.shards[k].containsKeys(shardKeys.get(k));
+
+            for (int j = 0; j < shardResult.length; j++)
+                result[indexes.get(k).get(j)] = shardResult[j];
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        List<List<Integer>> indexes = new ArrayList<>(this.shards.length);
+        List<List<byte[]>> shardKeys = new ArrayList<>(this.shards.length);
+
+        for (int k = 0; k < this.shards.length; k++) {
+            indexes.add(new ArrayList<>());
+            shardKeys.add(new ArrayList<>());
+        }
+
+        for (int k = 0; k < keys.size(); k++) {
+            int nshard = this.getShardNumber(keys.get(k));
+
+            indexes.get(nshard).add(k);
+            shardKeys.get(nshard).add(keys.get(k));
+        }
+
+        byte[][] values = new byte[keys.size()][];
+
+        for (int k = 0; k < this.shards.length; k++) {
+            if (shardKeys.get(k).isEmpty())
+                continue;
+
+            List<byte[]> shardValues = this.shards[k].getValues(shardKeys.get(k));
+
+            for (int j = 0; j < shardValues.size(); j++)
+                values[indexes.get(k).get(j)] = shardValues.get(j);
+        }
+
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        List<Iterator<KeyValue>> iterators = new ArrayList<>(this.shards.length);
+
+        for (KeyValueDb shard : this.shards)
+            iterators.add(shard.scan(fromKey, toKey));
+
+        return new MergedKeyValueIterator(iterators);
+    }
+
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        WriteBatch[] batches = new WriteBatch[this.shards.length];
+
+        for (int k = 0; k < batch.size(); k++) {
+            byte[] key = batch.getKey(k);
+            int nshard = this.getShardNumber(key);
+
+            if (batches[nshard] == null)
+                batches[nshard] = new WriteBatch();
+
+            batches[nshard].put(key, batch.getValue(k));
+        }
+
+        for (int k = 0; k < batches.length; k++)
+            if (batches[k] != null)
+                this.shards[k].write(batches[k]);
+    }
+
+    @Override
+    public void startCompaction() {
+        for (KeyValueDb shard : this.shards)
+            shard.startCompaction();
+    }
+
+    // the references cross the shards, so the keys reachable from the roots are collected first, then each shard keeps its own ones
+    @Override
+    public CompactionResult compact(Collection<byte[]> roots, KeyReferences keyReferences) throws IOException {
+        long millis = System.currentTimeMillis();
+
+        List<List<byte[]>> shardRoots = new ArrayList<>(this.shards.length);
+
+        for (int k = 0; k < this.shards.length; k++)
+            shardRoots.add(new ArrayList<>());
+
+        Set<ByteArrayWrapper> visited = new HashSet<>();
+        Queue<byte[]> pending = new ArrayDeque<>(roots);
+
+        while (!pending.isEmpty()) {
+            byte[] key = pending.poll();
+
+            if (!visited.add(new ByteArrayWrapper(key)))
+                continue;
+
+            byte[] value = this.getValue(key);
+
+            if (value == null)
+                continue;
+
+            shardRoots.get(this.getShardNumber(key)).add(key);
+            pending.addAll(keyReferences.getReferences(value));
+        }
+
+        long nkeys = 0;
+        long reclaimedBytes = 0;
+
+        // the keys written while compacting are kept by each shard, with their references in the shard
+        for (int k = 0; k < this.shards.length; k++) {
+            CompactionResult result = this.shards[k].compact(shardRoots.get(k), keyReferences);
+
+            nkeys += result.getNoKeys();
+            reclaimedBytes += result.getReclaimedBytes();
+        }
+
+        return new CompactionResult(nkeys, reclaimedBytes, System.currentTimeMillis() - millis);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (KeyValueDb shard : this.shards)
+            shard.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (KeyValueDb shard : this.shards)
+            shard.close();
+    }
+
+    private KeyValueDb getShard(byte[] key) {
+        return this.shards[this.getShardNumber(key)];
+    }
+
+    // all the key bytes are mixed, the keys sharing their first bytes are spread over the shards
+    int getShardNumber(byte[] key) {
+        long hash = 0;
+
+        for (byte b : key)
+            hash = hash * 31 + (b & 0xff);
+
+        return (int)(((hash * 0x9e3779b97f4a7c15L) >>> 32) % this.shards.length);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ajlopez.blockchain.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class ValueCompressor {
+    public static final int MIN_COMPRESSED_LENGTH = 64;
+
+    // zero runs are frequent in words, balances and empty hashes
+    private static final byte[] DICTIONARY = new byte[64];
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private ValueCompressor() {
+
+    }
+
+    public static byte[] compress(byte[] value) {
+        if (value.length < MIN_COMPRESSED_LENGTH)
+            return null;
+
+        Deflater deflater = deflaters.get();
+
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(value);
+        deflater.finish();
+
+        // a result not shorter than the value is discarded
+        byte[] buffer = new byte[value.length];
+        int length = 0;
+
+        while (!deflater.finished() && length < buffer.length)
+            length += deflater.deflate(buffer, length, buffer.length - length);
+
+        if (!deflater.finished() || length >= value.length)
+            return null;
+
+        byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+
+        return result;
+    }
+
+    public static byte[] decompress(byte[] compressed) throws IOException {
+        Inflater inflater = inflaters.get();
+
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(compressed);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 2);
+        byte[] buffer = new byte[1024];
+
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("invalid compressed value");
+
+                output.write(buffer, 0, length);
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new IOException("invalid compressed value", ex);
+        }
+
+        return output.toByteArray();
+    }
+}
@@ -3,21 +3,40 @@ package com.ajlopez.blockchain.db;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by ajlopez on 20/10/2019.
  */
 public class ValueFile {
+    private static final int SEGMENT_SIZE = 1 << 26;
+
     private final RandomAccessFile file;
+    private final int segmentSize;
+
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
 
     public ValueFile(String name) throws FileNotFoundException {
+        this(name, SEGMENT_SIZE);
+    }
+
+    ValueFile(String name, int segmentSize) throws FileNotFoundException {
         this.file = new RandomAccessFile(name, "rw");
+        this.segmentSize = segmentSize;
     }
 
     public void close() throws IOException {
         this.file.close();
     }
 
+    public long length() throws IOException {
+        return this.file.length();
+    }
+
     public long writeValue(byte[] value) throws IOException {
         long length = this.file.length();
 
@@ -27,9 +46,101 @@ public class ValueFile {
         return length;
     }
 
+    public long writeValues(List<byte[]> values) throws IOException {
+        int size = 0;
+
+        for (byte[] value : values)
+            size += value.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        for (byte[] value : values)
+            buffer.put(value);
+
+        return this.writeValue(buffer.array());
+    }
+
+    public synchronized void truncate(long length) throws IOException {
+        this.file.setLength(length);
+        this.segments = new MappedByteBuffer[0];
+    }
+
+    public void flush() throws IOException {
+        this.file.getFD().sync();
+    }
+
     public int readValue(long position, byte[] buffer) throws IOException {
         this.file.seek(position);
 
         return this.file.read(buffer);
     }
+
+    public byte[] readValue(long position, int length) throws IOException {
+        byte[] value = new byte[length];
+
+        for (int offset = 0; offset < length;) {
+            long current = position + offset;
+            int nsegment = (int)(current / this.segmentSize);
+            int segmentOffset = (int)(current % this.segmentSize);
+            int toread = Math.min(length - offset, this.segmentSize - segmentOffset);
+
+            MappedByteBuffer segment = this.getSegment(nsegment);
+
+            if (segment != null) {
+                ByteBuffer buffer = segment.duplicate();
+                buffer.position(segmentOffset);
+                buffer.get(value, offset, toread);
+            }
+            else
+                this.readTail(current, ByteBuffer.wrap(value, offset, toread));
+
+            offset += toread;
+        }
+
+        return value;
+    }
+
+    private void readTail(long position, ByteBuffer buffer) throws IOException {
+        FileChannel channel = this.file.getChannel();
+
+        while (buffer.hasRemaining()) {
+            int nread = channel.read(buffer, position);
+
+            if (nread < 0)
+                throw new IOException("invalid position");
+
+            position += nread;
+        }
+    }
+
+    private MappedByteBuffer getSegment(int nsegment) throws IOException {
+        MappedByteBuffer[] current = this.segments;
+
+        if (nsegment < current.length && current[nsegment] != null)
+            return current[nsegment];
+
+        return this.mapSegment(nsegment);
+    }
+
+    // only complete segments are mapped, the tail of the file is read from the channel
+    private synchronized MappedByteBuffer mapSegment(int nsegment) throws IOException {
+        MappedByteBuffer[] current = this.segments;
+
+        if (nsegment < current.length && current[nsegment] != null)
+            return current[nsegment];
+
+        long start = (long)nsegment * this.segmentSize;
+
+        if (this.file.length() - start < this.segmentSize)
+            return null;
+
+        MappedByteBuffer segment = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, this.segmentSize);
+
+        MappedByteBuffer[] newSegments = Arrays.copyOf(current, Math.max(current.length, nsegment + 1));
+        newSegments[nsegment] = segment;
+
+        this.segments = newSegments;
+
+        return segment;
+    }
 }
@@ -0,0 +1,36 @@
+package com.ajlopez.blockchain.net.messages;
+
+import com.ajlopez.blockchain.encoding.RLP;
+import com.ajlopez.blockchain.store.KeyValueStoreType;
+
+import java.util.List;
+
+public class GetStoredValuesMessage extends Message {
+    private final KeyValueStoreType storeType;
+    private final List<byte[]> keys;
+
+    public GetStoredValuesMessage(KeyValueStoreType storeType, List<byte[]> keys) {
+        super(MessageType.GET_STORED_VALUES);
+        this.storeType = storeType;
+        this.keys = keys;
+    }
+
+    public KeyValueStoreType getStoreType() { return this.storeType; }
+
+    public List<byte[]> getKeys() { return this.keys; }
+
+    @Override
+    public byte[] getPayload() {
+        byte[] type = new byte[] { (byte)this.storeType.ordinal() };
+        return RLP.encodeList(RLP.encode(type), encodeItems(this.keys));
+    }
+
+    static byte[] encodeItems(List<byte[]> items) {
+        byte[][] encoded = new byte[items.size()][];
+
+        for (int k = 0; k < encoded.length; k++)
+            encoded[k] = RLP.encode(items.get(k));
+
+        return RLP.encodeList(encoded);
+    }
+}
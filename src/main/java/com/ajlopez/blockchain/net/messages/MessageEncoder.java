@@ -13,6 +13,9 @@ import com.ajlopez.blockchain.store.KeyValueStoreType;
 import com.ajlopez.blockchain.store.TrieType;
 import com.ajlopez.blockchain.utils.ByteUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MessageEncoder {
     private MessageEncoder() {
 
@@ -123,6 +126,26 @@ public class MessageEncoder {
             return new StoredKeyValueMessage(storeType, bkey, bvalue);
         }
 
+        if (bytes[0] == MessageType.GET_STORED_VALUES.ordinal()) {
+            byte[][] lbytes = RLP.decodeList(bbytes);
+            byte[] btype = RLP.decode(lbytes[0]);
+            List<byte[]> keys = decodeItems(lbytes[1]);
+            KeyValueStoreType storeType = KeyValueStoreType.values()[btype[0]];
+
+            return new GetStoredValuesMessage(storeType, keys);
+        }
+
+        if (bytes[0] == MessageType.STORED_KEY_VALUES.ordinal()) {
+            byte[][] lbytes = RLP.decodeList(bbytes);
+            byte[] btype = RLP.decode(lbytes[0]);
+            List<byte[]> keys = decodeItems(lbytes[1]);
+            List<byte[]> values = decodeItems(lbytes[2]);
+            List<byte[]> missingKeys = decodeItems(lbytes[3]);
+            KeyValueStoreType storeType = KeyValueStoreType.values()[btype[0]];
+
+            return new StoredKeyValuesMessage(storeType, keys, values, missingKeys);
+        }
+
         if (bytes[0] == MessageType.GET_BLOCK_HASHES.ordinal()) {
             byte[][] lbytes = RLP.decodeList(bbytes);
             byte[] bheight = RLP.decode(lbytes[0]);
@@ -134,4 +157,14 @@ public class MessageEncoder {
 
         throw new UnsupportedOperationException();
     }
+
+    private static List<byte[]> decodeItems(byte[] encoded) {
+        byte[][] encodedItems = RLP.decodeList(encoded);
+        List<byte[]> items = new ArrayList<>(encodedItems.length);
+
+        for (byte[] encodedItem : encodedItems)
+            items.add(RLP.decode(encodedItem));
+
+        return items;
+    }
 }
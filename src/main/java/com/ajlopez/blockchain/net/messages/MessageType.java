@@ -14,5 +14,7 @@ public enum MessageType {
     GET_STORED_VALUE,
     STORED_KEY_VALUE,
     GET_BLOCK_HASHES,
-    GET_STATUS
+    GET_STATUS,
+    GET_STORED_VALUES,
+    STORED_KEY_VALUES
 }
@@ -0,0 +1,45 @@
+package com.ajlopez.blockchain.net.messages;
+
+import com.ajlopez.blockchain.encoding.RLP;
+import com.ajlopez.blockchain.store.KeyValueStoreType;
+
+import java.util.Collections;
+import java.util.List;
+
+public class StoredKeyValuesMessage extends Message {
+    private final KeyValueStoreType storeType;
+    private final List<byte[]> keys;
+    private final List<byte[]> values;
+    private final List<byte[]> missingKeys;
+
+    public StoredKeyValuesMessage(KeyValueStoreType storeType, List<byte[]> keys, List<byte[]> values) {
+        this(storeType, keys, values, Collections.emptyList());
+    }
+
+    // the missing keys are the requested keys without value
+    public StoredKeyValuesMessage(KeyValueStoreType storeType, List<byte[]> keys, List<byte[]> values, List<byte[]> missingKeys) {
+        super(MessageType.STORED_KEY_VALUES);
+
+        if (keys.size() != values.size())
+            throw new IllegalArgumentException("keys and values mismatch");
+
+        this.storeType = storeType;
+        this.keys = keys;
+        this.values = values;
+        this.missingKeys = missingKeys;
+    }
+
+    public KeyValueStoreType getStoreType() { return this.storeType; }
+
+    public List<byte[]> getKeys() { return this.keys; }
+
+    public List<byte[]> getValues() { return this.values; }
+
+    public List<byte[]> getMissingKeys() { return this.missingKeys; }
+
+    @Override
+    public byte[] getPayload() {
+        byte[] type = new byte[] { (byte)this.storeType.ordinal() };
+        return RLP.encodeList(RLP.encode(type), GetStoredValuesMessage.encodeItems(this.keys), GetStoredValuesMessage.encodeItems(this.values), GetStoredValuesMessage.encodeItems(this.missingKeys));
+    }
+}
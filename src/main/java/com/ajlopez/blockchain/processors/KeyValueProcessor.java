@@ -25,32 +25,41 @@ public class KeyValueProcessor implements KeyValueResolver {
         if (storeType == KeyValueStoreType.BLOCKS)
             validateKeyHashBlockValue(key, value);
 
+        this.complete(storeType, key, value);
+    }
+
+    // the futures of a key without value are completed with null
+    public void resolvingMissing(KeyValueStoreType storeType, byte[] key) {
+        this.complete(storeType, key, null);
+    }
+
+    @Override
+    public void resolve(KeyValueStoreType storeType, byte[] key, CompletableFuture<byte[]> future) {
         synchronized (this.lock) {
             if (!this.toResolve.containsKey(storeType))
-                return;
+                this.toResolve.put(storeType, new HashMap<>());
 
             ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
 
             if (!this.toResolve.get(storeType).containsKey(wrappedKey))
-                return;
+                this.toResolve.get(storeType).put(wrappedKey, new ArrayList<>());
 
-            for (CompletableFuture future: this.toResolve.get(storeType).get(wrappedKey))
-                future.complete(value);
+            this.toResolve.get(storeType).get(wrappedKey).add(future);
         }
     }
 
-    @Override
-    public void resolve(KeyValueStoreType storeType, byte[] key, CompletableFuture<byte[]> future) {
+    private void complete(KeyValueStoreType storeType, byte[] key, byte[] value) {
         synchronized (this.lock) {
             if (!this.toResolve.containsKey(storeType))
-                this.toResolve.put(storeType, new HashMap<>());
+                return;
 
             ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
 
             if (!this.toResolve.get(storeType).containsKey(wrappedKey))
-                this.toResolve.get(storeType).put(wrappedKey, new ArrayList<>());
+                return;
 
-            this.toResolve.get(storeType).get(wrappedKey).add(future);
+            for (CompletableFuture<byte[]> future : this.toResolve.get(storeType).get(wrappedKey))
+                future.complete(value);
         }
     }
 
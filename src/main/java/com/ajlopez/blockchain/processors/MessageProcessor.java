@@ -12,6 +12,7 @@ import com.ajlopez.blockchain.net.messages.*;
 import com.ajlopez.blockchain.store.KeyValueStores;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -63,6 +64,10 @@ public class MessageProcessor {
                 this.processGetStoredValueMessage((GetStoredValueMessage) message, sender);
             else if (msgtype == MessageType.STORED_KEY_VALUE)
                 this.processStoredKeyValueMessage((StoredKeyValueMessage) message);
+            else if (msgtype == MessageType.GET_STORED_VALUES)
+                this.processGetStoredValuesMessage((GetStoredValuesMessage) message, sender);
+            else if (msgtype == MessageType.STORED_KEY_VALUES)
+                this.processStoredKeyValuesMessage((StoredKeyValuesMessage) message);
         }
         catch (IOException ex) {
             // Add to logger
@@ -80,6 +85,34 @@ public class MessageProcessor {
         this.outputProcessor.postMessage(sender, new StoredKeyValueMessage(message.getStoreType(), message.getKey(), value));
     }
 
+    private void processStoredKeyValuesMessage(StoredKeyValuesMessage message) {
+        List<byte[]> keys = message.getKeys();
+        List<byte[]> values = message.getValues();
+
+        for (int k = 0; k < keys.size(); k++)
+            this.keyValueProcessor.resolving(message.getStoreType(), keys.get(k), values.get(k));
+
+        for (byte[] key : message.getMissingKeys())
+            this.keyValueProcessor.resolvingMissing(message.getStoreType(), key);
+    }
+
+    private void processGetStoredValuesMessage(GetStoredValuesMessage message, Peer sender) throws IOException {
+        List<byte[]> values = this.keyValueStores.getValues(message.getStoreType(), message.getKeys());
+        List<byte[]> foundKeys = new ArrayList<>();
+        List<byte[]> foundValues = new ArrayList<>();
+        List<byte[]> missingKeys = new ArrayList<>();
+
+        for (int k = 0; k < values.size(); k++)
+            if (values.get(k) != null) {
+                foundKeys.add(message.getKeys().get(k));
+                foundValues.add(values.get(k));
+            }
+            else
+                missingKeys.add(message.getKeys().get(k));
+
+        this.outputProcessor.postMessage(sender, new StoredKeyValuesMessage(message.getStoreType(), foundKeys, foundValues, missingKeys));
+    }
+
     private void processGetStatusMessage(Peer sender) throws IOException {
         ExtendedBlockInformation bestBlockInformation = this.blockProcessor.getBestBlockInformation();
         Status status = new Status(this.peer.getId(), this.networkConfiguration.getNetworkNumber(), bestBlockInformation.getBlockNumber(), bestBlockInformation.getBlockHash(), bestBlockInformation.getTotalDifficulty());
@@ -47,13 +47,16 @@ public class TrieCollector {
         this.trieStore.save(trie);
 
         Hash[] subHashes = trie.getSubHashes();
+        boolean[] exist = this.trieStore.existAll(subHashes);
         Set<Hash> newHashes = new HashSet<>();
 
         for (int k = 0; k < subHashes.length; k++)
-            if (subHashes[k] == null)
+            if (exist[k] || this.pendingHashes.contains(subHashes[k]))
                 continue;
-            else if (this.expectHash(subHashes[k]))
+            else {
+                this.pendingHashes.add(subHashes[k]);
                 newHashes.add(subHashes[k]);
+            }
 
         return newHashes;
     }
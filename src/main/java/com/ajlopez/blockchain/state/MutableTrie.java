@@ -0,0 +1,64 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class MutableTrie {
+    private final TreeMap<ByteArrayWrapper, byte[]> changes = new TreeMap<>();
+
+    private Trie trie;
+
+    public MutableTrie(Trie trie) {
+        this.trie = trie;
+    }
+
+    public byte[] get(byte[] key) throws IOException {
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+
+        if (this.changes.containsKey(wrappedKey))
+            return this.changes.get(wrappedKey);
+
+        return this.trie.get(key);
+    }
+
+    // the changes are kept by key, the trie nodes are created only when it is frozen
+    public void put(byte[] key, byte[] value) {
+        this.changes.put(new ByteArrayWrapper(key), value == null ? null : Arrays.copyOf(value, value.length));
+    }
+
+    public void delete(byte[] key) {
+        this.changes.put(new ByteArrayWrapper(key), null);
+    }
+
+    public boolean hasChanges() {
+        return !this.changes.isEmpty();
+    }
+
+    public Trie freeze() throws IOException {
+        if (this.changes.isEmpty())
+            return this.trie;
+
+        this.trie = this.trie.putAll(this.changes.entrySet().stream().map(MutableTrie::toKeyValue).iterator());
+        this.changes.clear();
+
+        return this.trie;
+    }
+
+    public Hash getHash() throws IOException {
+        return this.freeze().getHash();
+    }
+
+    public void save() throws IOException {
+        this.freeze().save();
+    }
+
+    private static KeyValue toKeyValue(Map.Entry<ByteArrayWrapper, byte[]> entry) {
+        return new KeyValue(entry.getKey().getBytes(), entry.getValue());
+    }
+}
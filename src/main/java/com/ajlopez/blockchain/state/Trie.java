@@ -2,12 +2,20 @@ package com.ajlopez.blockchain.state;
 
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.KeyValue;
 import com.ajlopez.blockchain.store.TrieStore;
 import com.ajlopez.blockchain.utils.ByteUtils;
 import com.ajlopez.blockchain.utils.HashUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by ajlopez on 12/08/2017.
@@ -20,13 +28,16 @@ public class Trie {
     public static final int ARITY = 16;
 
     private byte[] value;
+    private short childMask;
+    private short hashMask;
     private Trie[] nodes;
-    private Hash[] hashes;
+    private byte[] hashes;
     private byte[] sharedKey;
     private int sharedKeyLength;
     private TrieStore store;
 
     private Hash hash;
+    private byte[] encoded;
     private boolean saved;
 
     public Trie() {
@@ -34,10 +45,12 @@ public class Trie {
     }
 
     public Trie(TrieStore store) {
-        this(null, null, null, null, 0, store);
+        this(0, null, null, null, null, 0, store);
     }
 
-    private Trie(Trie[] nodes, Hash[] hashes, byte[] value, byte[] sharedKey, int sharedKeyLength, TrieStore store) {
+    private Trie(int childMask, Trie[] nodes, byte[] hashes, byte[] value, byte[] sharedKey, int sharedKeyLength, TrieStore store) {
+        this.childMask = (short)childMask;
+        this.hashMask = hashes == null ? 0 : (short)childMask;
         this.nodes = nodes;
         this.hashes = hashes;
         this.value = value;
@@ -46,22 +59,71 @@ public class Trie {
         this.store = store;
     }
 
-    public Hash[] getSubHashes() {
-        if (this.hashes == null)
-            this.hashes = new Hash[Trie.ARITY];
+    // the children are packed by their position in the mask, the hashes are kept only for children without node
+    private Trie(Trie[] nodes, int hashMask, Trie hashSource, byte[] value, byte[] sharedKey, int sharedKeyLength, TrieStore store) {
+        int nodeMask = 0;
 
-        if (this.nodes != null)
-            for (int k = 0; k < Trie.ARITY; k++)
-                if (this.hashes[k] == null && this.nodes[k] != null)
-                    this.hashes[k] = this.nodes[k].getHash();
+        if (nodes != null)
+            for (int k = 0; k < ARITY; k++)
+                if (nodes[k] != null)
+                    nodeMask |= 1 << k;
+
+        int mask = nodeMask | hashMask;
+        int nchildren = Integer.bitCount(mask);
+
+        if (nodeMask != 0) {
+            this.nodes = new Trie[nchildren];
+
+            for (int k = 0, slot = 0; k < ARITY; k++)
+                if ((mask & (1 << k)) != 0)
+                    this.nodes[slot++] = nodes[k];
+        }
+
+        if (hashMask != 0) {
+            this.hashes = new byte[nchildren * Hash.HASH_BYTES];
+
+            for (int k = 0; k < ARITY; k++)
+                if ((hashMask & (1 << k)) != 0)
+                    System.arraycopy(hashSource.hashes, hashSource.getSlot(k) * Hash.HASH_BYTES, this.hashes, getSlot(mask, k) * Hash.HASH_BYTES, Hash.HASH_BYTES);
+        }
+
+        this.childMask = (short)mask;
+        this.hashMask = (short)hashMask;
+        this.value = value;
+        this.sharedKey = sharedKey;
+        this.sharedKeyLength = sharedKeyLength;
+        this.store = store;
+    }
 
+    public Hash[] getSubHashes() {
         Hash[] result = new Hash[Trie.ARITY];
 
-        System.arraycopy(this.hashes, 0, result, 0, Trie.ARITY);
+        for (int k = 0; k < Trie.ARITY; k++)
+            result[k] = this.getSubHash(k);
 
         return result;
     }
 
+    public Trie detach() {
+        int mask = this.getChildMask();
+        byte[] subhashes = null;
+
+        if (mask != 0) {
+            subhashes = new byte[Integer.bitCount(mask) * Hash.HASH_BYTES];
+
+            for (int k = 0; k < ARITY; k++)
+                if ((mask & (1 << k)) != 0)
+                    this.copySubHash(k, subhashes, this.getSlot(k) * Hash.HASH_BYTES);
+        }
+
+        Trie trie = new Trie(mask, null, subhashes, this.value, this.sharedKey, this.sharedKeyLength, this.store);
+
+        trie.hash = this.hash;
+        trie.saved = this.saved;
+
+        return trie;
+    }
+
     public TriePath getPath(byte[] key) throws IOException {
         TriePath path = new TriePath();
 
@@ -71,6 +133,41 @@ public class Trie {
         return new TriePath();
     }
 
+    public List<byte[]> getProof(byte[] key) throws IOException {
+        return this.getProof(Collections.singletonList(key));
+    }
+
+    // the encoded nodes in the paths to the keys, the nodes shared by the paths are included once
+    public List<byte[]> getProof(List<byte[]> keys) throws IOException {
+        List<byte[]> proof = new ArrayList<>();
+        Set<Hash> hashes = new HashSet<>();
+
+        for (byte[] key : keys)
+            this.collectProof(key, 0, proof, hashes);
+
+        return proof;
+    }
+
+    private void collectProof(byte[] key, int position, List<byte[]> proof, Set<Hash> hashes) throws IOException {
+        if (hashes.add(this.getHash()))
+            proof.add(this.getEncoded());
+
+        int sharedLength = TrieKeyUtils.getSharedLength(this.sharedKey, this.sharedKeyLength, key, position);
+
+        if (sharedLength < this.sharedKeyLength)
+            return;
+
+        position += sharedLength;
+
+        if (position == key.length * 2)
+            return;
+
+        Trie trie = this.retrieveSubNode(TrieKeyUtils.getOffset(key, position));
+
+        if (trie != null)
+            trie.collectProof(key, position + 1, proof, hashes);
+    }
+
     private boolean buildPath(TriePath path, byte[] key, int position) throws IOException {
         int sharedLength = TrieKeyUtils.getSharedLength(this.sharedKey, this.sharedKeyLength, key, position);
 
@@ -146,16 +243,240 @@ public class Trie {
         return this.put(key, null);
     }
 
+    // an empty trie is built from the sorted entries, other tries copy each changed node once
+    public Trie putAll(Iterator<KeyValue> entries) throws IOException {
+        if (this.value == null && this.getChildMask() == 0)
+            return bulkLoad(entries, this.store);
+
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        collectEntries(entries, keys, values);
+
+        if (keys.isEmpty())
+            return this;
+
+        Trie trie = this.putAll(keys, values, 0, keys.size(), 0);
+
+        if (trie == null)
+            return new Trie(this.store);
+
+        return trie;
+    }
+
+    // the entries are sorted by key, each node is created and hashed once, from the leaves to the root
+    public static Trie bulkLoad(Iterator<KeyValue> entries, TrieStore store) {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        collectEntries(entries, keys, values);
+
+        int nkeys = removeDeletedEntries(keys, values, 0, keys.size());
+
+        if (nkeys == 0)
+            return new Trie(store);
+
+        return build(keys, values, 0, nkeys, 0, store);
+    }
+
+    private static void collectEntries(Iterator<KeyValue> entries, List<byte[]> keys, List<byte[]> values) {
+        while (entries.hasNext()) {
+            KeyValue entry = entries.next();
+            int last = keys.size() - 1;
+
+            if (last >= 0) {
+                int compare = ByteUtils.compare(keys.get(last), entry.getKey());
+
+                if (compare > 0)
+                    throw new IllegalArgumentException("keys are not sorted");
+
+                if (compare == 0) {
+                    values.set(last, entry.getValue());
+                    continue;
+                }
+            }
+
+            keys.add(entry.getKey());
+            values.add(entry.getValue());
+        }
+    }
+
+    // a null value deletes the key, as in put; the remaining entries are moved to the start of the range
+    private static int removeDeletedEntries(List<byte[]> keys, List<byte[]> values, int from, int to) {
+        int position = from;
+
+        for (int k = from; k < to; k++)
+            if (values.get(k) != null) {
+                keys.set(position, keys.get(k));
+                values.set(position, values.get(k));
+                position++;
+            }
+
+        return position;
+    }
+
+    private Trie putAll(List<byte[]> keys, List<byte[]> values, int from, int to, int position) throws IOException {
+        // a key out of the shared key splits the node, deleted keys out of the shared key are ignored
+        for (int k = from; k < to; k++) {
+            int sharedLength = TrieKeyUtils.getSharedLength(this.sharedKey, this.sharedKeyLength, keys.get(k), position);
+
+            if (sharedLength < this.sharedKeyLength && values.get(k) != null)
+                return this.split(sharedLength).putAll(keys, values, from, to, position);
+        }
+
+        int childPosition = position + this.sharedKeyLength;
+
+        byte[] newValue = this.value;
+        Trie[] childNodes = this.copyNodes(true);
+        int childHashMask = this.getHashMask();
+        boolean changed = false;
+
+        while (from < to) {
+            byte[] key = keys.get(from);
+
+            if (!this.matchesSharedKey(key, position)) {
+                from++;
+                continue;
+            }
+
+            if (key.length * 2 == childPosition) {
+                if (!Arrays.equals(values.get(from), this.value)) {
+                    newValue = values.get(from);
+                    changed = true;
+                }
+
+                from++;
+                continue;
+            }
+
+            int offset = TrieKeyUtils.getOffset(key, childPosition);
+            int next = from + 1;
+
+            while (next < to && this.matchesSharedKey(keys.get(next), position) && TrieKeyUtils.getOffset(keys.get(next), childPosition) == offset)
+                next++;
+
+            Trie childNode = this.getSubNode(offset);
+            Trie newChildNode;
+
+            if (childNode == null) {
+                int nkeys = removeDeletedEntries(keys, values, from, next);
+                newChildNode = nkeys == from ? null : build(keys, values, from, nkeys, childPosition + 1, this.store);
+            }
+            else
+                newChildNode = childNode.putAll(keys, values, from, next, childPosition + 1);
+
+            if (newChildNode != childNode) {
+                childNodes[offset] = newChildNode;
+                childHashMask &= ~(1 << offset);
+                changed = true;
+            }
+
+            from = next;
+        }
+
+        if (!changed)
+            return this;
+
+        return createNewTrie(childNodes, childHashMask, this, newValue, this.sharedKey, this.sharedKeyLength, this.store, true);
+    }
+
+    private static Trie build(List<byte[]> keys, List<byte[]> values, int from, int to, int position, TrieStore store) {
+        byte[] firstKey = keys.get(from);
+        int sharedLength = to - from == 1 ? firstKey.length * 2 - position : getSharedLength(firstKey, keys.get(to - 1), position);
+        int childPosition = position + sharedLength;
+
+        byte[] value = null;
+        Trie[] nodes = null;
+
+        if (firstKey.length * 2 == childPosition) {
+            value = Arrays.copyOf(values.get(from), values.get(from).length);
+            from++;
+        }
+
+        while (from < to) {
+            int offset = TrieKeyUtils.getOffset(keys.get(from), childPosition);
+            int next = from + 1;
+
+            while (next < to && TrieKeyUtils.getOffset(keys.get(next), childPosition) == offset)
+                next++;
+
+            if (nodes == null)
+                nodes = new Trie[ARITY];
+
+            nodes[offset] = build(keys, values, from, next, childPosition + 1, store);
+            from = next;
+        }
+
+        byte[] sharedKey = sharedLength == 0 ? null : TrieKeyUtils.getSubKey(firstKey, position, sharedLength);
+        Trie trie = new Trie(nodes, 0, null, value, sharedKey, sharedLength, store);
+
+        trie.getHash();
+
+        return trie;
+    }
+
+    private boolean matchesSharedKey(byte[] key, int position) {
+        return TrieKeyUtils.getSharedLength(this.sharedKey, this.sharedKeyLength, key, position) == this.sharedKeyLength;
+    }
+
+    private static int getSharedLength(byte[] key1, byte[] key2, int position) {
+        int length = Math.min(key1.length, key2.length) * 2;
+        int l = 0;
+
+        while (position + l < length && TrieKeyUtils.getOffset(key1, position + l) == TrieKeyUtils.getOffset(key2, position + l))
+            l++;
+
+        return l;
+    }
+
     public Hash getHash() {
         if (this.hash != null)
             return this.hash;
 
-        this.hash = HashUtils.calculateHash(this.getEncoded());
+        byte[] bytes = this.getEncoded();
+
+        // an unsaved node keeps its encoding until save writes it to the store
+        if (!this.saved)
+            this.encoded = bytes;
+
+        this.hash = HashUtils.calculateHash(bytes);
 
         return this.hash;
     }
 
+    // the sub tries are hashed in parallel, the result is the same hash
+    public Hash getParallelHash() {
+        if (this.hash != null)
+            return this.hash;
+
+        return ForkJoinPool.commonPool().invoke(new TrieHasher(this));
+    }
+
+    int countUnhashedNodes(int max) {
+        if (this.hash != null)
+            return 0;
+
+        int count = 1;
+
+        if (this.nodes != null)
+            for (int k = 0; k < this.nodes.length && count < max; k++)
+                if (this.nodes[k] != null)
+                    count += this.nodes[k].countUnhashedNodes(max - count);
+
+        return count;
+    }
+
+    Trie[] getLoadedSubNodes() {
+        if (this.nodes == null)
+            return new Trie[0];
+
+        return Arrays.copyOf(this.nodes, this.nodes.length);
+    }
+
     public byte[] getEncoded() {
+        if (this.encoded != null)
+            return this.encoded;
+
         boolean hasvalue = false;
         int valbytes = 0;
 
@@ -212,19 +533,44 @@ public class Trie {
         if (this.saved)
             return;
 
-        this.store.save(this);
+        List<Trie> tries = new ArrayList<>();
 
-        this.saved = true;
+        this.collectUnsavedNodes(tries);
 
-        if (this.nodes == null)
-            return;
+        if (this.store.isParallelCommit())
+            this.getParallelHash();
 
-        for (int k = 0; k < ARITY; k++) {
-            Trie node = this.nodes[k];
+        // the encoding is kept only until the nodes are saved, each node is encoded once
+        for (Trie trie : tries) {
+            trie.encoded = trie.getEncoded();
+
+            if (trie.hash == null)
+                trie.hash = HashUtils.calculateHash(trie.encoded);
+        }
 
-            if (node != null)
-                node.save();
+        try {
+            this.store.save(tries);
+        }
+        finally {
+            for (Trie trie : tries)
+                trie.encoded = null;
         }
+
+        for (Trie trie : tries)
+            trie.saved = true;
+    }
+
+    // the children are collected before their parent, their hashes are available when the parent is encoded
+    private void collectUnsavedNodes(List<Trie> tries) {
+        if (this.saved)
+            return;
+
+        if (this.nodes != null)
+            for (Trie node : this.nodes)
+                if (node != null)
+                    node.collectUnsavedNodes(tries);
+
+        tries.add(this);
     }
 
     public static Trie fromEncoded(byte[] bytes, TrieStore store) {
@@ -233,28 +579,18 @@ public class Trie {
         byte[] value = null;
         byte[] sharedKey = null;
         int sharedKeyLength = 0;
-        Hash[] hashes = null;
+        int subnodes = 0;
+        byte[] hashes = null;
 
         int offset = 1;
 
         if ((flags & HAS_NODES_FLAG) == HAS_NODES_FLAG) {
-            int subnodes = ByteUtils.bytesToUnsignedShort(bytes, offset);
+            subnodes = ByteUtils.bytesToUnsignedShort(bytes, offset);
             offset += Short.BYTES;
 
-            hashes = new Hash[ARITY];
-            int h = 0;
-
-            for (int k = 0; k < ARITY; k++) {
-                if ((subnodes & (1 << k)) == 0)
-                    continue;
-
-                byte[] bhash = new byte[HashUtils.HASH_BYTES];
-                System.arraycopy(bytes, offset, bhash, 0, HashUtils.HASH_BYTES);
-                offset += Hash.HASH_BYTES;
-                hashes[k] = new Hash(bhash);
-
-                h++;
-            }
+            int lhashes = Integer.bitCount(subnodes) * Hash.HASH_BYTES;
+            hashes = Arrays.copyOfRange(bytes, offset, offset + lhashes);
+            offset += lhashes;
         }
 
         if ((flags & HAS_SHARED_KEY_FLAG) == HAS_SHARED_KEY_FLAG) {
@@ -271,24 +607,25 @@ public class Trie {
             System.arraycopy(bytes, offset, value, 0, lvalue);
         }
 
-        return new Trie(null, hashes, value, sharedKey, sharedKeyLength, store);
+        return new Trie(subnodes, null, hashes, value, sharedKey, sharedKeyLength, store);
     }
 
-    private void getSubNodes(byte[] bytes, int offset) {
-        int subnodes = 0;
-        int nsubnode = 0;
+    // a node read from the store is already saved, with a known hash
+    public static Trie fromEncoded(byte[] bytes, Hash hash, TrieStore store) {
+        Trie trie = fromEncoded(bytes, store);
 
-        if (this.nodes != null || this.hashes != null)
-            for (int k = 0; k < ARITY; k++) {
-                Hash subhash = this.getSubHash(k);
+        trie.hash = hash;
+        trie.saved = true;
 
-                if (subhash == null)
-                    continue;
+        return trie;
+    }
 
-                subnodes |= 1 << k;
-                System.arraycopy(subhash.getBytes(), 0, bytes, offset + Short.BYTES + HashUtils.HASH_BYTES * nsubnode, HashUtils.HASH_BYTES);
-                nsubnode++;
-            }
+    private void getSubNodes(byte[] bytes, int offset) {
+        int subnodes = this.getChildMask();
+
+        for (int k = 0, nsubnode = 0; k < ARITY; k++)
+            if ((subnodes & (1 << k)) != 0)
+                this.copySubHash(k, bytes, offset + Short.BYTES + HashUtils.HASH_BYTES * nsubnode++);
 
         byte[] subnodesbits = ByteUtils.unsignedShortToBytes(subnodes);
 
@@ -296,78 +633,125 @@ public class Trie {
     }
 
     private Hash getSubHash(int k) {
-        Hash hash = this.getSubHashFromHashes(k);
+        if ((this.getChildMask() & (1 << k)) == 0)
+            return null;
 
-        if (hash != null)
-            return hash;
+        int slot = this.getSlot(k);
 
-        hash = this.getSubHashFromNodes(k);
+        if (this.nodes != null && this.nodes[slot] != null)
+            return this.nodes[slot].getHash();
 
-        if (hash == null)
-            return null;
+        return new Hash(Arrays.copyOfRange(this.hashes, slot * Hash.HASH_BYTES, (slot + 1) * Hash.HASH_BYTES));
+    }
 
-        this.setSubHash(k, hash);
+    private void copySubHash(int k, byte[] bytes, int offset) {
+        int slot = this.getSlot(k);
 
-        return hash;
+        if ((this.getHashMask() & (1 << k)) != 0)
+            System.arraycopy(this.hashes, slot * Hash.HASH_BYTES, bytes, offset, Hash.HASH_BYTES);
+        else
+            System.arraycopy(this.nodes[slot].getHash().getBytes(), 0, bytes, offset, Hash.HASH_BYTES);
     }
 
-    private Hash getSubHashFromHashes(int k) {
-        if (this.hashes == null)
+    public Trie getSubNode(int k) throws IOException {
+        if ((this.getChildMask() & (1 << k)) == 0)
             return null;
 
-        return this.hashes[k];
-    }
+        int slot = this.getSlot(k);
 
-    private void setSubHash(int k, Hash hash) {
-        if (this.hashes == null)
-            this.hashes = new Hash[ARITY];
+        if (this.nodes != null && this.nodes[slot] != null)
+            return this.nodes[slot];
 
-        this.hashes[k] = hash;
-    }
+        Trie trie = this.store.retrieve(this.getSubHash(k));
 
-    private Hash getSubHashFromNodes(int k) {
         if (this.nodes == null)
-            return null;
+            this.nodes = new Trie[Integer.bitCount(this.getChildMask())];
+
+        this.nodes[slot] = trie;
 
-        Trie node = this.nodes[k];
+        return trie;
+    }
 
-        if (node == null)
+    // the retrieved node is not kept in this node
+    Trie retrieveSubNode(int k) throws IOException {
+        if ((this.getChildMask() & (1 << k)) == 0)
             return null;
 
-        return node.getHash();
+        int slot = this.getSlot(k);
+
+        if (this.nodes != null && this.nodes[slot] != null)
+            return this.nodes[slot];
+
+        return this.store.retrieve(this.getSubHash(k));
     }
 
-    public Trie getSubNode(int k) throws IOException {
-        if (this.nodes != null && this.nodes[k] != null)
-            return this.nodes[k];
+    byte[] getSharedKey() {
+        return this.sharedKey;
+    }
 
-        if (this.hashes == null)
-            return null;
+    int getSharedKeyLength() {
+        return this.sharedKeyLength;
+    }
 
-        Hash hash = this.hashes[k];
+    public Iterator<KeyValue> iterator() {
+        return new TrieIterator(this);
+    }
 
-        if (hash == null)
-            return null;
+    public Trie[] getSubNodes() throws IOException {
+        Trie[] subnodes = new Trie[ARITY];
+        Hash[] toRetrieve = new Hash[ARITY];
+        boolean retrieve = false;
+        int mask = this.getChildMask();
 
-        Trie trie = this.store.retrieve(hash);
+        for (int k = 0; k < ARITY; k++) {
+            if ((mask & (1 << k)) == 0)
+                continue;
 
-        this.nodes = new Trie[ARITY];
-        this.nodes[k] = trie;
+            int slot = this.getSlot(k);
 
-        return trie;
+            if (this.nodes != null && this.nodes[slot] != null)
+                subnodes[k] = this.nodes[slot];
+            else {
+                toRetrieve[k] = this.getSubHash(k);
+                retrieve = true;
+            }
+        }
+
+        if (!retrieve)
+            return subnodes;
+
+        Trie[] retrieved = this.store.retrieveAll(toRetrieve);
+
+        if (this.nodes == null)
+            this.nodes = new Trie[Integer.bitCount(mask)];
+
+        for (int k = 0; k < ARITY; k++)
+            if (retrieved[k] != null) {
+                this.nodes[this.getSlot(k)] = retrieved[k];
+                subnodes[k] = retrieved[k];
+            }
+
+        return subnodes;
     }
 
     private int getSubNodesCount() {
-        boolean hasnodes = this.nodes != null;
-        boolean hashashes = this.hashes != null;
+        return Integer.bitCount(this.getChildMask());
+    }
 
-        int nsubnodes = 0;
+    private int getChildMask() {
+        return this.childMask & 0xffff;
+    }
 
-        for (int k = 0; k < ARITY; k++)
-            if ((hasnodes && this.nodes[k] != null) || (hashashes && this.hashes[k] != null))
-                nsubnodes++;
+    private int getHashMask() {
+        return this.hashMask & 0xffff;
+    }
 
-        return nsubnodes;
+    private int getSlot(int k) {
+        return getSlot(this.getChildMask(), k);
+    }
+
+    private static int getSlot(int mask, int k) {
+        return Integer.bitCount(mask & ((1 << k) - 1));
     }
 
     private Trie put(byte[] key, int position, byte[] value) throws IOException {
@@ -383,58 +767,53 @@ public class Trie {
             if (Arrays.equals(value, this.value))
                 return this;
             else
-                return createNewTrie(copyNodes(this.nodes, false), copyHashes(this.hashes, false), value, sharedKey, sharedKeyLength, this.store, true);
+                return createNewTrie(this.copyNodes(false), this.getHashMask(), this, value, sharedKey, sharedKeyLength, this.store, true);
 
 
         int offset = TrieKeyUtils.getOffset(key, position + sharedLength);
 
-        Trie[] childNodes = copyNodes(this.nodes, true);
-        Hash[] childHashes = copyHashes(this.hashes, true);
-
         Trie childNode = this.getSubNode(offset);
+        Trie newChildNode;
 
         if (childNode == null) {
             if (value == null)
                 return this;
 
-            childNodes[offset] = new Trie(this.store).put(key, position + sharedLength + 1, value);
-            childHashes[offset] = null;
+            newChildNode = new Trie(this.store).put(key, position + sharedLength + 1, value);
         }
         else {
-            Trie newChildNode = childNode.put(key, position + sharedLength + 1, value);
+            newChildNode = childNode.put(key, position + sharedLength + 1, value);
 
             if (newChildNode == childNode)
                 return this;
-
-            childNodes[offset] = newChildNode;
-            childHashes[offset] = null;
         }
 
-        return createNewTrie(childNodes, childHashes, this.value, this.sharedKey, this.sharedKeyLength, this.store, true);
+        Trie[] childNodes = this.copyNodes(true);
+
+        childNodes[offset] = newChildNode;
+
+        return createNewTrie(childNodes, this.getHashMask() & ~(1 << offset), this, this.value, this.sharedKey, this.sharedKeyLength, this.store, true);
     }
 
     private Trie split(int sharedLength) throws IOException {
-        Trie splitChild = createNewTrie(copyNodes(this.nodes, false), copyHashes(this.hashes, false), value, TrieKeyUtils.getSubKey(this.sharedKey, sharedLength + 1, sharedKeyLength - sharedLength - 1), sharedKeyLength - sharedLength - 1, this.store, true);
+        Trie splitChild = createNewTrie(this.copyNodes(false), this.getHashMask(), this, value, TrieKeyUtils.getSubKey(this.sharedKey, sharedLength + 1, sharedKeyLength - sharedLength - 1), sharedKeyLength - sharedLength - 1, this.store, true);
         int offset = TrieKeyUtils.getOffset(this.sharedKey, sharedLength);
 
         Trie[] newNodes = new Trie[Trie.ARITY];
 
         newNodes[offset] = splitChild;
 
-        return createNewTrie(newNodes, null, null, TrieKeyUtils.getSubKey(this.sharedKey, 0, sharedLength), sharedLength, this.store, false);
+        return createNewTrie(newNodes, 0, null, null, TrieKeyUtils.getSubKey(this.sharedKey, 0, sharedLength), sharedLength, this.store, false);
     }
 
-    private static Trie createNewTrie(Trie[] nodes, Hash[] hashes, byte[] value, byte[] sharedKey, int sharedKeyLength, TrieStore store, boolean tryCoalesce) throws IOException {
+    private static Trie createNewTrie(Trie[] nodes, int hashMask, Trie hashSource, byte[] value, byte[] sharedKey, int sharedKeyLength, TrieStore store, boolean tryCoalesce) throws IOException {
         if (emptyNodes(nodes))
             nodes = null;
 
-        if (emptyHashes(hashes))
-            hashes = null;
-
         if (sharedKeyLength == 0)
             sharedKey = null;
 
-        if (value == null && nodes == null && hashes == null)
+        if (value == null && nodes == null && hashMask == 0)
             return null;
 
         if (value != null) {
@@ -443,7 +822,7 @@ public class Trie {
             value = newvalue;
         }
 
-        Trie trie = new Trie(nodes, hashes, value, sharedKey, sharedKeyLength, store);
+        Trie trie = new Trie(nodes, hashMask, hashSource, value, sharedKey, sharedKeyLength, store);
 
         if (!tryCoalesce || !trie.canCoalesce())
             return trie;
@@ -458,35 +837,21 @@ public class Trie {
         int newSharedKeyLength = TrieKeyUtils.concatenateKeysLength(this.sharedKeyLength, firstChild.sharedKeyLength);
         byte[] newSharedKey = TrieKeyUtils.concatenateKeys(this.sharedKey, this.sharedKeyLength, firstChildOffset, firstChild.sharedKey, firstChild.sharedKeyLength);
 
-        Trie[] newNodes = copyNodes(firstChild.nodes, false);
-        Hash[] newHashes = copyHashes(firstChild.hashes, false);
-
-        return createNewTrie(newNodes, newHashes, firstChild.value, newSharedKey, newSharedKeyLength, this.store, true);
+        return createNewTrie(firstChild.copyNodes(false), firstChild.getHashMask(), firstChild, firstChild.value, newSharedKey, newSharedKeyLength, this.store, true);
     }
 
     private int getFirstChildOffset() {
-        for (int k = 0; k < Trie.ARITY; k++)
-            if (this.nodes != null && this.nodes[k] != null)
-                return k;
-            else if (this.hashes != null && this.hashes[k] != null)
-                return k;
+        if (this.getChildMask() == 0)
+            return -1;
 
-        return -1;
+        return Integer.numberOfTrailingZeros(this.getChildMask());
     }
 
     private boolean canCoalesce() {
         if (value != null)
             return false;
 
-        int nchildren = 0;
-
-        for (int k = 0; k < Trie.ARITY; k++)
-            if (this.nodes != null && this.nodes[k] != null)
-                nchildren++;
-            else if (this.hashes != null && this.hashes[k] != null)
-                nchildren++;
-
-        return nchildren == 1;
+        return Integer.bitCount(this.getChildMask()) == 1;
     }
 
     private static boolean emptyNodes(Trie[] nodes) {
@@ -500,28 +865,18 @@ public class Trie {
         return true;
     }
 
-    private static boolean emptyHashes(Hash[] hashes) {
-        if (hashes == null)
-            return true;
-
-        for (int k = 0; k < hashes.length; k++)
-            if (hashes[k] != null)
-                return false;
-
-        return true;
-    }
-
-    private static Trie[] copyNodes(Trie[] nodes, boolean create) {
-        if (nodes == null)
+    // the loaded children are expanded to a temporary array, by position
+    private Trie[] copyNodes(boolean create) {
+        if (this.nodes == null)
             return create ? new Trie[ARITY] : null;
 
-        return Arrays.copyOf(nodes, ARITY);
-    }
+        Trie[] result = new Trie[ARITY];
+        int mask = this.getChildMask();
 
-    private static Hash[] copyHashes(Hash[] hashes, boolean create) {
-        if (hashes == null)
-            return create ? new Hash[ARITY] : null;
+        for (int k = 0; k < ARITY; k++)
+            if ((mask & (1 << k)) != 0)
+                result[k] = this.nodes[this.getSlot(k)];
 
-        return Arrays.copyOf(hashes, ARITY);
+        return result;
     }
 }
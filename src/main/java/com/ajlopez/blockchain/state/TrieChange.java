@@ -0,0 +1,23 @@
+package com.ajlopez.blockchain.state;
+
+public class TrieChange {
+    private final byte[] key;
+    private final byte[] oldValue;
+    private final byte[] newValue;
+
+    public TrieChange(byte[] key, byte[] oldValue, byte[] newValue) {
+        this.key = key;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public byte[] getKey() { return this.key; }
+
+    public byte[] getOldValue() { return this.oldValue; }
+
+    public byte[] getNewValue() { return this.newValue; }
+
+    public boolean isAdded() { return this.oldValue == null; }
+
+    public boolean isRemoved() { return this.newValue == null; }
+}
@@ -0,0 +1,103 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.core.types.Hash;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TrieDiff {
+    private final Trie oldTrie;
+    private final Trie newTrie;
+
+    private final List<TrieChange> changes = new ArrayList<>();
+    private final List<Hash> newNodeHashes = new ArrayList<>();
+
+    // the nibbles of the current path, one by byte
+    private byte[] path = new byte[64];
+
+    public TrieDiff(Trie oldTrie, Trie newTrie) {
+        this.oldTrie = oldTrie;
+        this.newTrie = newTrie;
+    }
+
+    public List<TrieChange> getChanges() {
+        return this.changes;
+    }
+
+    public List<Hash> getNewNodeHashes() {
+        return this.newNodeHashes;
+    }
+
+    // the changes are collected in key order, the subtrees with the same hash are skipped
+    public void process() throws IOException {
+        this.changes.clear();
+        this.newNodeHashes.clear();
+
+        this.process(this.oldTrie, 0, this.newTrie, 0, 0);
+    }
+
+    // a node with a shared key is walked one nibble at a time, the offset is the position in its shared key
+    private void process(Trie oldNode, int oldOffset, Trie newNode, int newOffset, int depth) throws IOException {
+        if (oldNode != null && newNode != null && oldOffset == 0 && newOffset == 0 && oldNode.getHash().equals(newNode.getHash()))
+            return;
+
+        if (newNode != null && newOffset == 0 && !newNode.getHash().equals(Trie.EMPTY_TRIE_HASH))
+            this.newNodeHashes.add(newNode.getHash());
+
+        byte[] oldValue = getValue(oldNode, oldOffset);
+        byte[] newValue = getValue(newNode, newOffset);
+
+        if (!Arrays.equals(oldValue, newValue))
+            this.changes.add(new TrieChange(this.getKey(depth), oldValue, newValue));
+
+        if (depth >= this.path.length)
+            this.path = Arrays.copyOf(this.path, this.path.length * 2);
+
+        for (int k = 0; k < Trie.ARITY; k++) {
+            Trie oldChild = getChild(oldNode, oldOffset, k);
+            Trie newChild = getChild(newNode, newOffset, k);
+
+            if (oldChild == null && newChild == null)
+                continue;
+
+            this.path[depth] = (byte)k;
+
+            this.process(oldChild, getChildOffset(oldNode, oldOffset), newChild, getChildOffset(newNode, newOffset), depth + 1);
+        }
+    }
+
+    private byte[] getKey(int depth) {
+        byte[] key = new byte[depth / 2];
+
+        for (int k = 0; k < key.length; k++)
+            key[k] = (byte)((this.path[k * 2] << 4) | this.path[k * 2 + 1]);
+
+        return key;
+    }
+
+    private static byte[] getValue(Trie node, int offset) {
+        if (node == null || offset < node.getSharedKeyLength())
+            return null;
+
+        return node.getValue();
+    }
+
+    private static Trie getChild(Trie node, int offset, int k) throws IOException {
+        if (node == null)
+            return null;
+
+        if (offset < node.getSharedKeyLength())
+            return TrieKeyUtils.getOffset(node.getSharedKey(), offset) == k ? node : null;
+
+        return node.retrieveSubNode(k);
+    }
+
+    private static int getChildOffset(Trie node, int offset) {
+        if (node == null || offset >= node.getSharedKeyLength())
+            return 0;
+
+        return offset + 1;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.core.types.Hash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+class TrieHasher extends RecursiveTask<Hash> {
+    private static final long serialVersionUID = 1L;
+
+    public static final int MIN_PARALLEL_NODES = 1024;
+
+    private final Trie trie;
+
+    TrieHasher(Trie trie) {
+        this.trie = trie;
+    }
+
+    // small subtrees are hashed in the current thread, the large ones fork a task for each child
+    @Override
+    protected Hash compute() {
+        if (this.trie.countUnhashedNodes(MIN_PARALLEL_NODES) < MIN_PARALLEL_NODES)
+            return this.trie.getHash();
+
+        List<TrieHasher> tasks = new ArrayList<>();
+
+        for (Trie node : this.trie.getLoadedSubNodes())
+            if (node != null)
+                tasks.add(new TrieHasher(node));
+
+        invokeAll(tasks);
+
+        return this.trie.getHash();
+    }
+}
@@ -0,0 +1,117 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.KeyValue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TrieIterator implements Iterator<KeyValue> {
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    // the nibbles of the current path, one by byte
+    private byte[] path = new byte[64];
+
+    private KeyValue nextKeyValue;
+
+    // the keys are returned in order, only the nodes in the current path are kept
+    public TrieIterator(Trie trie) {
+        this.push(trie, 0);
+        this.advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.nextKeyValue != null;
+    }
+
+    @Override
+    public KeyValue next() {
+        if (this.nextKeyValue == null)
+            throw new NoSuchElementException();
+
+        KeyValue result = this.nextKeyValue;
+
+        this.advance();
+
+        return result;
+    }
+
+    private void advance() {
+        try {
+            this.nextKeyValue = this.findNext();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private KeyValue findNext() throws IOException {
+        while (!this.frames.isEmpty()) {
+            Frame frame = this.frames.peek();
+
+            if (frame.child < 0) {
+                frame.child = 0;
+
+                if (frame.node.hasValue())
+                    return new KeyValue(this.getKey(frame.pathLength), frame.node.getValue());
+            }
+
+            Trie subnode = null;
+
+            while (subnode == null && frame.child < Trie.ARITY)
+                subnode = frame.node.retrieveSubNode(frame.child++);
+
+            if (subnode == null) {
+                this.frames.pop();
+                continue;
+            }
+
+            this.ensurePathLength(frame.pathLength + 1);
+            this.path[frame.pathLength] = (byte)(frame.child - 1);
+            this.push(subnode, frame.pathLength + 1);
+        }
+
+        return null;
+    }
+
+    private void push(Trie node, int pathLength) {
+        int sharedKeyLength = node.getSharedKeyLength();
+
+        this.ensurePathLength(pathLength + sharedKeyLength);
+
+        for (int k = 0; k < sharedKeyLength; k++)
+            this.path[pathLength + k] = (byte)TrieKeyUtils.getOffset(node.getSharedKey(), k);
+
+        this.frames.push(new Frame(node, pathLength + sharedKeyLength));
+    }
+
+    private void ensurePathLength(int length) {
+        if (length > this.path.length)
+            this.path = Arrays.copyOf(this.path, Math.max(length, this.path.length * 2));
+    }
+
+    private byte[] getKey(int pathLength) {
+        byte[] key = new byte[pathLength / 2];
+
+        for (int k = 0; k < key.length; k++)
+            key[k] = (byte)((this.path[k * 2] << 4) | this.path[k * 2 + 1]);
+
+        return key;
+    }
+
+    private static class Frame {
+        private final Trie node;
+        private final int pathLength;
+        private int child = -1;
+
+        private Frame(Trie node, int pathLength) {
+            this.node = node;
+            this.pathLength = pathLength;
+        }
+    }
+}
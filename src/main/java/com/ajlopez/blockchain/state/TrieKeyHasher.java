@@ -0,0 +1,43 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.KeyValueStore;
+import com.ajlopez.blockchain.utils.HashUtils;
+
+import java.io.IOException;
+
+public class TrieKeyHasher {
+    private final KeyValueStore preimageStore;
+
+    public TrieKeyHasher() {
+        this(null);
+    }
+
+    public TrieKeyHasher(KeyValueStore preimageStore) {
+        this.preimageStore = preimageStore;
+    }
+
+    public boolean hasPreimageStore() {
+        return this.preimageStore != null;
+    }
+
+    public byte[] hashKey(byte[] key) {
+        return HashUtils.keccak256(key);
+    }
+
+    // the preimage is saved the first time the key is put
+    public byte[] putKey(byte[] key) throws IOException {
+        byte[] hashedKey = this.hashKey(key);
+
+        if (this.preimageStore != null && !this.preimageStore.containsKey(hashedKey))
+            this.preimageStore.setValue(hashedKey, key);
+
+        return hashedKey;
+    }
+
+    public byte[] getPreimage(byte[] hashedKey) throws IOException {
+        if (this.preimageStore == null)
+            return null;
+
+        return this.preimageStore.getValue(hashedKey);
+    }
+}
@@ -49,15 +49,19 @@ public class TrieKeyUtils {
                 l += 2;
             }
 
+            // an odd shared key ends in the middle of the last compared byte
+            if (l > sharedKeyLength)
+                return sharedKeyLength;
+
             // TODO review these checks, more test use cases
-            if (l < sharedKeyLength)
+            if (l < sharedKeyLength && position + l < keylength * 2)
                 if (getOffset(sharedKey, l) == getOffset(key, position + l))
                     return l + 1;
 
             return l;
         }
         else
-            while (l < sharedKeyLength)
+            while (l < sharedKeyLength && position + l < keylength * 2)
                 if (getOffset(sharedKey, l) == getOffset(key, position + l))
                     l++;
                 else
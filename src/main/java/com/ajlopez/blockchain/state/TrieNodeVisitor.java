@@ -21,12 +21,9 @@ public abstract class TrieNodeVisitor {
 
             processNode(node);
 
-            for (int k = 0; k < Trie.ARITY; k++) {
-                Trie subnode = node.getSubNode(k);
-
+            for (Trie subnode : node.getSubNodes())
                 if (subnode != null)
                     this.toProcess(subnode);
-            }
         }
     }
 
@@ -0,0 +1,66 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.utils.HashUtils;
+
+import java.util.*;
+
+public class TrieProofVerifier {
+    private TrieProofVerifier() {
+
+    }
+
+    public static boolean verify(Hash root, byte[] key, byte[] value, List<byte[]> proof) {
+        return verify(root, Collections.singletonList(key), Collections.singletonList(value), proof);
+    }
+
+    // a null value proves that the key is not in the trie
+    public static boolean verify(Hash root, List<byte[]> keys, List<byte[]> values, List<byte[]> proof) {
+        if (keys.size() != values.size())
+            throw new IllegalArgumentException("keys and values have different sizes");
+
+        Map<Hash, byte[]> nodes = new HashMap<>();
+
+        for (byte[] encoded : proof)
+            nodes.put(HashUtils.calculateHash(encoded), encoded);
+
+        for (int k = 0; k < keys.size(); k++)
+            if (!verify(root, keys.get(k), values.get(k), nodes))
+                return false;
+
+        return true;
+    }
+
+    // the nodes are found by hash, starting from the root
+    private static boolean verify(Hash root, byte[] key, byte[] value, Map<Hash, byte[]> nodes) {
+        Hash hash = root;
+        int position = 0;
+
+        while (true) {
+            byte[] encoded = nodes.get(hash);
+
+            if (encoded == null)
+                return false;
+
+            Trie node = Trie.fromEncoded(encoded, hash, null);
+
+            int sharedLength = TrieKeyUtils.getSharedLength(node.getSharedKey(), node.getSharedKeyLength(), key, position);
+
+            if (sharedLength < node.getSharedKeyLength())
+                return value == null;
+
+            position += sharedLength;
+
+            if (position == key.length * 2)
+                return Arrays.equals(value, node.getValue());
+
+            Hash subhash = node.getSubHashes()[TrieKeyUtils.getOffset(key, position)];
+
+            if (subhash == null)
+                return value == null;
+
+            hash = subhash;
+            position++;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.TrieStore;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TrieSnapshot {
+    private static final int MAGIC = 0x54524945;
+    private static final int END_MARK = -1;
+
+    private TrieSnapshot() {
+
+    }
+
+    // the key values are written in key order, each one as key length, key, value length, value
+    public static long write(Trie trie, String filename) throws IOException {
+        long count = 0;
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            output.writeInt(MAGIC);
+
+            for (Iterator<KeyValue> iterator = trie.iterator(); iterator.hasNext(); count++) {
+                KeyValue keyValue = iterator.next();
+
+                output.writeInt(keyValue.getKey().length);
+                output.write(keyValue.getKey());
+                output.writeInt(keyValue.getValue().length);
+                output.write(keyValue.getValue());
+            }
+
+            output.writeInt(END_MARK);
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        return count;
+    }
+
+    public static Trie read(String filename, TrieStore store) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (input.readInt() != MAGIC)
+                throw new IOException("invalid snapshot");
+
+            return Trie.bulkLoad(new KeyValueReader(input), store);
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static class KeyValueReader implements Iterator<KeyValue> {
+        private final DataInputStream input;
+        private int nextKeyLength;
+
+        private KeyValueReader(DataInputStream input) throws IOException {
+            this.input = input;
+            this.nextKeyLength = this.readLength();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextKeyLength != END_MARK;
+        }
+
+        @Override
+        public KeyValue next() {
+            if (this.nextKeyLength == END_MARK)
+                throw new NoSuchElementException();
+
+            try {
+                byte[] key = this.readBytes(this.nextKeyLength);
+                byte[] value = this.readBytes(this.readLength());
+
+                this.nextKeyLength = this.readLength();
+
+                return new KeyValue(key, value);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private int readLength() throws IOException {
+            int length = this.input.readInt();
+
+            if (length < END_MARK)
+                throw new IOException("invalid snapshot");
+
+            return length;
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            if (length < 0)
+                throw new IOException("invalid snapshot");
+
+            byte[] bytes = new byte[length];
+
+            this.input.readFully(bytes);
+
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+
+import java.util.Map;
+
+public class AccountSnapshot {
+    private final AccountSnapshots snapshots;
+    private final Map<ByteArrayWrapper, byte[]> values;
+    private final Hash root;
+
+    private AccountSnapshot parent;
+    private int depth;
+    private int noChildren;
+    private volatile boolean stale;
+
+    AccountSnapshot(AccountSnapshots snapshots, Hash root, AccountSnapshot parent, Map<ByteArrayWrapper, byte[]> values) {
+        this.snapshots = snapshots;
+        this.root = root;
+        this.parent = parent;
+        this.values = values;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    public Hash getRoot() {
+        return this.root;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+
+    public boolean isStale() {
+        return this.stale;
+    }
+
+    // the layers are read from the top, the base layer has all the accounts
+    public byte[] getValue(byte[] key) {
+        return this.snapshots.getValue(this, new ByteArrayWrapper(key));
+    }
+
+    Map<ByteArrayWrapper, byte[]> getValues() {
+        return this.values;
+    }
+
+    AccountSnapshot getParent() {
+        return this.parent;
+    }
+
+    void setParent(AccountSnapshot parent) {
+        this.parent = parent;
+    }
+
+    void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    int getNoChildren() {
+        return this.noChildren;
+    }
+
+    void setNoChildren(int noChildren) {
+        this.noChildren = noChildren;
+    }
+
+    void addChild() {
+        this.noChildren++;
+    }
+
+    void removeChild() {
+        this.noChildren--;
+    }
+
+    void markStale() {
+        this.stale = true;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class AccountSnapshots {
+    public static final int DEFAULT_MAX_DEPTH = 128;
+
+    private final int maxDepth;
+    private final Map<Hash, AccountSnapshot> snapshots = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private AccountSnapshot base;
+
+    public AccountSnapshots() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    public AccountSnapshots(int maxDepth) {
+        if (maxDepth <= 0)
+            throw new IllegalArgumentException("invalid max depth");
+
+        this.maxDepth = maxDepth;
+        this.setBase(new AccountSnapshot(this, Trie.EMPTY_TRIE_HASH, null, new HashMap<>()));
+    }
+
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    public int getNoSnapshots() {
+        this.lock.readLock().lock();
+
+        try {
+            return this.snapshots.size();
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public Hash getBaseRoot() {
+        this.lock.readLock().lock();
+
+        try {
+            return this.base.getRoot();
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public AccountSnapshot getSnapshot(Hash root) {
+        this.lock.readLock().lock();
+
+        try {
+            return this.snapshots.get(root);
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // returns false if there is a snapshot for the root
+    public boolean addSnapshot(AccountSnapshot parent, Hash root, Map<ByteArrayWrapper, byte[]> values) {
+        this.lock.writeLock().lock();
+
+        try {
+            if (parent.isStale())
+                throw new IllegalStateException("stale snapshot");
+
+            if (this.snapshots.containsKey(root))
+                return false;
+
+            AccountSnapshot snapshot = new AccountSnapshot(this, root, parent, new HashMap<>(values));
+
+            parent.addChild();
+            this.snapshots.put(root, snapshot);
+
+            if (snapshot.getDepth() > this.maxDepth)
+                this.flatten(snapshot);
+
+            return true;
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // only a layer without children is removed
+    public boolean removeSnapshot(Hash root) {
+        this.lock.writeLock().lock();
+
+        try {
+            AccountSnapshot snapshot = this.snapshots.get(root);
+
+            if (snapshot == null || snapshot == this.base || snapshot.getNoChildren() > 0)
+                return false;
+
+            this.snapshots.remove(root);
+            snapshot.getParent().removeChild();
+            snapshot.markStale();
+
+            return true;
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild(Hash root, TrieStore trieStore) throws IOException {
+        Map<ByteArrayWrapper, byte[]> values = new HashMap<>();
+
+        for (Iterator<KeyValue> iterator = trieStore.retrieve(root).iterator(); iterator.hasNext();) {
+            KeyValue keyValue = iterator.next();
+            values.put(new ByteArrayWrapper(keyValue.getKey()), keyValue.getValue());
+        }
+
+        this.lock.writeLock().lock();
+
+        try {
+            for (AccountSnapshot snapshot : this.snapshots.values())
+                snapshot.markStale();
+
+            this.snapshots.clear();
+            this.setBase(new AccountSnapshot(this, root, null, values));
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // the trie and the snapshot should have the same accounts
+    public boolean verify(Hash root, TrieStore trieStore) throws IOException {
+        AccountSnapshot snapshot = this.getSnapshot(root);
+
+        if (snapshot == null)
+            return false;
+
+        Set<ByteArrayWrapper> keys = new HashSet<>();
+        int nvalues = 0;
+
+        this.lock.readLock().lock();
+
+        try {
+            for (AccountSnapshot layer = snapshot; layer != null; layer = layer.getParent())
+                if (layer == this.base)
+                    nvalues += layer.getValues().size();
+                else
+                    for (ByteArrayWrapper key : layer.getValues().keySet())
+                        if (!this.base.getValues().containsKey(key))
+                            keys.add(key);
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+
+        nvalues += keys.size();
+
+        for (Iterator<KeyValue> iterator = trieStore.retrieve(root).iterator(); iterator.hasNext(); nvalues--) {
+            KeyValue keyValue = iterator.next();
+
+            if (!Arrays.equals(keyValue.getValue(), snapshot.getValue(keyValue.getKey())))
+                return false;
+        }
+
+        return nvalues == 0;
+    }
+
+    byte[] getValue(AccountSnapshot snapshot, ByteArrayWrapper key) {
+        this.lock.readLock().lock();
+
+        try {
+            if (snapshot.isStale())
+                throw new IllegalStateException("stale snapshot");
+
+            for (AccountSnapshot layer = snapshot; layer != null; layer = layer.getParent()) {
+                byte[] value = layer.getValues().get(key);
+
+                if (value != null)
+                    return value;
+            }
+
+            return null;
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // half of the layers over the base are merged into a new base, the old base and the layers in other branches are discarded
+    private void flatten(AccountSnapshot snapshot) {
+        int nmerged = Math.max(1, this.maxDepth / 2);
+        List<AccountSnapshot> merged = new ArrayList<>();
+
+        for (AccountSnapshot layer = snapshot; layer != this.base; layer = layer.getParent())
+            merged.add(0, layer);
+
+        merged = merged.subList(0, nmerged);
+
+        AccountSnapshot top = merged.get(merged.size() - 1);
+        Map<ByteArrayWrapper, byte[]> values = new HashMap<>(this.base.getValues());
+
+        for (AccountSnapshot layer : merged)
+            values.putAll(layer.getValues());
+
+        AccountSnapshot newBase = new AccountSnapshot(this, top.getRoot(), null, values);
+        newBase.setNoChildren(top.getNoChildren());
+
+        List<AccountSnapshot> descendants = new ArrayList<>();
+
+        for (AccountSnapshot layer : this.snapshots.values())
+            if (isDescendant(layer, top))
+                descendants.add(layer);
+            else
+                layer.markStale();
+
+        this.snapshots.clear();
+        this.setBase(newBase);
+
+        for (AccountSnapshot layer : descendants) {
+            if (layer.getParent() == top)
+                layer.setParent(newBase);
+
+            layer.setDepth(layer.getDepth() - top.getDepth());
+            this.snapshots.put(layer.getRoot(), layer);
+        }
+    }
+
+    private void setBase(AccountSnapshot base) {
+        this.base = base;
+        this.snapshots.put(base.getRoot(), base);
+    }
+
+    private static boolean isDescendant(AccountSnapshot layer, AccountSnapshot ancestor) {
+        for (AccountSnapshot parent = layer.getParent(); parent != null; parent = parent.getParent())
+            if (parent == ancestor)
+                return true;
+
+        return false;
+    }
+}
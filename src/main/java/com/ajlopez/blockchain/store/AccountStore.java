@@ -4,23 +4,48 @@ import com.ajlopez.blockchain.core.Account;
 import com.ajlopez.blockchain.core.types.Address;
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.encoding.AccountEncoder;
+import com.ajlopez.blockchain.state.MutableTrie;
 import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Created by ajlopez on 26/11/2018.
  */
 public class AccountStore {
-    private Trie trie;
+    private final MutableTrie trie;
+    private final AccountSnapshots snapshots;
+    private final TrieKeyHasher keyHasher;
+    private final Map<ByteArrayWrapper, byte[]> changes = new HashMap<>();
+
+    private AccountSnapshot snapshot;
+    private Hash addedRoot;
 
     public AccountStore(Trie trie) {
-        this.trie = trie;
+        this(trie, null);
+    }
+
+    public AccountStore(Trie trie, AccountSnapshots snapshots) {
+        this(trie, snapshots, null);
+    }
+
+    // without key hasher, the addresses are the trie keys
+    public AccountStore(Trie trie, AccountSnapshots snapshots, TrieKeyHasher keyHasher) {
+        this.trie = new MutableTrie(trie);
+        this.snapshots = snapshots;
+        this.keyHasher = keyHasher;
+
+        if (snapshots != null)
+            this.snapshot = snapshots.getSnapshot(trie.getHash());
     }
 
     public Account getAccount(Address address) throws IOException {
-        byte[] key = address.getBytes();
-        byte[] value = this.trie.get(key);
+        byte[] key = this.keyHasher == null ? address.getBytes() : this.keyHasher.hashKey(address.getBytes());
+        byte[] value = this.getValue(key);
 
         if (value == null)
             return new Account();
@@ -32,17 +57,60 @@ public class AccountStore {
         if (account.isEmpty())
             throw new IllegalArgumentException("Empty account");
 
-        byte[] key = address.getBytes();
+        byte[] key = this.keyHasher == null ? address.getBytes() : this.keyHasher.putKey(address.getBytes());
         byte[] value = AccountEncoder.encode(account);
 
-        this.trie = this.trie.put(key, value);
+        this.trie.put(key, value);
+
+        if (this.snapshot != null)
+            this.changes.put(new ByteArrayWrapper(key), value);
     }
 
-    public Hash getRootHash() {
+    public Hash getRootHash() throws IOException {
         return this.trie.getHash();
     }
 
+    // each save adds a layer over the initial snapshot, replacing the layer added by the previous save
     public void save() throws IOException {
         this.trie.save();
+
+        if (this.snapshot == null || this.snapshot.isStale())
+            return;
+
+        Hash root = this.trie.getHash();
+
+        if (root.equals(this.snapshot.getRoot()) || root.equals(this.addedRoot))
+            return;
+
+        try {
+            boolean added = this.snapshots.addSnapshot(this.snapshot, root, this.changes);
+
+            if (this.addedRoot != null)
+                this.snapshots.removeSnapshot(this.addedRoot);
+
+            this.addedRoot = added ? root : null;
+        }
+        catch (IllegalStateException ex) {
+            this.snapshot = null;
+        }
+    }
+
+    // the trie is used when there is no snapshot for the initial root
+    private byte[] getValue(byte[] key) throws IOException {
+        if (this.snapshot != null) {
+            byte[] value = this.changes.get(new ByteArrayWrapper(key));
+
+            if (value != null)
+                return value;
+
+            try {
+                return this.snapshot.getValue(key);
+            }
+            catch (IllegalStateException ex) {
+                this.snapshot = null;
+            }
+        }
+
+        return this.trie.get(key);
     }
 }
@@ -1,6 +1,7 @@
 package com.ajlopez.blockchain.store;
 
 import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 
 import java.io.IOException;
 
@@ -9,12 +10,24 @@ import java.io.IOException;
  */
 public class AccountStoreProvider {
     private final TrieStore accountTrieStore;
+    private final AccountSnapshots accountSnapshots;
+    private final TrieKeyHasher keyHasher;
 
     public AccountStoreProvider(TrieStore accountTrieStore) {
+        this(accountTrieStore, null);
+    }
+
+    public AccountStoreProvider(TrieStore accountTrieStore, AccountSnapshots accountSnapshots) {
+        this(accountTrieStore, accountSnapshots, null);
+    }
+
+    public AccountStoreProvider(TrieStore accountTrieStore, AccountSnapshots accountSnapshots, TrieKeyHasher keyHasher) {
         this.accountTrieStore = accountTrieStore;
+        this.accountSnapshots = accountSnapshots;
+        this.keyHasher = keyHasher;
     }
 
     public AccountStore retrieve(Hash hash) throws IOException {
-        return new AccountStore(this.accountTrieStore.retrieve(hash));
+        return new AccountStore(this.accountTrieStore.retrieve(hash), this.accountSnapshots, this.keyHasher);
     }
 }
@@ -0,0 +1,14 @@
+package com.ajlopez.blockchain.store;
+
+@FunctionalInterface
+public interface AdmissionPolicy {
+    boolean admit(byte[] key, byte[] value);
+
+    static AdmissionPolicy all() {
+        return (key, value) -> true;
+    }
+
+    static AdmissionPolicy maxValueLength(int maxValueLength) {
+        return (key, value) -> value.length <= maxValueLength;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.db.KeyReferences;
+
+import java.io.IOException;
+import java.util.Collection;
+
+public class CachedCompactableKeyValueStore extends CachedKeyValueStore implements CompactableKeyValueStore {
+    private final CompactableKeyValueStore store;
+
+    public CachedCompactableKeyValueStore(CompactableKeyValueStore store, long maxBytes) {
+        super(store, maxBytes);
+        this.store = store;
+    }
+
+    @Override
+    public void startCompaction() {
+        this.store.startCompaction();
+    }
+
+    // the removed keys could be still cached
+    @Override
+    public CompactionResult compact(Collection<byte[]> roots, KeyReferences keyReferences) throws IOException {
+        CompactionResult result = this.store.compact(roots, keyReferences);
+
+        this.clear();
+
+        return result;
+    }
+}
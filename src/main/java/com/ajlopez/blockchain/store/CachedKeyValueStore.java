@@ -0,0 +1,251 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+
+import java.io.IOException;
+import java.util.*;
+
+public class CachedKeyValueStore implements KeyValueStore {
+    private static final int NO_VERSIONS = 1024;
+
+    private final KeyValueStore store;
+    private final long maxBytes;
+    private final Map<ByteArrayWrapper, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // each write changes the version of its key, a value read from the store is cached only if the version was not changed
+    private final long[] versions = new long[NO_VERSIONS];
+    private final Object writeMonitor = new Object();
+
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public CachedKeyValueStore(KeyValueStore store, long maxBytes) {
+        this.store = store;
+        this.maxBytes = maxBytes;
+    }
+
+    // the writes are serialized, the cache keeps the value of the last write to the store
+    @Override
+    public void setValue(byte[] key, byte[] value) throws IOException {
+        synchronized (this.writeMonitor) {
+            this.store.setValue(key, value);
+            this.cacheWrittenValue(key, value);
+        }
+    }
+
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        synchronized (this.writeMonitor) {
+            this.store.write(batch);
+
+            for (int k = 0; k < batch.size(); k++)
+                this.cacheWrittenValue(batch.getKey(k), batch.getValue(k));
+        }
+    }
+
+    @Override
+    public byte[] getValue(byte[] key) throws IOException {
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+        long version;
+
+        synchronized (this.entries) {
+            byte[] value = this.entries.get(wrappedKey);
+
+            if (value != null) {
+                this.hits++;
+                return value;
+            }
+
+            this.misses++;
+            version = this.versions[getVersionIndex(wrappedKey)];
+        }
+
+        byte[] value = this.store.getValue(key);
+
+        if (value != null)
+            this.cacheReadValue(wrappedKey, value, version);
+
+        return value;
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        byte[][] values = new byte[keys.size()][];
+        List<Integer> missing = new ArrayList<>();
+        List<ByteArrayWrapper> missingKeys = new ArrayList<>();
+        List<Long> missingVersions = new ArrayList<>();
+
+        synchronized (this.entries) {
+            for (int k = 0; k < values.length; k++) {
+                ByteArrayWrapper wrappedKey = new ByteArrayWrapper(keys.get(k));
+
+                values[k] = this.entries.get(wrappedKey);
+
+                if (values[k] != null) {
+                    this.hits++;
+                    continue;
+                }
+
+                this.misses++;
+                missing.add(k);
+                missingKeys.add(wrappedKey);
+                missingVersions.add(this.versions[getVersionIndex(wrappedKey)]);
+            }
+        }
+
+        if (missingKeys.isEmpty())
+            return Arrays.asList(values);
+
+        List<byte[]> keysToRead = new ArrayList<>(missingKeys.size());
+
+        for (ByteArrayWrapper missingKey : missingKeys)
+            keysToRead.add(missingKey.getBytes());
+
+        List<byte[]> missingValues = this.store.getValues(keysToRead);
+
+        for (int k = 0; k < missingValues.size(); k++) {
+            byte[] value = missingValues.get(k);
+
+            if (value == null)
+                continue;
+
+            values[missing.get(k)] = value;
+            this.cacheReadValue(missingKeys.get(k), value, missingVersions.get(k));
+        }
+
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        synchronized (this.entries) {
+            if (this.entries.containsKey(new ByteArrayWrapper(key)))
+                return true;
+        }
+
+        return this.store.containsKey(key);
+    }
+
+    @Override
+    public boolean[] containsKeys(List<byte[]> keys) throws IOException {
+        boolean[] result = new boolean[keys.size()];
+        List<Integer> missing = new ArrayList<>();
+        List<byte[]> missingKeys = new ArrayList<>();
+
+        synchronized (this.entries) {
+            for (int k = 0; k < result.length; k++) {
+                result[k] = this.entries.containsKey(new ByteArrayWrapper(keys.get(k)));
+
+                if (!result[k]) {
+                    missing.add(k);
+                    missingKeys.add(keys.get(k));
+                }
+            }
+        }
+
+        if (missingKeys.isEmpty())
+            return result;
+
+        boolean[] missingResult = this.store.containsKeys(missingKeys);
+
+        for (int k = 0; k < missingResult.length; k++)
+            result[missing.get(k)] = missingResult[k];
+
+        return result;
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        return this.store.scan(fromKey, toKey);
+    }
+
+    @Override
+    public Iterator<KeyValue> scanPrefix(byte[] prefix) throws IOException {
+        return this.store.scanPrefix(prefix);
+    }
+
+    public long getBytes() {
+        synchronized (this.entries) {
+            return this.bytes;
+        }
+    }
+
+    public long getHits() {
+        synchronized (this.entries) {
+            return this.hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (this.entries) {
+            return this.misses;
+        }
+    }
+
+    // the values being read from the store are not cached
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.bytes = 0;
+
+            for (int k = 0; k < NO_VERSIONS; k++)
+                this.versions[k]++;
+        }
+    }
+
+    private void cacheWrittenValue(byte[] key, byte[] value) {
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+
+        synchronized (this.entries) {
+            this.versions[getVersionIndex(wrappedKey)]++;
+
+            // the new value could be too large to be cached
+            this.removeValue(wrappedKey);
+            this.cacheValue(wrappedKey, value);
+        }
+    }
+
+    private void cacheReadValue(ByteArrayWrapper key, byte[] value, long version) {
+        synchronized (this.entries) {
+            if (this.versions[getVersionIndex(key)] != version)
+                return;
+
+            this.cacheValue(key, value);
+        }
+    }
+
+    private void removeValue(ByteArrayWrapper key) {
+        byte[] oldvalue = this.entries.remove(key);
+
+        if (oldvalue != null)
+            this.bytes -= key.getBytes().length + oldvalue.length;
+    }
+
+    // called holding the entries lock
+    private void cacheValue(ByteArrayWrapper key, byte[] value) {
+        long size = key.getBytes().length + value.length;
+
+        if (size > this.maxBytes)
+            return;
+
+        byte[] oldvalue = this.entries.put(key, value);
+
+        if (oldvalue != null)
+            this.bytes -= key.getBytes().length + oldvalue.length;
+
+        this.bytes += size;
+
+        Iterator<Map.Entry<ByteArrayWrapper, byte[]>> iterator = this.entries.entrySet().iterator();
+
+        while (this.bytes > this.maxBytes && iterator.hasNext()) {
+            Map.Entry<ByteArrayWrapper, byte[]> entry = iterator.next();
+            this.bytes -= entry.getKey().getBytes().length + entry.getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private static int getVersionIndex(ByteArrayWrapper key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % NO_VERSIONS;
+    }
+}
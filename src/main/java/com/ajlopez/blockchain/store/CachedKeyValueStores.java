@@ -0,0 +1,45 @@
+package com.ajlopez.blockchain.store;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class CachedKeyValueStores implements KeyValueStores {
+    private final Map<KeyValueStoreType, KeyValueStore> keyValueStores = new EnumMap<>(KeyValueStoreType.class);
+
+    public CachedKeyValueStores(KeyValueStores keyValueStores, Map<KeyValueStoreType, Long> cacheSizes) {
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values()) {
+            KeyValueStore keyValueStore = keyValueStores.getKeyValueStore(keyValueStoreType);
+            Long cacheSize = cacheSizes.get(keyValueStoreType);
+
+            if (cacheSize != null && cacheSize > 0)
+                keyValueStore = keyValueStore instanceof CompactableKeyValueStore ? new CachedCompactableKeyValueStore((CompactableKeyValueStore)keyValueStore, cacheSize) : new CachedKeyValueStore(keyValueStore, cacheSize);
+
+            this.keyValueStores.put(keyValueStoreType, keyValueStore);
+        }
+    }
+
+    @Override
+    public KeyValueStore getAccountKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.ACCOUNTS);
+    }
+
+    @Override
+    public KeyValueStore getStorageKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.STORAGE);
+    }
+
+    @Override
+    public KeyValueStore getBlockKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.BLOCKS);
+    }
+
+    @Override
+    public KeyValueStore getCodeKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.CODES);
+    }
+
+    @Override
+    public KeyValueStore getBlockInformationKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.BLOCKS_INFORMATION);
+    }
+}
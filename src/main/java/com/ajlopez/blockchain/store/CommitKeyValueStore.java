@@ -0,0 +1,63 @@
+package com.ajlopez.blockchain.store;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+public class CommitKeyValueStore implements KeyValueStore {
+    private final KeyValueStore store;
+    private final Flushable storeFlushable;
+    private final List<Flushable> flushables;
+
+    // the flushables are written to disk before each write, then the written entries
+    public <T extends KeyValueStore & Flushable> CommitKeyValueStore(T store, List<Flushable> flushables) {
+        this.store = store;
+        this.storeFlushable = store;
+        this.flushables = flushables;
+    }
+
+    @Override
+    public void setValue(byte[] key, byte[] value) throws IOException {
+        this.flushStores();
+        this.store.setValue(key, value);
+        this.storeFlushable.flush();
+    }
+
+    @Override
+    public byte[] getValue(byte[] key) throws IOException {
+        return this.store.getValue(key);
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        return this.store.getValues(keys);
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        return this.store.containsKey(key);
+    }
+
+    @Override
+    public boolean[] containsKeys(List<byte[]> keys) throws IOException {
+        return this.store.containsKeys(keys);
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        return this.store.scan(fromKey, toKey);
+    }
+
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        this.flushStores();
+        this.store.write(batch);
+        this.storeFlushable.flush();
+    }
+
+    private void flushStores() throws IOException {
+        for (Flushable flushable : this.flushables)
+            flushable.flush();
+    }
+}
@@ -0,0 +1,15 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.db.KeyReferences;
+
+import java.io.IOException;
+import java.util.Collection;
+
+public interface CompactableKeyValueStore extends KeyValueStore {
+    // the keys written after starting the compaction are kept, with their references
+    // after a compaction, the keys written until the next one are kept by it
+    void startCompaction();
+
+    CompactionResult compact(Collection<byte[]> roots, KeyReferences keyReferences) throws IOException;
+}
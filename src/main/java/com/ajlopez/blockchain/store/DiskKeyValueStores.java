@@ -0,0 +1,125 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.db.KeyIndexType;
+import com.ajlopez.blockchain.db.KeyValueDb;
+import com.ajlopez.blockchain.db.ShardedKeyValueDb;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class DiskKeyValueStores implements KeyValueStores {
+    private static final int MAX_BLOCK_INFORMATION_KEY_LENGTH = Long.BYTES;
+
+    private final Map<KeyValueStoreType, KeyValueStore> keyValueStores = new EnumMap<>(KeyValueStoreType.class);
+    private final List<Closeable> closeables = new ArrayList<>();
+    private final List<Flushable> flushables = new ArrayList<>();
+    private final KeyValueStore blockInformationKeyValueStore;
+
+    public DiskKeyValueStores(String directory) throws IOException {
+        this(directory, KeyIndexType.MEMORY);
+    }
+
+    public DiskKeyValueStores(String directory, KeyIndexType keyIndexType) throws IOException {
+        this(directory, keyIndexType, false);
+    }
+
+    public DiskKeyValueStores(String directory, KeyIndexType keyIndexType, boolean compressed) throws IOException {
+        this(directory, keyIndexType, compressed, 1);
+    }
+
+    public DiskKeyValueStores(String directory, KeyIndexType keyIndexType, boolean compressed, int nshards) throws IOException {
+        this(directory, keyIndexType, compressed, nshards, true);
+    }
+
+    // the stores with hash keys are sharded when there are many shards, the block information store is not sharded
+    // the block information values are updated, so its db uses the memory key index
+    // without synced writes, the other stores are written to disk when the block information is written, so a block is committed with its state
+    public DiskKeyValueStores(String directory, KeyIndexType keyIndexType, boolean compressed, int nshards, boolean syncWrites) throws IOException {
+        Files.createDirectories(Paths.get(directory));
+
+        KeyValueDb blockInformationKeyValueDb = null;
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values()) {
+            String name = Paths.get(directory, keyValueStoreType.name().toLowerCase()).toString();
+
+            if (keyValueStoreType == KeyValueStoreType.BLOCKS_INFORMATION) {
+                blockInformationKeyValueDb = new KeyValueDb(name, PaddedKeyValueStore.getPaddedKeyLength(MAX_BLOCK_INFORMATION_KEY_LENGTH), KeyIndexType.MEMORY, true, compressed, syncWrites);
+                this.addKeyValueStore(keyValueStoreType, blockInformationKeyValueDb);
+            }
+            else if (nshards > 1)
+                this.addKeyValueStore(keyValueStoreType, new ShardedKeyValueDb(name, Hash.HASH_BYTES, nshards, keyIndexType, compressed, syncWrites));
+            else
+                this.addKeyValueStore(keyValueStoreType, new KeyValueDb(name, Hash.HASH_BYTES, keyIndexType, false, compressed, syncWrites));
+        }
+
+        if (syncWrites)
+            this.blockInformationKeyValueStore = new PaddedKeyValueStore(blockInformationKeyValueDb, MAX_BLOCK_INFORMATION_KEY_LENGTH);
+        else
+            this.blockInformationKeyValueStore = new PaddedKeyValueStore(new CommitKeyValueStore(blockInformationKeyValueDb, this.flushables), MAX_BLOCK_INFORMATION_KEY_LENGTH);
+    }
+
+    private <T extends KeyValueStore & Closeable & Flushable> void addKeyValueStore(KeyValueStoreType keyValueStoreType, T keyValueStore) {
+        this.keyValueStores.put(keyValueStoreType, keyValueStore);
+        this.closeables.add(keyValueStore);
+
+        if (keyValueStoreType != KeyValueStoreType.BLOCKS_INFORMATION)
+            this.flushables.add(keyValueStore);
+    }
+
+    @Override
+    public KeyValueStore getAccountKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.ACCOUNTS);
+    }
+
+    @Override
+    public KeyValueStore getStorageKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.STORAGE);
+    }
+
+    @Override
+    public KeyValueStore getBlockKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.BLOCKS);
+    }
+
+    @Override
+    public KeyValueStore getCodeKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.CODES);
+    }
+
+    @Override
+    public KeyValueStore getBlockInformationKeyValueStore() {
+        return this.blockInformationKeyValueStore;
+    }
+
+    public void close() throws IOException {
+        for (Closeable closeable : this.closeables)
+            closeable.close();
+    }
+
+    // the setting is written with the data the first time, the data cannot be read with other value
+    public static void checkSetting(String directory, String name, String value) throws IOException {
+        Files.createDirectories(Paths.get(directory));
+
+        Path path = Paths.get(directory, name + ".setting");
+
+        if (!Files.exists(path)) {
+            Files.write(path, value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        String storedValue = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+
+        if (!storedValue.equals(value))
+            throw new IllegalStateException(String.format("data written with %s %s", name, storedValue));
+    }
+}
@@ -1,6 +1,10 @@
 package com.ajlopez.blockchain.store;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by ajlopez on 19/04/2020.
@@ -19,6 +23,11 @@ public class DualKeyValueStore implements KeyValueStore {
         this.newStore.setValue(key, value);
     }
 
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        this.newStore.write(batch);
+    }
+
     @Override
     public byte[] getValue(byte[] key) throws IOException {
         byte[] value = this.newStore.getValue(key);
@@ -35,4 +44,49 @@ public class DualKeyValueStore implements KeyValueStore {
 
         return value;
     }
+
+    // the value is not copied to the new store, it is not read
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        return this.newStore.containsKey(key) || this.originalStore.containsKey(key);
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        return new MergedKeyValueIterator(Arrays.asList(this.newStore.scan(fromKey, toKey), this.originalStore.scan(fromKey, toKey)));
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        List<byte[]> values = new ArrayList<>(this.newStore.getValues(keys));
+        List<Integer> missing = new ArrayList<>();
+        List<byte[]> missingKeys = new ArrayList<>();
+
+        for (int k = 0; k < values.size(); k++)
+            if (values.get(k) == null) {
+                missing.add(k);
+                missingKeys.add(keys.get(k));
+            }
+
+        if (missingKeys.isEmpty())
+            return values;
+
+        List<byte[]> originalValues = this.originalStore.getValues(missingKeys);
+        WriteBatch batch = new WriteBatch();
+
+        for (int k = 0; k < originalValues.size(); k++) {
+            byte[] value = originalValues.get(k);
+
+            if (value == null)
+                continue;
+
+            values.set(missing.get(k), value);
+            batch.put(missingKeys.get(k), value);
+        }
+
+        if (batch.size() > 0)
+            this.newStore.write(batch);
+
+        return values;
+    }
 }
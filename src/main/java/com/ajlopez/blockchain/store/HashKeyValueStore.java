@@ -0,0 +1,335 @@
+package com.ajlopez.blockchain.store;
+
+import java.util.*;
+
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.db.KeyReferences;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import com.ajlopez.blockchain.utils.ByteUtils;
+
+/**
+ * Open addressing table for keys uniformly distributed, like hashes: the slot is
+ * derived from the first eight bytes of the key only.
+ * The keys are kept in segments, the capacity is limited by the slot arrays.
+ */
+public class HashKeyValueStore implements CompactableKeyValueStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int SEGMENT_SLOTS = 1 << 20;
+    private static final int MAX_LOAD_PERCENTAGE = 70;
+    private static final int EMPTY = -1;
+
+    private final int keyLength;
+    private ValueArena arena;
+
+    private int capacity;
+    private int size;
+    private byte[][] keys;
+    private int[] lengths;
+    private byte[][] values;
+    private long[] references;
+    private Set<ByteArrayWrapper> compactionKeys;
+    private boolean compacting;
+
+    public HashKeyValueStore(int keyLength) {
+        this(keyLength, false);
+    }
+
+    public HashKeyValueStore(int keyLength, boolean offHeap) {
+        this.keyLength = keyLength;
+        this.arena = offHeap ? new ValueArena() : null;
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public synchronized void setValue(byte[] key, byte[] value) {
+        if (key == null || key.length != this.keyLength)
+            throw new IllegalArgumentException("invalid key");
+
+        if (isOverloaded(this.size + 1, this.capacity))
+            this.allocate(getNewCapacity(this.capacity));
+
+        int slot = this.findSlot(key);
+
+        if (this.lengths[slot] == EMPTY) {
+            this.setSlotKey(slot, key);
+            this.size++;
+        }
+
+        this.putSlotValue(slot, value);
+
+        if (this.compactionKeys != null)
+            this.compactionKeys.add(new ByteArrayWrapper(key));
+    }
+
+    @Override
+    public synchronized byte[] getValue(byte[] key) {
+        if (key == null || key.length != this.keyLength)
+            return null;
+
+        int slot = this.findSlot(key);
+
+        if (this.lengths[slot] == EMPTY)
+            return null;
+
+        if (this.arena != null)
+            return this.arena.get(this.references[slot], this.lengths[slot]);
+
+        return this.values[slot];
+    }
+
+    @Override
+    public synchronized boolean containsKey(byte[] key) {
+        if (key == null || key.length != this.keyLength)
+            return false;
+
+        return this.lengths[this.findSlot(key)] != EMPTY;
+    }
+
+    // slots are hash ordered, the entries in range are collected and sorted
+    @Override
+    public synchronized Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) {
+        KeyRange keyRange = new KeyRange(fromKey, toKey);
+        List<KeyValue> keyValues = new ArrayList<>();
+
+        for (int slot = 0; slot < this.capacity; slot++) {
+            if (this.lengths[slot] == EMPTY)
+                continue;
+
+            byte[] key = getSlotKey(this.keys, slot, this.keyLength);
+
+            if (!keyRange.contains(key))
+                continue;
+
+            byte[] value = this.arena != null ? this.arena.get(this.references[slot], this.lengths[slot]) : this.values[slot];
+
+            keyValues.add(new KeyValue(key, value));
+        }
+
+        keyValues.sort((keyValue1, keyValue2) -> ByteUtils.compare(keyValue1.getKey(), keyValue2.getKey()));
+
+        return keyValues.iterator();
+    }
+
+    @Override
+    public synchronized void startCompaction() {
+        if (this.compacting)
+            throw new IllegalStateException("compaction in progress");
+
+        if (this.compactionKeys == null)
+            this.compactionKeys = new HashSet<>();
+    }
+
+    @Override
+    public CompactionResult compact(Collection<byte[]> roots, KeyReferences keyReferences) {
+        long millis = System.currentTimeMillis();
+
+        synchronized (this) {
+            if (this.compacting)
+                throw new IllegalStateException("compaction in progress");
+
+            this.compacting = true;
+
+            if (this.compactionKeys == null)
+                this.compactionKeys = new HashSet<>();
+        }
+
+        try {
+            Set<ByteArrayWrapper> marked = new HashSet<>();
+
+            this.markKeys(new ArrayDeque<>(roots), keyReferences, marked);
+
+            synchronized (this) {
+                Queue<byte[]> pending = new ArrayDeque<>();
+
+                for (ByteArrayWrapper key : this.compactionKeys)
+                    pending.add(key.getBytes());
+
+                this.markKeys(pending, keyReferences, marked);
+
+                long reclaimedBytes = this.retainKeys(marked);
+
+                this.compactionKeys = new HashSet<>();
+
+                return new CompactionResult(this.size, reclaimedBytes, System.currentTimeMillis() - millis);
+            }
+        }
+        finally {
+            synchronized (this) {
+                this.compacting = false;
+            }
+        }
+    }
+
+    private void markKeys(Queue<byte[]> pending, KeyReferences keyReferences, Set<ByteArrayWrapper> marked) {
+        while (!pending.isEmpty()) {
+            byte[] key = pending.poll();
+            ByteArrayWrapper wrapper = new ByteArrayWrapper(key);
+
+            if (marked.contains(wrapper))
+                continue;
+
+            byte[] value = this.getValue(key);
+
+            if (value == null)
+                continue;
+
+            marked.add(wrapper);
+            pending.addAll(keyReferences.getReferences(value));
+        }
+    }
+
+    // the off heap values are copied to a new arena, releasing the old chunks
+    private long retainKeys(Set<ByteArrayWrapper> retained) {
+        byte[][] oldKeys = this.keys;
+        int[] oldLengths = this.lengths;
+        byte[][] oldValues = this.values;
+        long[] oldReferences = this.references;
+        ValueArena oldArena = this.arena;
+        int oldCapacity = this.capacity;
+
+        int newCapacity = INITIAL_CAPACITY;
+
+        while (isOverloaded(retained.size() + 1, newCapacity))
+            newCapacity = getNewCapacity(newCapacity);
+
+        this.allocateSlots(newCapacity);
+        this.size = 0;
+
+        if (oldArena != null)
+            this.arena = new ValueArena();
+
+        long reclaimedBytes = 0;
+
+        for (int k = 0; k < oldCapacity; k++) {
+            if (oldLengths[k] == EMPTY)
+                continue;
+
+            byte[] key = getSlotKey(oldKeys, k, this.keyLength);
+
+            if (!retained.contains(new ByteArrayWrapper(key))) {
+                reclaimedBytes += this.keyLength + oldLengths[k];
+                continue;
+            }
+
+            int slot = this.findSlot(key);
+
+            this.setSlotKey(slot, key);
+            this.size++;
+
+            this.putSlotValue(slot, oldArena != null ? oldArena.get(oldReferences[k], oldLengths[k]) : oldValues[k]);
+        }
+
+        return reclaimedBytes;
+    }
+
+    private int findSlot(byte[] key) {
+        int mask = this.capacity - 1;
+        int slot = hash(key) & mask;
+
+        while (this.lengths[slot] != EMPTY && !this.isSlotKey(slot, key))
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    private boolean isSlotKey(int slot, byte[] key) {
+        byte[] segment = this.keys[slot / SEGMENT_SLOTS];
+        int offset = (slot % SEGMENT_SLOTS) * this.keyLength;
+
+        for (int k = 0; k < this.keyLength; k++)
+            if (segment[offset + k] != key[k])
+                return false;
+
+        return true;
+    }
+
+    private void setSlotKey(int slot, byte[] key) {
+        System.arraycopy(key, 0, this.keys[slot / SEGMENT_SLOTS], (slot % SEGMENT_SLOTS) * this.keyLength, this.keyLength);
+    }
+
+    private void putSlotValue(int slot, byte[] value) {
+        this.lengths[slot] = value.length;
+
+        if (this.arena != null)
+            this.references[slot] = this.arena.put(value);
+        else
+            this.values[slot] = value;
+    }
+
+    private void allocate(int newCapacity) {
+        byte[][] oldKeys = this.keys;
+        int[] oldLengths = this.lengths;
+        byte[][] oldValues = this.values;
+        long[] oldReferences = this.references;
+        int oldCapacity = this.capacity;
+
+        this.allocateSlots(newCapacity);
+
+        for (int k = 0; k < oldCapacity; k++) {
+            if (oldLengths[k] == EMPTY)
+                continue;
+
+            byte[] key = getSlotKey(oldKeys, k, this.keyLength);
+
+            int slot = this.findSlot(key);
+
+            this.setSlotKey(slot, key);
+            this.lengths[slot] = oldLengths[k];
+
+            if (this.arena != null)
+                this.references[slot] = oldReferences[k];
+            else
+                this.values[slot] = oldValues[k];
+        }
+    }
+
+    private void allocateSlots(int newCapacity) {
+        int nsegments = (newCapacity + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS;
+
+        this.capacity = newCapacity;
+        this.keys = new byte[nsegments][Math.min(newCapacity, SEGMENT_SLOTS) * this.keyLength];
+        this.lengths = new int[newCapacity];
+        Arrays.fill(this.lengths, EMPTY);
+
+        if (this.arena != null)
+            this.references = new long[newCapacity];
+        else
+            this.values = new byte[newCapacity][];
+    }
+
+    private static byte[] getSlotKey(byte[][] keys, int slot, int keyLength) {
+        int offset = (slot % SEGMENT_SLOTS) * keyLength;
+
+        return Arrays.copyOfRange(keys[slot / SEGMENT_SLOTS], offset, offset + keyLength);
+    }
+
+    private static boolean isOverloaded(int size, int capacity) {
+        return (long)size * 100 > (long)capacity * MAX_LOAD_PERCENTAGE;
+    }
+
+    private static int getNewCapacity(int capacity) {
+        if (capacity >= MAX_CAPACITY)
+            throw new IllegalStateException("store is full");
+
+        return capacity * 2;
+    }
+
+    // keys are hashes, their first bytes are already uniformly distributed
+    private static int hash(byte[] key) {
+        long h = 0;
+
+        for (int k = 0; k < Long.BYTES && k < key.length; k++)
+            h = (h << 8) | (key[k] & 0xff);
+
+        return (int)((h * 0x9e3779b97f4a7c15L) >>> 32);
+    }
+}
@@ -1,8 +1,12 @@
 package com.ajlopez.blockchain.store;
 
 import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import com.ajlopez.blockchain.utils.ByteUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -15,10 +19,29 @@ public class HashMapStore implements KeyValueStore {
         return this.values.get(new ByteArrayWrapper(key));
     }
 
+    @Override
+    public boolean containsKey(byte[] key) {
+        return this.values.containsKey(new ByteArrayWrapper(key));
+    }
+
     public void setValue(byte[] key, byte[] value) {
         this.values.put(new ByteArrayWrapper(key), value);
     }
 
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) {
+        KeyRange keyRange = new KeyRange(fromKey, toKey);
+        List<KeyValue> keyValues = new ArrayList<>();
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : this.values.entrySet())
+            if (keyRange.contains(entry.getKey().getBytes()))
+                keyValues.add(new KeyValue(entry.getKey().getBytes(), entry.getValue()));
+
+        keyValues.sort((keyValue1, keyValue2) -> ByteUtils.compare(keyValue1.getKey(), keyValue2.getKey()));
+
+        return keyValues.iterator();
+    }
+
     public boolean isEmpty() { return this.values.isEmpty(); }
 }
 
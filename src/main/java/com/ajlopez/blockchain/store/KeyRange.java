@@ -0,0 +1,42 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.utils.ByteUtils;
+
+import java.util.Arrays;
+
+public class KeyRange {
+    private final byte[] fromKey;
+    private final byte[] toKey;
+
+    // from key is inclusive, to key is exclusive, null means unbounded
+    public KeyRange(byte[] fromKey, byte[] toKey) {
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+    }
+
+    public static KeyRange prefix(byte[] prefix) {
+        int length = prefix.length;
+
+        while (length > 0 && prefix[length - 1] == (byte)0xff)
+            length--;
+
+        if (length == 0)
+            return new KeyRange(prefix, null);
+
+        byte[] toKey = Arrays.copyOf(prefix, length);
+        toKey[length - 1]++;
+
+        return new KeyRange(prefix, toKey);
+    }
+
+    public byte[] getFromKey() { return this.fromKey; }
+
+    public byte[] getToKey() { return this.toKey; }
+
+    public boolean contains(byte[] key) {
+        if (this.fromKey != null && ByteUtils.compare(key, this.fromKey) < 0)
+            return false;
+
+        return this.toKey == null || ByteUtils.compare(key, this.toKey) < 0;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ajlopez.blockchain.store;
+
+public class KeyValue {
+    private final byte[] key;
+    private final byte[] value;
+
+    public KeyValue(byte[] key, byte[] value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public byte[] getKey() { return this.key; }
+
+    public byte[] getValue() { return this.value; }
+}
@@ -1,6 +1,9 @@
 package com.ajlopez.blockchain.store;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by ajlopez on 06/01/2018.
@@ -9,4 +12,41 @@ public interface KeyValueStore {
     void setValue(byte[] key, byte[] value) throws IOException;
 
     byte[] getValue(byte[] key) throws IOException;
+
+    default List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        List<byte[]> values = new ArrayList<>(keys.size());
+
+        for (byte[] key : keys)
+            values.add(this.getValue(key));
+
+        return values;
+    }
+
+    default boolean containsKey(byte[] key) throws IOException {
+        return this.getValue(key) != null;
+    }
+
+    default boolean[] containsKeys(List<byte[]> keys) throws IOException {
+        List<byte[]> values = this.getValues(keys);
+        boolean[] result = new boolean[values.size()];
+
+        for (int k = 0; k < result.length; k++)
+            result[k] = values.get(k) != null;
+
+        return result;
+    }
+
+    // the keys are in key order, the stores addressed by hash reject the scans instead of sorting their keys
+    Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException;
+
+    default Iterator<KeyValue> scanPrefix(byte[] prefix) throws IOException {
+        KeyRange keyRange = KeyRange.prefix(prefix);
+
+        return this.scan(keyRange.getFromKey(), keyRange.getToKey());
+    }
+
+    default void write(WriteBatch batch) throws IOException {
+        for (int k = 0; k < batch.size(); k++)
+            this.setValue(batch.getKey(k), batch.getValue(k));
+    }
 }
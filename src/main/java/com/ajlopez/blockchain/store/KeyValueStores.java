@@ -2,6 +2,9 @@ package com.ajlopez.blockchain.store;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by ajlopez on 04/05/2020.
@@ -17,24 +20,42 @@ public interface KeyValueStores {
 
     KeyValueStore getBlockInformationKeyValueStore();
 
-    default byte[] getValue(KeyValueStoreType keyValueStoreType, byte[] key) throws IOException {
+    default KeyValueStore getKeyValueStore(KeyValueStoreType keyValueStoreType) {
         switch (keyValueStoreType) {
             case BLOCKS:
-                return this.getBlockKeyValueStore().getValue(key);
+                return this.getBlockKeyValueStore();
 
             case CODES:
-                return this.getCodeKeyValueStore().getValue(key);
+                return this.getCodeKeyValueStore();
 
             case ACCOUNTS:
-                return this.getAccountKeyValueStore().getValue(key);
+                return this.getAccountKeyValueStore();
 
             case STORAGE:
-                return this.getStorageKeyValueStore().getValue(key);
+                return this.getStorageKeyValueStore();
 
             case BLOCKS_INFORMATION:
-                return this.getBlockInformationKeyValueStore().getValue(key);
+                return this.getBlockInformationKeyValueStore();
         }
 
         return null;
     }
+
+    default byte[] getValue(KeyValueStoreType keyValueStoreType, byte[] key) throws IOException {
+        KeyValueStore keyValueStore = this.getKeyValueStore(keyValueStoreType);
+
+        if (keyValueStore == null)
+            return null;
+
+        return keyValueStore.getValue(key);
+    }
+
+    default List<byte[]> getValues(KeyValueStoreType keyValueStoreType, List<byte[]> keys) throws IOException {
+        KeyValueStore keyValueStore = this.getKeyValueStore(keyValueStoreType);
+
+        if (keyValueStore == null)
+            return new ArrayList<>(Collections.nCopies(keys.size(), null));
+
+        return keyValueStore.getValues(keys);
+    }
 }
@@ -1,5 +1,7 @@
 package com.ajlopez.blockchain.store;
 
+import com.ajlopez.blockchain.core.types.Hash;
+
 /**
  * Created by ajlopez on 04/05/2020.
  */
@@ -11,11 +13,15 @@ public class MemoryKeyValueStores implements KeyValueStores {
     private final KeyValueStore codeKeyValueStore;
 
     public MemoryKeyValueStores() {
-        this.accountKeyValueStore = new HashMapStore();
-        this.storageKeyValueStore = new HashMapStore();
-        this.blockKeyValueStore = new HashMapStore();
-        this.blockInformationKeyValueStore = new HashMapStore();
-        this.codeKeyValueStore = new HashMapStore();
+        this(false);
+    }
+
+    public MemoryKeyValueStores(boolean offHeap) {
+        this.accountKeyValueStore = new HashKeyValueStore(Hash.HASH_BYTES, offHeap);
+        this.storageKeyValueStore = new HashKeyValueStore(Hash.HASH_BYTES, offHeap);
+        this.blockKeyValueStore = new HashKeyValueStore(Hash.HASH_BYTES, offHeap);
+        this.blockInformationKeyValueStore = new PaddedKeyValueStore(new SortedMapStore(), Long.BYTES);
+        this.codeKeyValueStore = new HashKeyValueStore(Hash.HASH_BYTES, offHeap);
     }
 
     @Override
@@ -0,0 +1,67 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.utils.ByteUtils;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+public class MergedKeyValueIterator implements Iterator<KeyValue> {
+    private final List<Iterator<KeyValue>> iterators;
+    private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+    // each iterator is ordered by key, on duplicated keys the first iterator wins
+    public MergedKeyValueIterator(List<Iterator<KeyValue>> iterators) {
+        this.iterators = iterators;
+
+        for (int k = 0; k < iterators.size(); k++)
+            this.advance(k);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !this.heads.isEmpty();
+    }
+
+    @Override
+    public KeyValue next() {
+        if (this.heads.isEmpty())
+            throw new NoSuchElementException();
+
+        Head head = this.heads.poll();
+        this.advance(head.index);
+
+        while (!this.heads.isEmpty() && ByteUtils.compare(this.heads.peek().keyValue.getKey(), head.keyValue.getKey()) == 0)
+            this.advance(this.heads.poll().index);
+
+        return head.keyValue;
+    }
+
+    private void advance(int index) {
+        Iterator<KeyValue> iterator = this.iterators.get(index);
+
+        if (iterator.hasNext())
+            this.heads.add(new Head(iterator.next(), index));
+    }
+
+    private static class Head implements Comparable<Head> {
+        private final KeyValue keyValue;
+        private final int index;
+
+        private Head(KeyValue keyValue, int index) {
+            this.keyValue = keyValue;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(Head head) {
+            int result = ByteUtils.compare(this.keyValue.getKey(), head.keyValue.getKey());
+
+            if (result != 0)
+                return result;
+
+            return Integer.compare(this.index, head.index);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.ajlopez.blockchain.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.ajlopez.blockchain.utils.ByteUtils;
+
+public class PaddedKeyValueStore implements KeyValueStore {
+    private final KeyValueStore store;
+    private final int maxKeyLength;
+
+    public PaddedKeyValueStore(KeyValueStore store, int maxKeyLength) {
+        this.store = store;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    public static int getPaddedKeyLength(int maxKeyLength) {
+        return maxKeyLength + 1;
+    }
+
+    @Override
+    public void setValue(byte[] key, byte[] value) throws IOException {
+        this.store.setValue(this.toPaddedKey(key), value);
+    }
+
+    @Override
+    public byte[] getValue(byte[] key) throws IOException {
+        return this.store.getValue(this.toPaddedKey(key));
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        return this.store.containsKey(this.toPaddedKey(key));
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        List<byte[]> paddedKeys = new ArrayList<>(keys.size());
+
+        for (byte[] key : keys)
+            paddedKeys.add(this.toPaddedKey(key));
+
+        return this.store.getValues(paddedKeys);
+    }
+
+    // keys are ordered by length, then by their bytes
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        Iterator<KeyValue> iterator = this.store.scan(fromKey == null ? null : this.toPaddedKey(fromKey), toKey == null ? null : this.toPaddedKey(toKey));
+
+        return new Iterator<KeyValue>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public KeyValue next() {
+                KeyValue keyValue = iterator.next();
+                byte[] paddedKey = keyValue.getKey();
+
+                return new KeyValue(Arrays.copyOfRange(paddedKey, 1, 1 + (paddedKey[0] & 0xff)), keyValue.getValue());
+            }
+        };
+    }
+
+    @Override
+    public Iterator<KeyValue> scanPrefix(byte[] prefix) throws IOException {
+        Iterator<KeyValue> iterator = this.scan(prefix, null);
+
+        return new Iterator<KeyValue>() {
+            private KeyValue nextKeyValue = this.advance();
+
+            @Override
+            public boolean hasNext() {
+                return this.nextKeyValue != null;
+            }
+
+            @Override
+            public KeyValue next() {
+                if (this.nextKeyValue == null)
+                    throw new NoSuchElementException();
+
+                KeyValue keyValue = this.nextKeyValue;
+                this.nextKeyValue = this.advance();
+
+                return keyValue;
+            }
+
+            // longer keys sharing the prefix are after keys of other contents
+            private KeyValue advance() {
+                while (iterator.hasNext()) {
+                    KeyValue keyValue = iterator.next();
+
+                    if (ByteUtils.startsWith(keyValue.getKey(), prefix))
+                        return keyValue;
+                }
+
+                return null;
+            }
+        };
+    }
+
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        WriteBatch paddedBatch = new WriteBatch();
+
+        for (int k = 0; k < batch.size(); k++)
+            paddedBatch.put(this.toPaddedKey(batch.getKey(k)), batch.getValue(k));
+
+        this.store.write(paddedBatch);
+    }
+
+    private byte[] toPaddedKey(byte[] key) {
+        if (key.length > this.maxKeyLength)
+            throw new IllegalArgumentException("invalid key");
+
+        byte[] paddedKey = new byte[getPaddedKeyLength(this.maxKeyLength)];
+
+        paddedKey[0] = (byte)key.length;
+        System.arraycopy(key, 0, paddedKey, 1, key.length);
+
+        return paddedKey;
+    }
+}
@@ -1,9 +1,13 @@
 package com.ajlopez.blockchain.store;
 
 import com.ajlopez.blockchain.net.messages.GetStoredValueMessage;
+import com.ajlopez.blockchain.net.messages.GetStoredValuesMessage;
 import com.ajlopez.blockchain.processors.SendProcessor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -26,6 +30,11 @@ public class RemoteKeyValueStore implements KeyValueStore {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public byte[] getValue(byte[] key) throws IOException {
         CompletableFuture<byte[]> future = new CompletableFuture<>();
@@ -43,4 +52,33 @@ public class RemoteKeyValueStore implements KeyValueStore {
             throw new IOException(ex);
         }
     }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(keys.size());
+
+        for (byte[] key : keys) {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            this.keyValueResolver.resolve(this.storeType, key, future);
+            futures.add(future);
+        }
+
+        GetStoredValuesMessage getStoredValuesMessage = new GetStoredValuesMessage(this.storeType, keys);
+        this.sendProcessor.postMessage(getStoredValuesMessage);
+
+        List<byte[]> values = new ArrayList<>(keys.size());
+
+        // TODO improve timeout
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+
+            for (CompletableFuture<byte[]> future : futures)
+                values.add(future.get());
+        }
+        catch (Exception ex) {
+            throw new IOException(ex);
+        }
+
+        return values;
+    }
 }
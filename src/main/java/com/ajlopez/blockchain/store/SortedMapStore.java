@@ -0,0 +1,43 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class SortedMapStore implements KeyValueStore {
+    private final ConcurrentNavigableMap<ByteArrayWrapper, byte[]> values = new ConcurrentSkipListMap<>();
+
+    @Override
+    public byte[] getValue(byte[] key) {
+        return this.values.get(new ByteArrayWrapper(key));
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) {
+        return this.values.containsKey(new ByteArrayWrapper(key));
+    }
+
+    @Override
+    public void setValue(byte[] key, byte[] value) {
+        this.values.put(new ByteArrayWrapper(key), value);
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) {
+        ConcurrentNavigableMap<ByteArrayWrapper, byte[]> range = this.values;
+
+        if (fromKey != null)
+            range = range.tailMap(new ByteArrayWrapper(fromKey), true);
+
+        if (toKey != null)
+            range = range.headMap(new ByteArrayWrapper(toKey), false);
+
+        return range.entrySet().stream().map(entry -> new KeyValue(entry.getKey().getBytes(), entry.getValue())).iterator();
+    }
+
+    public int size() { return this.values.size(); }
+
+    public boolean isEmpty() { return this.values.isEmpty(); }
+}
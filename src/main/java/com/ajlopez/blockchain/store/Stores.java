@@ -3,6 +3,7 @@ package com.ajlopez.blockchain.store;
 
 import com.ajlopez.blockchain.bc.BlockStore;
 import com.ajlopez.blockchain.bc.BlocksInformationStore;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 import com.ajlopez.blockchain.vms.eth.TrieStorageProvider;
 
 /**
@@ -14,12 +15,28 @@ public class Stores {
     private final CodeStore codeStore;
     private final BlockStore blockStore;
     private final BlocksInformationStore blocksInformationStore;
+    private final AccountSnapshots accountSnapshots = new AccountSnapshots();
+    private final TrieKeyHasher keyHasher;
 
     public Stores(KeyValueStores keyValueStores) {
-        this.accountTrieStore = new TrieStore(keyValueStores.getAccountKeyValueStore());
-        this.storageTrieStore = new TrieStore(keyValueStores.getStorageKeyValueStore());
+        this(keyValueStores, 0, 0);
+    }
+
+    public Stores(KeyValueStores keyValueStores, int trieCacheSize, int blockCacheSize) {
+        this(keyValueStores, trieCacheSize, blockCacheSize, false);
+    }
+
+    public Stores(KeyValueStores keyValueStores, int trieCacheSize, int blockCacheSize, boolean parallelCommit) {
+        this(keyValueStores, trieCacheSize, blockCacheSize, parallelCommit, null);
+    }
+
+    // with a key hasher, the account and storage keys are hashed before going into the tries
+    public Stores(KeyValueStores keyValueStores, int trieCacheSize, int blockCacheSize, boolean parallelCommit, TrieKeyHasher keyHasher) {
+        this.keyHasher = keyHasher;
+        this.accountTrieStore = new TrieStore(keyValueStores.getAccountKeyValueStore(), trieCacheSize, parallelCommit);
+        this.storageTrieStore = new TrieStore(keyValueStores.getStorageKeyValueStore(), trieCacheSize, parallelCommit);
         this.codeStore = new CodeStore(keyValueStores.getCodeKeyValueStore());
-        this.blockStore = new BlockStore(keyValueStores.getBlockKeyValueStore());
+        this.blockStore = new BlockStore(keyValueStores.getBlockKeyValueStore(), blockCacheSize);
         this.blocksInformationStore = new BlocksInformationStore(keyValueStores.getBlockInformationKeyValueStore());
     }
 
@@ -39,11 +56,19 @@ public class Stores {
 
     public BlocksInformationStore getBlocksInformationStore() { return this.blocksInformationStore; }
 
+    public TrieKeyHasher getKeyHasher() {
+        return this.keyHasher;
+    }
+
+    public AccountSnapshots getAccountSnapshots() {
+        return this.accountSnapshots;
+    }
+
     public AccountStoreProvider getAccountStoreProvider() {
-        return new AccountStoreProvider(this.getAccountTrieStore());
+        return new AccountStoreProvider(this.getAccountTrieStore(), this.accountSnapshots, this.keyHasher);
     }
 
     public TrieStorageProvider getTrieStorageProvider() {
-        return new TrieStorageProvider(this.getStorageTrieStore());
+        return new TrieStorageProvider(this.getStorageTrieStore(), this.keyHasher);
     }
 }
@@ -0,0 +1,42 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.db.KeyReferences;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+public class TieredCompactableKeyValueStore extends TieredKeyValueStore implements CompactableKeyValueStore {
+    private final CompactableKeyValueStore coldStore;
+
+    public TieredCompactableKeyValueStore(CompactableKeyValueStore coldStore, long maxHotBytes, AdmissionPolicy admissionPolicy, int maxPendingEntries) {
+        super(coldStore, maxHotBytes, admissionPolicy, maxPendingEntries);
+        this.coldStore = coldStore;
+    }
+
+    // the entries pending before starting are not kept as written after it
+    @Override
+    public void startCompaction() {
+        try {
+            this.flush();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        this.coldStore.startCompaction();
+    }
+
+    // the pending entries are written before compacting, the removed keys could be still hot
+    @Override
+    public CompactionResult compact(Collection<byte[]> roots, KeyReferences keyReferences) throws IOException {
+        this.flush();
+
+        CompactionResult result = this.coldStore.compact(roots, keyReferences);
+
+        this.clearHotEntries();
+
+        return result;
+    }
+}
@@ -0,0 +1,399 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import com.ajlopez.blockchain.utils.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class TieredKeyValueStore implements KeyValueStore {
+    private static final Logger logger = Logger.getLogger(TieredKeyValueStore.class.getName());
+
+    static final int MAX_PENDING_ENTRIES = 10_000;
+    static final long WRITE_BEHIND_INTERVAL = 100;
+
+    private static final int NO_VERSIONS = 1024;
+
+    private final KeyValueStore coldStore;
+    private final long maxHotBytes;
+    private final AdmissionPolicy admissionPolicy;
+    private final int maxPendingEntries;
+
+    private final Map<ByteArrayWrapper, byte[]> hotEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<ByteArrayWrapper, byte[]> pendingEntries = new LinkedHashMap<>();
+
+    // each write changes the version of its key, a value read from the cold store is admitted only if the version was not changed
+    private final long[] versions = new long[NO_VERSIONS];
+    private final Object flushMonitor = new Object();
+
+    private long hotBytes;
+    private long hotHits;
+    private long hotMisses;
+    private long coldHits;
+    private long coldMisses;
+    private long evictions;
+
+    private ScheduledExecutorService executor;
+
+    public TieredKeyValueStore(KeyValueStore coldStore, long maxHotBytes) {
+        this(coldStore, maxHotBytes, AdmissionPolicy.all());
+    }
+
+    public TieredKeyValueStore(KeyValueStore coldStore, long maxHotBytes, AdmissionPolicy admissionPolicy) {
+        this(coldStore, maxHotBytes, admissionPolicy, MAX_PENDING_ENTRIES);
+    }
+
+    // the writer flushes the pending entries when there are too many, the other flushes are done by the write behind
+    public TieredKeyValueStore(KeyValueStore coldStore, long maxHotBytes, AdmissionPolicy admissionPolicy, int maxPendingEntries) {
+        this.coldStore = coldStore;
+        this.maxHotBytes = maxHotBytes;
+        this.admissionPolicy = admissionPolicy;
+        this.maxPendingEntries = maxPendingEntries;
+    }
+
+    @Override
+    public void setValue(byte[] key, byte[] value) throws IOException {
+        int npending;
+
+        synchronized (this.hotEntries) {
+            npending = this.addPendingValue(key, value);
+        }
+
+        if (npending >= this.maxPendingEntries)
+            this.flush();
+    }
+
+    @Override
+    public void write(WriteBatch batch) throws IOException {
+        int npending = 0;
+
+        synchronized (this.hotEntries) {
+            for (int k = 0; k < batch.size(); k++)
+                npending = this.addPendingValue(batch.getKey(k), batch.getValue(k));
+        }
+
+        if (npending >= this.maxPendingEntries)
+            this.flush();
+    }
+
+    @Override
+    public byte[] getValue(byte[] key) throws IOException {
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+        long version;
+
+        synchronized (this.hotEntries) {
+            byte[] value = this.hotEntries.get(wrappedKey);
+
+            if (value == null)
+                value = this.pendingEntries.get(wrappedKey);
+
+            if (value != null) {
+                this.hotHits++;
+                return value;
+            }
+
+            this.hotMisses++;
+            version = this.versions[getVersionIndex(wrappedKey)];
+        }
+
+        byte[] value = this.coldStore.getValue(key);
+
+        synchronized (this.hotEntries) {
+            if (value == null) {
+                this.coldMisses++;
+                return null;
+            }
+
+            this.coldHits++;
+            this.admitColdValue(wrappedKey, value, version);
+        }
+
+        return value;
+    }
+
+    @Override
+    public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+        byte[][] values = new byte[keys.size()][];
+        List<Integer> missing = new ArrayList<>();
+        List<byte[]> missingKeys = new ArrayList<>();
+        List<Long> missingVersions = new ArrayList<>();
+
+        synchronized (this.hotEntries) {
+            for (int k = 0; k < values.length; k++) {
+                ByteArrayWrapper wrappedKey = new ByteArrayWrapper(keys.get(k));
+
+                values[k] = this.hotEntries.get(wrappedKey);
+
+                if (values[k] == null)
+                    values[k] = this.pendingEntries.get(wrappedKey);
+
+                if (values[k] != null) {
+                    this.hotHits++;
+                    continue;
+                }
+
+                this.hotMisses++;
+                missing.add(k);
+                missingKeys.add(keys.get(k));
+                missingVersions.add(this.versions[getVersionIndex(wrappedKey)]);
+            }
+        }
+
+        if (missingKeys.isEmpty())
+            return Arrays.asList(values);
+
+        List<byte[]> coldValues = this.coldStore.getValues(missingKeys);
+
+        synchronized (this.hotEntries) {
+            for (int k = 0; k < coldValues.size(); k++) {
+                byte[] key = missingKeys.get(k);
+                byte[] value = coldValues.get(k);
+
+                if (value == null) {
+                    this.coldMisses++;
+                    continue;
+                }
+
+                this.coldHits++;
+                values[missing.get(k)] = value;
+                this.admitColdValue(new ByteArrayWrapper(key), value, missingVersions.get(k));
+            }
+        }
+
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public boolean containsKey(byte[] key) throws IOException {
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+
+        synchronized (this.hotEntries) {
+            if (this.hotEntries.containsKey(wrappedKey) || this.pendingEntries.containsKey(wrappedKey))
+                return true;
+        }
+
+        return this.coldStore.containsKey(key);
+    }
+
+    @Override
+    public Iterator<KeyValue> scan(byte[] fromKey, byte[] toKey) throws IOException {
+        this.flush();
+
+        return this.coldStore.scan(fromKey, toKey);
+    }
+
+    @Override
+    public Iterator<KeyValue> scanPrefix(byte[] prefix) throws IOException {
+        this.flush();
+
+        return this.coldStore.scanPrefix(prefix);
+    }
+
+    public void flush() throws IOException {
+        this.writePendingBatch(this.getPendingBatch());
+    }
+
+    // the entries pending when called, they are written to the cold store by writePendingBatch
+    WriteBatch getPendingBatch() {
+        WriteBatch batch = new WriteBatch();
+
+        synchronized (this.hotEntries) {
+            for (Map.Entry<ByteArrayWrapper, byte[]> entry : this.pendingEntries.entrySet())
+                batch.put(entry.getKey().getBytes(), entry.getValue());
+        }
+
+        return batch;
+    }
+
+    // the flushes are serialized, entries written again while flushing stay pending until the next flush
+    void writePendingBatch(WriteBatch batch) throws IOException {
+        if (batch.size() == 0)
+            return;
+
+        synchronized (this.flushMonitor) {
+            this.coldStore.write(batch);
+
+            synchronized (this.hotEntries) {
+                for (int k = 0; k < batch.size(); k++) {
+                    ByteArrayWrapper wrappedKey = new ByteArrayWrapper(batch.getKey(k));
+
+                    if (this.pendingEntries.get(wrappedKey) == batch.getValue(k))
+                        this.pendingEntries.remove(wrappedKey);
+                }
+            }
+        }
+    }
+
+    // the values read from the cold store before clearing are not admitted
+    void clearHotEntries() {
+        synchronized (this.hotEntries) {
+            this.hotEntries.clear();
+            this.hotBytes = 0;
+
+            for (int k = 0; k < NO_VERSIONS; k++)
+                this.versions[k]++;
+        }
+    }
+
+    public synchronized void start() {
+        if (this.executor != null)
+            return;
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("tiered-key-value-store"));
+        this.executor.scheduleWithFixedDelay(this::writeBehind, WRITE_BEHIND_INTERVAL, WRITE_BEHIND_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // a running write behind is completed, then the pending entries are written
+    public synchronized void stop() throws IOException {
+        if (this.executor != null) {
+            this.executor.shutdown();
+
+            try {
+                this.executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.executor = null;
+        }
+
+        this.flush();
+    }
+
+    public int getNoPendingEntries() {
+        synchronized (this.hotEntries) {
+            return this.pendingEntries.size();
+        }
+    }
+
+    public long getHotBytes() {
+        synchronized (this.hotEntries) {
+            return this.hotBytes;
+        }
+    }
+
+    public long getHotHits() {
+        synchronized (this.hotEntries) {
+            return this.hotHits;
+        }
+    }
+
+    public long getHotMisses() {
+        synchronized (this.hotEntries) {
+            return this.hotMisses;
+        }
+    }
+
+    public long getColdHits() {
+        synchronized (this.hotEntries) {
+            return this.coldHits;
+        }
+    }
+
+    public long getColdMisses() {
+        synchronized (this.hotEntries) {
+            return this.coldMisses;
+        }
+    }
+
+    public long getEvictions() {
+        synchronized (this.hotEntries) {
+            return this.evictions;
+        }
+    }
+
+    public double getHotHitRate() {
+        synchronized (this.hotEntries) {
+            return getRate(this.hotHits, this.hotMisses);
+        }
+    }
+
+    public double getColdHitRate() {
+        synchronized (this.hotEntries) {
+            return getRate(this.coldHits, this.coldMisses);
+        }
+    }
+
+    // the failed entries stay pending, they are written again in the next run
+    private void writeBehind() {
+        try {
+            this.flush();
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.SEVERE, "write behind failed", ex);
+        }
+    }
+
+    private int addPendingValue(byte[] key, byte[] value) {
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+
+        this.versions[getVersionIndex(wrappedKey)]++;
+        this.pendingEntries.put(wrappedKey, value);
+
+        if (this.admissionPolicy.admit(key, value))
+            this.putHotValue(wrappedKey, value);
+        else
+            this.removeHotValue(wrappedKey);
+
+        return this.pendingEntries.size();
+    }
+
+    private void putHotValue(ByteArrayWrapper key, byte[] value) {
+        long size = key.getBytes().length + value.length;
+
+        if (size > this.maxHotBytes) {
+            this.removeHotValue(key);
+            return;
+        }
+
+        byte[] oldvalue = this.hotEntries.put(key, value);
+
+        if (oldvalue != null)
+            this.hotBytes -= key.getBytes().length + oldvalue.length;
+
+        this.hotBytes += size;
+
+        Iterator<Map.Entry<ByteArrayWrapper, byte[]>> iterator = this.hotEntries.entrySet().iterator();
+
+        // evicted entries that are not written yet are still read from the pending entries
+        while (this.hotBytes > this.maxHotBytes && iterator.hasNext()) {
+            Map.Entry<ByteArrayWrapper, byte[]> entry = iterator.next();
+            this.hotBytes -= entry.getKey().getBytes().length + entry.getValue().length;
+            iterator.remove();
+            this.evictions++;
+        }
+    }
+
+    // called holding the hot entries lock
+    private void admitColdValue(ByteArrayWrapper key, byte[] value, long version) {
+        if (this.versions[getVersionIndex(key)] != version)
+            return;
+
+        if (this.admissionPolicy.admit(key.getBytes(), value))
+            this.putHotValue(key, value);
+    }
+
+    private void removeHotValue(ByteArrayWrapper key) {
+        byte[] oldvalue = this.hotEntries.remove(key);
+
+        if (oldvalue != null)
+            this.hotBytes -= key.getBytes().length + oldvalue.length;
+    }
+
+    private static int getVersionIndex(ByteArrayWrapper key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % NO_VERSIONS;
+    }
+
+    private static double getRate(long hits, long misses) {
+        long total = hits + misses;
+
+        if (total == 0)
+            return 0;
+
+        return (double)hits / total;
+    }
+}
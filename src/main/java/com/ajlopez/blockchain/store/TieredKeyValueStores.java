@@ -0,0 +1,96 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.utils.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class TieredKeyValueStores implements KeyValueStores {
+    private static final Logger logger = Logger.getLogger(TieredKeyValueStores.class.getName());
+
+    private final Map<KeyValueStoreType, TieredKeyValueStore> keyValueStores = new EnumMap<>(KeyValueStoreType.class);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("tiered-key-value-stores"));
+
+    // the block information is written by the write behind only, after the entries it refers to
+    public TieredKeyValueStores(KeyValueStores keyValueStores, Map<KeyValueStoreType, Long> hotSizes) {
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values()) {
+            KeyValueStore coldStore = keyValueStores.getKeyValueStore(keyValueStoreType);
+            long hotSize = hotSizes.getOrDefault(keyValueStoreType, 0L);
+            int maxPendingEntries = keyValueStoreType == KeyValueStoreType.BLOCKS_INFORMATION ? Integer.MAX_VALUE : TieredKeyValueStore.MAX_PENDING_ENTRIES;
+
+            if (coldStore instanceof CompactableKeyValueStore)
+                this.keyValueStores.put(keyValueStoreType, new TieredCompactableKeyValueStore((CompactableKeyValueStore)coldStore, hotSize, AdmissionPolicy.all(), maxPendingEntries));
+            else
+                this.keyValueStores.put(keyValueStoreType, new TieredKeyValueStore(coldStore, hotSize, AdmissionPolicy.all(), maxPendingEntries));
+        }
+    }
+
+    @Override
+    public KeyValueStore getAccountKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.ACCOUNTS);
+    }
+
+    @Override
+    public KeyValueStore getStorageKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.STORAGE);
+    }
+
+    @Override
+    public KeyValueStore getBlockKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.BLOCKS);
+    }
+
+    @Override
+    public KeyValueStore getCodeKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.CODES);
+    }
+
+    @Override
+    public KeyValueStore getBlockInformationKeyValueStore() {
+        return this.keyValueStores.get(KeyValueStoreType.BLOCKS_INFORMATION);
+    }
+
+    // the block information pending before the other stores are written is written after them
+    public void flush() throws IOException {
+        TieredKeyValueStore blockInformationKeyValueStore = this.keyValueStores.get(KeyValueStoreType.BLOCKS_INFORMATION);
+        WriteBatch blockInformationBatch = blockInformationKeyValueStore.getPendingBatch();
+
+        for (Map.Entry<KeyValueStoreType, TieredKeyValueStore> entry : this.keyValueStores.entrySet())
+            if (entry.getKey() != KeyValueStoreType.BLOCKS_INFORMATION)
+                entry.getValue().flush();
+
+        blockInformationKeyValueStore.writePendingBatch(blockInformationBatch);
+    }
+
+    public void start() {
+        this.executor.scheduleWithFixedDelay(this::writeBehind, TieredKeyValueStore.WRITE_BEHIND_INTERVAL, TieredKeyValueStore.WRITE_BEHIND_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // a running write behind is completed, then the pending entries are written
+    public void stop() throws IOException {
+        this.executor.shutdown();
+
+        try {
+            this.executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.flush();
+    }
+
+    // the failed entries stay pending, they are written again in the next run
+    private void writeBehind() {
+        try {
+            this.flush();
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.SEVERE, "write behind failed", ex);
+        }
+    }
+}
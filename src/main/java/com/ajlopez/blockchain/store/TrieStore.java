@@ -2,39 +2,189 @@ package com.ajlopez.blockchain.store;
 
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.utils.LruCache;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by ajlopez on 04/03/2018.
  */
 public class TrieStore {
     private KeyValueStore store;
+    private final LruCache<Hash, Trie> cache;
+    private final boolean parallelCommit;
 
     public TrieStore(KeyValueStore store) {
+        this(store, 0);
+    }
+
+    public TrieStore(KeyValueStore store, int cacheSize) {
+        this(store, cacheSize, false);
+    }
+
+    public TrieStore(KeyValueStore store, int cacheSize, boolean parallelCommit) {
         this.store = store;
+        this.cache = cacheSize > 0 ? new LruCache<>(cacheSize) : null;
+        this.parallelCommit = parallelCommit;
+    }
+
+    public boolean isParallelCommit() {
+        return this.parallelCommit;
     }
 
     public void save(Trie trie) throws IOException {
         this.store.setValue(trie.getHash().getBytes(), trie.getEncoded());
     }
 
+    public void save(List<Trie> tries) throws IOException {
+        WriteBatch batch = new WriteBatch();
+
+        for (Trie trie : tries)
+            batch.put(trie.getHash().getBytes(), trie.getEncoded());
+
+        this.store.write(batch);
+    }
+
     public boolean exists(Hash hash) throws IOException {
         if (hash == null || hash.equals(Trie.EMPTY_TRIE_HASH))
             return true;
 
-        return this.store.getValue(hash.getBytes()) != null;
+        if (this.cache != null && this.cache.containsKey(hash))
+            return true;
+
+        return this.store.containsKey(hash.getBytes());
+    }
+
+    public boolean[] existAll(Hash[] hashes) throws IOException {
+        boolean[] result = new boolean[hashes.length];
+        List<Integer> pending = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < hashes.length; k++) {
+            Hash hash = hashes[k];
+
+            if (hash == null || hash.equals(Trie.EMPTY_TRIE_HASH) || (this.cache != null && this.cache.containsKey(hash)))
+                result[k] = true;
+            else {
+                pending.add(k);
+                keys.add(hash.getBytes());
+            }
+        }
+
+        if (keys.isEmpty())
+            return result;
+
+        boolean[] found = this.store.containsKeys(keys);
+
+        for (int k = 0; k < found.length; k++)
+            result[pending.get(k)] = found[k];
+
+        return result;
     }
 
     public Trie retrieve(Hash hash) throws IOException {
         if (hash == null || hash.equals(Trie.EMPTY_TRIE_HASH))
             return new Trie(this);
 
+        if (this.cache != null) {
+            Trie cached = this.cache.get(hash);
+
+            if (cached != null)
+                return cached.detach();
+        }
+
         byte[] encoded = this.store.getValue(hash.getBytes());
 
         if (encoded == null)
             throw new RuntimeException("Unknown trie");
 
-        return Trie.fromEncoded(encoded, this);
+        Trie trie = Trie.fromEncoded(encoded, hash, this);
+
+        if (this.cache == null)
+            return trie;
+
+        this.cache.put(hash, trie);
+
+        return trie.detach();
+    }
+
+    public Trie[] retrieveAll(Hash[] hashes) throws IOException {
+        Trie[] tries = new Trie[hashes.length];
+        List<Integer> pending = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < hashes.length; k++) {
+            Hash hash = hashes[k];
+
+            if (hash == null)
+                continue;
+
+            if (hash.equals(Trie.EMPTY_TRIE_HASH)) {
+                tries[k] = new Trie(this);
+                continue;
+            }
+
+            if (this.cache != null) {
+                Trie cached = this.cache.get(hash);
+
+                if (cached != null) {
+                    tries[k] = cached.detach();
+                    continue;
+                }
+            }
+
+            pending.add(k);
+            keys.add(hash.getBytes());
+        }
+
+        if (keys.isEmpty())
+            return tries;
+
+        List<byte[]> values = this.store.getValues(keys);
+
+        for (int k = 0; k < values.size(); k++) {
+            byte[] encoded = values.get(k);
+
+            if (encoded == null)
+                throw new RuntimeException("Unknown trie");
+
+            Trie trie = Trie.fromEncoded(encoded, hashes[pending.get(k)], this);
+
+            if (this.cache != null) {
+                this.cache.put(hashes[pending.get(k)], trie);
+                trie = trie.detach();
+            }
+
+            tries[pending.get(k)] = trie;
+        }
+
+        return tries;
+    }
+
+    // the nodes removed from the store could be still cached
+    public void clearCache() {
+        if (this.cache != null)
+            this.cache.clear();
+    }
+
+    public long getCacheHits() {
+        return this.cache == null ? 0 : this.cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return this.cache == null ? 0 : this.cache.getMisses();
+    }
+
+    public static List<byte[]> getReferences(byte[] encoded) {
+        Hash[] subhashes = Trie.fromEncoded(encoded, null).getSubHashes();
+        List<byte[]> references = new ArrayList<>();
+
+        for (int k = 0; k < subhashes.length; k++)
+            if (subhashes[k] != null)
+                references.add(subhashes[k].getBytes());
+
+        return references;
     }
 }
@@ -0,0 +1,53 @@
+package com.ajlopez.blockchain.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ValueArena {
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+
+    public ValueArena() {
+        this(CHUNK_SIZE);
+    }
+
+    public ValueArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public long put(byte[] value) {
+        if (this.current == null || this.current.remaining() < value.length) {
+            this.current = ByteBuffer.allocateDirect(Math.max(this.chunkSize, value.length));
+            this.chunks.add(this.current);
+        }
+
+        long reference = ((long)(this.chunks.size() - 1) << 32) | this.current.position();
+
+        this.current.put(value);
+
+        return reference;
+    }
+
+    public byte[] get(long reference, int length) {
+        ByteBuffer chunk = this.chunks.get((int)(reference >>> 32)).duplicate();
+        byte[] value = new byte[length];
+
+        chunk.position((int)reference);
+        chunk.get(value);
+
+        return value;
+    }
+
+    public long getAllocatedBytes() {
+        long allocated = 0;
+
+        for (ByteBuffer chunk : this.chunks)
+            allocated += chunk.capacity();
+
+        return allocated;
+    }
+}
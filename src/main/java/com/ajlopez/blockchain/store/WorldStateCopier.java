@@ -6,7 +6,9 @@ import com.ajlopez.blockchain.encoding.AccountEncoder;
 import com.ajlopez.blockchain.state.Trie;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 /**
@@ -36,58 +38,90 @@ public class WorldStateCopier {
     public void process() throws IOException {
         while (!this.hashes.isEmpty()) {
             KeyInformation keyInformation = this.hashes.poll();
+            KeyValueStoreType keyValueStoreType = keyInformation.getKeyValueStoreType();
 
-            if (keyInformation.getKeyValueStoreType() == KeyValueStoreType.ACCOUNTS)
-                processAccountNodeHash(keyInformation.getHash());
-            else if (keyInformation.getKeyValueStoreType() == KeyValueStoreType.STORAGE)
-                processStorageNodeHash(keyInformation.getHash());
-            else if (keyInformation.getKeyValueStoreType() == KeyValueStoreType.CODES)
+            if (keyValueStoreType == KeyValueStoreType.CODES) {
                 processCodeHash(keyInformation.getHash());
+                continue;
+            }
+
+            // sibling nodes are queued together, and they are retrieved in one call
+            List<Hash> nodeHashes = new ArrayList<>();
+            nodeHashes.add(keyInformation.getHash());
+
+            while (nodeHashes.size() < Trie.ARITY && !this.hashes.isEmpty() && this.hashes.peek().getKeyValueStoreType() == keyValueStoreType)
+                nodeHashes.add(this.hashes.poll().getHash());
+
+            if (keyValueStoreType == KeyValueStoreType.ACCOUNTS)
+                processAccountNodeHashes(nodeHashes);
+            else if (keyValueStoreType == KeyValueStoreType.STORAGE)
+                processStorageNodeHashes(nodeHashes);
         }
     }
 
-    private void processAccountNodeHash(Hash hash) throws IOException {
-        Trie trie = processNode(hash, this.sourceAccountTrieStore, this.targetAccountTrieStore, KeyValueStoreType.ACCOUNTS);
+    private void processAccountNodeHashes(List<Hash> nodeHashes) throws IOException {
+        Trie[] tries = processNodes(nodeHashes, this.sourceAccountTrieStore, this.targetAccountTrieStore, KeyValueStoreType.ACCOUNTS);
 
-        byte[] value = trie.getValue();
+        for (Trie trie : tries) {
+            byte[] value = trie.getValue();
 
-        if (value == null)
-            return;
+            if (value == null)
+                continue;
 
-        Account account = AccountEncoder.decode(value);
+            Account account = AccountEncoder.decode(value);
 
-        Hash storageHash = account.getStorageHash();
+            Hash storageHash = account.getStorageHash();
 
-        if (storageHash != null)
-            this.hashes.add(new KeyInformation(KeyValueStoreType.STORAGE, storageHash));
+            if (storageHash != null)
+                this.hashes.add(new KeyInformation(KeyValueStoreType.STORAGE, storageHash));
 
-        Hash codeHash = account.getCodeHash();
+            Hash codeHash = account.getCodeHash();
 
-        if (codeHash != null)
-            this.hashes.add(new KeyInformation(KeyValueStoreType.CODES, codeHash));
+            if (codeHash != null)
+                this.hashes.add(new KeyInformation(KeyValueStoreType.CODES, codeHash));
+        }
     }
 
-    private void processStorageNodeHash(Hash hash) throws IOException {
-        processNode(hash, this.sourceStorageTrieStore, this.targetStorageTrieStore, KeyValueStoreType.STORAGE);
+    private void processStorageNodeHashes(List<Hash> nodeHashes) throws IOException {
+        processNodes(nodeHashes, this.sourceStorageTrieStore, this.targetStorageTrieStore, KeyValueStoreType.STORAGE);
     }
 
-    private Trie processNode(Hash hash, TrieStore sourceStore, TrieStore targetStore, KeyValueStoreType keyValueStoreType) throws IOException {
-        Trie trie;
+    private Trie[] processNodes(List<Hash> nodeHashes, TrieStore sourceStore, TrieStore targetStore, KeyValueStoreType keyValueStoreType) throws IOException {
+        int nhashes = nodeHashes.size();
+        Hash[] hashes = nodeHashes.toArray(new Hash[nhashes]);
+        boolean[] exist = targetStore.existAll(hashes);
 
-        if (targetStore.exists(hash))
-            trie = targetStore.retrieve(hash);
-        else {
-            trie = sourceStore.retrieve(hash);
-            targetStore.save(trie);
-        }
+        Hash[] targetHashes = new Hash[nhashes];
+        Hash[] sourceHashes = new Hash[nhashes];
 
-        Hash[] subhashes = trie.getSubHashes();
+        for (int k = 0; k < nhashes; k++)
+            if (exist[k])
+                targetHashes[k] = hashes[k];
+            else
+                sourceHashes[k] = hashes[k];
 
-        for (int k = 0; k < subhashes.length; k++)
-            if (subhashes[k] != null)
-                this.hashes.add(new KeyInformation(keyValueStoreType, subhashes[k]));
+        Trie[] tries = targetStore.retrieveAll(targetHashes);
+        Trie[] sourceTries = sourceStore.retrieveAll(sourceHashes);
+        List<Trie> toSave = new ArrayList<>();
+
+        for (int k = 0; k < nhashes; k++)
+            if (!exist[k]) {
+                tries[k] = sourceTries[k];
+                toSave.add(sourceTries[k]);
+            }
+
+        if (!toSave.isEmpty())
+            targetStore.save(toSave);
+
+        for (Trie trie : tries) {
+            Hash[] subhashes = trie.getSubHashes();
+
+            for (int k = 0; k < subhashes.length; k++)
+                if (subhashes[k] != null)
+                    this.hashes.add(new KeyInformation(keyValueStoreType, subhashes[k]));
+        }
 
-        return trie;
+        return tries;
     }
 
     private void processCodeHash(Hash hash) throws IOException {
@@ -0,0 +1,22 @@
+package com.ajlopez.blockchain.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WriteBatch {
+    private final List<byte[]> keys = new ArrayList<>();
+    private final List<byte[]> values = new ArrayList<>();
+
+    public void put(byte[] key, byte[] value) {
+        this.keys.add(key);
+        this.values.add(value);
+    }
+
+    public int size() { return this.keys.size(); }
+
+    public boolean isEmpty() { return this.keys.isEmpty(); }
+
+    public byte[] getKey(int n) { return this.keys.get(n); }
+
+    public byte[] getValue(int n) { return this.values.get(n); }
+}
@@ -0,0 +1,223 @@
+package com.ajlopez.blockchain.tools;
+
+import com.ajlopez.blockchain.bc.BlockChain;
+import com.ajlopez.blockchain.bc.GenesisGenerator;
+import com.ajlopez.blockchain.config.ArgumentsProcessor;
+import com.ajlopez.blockchain.core.Account;
+import com.ajlopez.blockchain.core.Block;
+import com.ajlopez.blockchain.core.Transaction;
+import com.ajlopez.blockchain.core.types.*;
+import com.ajlopez.blockchain.db.KeyIndexType;
+import com.ajlopez.blockchain.merkle.MerkleTree;
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.store.*;
+import com.ajlopez.blockchain.vms.eth.TrieStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class KeyValueDbCompressionPerformance {
+    private static final Random random = new Random();
+
+    public static void main(String[] args) throws IOException {
+        ArgumentsProcessor argumentsProcessor = new ArgumentsProcessor();
+
+        argumentsProcessor.defineBoolean("c", "csv", false);
+
+        argumentsProcessor.processArguments(args);
+
+        int noAccounts = argumentsProcessor.getInteger(0);
+        int noBlocks = argumentsProcessor.getInteger(1);
+        int noTransactions = argumentsProcessor.getInteger(2);
+
+        boolean dumpCSV = argumentsProcessor.getBoolean("csv");
+
+        List<Address> addresses = new ArrayList<>();
+
+        for (int k = 0; k < noAccounts; k++)
+            addresses.add(new Address(createRandomBytes(Address.ADDRESS_BYTES)));
+
+        for (boolean compressed : new boolean[] { false, true }) {
+            CollectedData collectedData = new CollectedData();
+
+            collectedData.noAccounts = noAccounts;
+            collectedData.noBlocks = noBlocks;
+            collectedData.noTransactions = noTransactions;
+            collectedData.compressed = compressed;
+
+            String directory = compressed ? "kvdbperf-compressed" : "kvdbperf-raw";
+
+            deleteDirectory(directory);
+
+            random.setSeed(noAccounts * 31L + noBlocks);
+
+            DiskKeyValueStores keyValueStores = new DiskKeyValueStores(directory, KeyIndexType.MEMORY, compressed);
+            Stores stores = new Stores(keyValueStores);
+
+            long millis = System.currentTimeMillis();
+
+            List<Block> blocks = createBlockChain(stores, addresses, noBlocks, noTransactions);
+
+            collectedData.writeTime = System.currentTimeMillis() - millis;
+
+            keyValueStores.close();
+
+            collectedData.accountBytes = getValuesLength(directory, KeyValueStoreType.ACCOUNTS);
+            collectedData.storageBytes = getValuesLength(directory, KeyValueStoreType.STORAGE);
+            collectedData.blockBytes = getValuesLength(directory, KeyValueStoreType.BLOCKS);
+            collectedData.blockInformationBytes = getValuesLength(directory, KeyValueStoreType.BLOCKS_INFORMATION);
+
+            keyValueStores = new DiskKeyValueStores(directory, KeyIndexType.MEMORY, compressed);
+            stores = new Stores(keyValueStores);
+
+            collectedData.accountReadTime = readAccounts(stores, blocks.get(blocks.size() - 1).getStateRootHash(), addresses);
+            collectedData.blockReadTime = readBlocks(stores, blocks);
+
+            keyValueStores.close();
+
+            if (dumpCSV)
+                dumpCollectedDataAsCsv(collectedData);
+            else
+                dumpCollectedData(collectedData);
+        }
+    }
+
+    // the accounts have small balances and nonces, one in ten has storage, the transactions reuse the addresses
+    private static List<Block> createBlockChain(Stores stores, List<Address> addresses, int noBlocks, int noTransactions) throws IOException {
+        AccountStore accountStore = stores.getAccountStoreProvider().retrieve(Trie.EMPTY_TRIE_HASH);
+
+        for (int k = 0; k < addresses.size(); k++) {
+            Hash storageHash = null;
+
+            if (k % 10 == 0) {
+                TrieStorage storage = stores.getTrieStorageProvider().retrieve(Trie.EMPTY_TRIE_HASH);
+
+                for (int j = 0; j < 10; j++)
+                    storage.setValue(DataWord.fromUnsignedInteger(j), DataWord.fromUnsignedLong(random.nextInt(1_000_000)));
+
+                storage.commit();
+                storageHash = storage.getRootHash();
+            }
+
+            accountStore.putAccount(addresses.get(k), new Account(Coin.fromUnsignedLong(random.nextInt(1_000_000_000)), random.nextInt(1000), 0, null, storageHash));
+        }
+
+        accountStore.save();
+
+        BlockChain blockChain = new BlockChain(stores);
+        List<Block> blocks = new ArrayList<>();
+        Block block = GenesisGenerator.generateGenesis(accountStore);
+
+        blockChain.connectBlock(block);
+        blocks.add(block);
+
+        for (int k = 0; k < noBlocks; k++) {
+            List<Transaction> transactions = new ArrayList<>();
+
+            for (int j = 0; j < noTransactions; j++) {
+                Address sender = addresses.get(random.nextInt(addresses.size()));
+                Address receiver = addresses.get(random.nextInt(addresses.size()));
+
+                transactions.add(new Transaction(sender, receiver, Coin.fromUnsignedLong(random.nextInt(10_000)), random.nextInt(1000), null, 21_000, Coin.ONE));
+            }
+
+            block = new Block(block.getNumber() + 1, block.getHash(), null, transactions, MerkleTree.EMPTY_MERKLE_TREE_HASH, accountStore.getRootHash(), System.currentTimeMillis() / 1000, addresses.get(random.nextInt(addresses.size())), Difficulty.ONE, 12_000_000L, 21_000L * noTransactions, null, 0);
+
+            blockChain.connectBlock(block);
+            blocks.add(block);
+        }
+
+        return blocks;
+    }
+
+    private static long readAccounts(Stores stores, Hash stateRootHash, List<Address> addresses) throws IOException {
+        long nanos = System.nanoTime();
+
+        AccountStore accountStore = stores.getAccountStoreProvider().retrieve(stateRootHash);
+
+        for (Address address : addresses)
+            accountStore.getAccount(address);
+
+        return (System.nanoTime() - nanos) / Math.max(1, addresses.size());
+    }
+
+    private static long readBlocks(Stores stores, List<Block> blocks) throws IOException {
+        long nanos = System.nanoTime();
+
+        for (Block block : blocks) {
+            stores.getBlockStore().getBlock(block.getHash());
+            stores.getBlocksInformationStore().get(block.getNumber());
+        }
+
+        return (System.nanoTime() - nanos) / blocks.size();
+    }
+
+    private static long getValuesLength(String directory, KeyValueStoreType keyValueStoreType) {
+        return Paths.get(directory, keyValueStoreType.name().toLowerCase() + ".values").toFile().length();
+    }
+
+    private static void deleteDirectory(String directory) {
+        File[] files = new File(directory).listFiles();
+
+        if (files != null)
+            for (File file : files)
+                file.delete();
+    }
+
+    private static void dumpCollectedData(CollectedData collectedData) {
+        System.out.println("Compressed: " + collectedData.compressed);
+        System.out.println("No accounts: " + collectedData.noAccounts);
+        System.out.println("No blocks: " + collectedData.noBlocks);
+        System.out.println("No transactions per block: " + collectedData.noTransactions);
+
+        System.out.println("Account bytes: " + collectedData.accountBytes);
+        System.out.println("Storage bytes: " + collectedData.storageBytes);
+        System.out.println("Block bytes: " + collectedData.blockBytes);
+        System.out.println("Block information bytes: " + collectedData.blockInformationBytes);
+
+        System.out.println("Write time (ms): " + collectedData.writeTime);
+        System.out.println("Account read time (ns): " + collectedData.accountReadTime);
+        System.out.println("Block read time (ns): " + collectedData.blockReadTime);
+    }
+
+    private static void dumpCollectedDataAsCsv(CollectedData collectedData) {
+        System.out.println("" + collectedData.compressed + "," +
+                collectedData.noAccounts + "," +
+                collectedData.noBlocks + "," +
+                collectedData.noTransactions + "," +
+                collectedData.accountBytes + "," +
+                collectedData.storageBytes + "," +
+                collectedData.blockBytes + "," +
+                collectedData.blockInformationBytes + "," +
+                collectedData.writeTime + "," +
+                collectedData.accountReadTime + "," +
+                collectedData.blockReadTime);
+    }
+
+    private static byte[] createRandomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    private static class CollectedData {
+        public int noAccounts;
+        public int noBlocks;
+        public int noTransactions;
+        public boolean compressed;
+
+        public long accountBytes;
+        public long storageBytes;
+        public long blockBytes;
+        public long blockInformationBytes;
+
+        public long writeTime;
+        public long accountReadTime;
+        public long blockReadTime;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ajlopez.blockchain.tools;
+
+import com.ajlopez.blockchain.config.ArgumentsProcessor;
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.state.Trie;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class TrieHashPerformance {
+    private static final Random random = new Random();
+
+    public static void main(String[] args) throws IOException {
+        ArgumentsProcessor argumentsProcessor = new ArgumentsProcessor();
+
+        argumentsProcessor.defineBoolean("c", "csv", false);
+        argumentsProcessor.defineInteger("r", "runs", 5);
+
+        argumentsProcessor.processArguments(args);
+
+        int noValues = argumentsProcessor.getInteger(0);
+        int keySize = argumentsProcessor.getInteger(1);
+        int valueSize = argumentsProcessor.getInteger(2);
+        int noRuns = argumentsProcessor.getInteger("runs");
+
+        boolean dumpCSV = argumentsProcessor.getBoolean("csv");
+
+        CollectedData collectedData = new CollectedData();
+
+        collectedData.noValues = noValues;
+        collectedData.keySize = keySize;
+        collectedData.valueSize = valueSize;
+        collectedData.noThreads = Runtime.getRuntime().availableProcessors();
+
+        long seed = random.nextLong();
+
+        // the first runs warm up the compiler, only the last run is measured
+        for (int k = 0; k < noRuns; k++) {
+            Trie trie = createTrie(seed, noValues, keySize, valueSize);
+
+            long nanos = System.nanoTime();
+            Hash hash = trie.getHash();
+            collectedData.sequentialHashTime = (System.nanoTime() - nanos) / 1_000_000;
+
+            Trie trie2 = createTrie(seed, noValues, keySize, valueSize);
+
+            long nanos2 = System.nanoTime();
+            Hash hash2 = trie2.getParallelHash();
+            collectedData.parallelHashTime = (System.nanoTime() - nanos2) / 1_000_000;
+
+            if (!hash.equals(hash2))
+                throw new IllegalStateException("different hashes");
+        }
+
+        if (dumpCSV)
+            dumpCollectedDataAsCsv(collectedData);
+        else
+            dumpCollectedData(collectedData);
+    }
+
+    private static Trie createTrie(long seed, int noValues, int keySize, int valueSize) throws IOException {
+        random.setSeed(seed);
+
+        Trie trie = new Trie();
+
+        for (int k = 0; k < noValues; k++)
+            trie = trie.put(createRandomBytes(keySize), createRandomBytes(valueSize));
+
+        return trie;
+    }
+
+    private static void dumpCollectedData(CollectedData collectedData) {
+        System.out.println("No values: " + collectedData.noValues);
+        System.out.println("Key size: " + collectedData.keySize);
+        System.out.println("Value size: " + collectedData.valueSize);
+        System.out.println("No threads: " + collectedData.noThreads);
+
+        System.out.println("Sequential hash time (ms): " + collectedData.sequentialHashTime);
+        System.out.println("Parallel hash time (ms): " + collectedData.parallelHashTime);
+    }
+
+    private static void dumpCollectedDataAsCsv(CollectedData collectedData) {
+        System.out.println("" + collectedData.noValues + "," +
+                collectedData.keySize + "," +
+                collectedData.valueSize + "," +
+                collectedData.noThreads + "," +
+                collectedData.sequentialHashTime + "," +
+                collectedData.parallelHashTime);
+    }
+
+    private static byte[] createRandomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    private static class CollectedData {
+        public int noValues;
+        public int keySize;
+        public int valueSize;
+        public int noThreads;
+
+        public long sequentialHashTime;
+        public long parallelHashTime;
+    }
+}
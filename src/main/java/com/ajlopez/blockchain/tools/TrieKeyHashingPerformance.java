@@ -0,0 +1,152 @@
+package com.ajlopez.blockchain.tools;
+
+import com.ajlopez.blockchain.config.ArgumentsProcessor;
+import com.ajlopez.blockchain.core.types.Address;
+import com.ajlopez.blockchain.core.types.DataWord;
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
+import com.ajlopez.blockchain.state.TrieNodeCounterVisitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TrieKeyHashingPerformance {
+    private static final Random random = new Random();
+    private static final byte[] VALUE = DataWord.fromUnsignedInteger(1).toNormalizedBytes();
+
+    public static void main(String[] args) throws IOException {
+        ArgumentsProcessor argumentsProcessor = new ArgumentsProcessor();
+
+        argumentsProcessor.defineBoolean("c", "csv", false);
+        argumentsProcessor.defineInteger("r", "runs", 5);
+
+        argumentsProcessor.processArguments(args);
+
+        int noValues = argumentsProcessor.getInteger(0);
+        int noRuns = argumentsProcessor.getInteger("runs");
+
+        boolean dumpCSV = argumentsProcessor.getBoolean("csv");
+
+        TrieKeyHasher keyHasher = new TrieKeyHasher();
+
+        // sequential storage slots, as in contracts with fixed variables and arrays, and random account addresses
+        for (String pattern : new String[] { "slots", "addresses" }) {
+            List<byte[]> keys = createKeys(pattern, noValues);
+
+            for (boolean hashed : new boolean[] { false, true }) {
+                List<byte[]> trieKeys = new ArrayList<>();
+
+                for (byte[] key : keys)
+                    trieKeys.add(hashed ? keyHasher.hashKey(key) : key);
+
+                CollectedData collectedData = new CollectedData();
+
+                collectedData.pattern = pattern;
+                collectedData.hashed = hashed;
+                collectedData.noValues = noValues;
+
+                Trie trie = new Trie();
+
+                for (byte[] trieKey : trieKeys)
+                    trie = trie.put(trieKey, VALUE);
+
+                trie.getHash();
+
+                TrieNodeCounterVisitor visitor = new TrieNodeCounterVisitor();
+                visitor.process(trie);
+
+                collectedData.trieSize = visitor.getNodeCounter();
+
+                long totalDepth = 0;
+
+                for (byte[] trieKey : trieKeys) {
+                    int depth = trie.getPath(trieKey).size();
+
+                    totalDepth += depth;
+                    collectedData.maxDepth = Math.max(collectedData.maxDepth, depth);
+                }
+
+                collectedData.averageDepth = (double) totalDepth / Math.max(1, noValues);
+
+                // the first runs warm up the compiler, only the last run is measured, the key hashing is measured apart
+                for (int k = 0; k < noRuns; k++) {
+                    long nanos = System.nanoTime();
+
+                    if (hashed)
+                        for (byte[] key : keys)
+                            keyHasher.hashKey(key);
+
+                    collectedData.hashTime = (System.nanoTime() - nanos) / Math.max(1, noValues);
+
+                    nanos = System.nanoTime();
+
+                    for (byte[] trieKey : trieKeys)
+                        trie.get(trieKey);
+
+                    collectedData.lookupTime = (System.nanoTime() - nanos) / Math.max(1, noValues);
+                }
+
+                if (dumpCSV)
+                    dumpCollectedDataAsCsv(collectedData);
+                else
+                    dumpCollectedData(collectedData);
+            }
+        }
+    }
+
+    private static List<byte[]> createKeys(String pattern, int noValues) {
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < noValues; k++)
+            if ("slots".equals(pattern))
+                keys.add(DataWord.fromUnsignedInteger(k).getBytes());
+            else
+                keys.add(createRandomBytes(Address.ADDRESS_BYTES));
+
+        return keys;
+    }
+
+    private static void dumpCollectedData(CollectedData collectedData) {
+        System.out.println("Pattern: " + collectedData.pattern);
+        System.out.println("Hashed keys: " + collectedData.hashed);
+        System.out.println("No values: " + collectedData.noValues);
+
+        System.out.println("Trie size (nodes): " + collectedData.trieSize);
+        System.out.println("Max depth (nodes): " + collectedData.maxDepth);
+        System.out.println("Average depth (nodes): " + collectedData.averageDepth);
+        System.out.println("Key hashing time (ns): " + collectedData.hashTime);
+        System.out.println("Lookup time (ns): " + collectedData.lookupTime);
+    }
+
+    private static void dumpCollectedDataAsCsv(CollectedData collectedData) {
+        System.out.println("" + collectedData.pattern + "," +
+                collectedData.hashed + "," +
+                collectedData.noValues + "," +
+                collectedData.trieSize + "," +
+                collectedData.maxDepth + "," +
+                collectedData.averageDepth + "," +
+                collectedData.hashTime + "," +
+                collectedData.lookupTime);
+    }
+
+    private static byte[] createRandomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    private static class CollectedData {
+        public String pattern;
+        public boolean hashed;
+        public int noValues;
+
+        public int trieSize;
+        public int maxDepth;
+        public double averageDepth;
+        public long hashTime;
+        public long lookupTime;
+    }
+}
@@ -1,8 +1,11 @@
 package com.ajlopez.blockchain.tools;
 
 import com.ajlopez.blockchain.config.ArgumentsProcessor;
+import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.state.Trie;
 import com.ajlopez.blockchain.state.TrieNodeCounterVisitor;
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.TrieStore;
 
 import java.io.IOException;
 import java.util.Random;
@@ -32,9 +35,10 @@ public class TrieMemoryPerformance {
         collectedData.keySize = keySize;
         collectedData.valueSize = valueSize;
 
-        Trie trie = new Trie();
+        TrieStore trieStore = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(trieStore);
 
-        collectedData.megaBytesBefore = (double) (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+        collectedData.megaBytesBefore = getUsedMegaBytes();
 
         long millis = System.currentTimeMillis();
 
@@ -52,17 +56,33 @@ public class TrieMemoryPerformance {
 
         collectedData.trieSize = visitor.getNodeCounter();
 
-        collectedData.megaBytesAfter = (double) (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+        collectedData.megaBytesAfter = getUsedMegaBytes();
+
+        long millis2 = System.currentTimeMillis();
+
+        Hash hash = trie.getHash();
+
+        collectedData.hashTime = System.currentTimeMillis() - millis2;
 
         System.gc();
 
-        collectedData.megaBytesAfterGC = (double) (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+        collectedData.megaBytesAfterGC = getUsedMegaBytes();
+        collectedData.bytesPerEntry = getBytesPerEntry(collectedData.megaBytesBefore, collectedData.megaBytesAfterGC, noValues);
 
-        long millis2 = System.currentTimeMillis();
+        // the nodes retrieved from the store are measured apart from the stored encodings
+        trie.save();
+        trie = null;
 
-        trie.getHash();
+        System.gc();
 
-        collectedData.hashTime = System.currentTimeMillis() - millis2;
+        double megaBytesStored = getUsedMegaBytes();
+
+        Trie retrieved = trieStore.retrieve(hash);
+        new TrieNodeCounterVisitor().process(retrieved);
+
+        System.gc();
+
+        collectedData.retrievedBytesPerEntry = getBytesPerEntry(megaBytesStored, getUsedMegaBytes(), noValues);
 
         if (dumpCSV)
             dumpCollectedDataAsCsv(collectedData);
@@ -78,6 +98,8 @@ public class TrieMemoryPerformance {
         System.out.println("MB before: " + collectedData.megaBytesBefore);
         System.out.println("MB after: " + collectedData.megaBytesAfter);
         System.out.println("MB after GC: " + collectedData.megaBytesAfterGC);
+        System.out.println("Bytes per entry: " + collectedData.bytesPerEntry);
+        System.out.println("Bytes per retrieved entry: " + collectedData.retrievedBytesPerEntry);
 
         System.out.println("Creation time (ms): " + collectedData.creationTime);
         System.out.println("Hash time (ms): " + collectedData.hashTime);
@@ -92,11 +114,21 @@ public class TrieMemoryPerformance {
                 collectedData.megaBytesBefore + "," +
                 collectedData.megaBytesAfter + "," +
                 collectedData.megaBytesAfterGC + "," +
+                collectedData.bytesPerEntry + "," +
+                collectedData.retrievedBytesPerEntry + "," +
                 collectedData.creationTime + "," +
                 collectedData.hashTime + "," +
                 collectedData.trieSize);
     }
 
+    private static double getUsedMegaBytes() {
+        return (double) (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+    }
+
+    private static long getBytesPerEntry(double megaBytesBefore, double megaBytesAfter, int noValues) {
+        return (long) ((megaBytesAfter - megaBytesBefore) * 1024 * 1024) / Math.max(1, noValues);
+    }
+
     private static byte[] createRandomBytes(int length) {
         byte[] bytes = new byte[length];
         random.nextBytes(bytes);
@@ -112,6 +144,8 @@ public class TrieMemoryPerformance {
         public double megaBytesBefore;
         public double megaBytesAfter;
         public double megaBytesAfterGC;
+        public long bytesPerEntry;
+        public long retrievedBytesPerEntry;
 
         public long creationTime;
         public long hashTime;
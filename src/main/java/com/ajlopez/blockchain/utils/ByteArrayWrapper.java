@@ -5,7 +5,7 @@ import java.util.Arrays;
 /**
  * Created by ajlopez on 21/11/2017.
  */
-public class ByteArrayWrapper {
+public class ByteArrayWrapper implements Comparable<ByteArrayWrapper> {
     private final byte[] bytes;
     private final int hashCode;
 
@@ -30,4 +30,9 @@ public class ByteArrayWrapper {
 
         return Arrays.equals(this.bytes, ((ByteArrayWrapper)obj).bytes);
     }
+
+    @Override
+    public int compareTo(ByteArrayWrapper wrapper) {
+        return ByteUtils.compare(this.bytes, wrapper.bytes);
+    }
 }
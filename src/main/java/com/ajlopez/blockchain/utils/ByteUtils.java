@@ -29,6 +29,26 @@ public class ByteUtils {
         return bytes;
     }
 
+    public static int compare(byte[] bytes, byte[] bytes2) {
+        int length = Math.min(bytes.length, bytes2.length);
+
+        for (int k = 0; k < length; k++) {
+            int result = (bytes[k] & 0xff) - (bytes2[k] & 0xff);
+
+            if (result != 0)
+                return result;
+        }
+
+        return bytes.length - bytes2.length;
+    }
+
+    public static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (prefix.length > bytes.length)
+            return false;
+
+        return equals(bytes, 0, prefix, 0, prefix.length);
+    }
+
     public static boolean isNullOrEmpty(byte[] bytes) {
         return bytes == null || bytes.length == 0;
     }
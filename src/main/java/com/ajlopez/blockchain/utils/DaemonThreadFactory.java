@@ -0,0 +1,19 @@
+package com.ajlopez.blockchain.utils;
+
+import java.util.concurrent.ThreadFactory;
+
+public class DaemonThreadFactory implements ThreadFactory {
+    private final String name;
+
+    public DaemonThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, this.name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+}
@@ -22,14 +22,23 @@ public class HashUtils {
         Security.addProvider(SpongyCastleProvider.getInstance());
     }
 
+    // the provider lookup is done once per thread, the digest is reset after each use
+    private static final ThreadLocal<MessageDigest> keccak256Digest = ThreadLocal.withInitial(HashUtils::createKeccak256Digest);
+
     private HashUtils() { }
 
     public static byte[] keccak256(byte[] input) {
+        MessageDigest digest = keccak256Digest.get();
+
+        if (digest == null)
+            return null;
+
+        return digest.digest(input);
+    }
+
+    private static MessageDigest createKeccak256Digest() {
         try {
-            MessageDigest digest;
-            digest = MessageDigest.getInstance("KECCAK-256", BouncyCastleProvider.PROVIDER_NAME);
-            digest.update(input);
-            return digest.digest();
+            return MessageDigest.getInstance("KECCAK-256", BouncyCastleProvider.PROVIDER_NAME);
         } catch (NoSuchProviderException | NoSuchAlgorithmException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,55 @@
+package com.ajlopez.blockchain.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class LruCache<K, V> {
+    private final Map<K, V> entries;
+
+    private long hits;
+    private long misses;
+
+    public LruCache(int maxSize) {
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        V value = this.entries.get(key);
+
+        if (value == null)
+            this.misses++;
+        else
+            this.hits++;
+
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        this.entries.put(key, value);
+    }
+
+    public synchronized boolean containsKey(K key) {
+        return this.entries.containsKey(key);
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+}
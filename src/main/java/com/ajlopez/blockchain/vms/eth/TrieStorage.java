@@ -3,7 +3,9 @@ package com.ajlopez.blockchain.vms.eth;
 import com.ajlopez.blockchain.core.types.DataWord;
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.execution.AccountState;
+import com.ajlopez.blockchain.state.MutableTrie;
 import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 
 import java.io.IOException;
 
@@ -11,34 +13,37 @@ import java.io.IOException;
  * Created by Angel on 17/02/2019.
  */
 public class TrieStorage implements Storage {
-    private Trie trie;
+    private final MutableTrie trie;
+    private final TrieKeyHasher keyHasher;
 
     public TrieStorage(Trie trie) {
-        this.trie = trie;
+        this(trie, null);
+    }
+
+    // without key hasher, the storage addresses are the trie keys
+    public TrieStorage(Trie trie, TrieKeyHasher keyHasher) {
+        this.trie = new MutableTrie(trie);
+        this.keyHasher = keyHasher;
     }
 
     @Override
     public boolean hasValue(DataWord address) throws IOException {
-        byte[] data = this.trie.get(address.getBytes());
+        byte[] data = this.trie.get(this.getKey(address));
 
         return data == null;
     }
 
     @Override
     public void setValue(DataWord address, DataWord value) throws IOException {
-        byte[] bkey = address.getBytes();
-
         if (value.equals(DataWord.ZERO))
-            this.trie = this.trie.delete(bkey);
-        else {
-            byte[] bvalue = value.toNormalizedBytes();
-            this.trie = this.trie.put(bkey, bvalue);
-        }
+            this.trie.delete(this.getKey(address));
+        else
+            this.trie.put(this.keyHasher == null ? address.getBytes() : this.keyHasher.putKey(address.getBytes()), value.toNormalizedBytes());
     }
 
     @Override
     public DataWord getValue(DataWord address) throws IOException {
-        byte[] data = this.trie.get(address.getBytes());
+        byte[] data = this.trie.get(this.getKey(address));
 
         if (data == null)
             return DataWord.ZERO;
@@ -46,7 +51,7 @@ public class TrieStorage implements Storage {
         return new DataWord(data);
     }
 
-    public Hash getRootHash() {
+    public Hash getRootHash() throws IOException {
         return this.trie.getHash();
     }
 
@@ -54,4 +59,11 @@ public class TrieStorage implements Storage {
     public void commit() throws IOException {
         this.trie.save();
     }
+
+    private byte[] getKey(DataWord address) {
+        if (this.keyHasher == null)
+            return address.getBytes();
+
+        return this.keyHasher.hashKey(address.getBytes());
+    }
 }
@@ -2,6 +2,7 @@ package com.ajlopez.blockchain.vms.eth;
 
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.execution.AccountState;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 import com.ajlopez.blockchain.store.TrieStore;
 
 import java.io.IOException;
@@ -11,9 +12,15 @@ import java.io.IOException;
  */
 public class TrieStorageProvider {
     private final TrieStore storageTrieStore;
+    private final TrieKeyHasher keyHasher;
 
     public TrieStorageProvider(TrieStore storageTrieStore) {
+        this(storageTrieStore, null);
+    }
+
+    public TrieStorageProvider(TrieStore storageTrieStore, TrieKeyHasher keyHasher) {
         this.storageTrieStore = storageTrieStore;
+        this.keyHasher = keyHasher;
     }
 
     public TrieStorage retrieve(AccountState accountState) throws IOException {
@@ -21,6 +28,6 @@ public class TrieStorageProvider {
     }
 
     public TrieStorage retrieve(Hash hash) throws IOException {
-        return new TrieStorage(this.storageTrieStore.retrieve(hash));
+        return new TrieStorage(this.storageTrieStore.retrieve(hash), this.keyHasher);
     }
 }
@@ -286,4 +286,72 @@ public class BlockChainTest {
 
         Assert.assertEquals(Difficulty.fromUnsignedLong(5), blockChain.getBestBlockInformation().getTotalDifficulty());
     }
+
+    @Test
+    public void getBlocksByNumberIncludingForks() throws IOException {
+        BlockChain blockChain = FactoryHelper.createBlockChainWithGenesis();
+        Block genesis = blockChain.getBlockByNumber(0);
+
+        Block block1 = FactoryHelper.createBlock(genesis, FactoryHelper.createRandomAddress(), 0);
+        Block block2 = FactoryHelper.createBlock(genesis, FactoryHelper.createRandomAddress(), 0);
+
+        blockChain.connectBlock(block1);
+        blockChain.connectBlock(block2);
+
+        List<Block> result = blockChain.getBlocksByNumber(1);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(block1.getHash(), result.get(0).getHash());
+        Assert.assertEquals(block2.getHash(), result.get(1).getHash());
+
+        Assert.assertTrue(blockChain.getBlocksByNumber(2).isEmpty());
+    }
+
+    @Test
+    public void getBlocksByNumbersIncludingForks() throws IOException {
+        BlockChain blockChain = FactoryHelper.createBlockChainWithGenesis();
+        Block genesis = blockChain.getBlockByNumber(0);
+
+        Block block1 = FactoryHelper.createBlock(genesis, FactoryHelper.createRandomAddress(), 0);
+        Block block2 = FactoryHelper.createBlock(genesis, FactoryHelper.createRandomAddress(), 0);
+        Block block3 = FactoryHelper.createBlock(block1, FactoryHelper.createRandomAddress(), 0);
+
+        blockChain.connectBlock(block1);
+        blockChain.connectBlock(block2);
+        blockChain.connectBlock(block3);
+
+        List<Block> result = blockChain.getBlocksByNumbers(1, 3);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(block1.getHash(), result.get(0).getHash());
+        Assert.assertEquals(block2.getHash(), result.get(1).getHash());
+        Assert.assertEquals(block3.getHash(), result.get(2).getHash());
+
+        Assert.assertEquals(1, blockChain.getBlocksByNumbers(0, 1).size());
+        Assert.assertTrue(blockChain.getBlocksByNumbers(3, 10).isEmpty());
+    }
+
+    @Test
+    public void notifyConnectedBlocks() throws IOException {
+        BlockChain blockChain = FactoryHelper.createBlockChainWithGenesis();
+        Block genesis = blockChain.getBlockByNumber(0);
+        List<Block> connected = new ArrayList<>();
+
+        blockChain.onConnectedBlock(connected::add);
+
+        Block block1 = FactoryHelper.createBlock(genesis, FactoryHelper.createRandomAddress(), 0);
+        Block block2 = FactoryHelper.createBlock(block1, FactoryHelper.createRandomAddress(), 0);
+        Block orphan = FactoryHelper.createBlock(block2, FactoryHelper.createRandomAddress(), 0);
+
+        Assert.assertTrue(blockChain.connectBlock(block1));
+        Assert.assertTrue(blockChain.connectBlock(block1));
+        Assert.assertFalse(blockChain.connectBlock(orphan));
+        Assert.assertTrue(blockChain.connectBlock(block2));
+
+        Assert.assertEquals(2, connected.size());
+        Assert.assertSame(block1, connected.get(0));
+        Assert.assertSame(block2, connected.get(1));
+    }
 }
@@ -34,4 +34,35 @@ public class BlockStoreTest {
         Assert.assertNotNull(result);
         Assert.assertArrayEquals(BlockEncoder.encode(block), BlockEncoder.encode(result));
     }
+
+    @Test
+    public void retrieveCachedBlock() throws IOException {
+        Block block = new Block(1, FactoryHelper.createRandomBlockHash(), null, Trie.EMPTY_TRIE_HASH, System.currentTimeMillis() / 1000, FactoryHelper.createRandomAddress(), Difficulty.ONE, 0, 0, null, 0);
+        HashMapStore keyValueStore = new HashMapStore();
+
+        new BlockStore(keyValueStore).saveBlock(block);
+
+        BlockStore blockStore = new BlockStore(keyValueStore, 10);
+
+        Block result1 = blockStore.getBlock(block.getHash());
+        Block result2 = blockStore.getBlock(block.getHash());
+
+        Assert.assertNotNull(result1);
+        Assert.assertSame(result1, result2);
+        Assert.assertTrue(blockStore.containsBlock(block.getHash()));
+        Assert.assertEquals(1, blockStore.getCacheHits());
+        Assert.assertEquals(1, blockStore.getCacheMisses());
+    }
+
+    @Test
+    public void saveAndRetrieveCachedBlock() throws IOException {
+        Block block = new Block(1, FactoryHelper.createRandomBlockHash(), null, Trie.EMPTY_TRIE_HASH, System.currentTimeMillis() / 1000, FactoryHelper.createRandomAddress(), Difficulty.ONE, 0, 0, null, 0);
+        BlockStore blockStore = new BlockStore(new HashMapStore(), 10);
+
+        blockStore.saveBlock(block);
+
+        Assert.assertSame(block, blockStore.getBlock(block.getHash()));
+        Assert.assertEquals(1, blockStore.getCacheHits());
+        Assert.assertEquals(0, blockStore.getCacheMisses());
+    }
 }
@@ -81,7 +81,7 @@ public class BlockValidatorTest {
     }
 
     @Test
-    public void validBlockWithUncle() {
+    public void validBlockWithUncle() throws IOException {
         List<BlockHeader> uncles = new ArrayList<>();
 
         Block genesis = GenesisGenerator.generateGenesis();
@@ -98,7 +98,7 @@ public class BlockValidatorTest {
     }
 
     @Test
-    public void invalidBlockWithUncleSameNumber() {
+    public void invalidBlockWithUncleSameNumber() throws IOException {
         List<BlockHeader> uncles = new ArrayList<>();
 
         Block genesis = GenesisGenerator.generateGenesis();
@@ -115,7 +115,7 @@ public class BlockValidatorTest {
     }
 
     @Test
-    public void invalidBlockWithRepeatedUncles() {
+    public void invalidBlockWithRepeatedUncles() throws IOException {
         List<BlockHeader> uncles = new ArrayList<>();
 
         Block genesis = GenesisGenerator.generateGenesis();
@@ -133,7 +133,7 @@ public class BlockValidatorTest {
     }
 
     @Test
-    public void invalidBlockWithTooManyUncles() {
+    public void invalidBlockWithTooManyUncles() throws IOException {
         List<BlockHeader> uncles = new ArrayList<>();
 
         Block genesis = GenesisGenerator.generateGenesis();
@@ -154,7 +154,7 @@ public class BlockValidatorTest {
     }
 
     @Test
-    public void invalidBlockWithInvalidUnclesRoot() {
+    public void invalidBlockWithInvalidUnclesRoot() throws IOException {
         List<BlockHeader> uncles = new ArrayList<>();
 
         Block genesis = GenesisGenerator.generateGenesis();
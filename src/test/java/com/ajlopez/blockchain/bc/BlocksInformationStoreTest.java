@@ -3,11 +3,15 @@ package com.ajlopez.blockchain.bc;
 import com.ajlopez.blockchain.core.types.BlockHash;
 import com.ajlopez.blockchain.core.types.Difficulty;
 import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.MemoryKeyValueStores;
+import com.ajlopez.blockchain.store.PaddedKeyValueStore;
+import com.ajlopez.blockchain.store.SortedMapStore;
 import com.ajlopez.blockchain.test.utils.FactoryHelper;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Iterator;
 
 /**
  * Created by ajlopez on 21/03/2020.
@@ -64,4 +68,51 @@ public class BlocksInformationStoreTest {
         Assert.assertEquals(blocksInformation.getBlockInformationList().get(1).getBlockHash(), result.getBlockInformationList().get(1).getBlockHash());
         Assert.assertEquals(blocksInformation.getBlockInformationList().get(1).getTotalDifficulty(), result.getBlockInformationList().get(1).getTotalDifficulty());
     }
+
+    @Test
+    public void scanHeights() throws IOException {
+        scanHeights(new BlocksInformationStore(new PaddedKeyValueStore(new SortedMapStore(), Long.BYTES)));
+    }
+
+    @Test
+    public void scanHeightsInHashStore() throws IOException {
+        scanHeights(new BlocksInformationStore(new PaddedKeyValueStore(new HashMapStore(), Long.BYTES)));
+    }
+
+    @Test
+    public void scanHeightsInMemoryKeyValueStores() throws IOException {
+        scanHeights(new BlocksInformationStore(new MemoryKeyValueStores().getBlockInformationKeyValueStore()));
+    }
+
+    private static void scanHeights(BlocksInformationStore blocksInformationStore) throws IOException {
+        BlockHash[] blockHashes = new BlockHash[300];
+
+        for (int k = 0; k < blockHashes.length; k++) {
+            blockHashes[k] = FactoryHelper.createRandomBlockHash();
+
+            BlocksInformation blocksInformation = new BlocksInformation();
+            blocksInformation.addBlockInformation(blockHashes[k], Difficulty.fromUnsignedLong(k));
+            blocksInformation.setBlockOnChain(blockHashes[k]);
+
+            blocksInformationStore.put(k, blocksInformation);
+        }
+
+        blocksInformationStore.putBestHeight(blockHashes.length - 1);
+
+        Iterator<BlocksInformation> iterator = blocksInformationStore.scan(250, 260);
+
+        for (int k = 250; k < 260; k++) {
+            Assert.assertTrue(iterator.hasNext());
+            Assert.assertEquals(blockHashes[k], iterator.next().getBlockOnChain().getBlockHash());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+
+        iterator = blocksInformationStore.scan(0, 1000);
+
+        for (int k = 0; k < blockHashes.length; k++)
+            Assert.assertEquals(blockHashes[k], iterator.next().getBlockOnChain().getBlockHash());
+
+        Assert.assertFalse(iterator.hasNext());
+    }
 }
@@ -17,7 +17,7 @@ import java.io.IOException;
  */
 public class GenesisGeneratorTest {
     @Test
-    public void generateGenesisWithNoInitialAccounts() {
+    public void generateGenesisWithNoInitialAccounts() throws IOException {
         Block genesis = GenesisGenerator.generateGenesis();
 
         Assert.assertNotNull(genesis);
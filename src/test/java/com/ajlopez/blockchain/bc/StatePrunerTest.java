@@ -0,0 +1,305 @@
+package com.ajlopez.blockchain.bc;
+
+import com.ajlopez.blockchain.core.Account;
+import com.ajlopez.blockchain.core.Block;
+import com.ajlopez.blockchain.core.types.Address;
+import com.ajlopez.blockchain.core.types.Coin;
+import com.ajlopez.blockchain.core.types.DataWord;
+import com.ajlopez.blockchain.core.types.Difficulty;
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.merkle.MerkleTree;
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.store.*;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.vms.eth.TrieStorage;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class StatePrunerTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void getRetainedRoots() throws IOException {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        Stores stores = new Stores(keyValueStores);
+        BlockChain blockChain = new BlockChain(stores);
+
+        List<Block> blocks = connectBlocks(stores, blockChain, FactoryHelper.createRandomAddress(), 10);
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 3, 4);
+
+        List<Hash> result = statePruner.getRetainedRoots();
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(5, result.size());
+        Assert.assertTrue(result.contains(blocks.get(0).getStateRootHash()));
+        Assert.assertTrue(result.contains(blocks.get(4).getStateRootHash()));
+        Assert.assertTrue(result.contains(blocks.get(8).getStateRootHash()));
+        Assert.assertTrue(result.contains(blocks.get(9).getStateRootHash()));
+        Assert.assertTrue(result.contains(blocks.get(10).getStateRootHash()));
+    }
+
+    @Test
+    public void getRetainedRootsIncludingForks() throws IOException {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        Stores stores = new Stores(keyValueStores);
+        BlockChain blockChain = new BlockChain(stores);
+
+        List<Block> blocks = connectBlocks(stores, blockChain, FactoryHelper.createRandomAddress(), 5);
+
+        AccountStore accountStore = stores.getAccountStoreProvider().retrieve(blocks.get(4).getStateRootHash());
+        accountStore.putAccount(FactoryHelper.createRandomAddress(), new Account(Coin.TEN, 0, 0, null, null));
+        accountStore.save();
+
+        Block fork = createBlock(blocks.get(4), accountStore.getRootHash());
+
+        blockChain.connectBlock(fork);
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 2, 0);
+
+        List<Hash> result = statePruner.getRetainedRoots();
+
+        Assert.assertEquals(3, result.size());
+        Assert.assertTrue(result.contains(blocks.get(4).getStateRootHash()));
+        Assert.assertTrue(result.contains(blocks.get(5).getStateRootHash()));
+        Assert.assertTrue(result.contains(fork.getStateRootHash()));
+    }
+
+    @Test
+    public void noRetainedRootsWithoutBlocks() throws IOException {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        BlockChain blockChain = new BlockChain(new Stores(keyValueStores));
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 3, 0);
+
+        Assert.assertTrue(statePruner.getRetainedRoots().isEmpty());
+    }
+
+    @Test
+    public void pruneMemoryStates() throws IOException {
+        pruneStates(new MemoryKeyValueStores());
+    }
+
+    @Test
+    public void pruneOffHeapMemoryStates() throws IOException {
+        pruneStates(new MemoryKeyValueStores(true));
+    }
+
+    @Test
+    public void pruneDiskStates() throws IOException {
+        deleteDirectory("sptest1");
+
+        DiskKeyValueStores keyValueStores = new DiskKeyValueStores("sptest1");
+
+        pruneStates(keyValueStores);
+
+        keyValueStores.close();
+    }
+
+    @Test
+    public void pruneWhileConnectingBlocks() throws Exception {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        Stores stores = new Stores(keyValueStores);
+        BlockChain blockChain = new BlockChain(stores);
+        Address address = FactoryHelper.createRandomAddress();
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 2, 0, 5);
+        BlockingQueue<CompactionResult> results = new LinkedBlockingQueue<>();
+
+        statePruner.onPruned((accountsResult, storageResult) -> results.add(accountsResult));
+        blockChain.onConnectedBlock(statePruner::processBlock);
+
+        List<Block> blocks = new ArrayList<>();
+
+        connectBlocks(stores, blockChain, address, blocks, 6);
+
+        CompactionResult result = results.poll(10, TimeUnit.SECONDS);
+
+        // the states written since the pruner was created are kept by the first pruning
+        Assert.assertNotNull(result);
+        Assert.assertEquals(0, result.getReclaimedBytes());
+
+        connectBlocks(stores, blockChain, address, blocks, 5);
+
+        result = results.poll(10, TimeUnit.SECONDS);
+
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.getReclaimedBytes() > 0);
+
+        for (int k = 8; k < blocks.size(); k++)
+            assertState(stores, blocks.get(k), address, k);
+
+        statePruner.stop();
+    }
+
+    @Test
+    public void keepStatesOfBlocksNotConnectedYet() throws IOException {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        Stores stores = new Stores(keyValueStores);
+        BlockChain blockChain = new BlockChain(stores);
+        Address address = FactoryHelper.createRandomAddress();
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 2, 0);
+
+        List<Block> blocks = connectBlocks(stores, blockChain, address, 5);
+
+        AccountStore accountStore = stores.getAccountStoreProvider().retrieve(blocks.get(5).getStateRootHash());
+        accountStore.putAccount(FactoryHelper.createRandomAddress(), new Account(Coin.TEN, 0, 0, null, null));
+        accountStore.save();
+
+        statePruner.prune();
+
+        Assert.assertTrue(stores.getAccountTrieStore().exists(accountStore.getRootHash()));
+    }
+
+    @Test
+    public void pruneStatesWrittenBeforeLastPruning() throws IOException {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        Stores stores = new Stores(keyValueStores);
+        BlockChain blockChain = new BlockChain(stores);
+        Address address = FactoryHelper.createRandomAddress();
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 2, 0);
+
+        List<Block> blocks = connectBlocks(stores, blockChain, address, 5);
+
+        statePruner.prune();
+
+        for (int k = 0; k < blocks.size(); k++)
+            Assert.assertTrue(stores.getAccountTrieStore().exists(blocks.get(k).getStateRootHash()));
+
+        statePruner.prune();
+
+        for (int k = 0; k < 4; k++)
+            Assert.assertFalse(stores.getAccountTrieStore().exists(blocks.get(k).getStateRootHash()));
+
+        for (int k = 4; k < blocks.size(); k++)
+            assertState(stores, blocks.get(k), address, k);
+    }
+
+    @Test
+    public void cannotCreatePrunerWithoutRetainedRoots() {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+        BlockChain blockChain = new BlockChain(new Stores(keyValueStores));
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid number of retained roots");
+
+        createStatePruner(blockChain, keyValueStores, 0, 0);
+    }
+
+    private static void pruneStates(KeyValueStores keyValueStores) throws IOException {
+        Stores stores = new Stores(keyValueStores);
+        BlockChain blockChain = new BlockChain(stores);
+        Address address = FactoryHelper.createRandomAddress();
+
+        List<Block> blocks = connectBlocks(stores, blockChain, address, 10);
+
+        StatePruner statePruner = createStatePruner(blockChain, keyValueStores, 3, 5);
+        List<CompactionResult> results = new ArrayList<>();
+
+        statePruner.onPruned((accountsResult, storageResult) -> {
+            results.add(accountsResult);
+            results.add(storageResult);
+        });
+
+        statePruner.prune();
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertTrue(results.get(0).getReclaimedBytes() > 0);
+        Assert.assertTrue(results.get(1).getReclaimedBytes() > 0);
+
+        for (int k : new int[] { 0, 5, 8, 9, 10 })
+            assertState(stores, blocks.get(k), address, k);
+
+        for (int k : new int[] { 1, 2, 3, 4, 6, 7 }) {
+            Assert.assertFalse(stores.getAccountTrieStore().exists(blocks.get(k).getStateRootHash()));
+
+            Hash storageHash = getStorageHash(k);
+            Assert.assertFalse(stores.getStorageTrieStore().exists(storageHash));
+        }
+    }
+
+    private static void assertState(Stores stores, Block block, Address address, int n) throws IOException {
+        Account account = stores.getAccountStoreProvider().retrieve(block.getStateRootHash()).getAccount(address);
+
+        Assert.assertEquals(n, account.getNonce());
+
+        TrieStorage storage = stores.getTrieStorageProvider().retrieve(account.getStorageHash());
+
+        for (int k = 0; k <= n; k++)
+            Assert.assertEquals(DataWord.fromUnsignedInteger(k + 1), storage.getValue(DataWord.fromUnsignedInteger(k)));
+    }
+
+    private static Hash getStorageHash(int n) throws IOException {
+        TrieStorage storage = new TrieStorage(new Trie());
+
+        for (int k = 0; k <= n; k++)
+            storage.setValue(DataWord.fromUnsignedInteger(k), DataWord.fromUnsignedInteger(k + 1));
+
+        return storage.getRootHash();
+    }
+
+    private static List<Block> connectBlocks(Stores stores, BlockChain blockChain, Address address, int nblocks) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+
+        connectBlocks(stores, blockChain, address, blocks, nblocks + 1);
+
+        return blocks;
+    }
+
+    // each block adds a storage cell and increments the nonce of the account
+    private static void connectBlocks(Stores stores, BlockChain blockChain, Address address, List<Block> blocks, int nblocks) throws IOException {
+        Hash stateRootHash = blocks.isEmpty() ? Trie.EMPTY_TRIE_HASH : blocks.get(blocks.size() - 1).getStateRootHash();
+        AccountStore accountStore = stores.getAccountStoreProvider().retrieve(stateRootHash);
+        TrieStorage storage = stores.getTrieStorageProvider().retrieve(blocks.isEmpty() ? Trie.EMPTY_TRIE_HASH : accountStore.getAccount(address).getStorageHash());
+
+        for (int n = 0; n < nblocks; n++) {
+            int k = blocks.size();
+
+            storage.setValue(DataWord.fromUnsignedInteger(k), DataWord.fromUnsignedInteger(k + 1));
+            storage.commit();
+
+            accountStore.putAccount(address, new Account(Coin.TEN, k, 0, null, storage.getRootHash()));
+            accountStore.save();
+
+            Block block = k == 0 ? GenesisGenerator.generateGenesis(accountStore) : createBlock(blocks.get(k - 1), accountStore.getRootHash());
+
+            blockChain.connectBlock(block);
+            blocks.add(block);
+        }
+    }
+
+    private static Block createBlock(Block parent, Hash stateRootHash) {
+        return new Block(parent.getNumber() + 1, parent.getHash(), MerkleTree.EMPTY_MERKLE_TREE_HASH, stateRootHash, System.currentTimeMillis() / 1000, FactoryHelper.createRandomAddress(), Difficulty.ONE, 0, 0, null, 0);
+    }
+
+    private static StatePruner createStatePruner(BlockChain blockChain, KeyValueStores keyValueStores, int noRetainedRoots, long checkpointInterval) {
+        return createStatePruner(blockChain, keyValueStores, noRetainedRoots, checkpointInterval, 1);
+    }
+
+    private static StatePruner createStatePruner(BlockChain blockChain, KeyValueStores keyValueStores, int noRetainedRoots, long checkpointInterval, int pruneInterval) {
+        return new StatePruner(blockChain, (CompactableKeyValueStore)keyValueStores.getAccountKeyValueStore(), (CompactableKeyValueStore)keyValueStores.getStorageKeyValueStore(), noRetainedRoots, checkpointInterval, pruneInterval);
+    }
+
+    private static void deleteDirectory(String name) {
+        File[] files = new File(name).listFiles();
+
+        if (files != null)
+            for (File file : files)
+                file.delete();
+    }
+}
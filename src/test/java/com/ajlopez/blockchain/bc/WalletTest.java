@@ -5,6 +5,8 @@ import com.ajlopez.blockchain.test.utils.FactoryHelper;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -53,4 +55,33 @@ public class WalletTest {
         Assert.assertTrue(addresses.contains(address1));
         Assert.assertTrue(addresses.contains(address2));
     }
+
+    @Test
+    public void saveAndLoadWallet() throws IOException {
+        new File("wallettest1").delete();
+
+        Wallet wallet = new Wallet();
+        Address address1 = FactoryHelper.createRandomAddress();
+        Address address2 = FactoryHelper.createRandomAddress();
+
+        wallet.addAddress(address1);
+        wallet.addAddress(address2);
+
+        wallet.save("wallettest1");
+
+        Wallet result = Wallet.load("wallettest1");
+
+        Assert.assertEquals(wallet.getAddresses(), result.getAddresses());
+    }
+
+    @Test
+    public void saveAndLoadEmptyWallet() throws IOException {
+        new File("wallettest2").delete();
+
+        new Wallet().save("wallettest2");
+
+        Wallet result = Wallet.load("wallettest2");
+
+        Assert.assertTrue(result.getAddresses().isEmpty());
+    }
 }
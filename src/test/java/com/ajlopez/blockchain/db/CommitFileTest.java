@@ -0,0 +1,68 @@
+package com.ajlopez.blockchain.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class CommitFileTest {
+    @Test
+    public void readLengthFromNewFile() throws IOException {
+        new File("cftest1.data").delete();
+
+        CommitFile commitFile = new CommitFile("cftest1.data");
+
+        Assert.assertEquals(-1, commitFile.readLength());
+    }
+
+    @Test
+    public void writeCloseReopenAndReadLength() throws IOException {
+        CommitFile commitFile = new CommitFile("cftest2.data");
+
+        commitFile.writeLength(42);
+        commitFile.writeLength(1000);
+        commitFile.close();
+
+        CommitFile commitFile2 = new CommitFile("cftest2.data");
+
+        Assert.assertEquals(1000, commitFile2.readLength());
+    }
+
+    @Test
+    public void readCorruptedLength() throws IOException {
+        CommitFile commitFile = new CommitFile("cftest3.data");
+
+        commitFile.writeLength(1000);
+        commitFile.close();
+
+        try (RandomAccessFile file = new RandomAccessFile("cftest3.data", "rw")) {
+            file.seek(Long.BYTES - 1);
+            file.write(0xff);
+        }
+
+        CommitFile commitFile2 = new CommitFile("cftest3.data");
+
+        Assert.assertEquals(-1, commitFile2.readLength());
+    }
+
+    @Test
+    public void writePendingCloseReopenAndRead() throws IOException {
+        CommitFile commitFile = new CommitFile("cftest4.data");
+
+        commitFile.writeLength(42);
+        commitFile.writePending(1000);
+        commitFile.close();
+
+        CommitFile commitFile2 = new CommitFile("cftest4.data");
+
+        Assert.assertEquals(1000, commitFile2.readLength());
+        Assert.assertTrue(commitFile2.readPending());
+
+        commitFile2.writeLength(1000);
+
+        Assert.assertEquals(1000, commitFile2.readLength());
+        Assert.assertFalse(commitFile2.readPending());
+    }
+}
@@ -0,0 +1,98 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeyBloomFilterTest {
+    @Test
+    public void createEmptyFilter() {
+        KeyBloomFilter keyBloomFilter = new KeyBloomFilter(10_000);
+
+        Assert.assertEquals(10_000, keyBloomFilter.getCapacity());
+        Assert.assertEquals(0, keyBloomFilter.getNoKeys());
+        Assert.assertFalse(keyBloomFilter.isFull());
+        Assert.assertEquals(0, keyBloomFilter.getNoNegatives());
+        Assert.assertEquals(0, keyBloomFilter.getNoFalsePositives());
+        Assert.assertEquals(0, keyBloomFilter.getFalsePositiveRate(), 0);
+    }
+
+    @Test
+    public void createFilterWithMinimumCapacity() {
+        KeyBloomFilter keyBloomFilter = new KeyBloomFilter(0);
+
+        Assert.assertEquals(1024, keyBloomFilter.getCapacity());
+    }
+
+    @Test
+    public void addedKeysMightBeContained() {
+        KeyBloomFilter keyBloomFilter = new KeyBloomFilter(1000);
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            keys.add(key);
+            keyBloomFilter.add(key);
+        }
+
+        Assert.assertEquals(1000, keyBloomFilter.getNoKeys());
+
+        for (byte[] key : keys)
+            Assert.assertTrue(keyBloomFilter.mightContain(key));
+
+        Assert.assertEquals(0, keyBloomFilter.getNoNegatives());
+    }
+
+    @Test
+    public void mostMissingKeysAreDiscarded() {
+        KeyBloomFilter keyBloomFilter = new KeyBloomFilter(1000);
+
+        for (int k = 0; k < 1000; k++)
+            keyBloomFilter.add(FactoryHelper.createRandomBytes(32));
+
+        int nfound = 0;
+
+        for (int k = 0; k < 10_000; k++)
+            if (keyBloomFilter.mightContain(FactoryHelper.createRandomBytes(32))) {
+                keyBloomFilter.falsePositive();
+                nfound++;
+            }
+
+        Assert.assertTrue(nfound < 500);
+        Assert.assertEquals(10_000 - nfound, keyBloomFilter.getNoNegatives());
+        Assert.assertEquals(nfound, keyBloomFilter.getNoFalsePositives());
+        Assert.assertEquals(nfound / 10_000.0, keyBloomFilter.getFalsePositiveRate(), 0.0001);
+    }
+
+    @Test
+    public void fullFilter() {
+        KeyBloomFilter keyBloomFilter = new KeyBloomFilter(1024);
+
+        for (int k = 0; k < 1024; k++)
+            keyBloomFilter.add(FactoryHelper.createRandomBytes(32));
+
+        Assert.assertTrue(keyBloomFilter.isFull());
+    }
+
+    @Test
+    public void resetFilterKeepingMetrics() {
+        KeyBloomFilter keyBloomFilter = new KeyBloomFilter(1000);
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        keyBloomFilter.add(key);
+        keyBloomFilter.mightContain(FactoryHelper.createRandomBytes(32));
+        keyBloomFilter.falsePositive();
+
+        long nnegatives = keyBloomFilter.getNoNegatives();
+
+        keyBloomFilter.reset(4000);
+
+        Assert.assertEquals(4000, keyBloomFilter.getCapacity());
+        Assert.assertEquals(0, keyBloomFilter.getNoKeys());
+        Assert.assertEquals(nnegatives, keyBloomFilter.getNoNegatives());
+        Assert.assertEquals(1, keyBloomFilter.getNoFalsePositives());
+    }
+}
@@ -1,12 +1,21 @@
 package com.ajlopez.blockchain.db;
 
 import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import com.ajlopez.blockchain.utils.ByteUtils;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Created by ajlopez on 21/10/2019.
@@ -134,4 +143,249 @@ public class KeyFileTest {
 
         keyFile.writeKey(key, 0L, 42);
     }
+
+    @Test
+    public void writeKeysCloseAndReopenFileAndReadTheKeys() throws IOException {
+        KeyFile keyFile = new KeyFile("kftest6.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKeys(Arrays.asList(key1, key2), Arrays.asList(new ValueInfo(0L, 42), new ValueInfo(42L, 42 * 2)));
+        keyFile.flush();
+        keyFile.close();
+
+        KeyFile keyFile2 = new KeyFile("kftest6.data", 32);
+
+        ValueInfo result1 = keyFile2.readKey(key1);
+
+        Assert.assertNotNull(result1);
+        Assert.assertEquals(0L, result1.position);
+        Assert.assertEquals(42, result1.length);
+
+        ValueInfo result2 = keyFile2.readKey(key2);
+
+        Assert.assertNotNull(result2);
+        Assert.assertEquals(42L, result2.position);
+        Assert.assertEquals(42 * 2, result2.length);
+    }
+
+    @Test
+    public void cannotWriteSameKeyTwiceInBatch() throws IOException {
+        KeyFile keyFile = new KeyFile("kftest7.data", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("key already exists");
+        keyFile.writeKeys(Arrays.asList(key, key), Arrays.asList(new ValueInfo(0L, 42), new ValueInfo(42L, 42)));
+    }
+
+    @Test
+    public void updateKeyCloseAndReopenFile() throws IOException {
+        KeyFile keyFile = new KeyFile("kftest8.data", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key, 0L, 42);
+        keyFile.updateKey(key, 42L, 42 * 2);
+
+        ValueInfo result = keyFile.readKey(key);
+
+        Assert.assertEquals(42L, result.position);
+        Assert.assertEquals(42 * 2, result.length);
+
+        keyFile.close();
+
+        KeyFile keyFile2 = new KeyFile("kftest8.data", 32);
+
+        ValueInfo result2 = keyFile2.readKey(key);
+
+        Assert.assertEquals(42L, result2.position);
+        Assert.assertEquals(42 * 2, result2.length);
+    }
+
+    @Test
+    public void discardTornRecordAtEndOfFile() throws IOException {
+        new File("kftest9.data").delete();
+
+        KeyFile keyFile = new KeyFile("kftest9.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key1, 0L, 42);
+        keyFile.writeKey(key2, 42L, 42);
+        keyFile.close();
+
+        appendBytes("kftest9.data", FactoryHelper.createRandomBytes(20));
+
+        KeyFile keyFile2 = new KeyFile("kftest9.data", 32);
+
+        Assert.assertTrue(keyFile2.containsKey(key1));
+        Assert.assertTrue(keyFile2.containsKey(key2));
+
+        keyFile2.writeKey(key3, 42L * 2, 42);
+        keyFile2.close();
+
+        KeyFile keyFile3 = new KeyFile("kftest9.data", 32);
+
+        Assert.assertTrue(keyFile3.containsKey(key1));
+        Assert.assertTrue(keyFile3.containsKey(key2));
+
+        ValueInfo result = keyFile3.readKey(key3);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(42L * 2, result.position);
+        Assert.assertEquals(42, result.length);
+    }
+
+    @Test
+    public void discardCorruptedRecord() throws IOException {
+        new File("kftest10.data").delete();
+
+        KeyFile keyFile = new KeyFile("kftest10.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key1, 0L, 42);
+        keyFile.writeKey(key2, 42L, 42);
+        keyFile.close();
+
+        try (RandomAccessFile file = new RandomAccessFile("kftest10.data", "rw")) {
+            file.seek(file.length() - 10);
+            int value = file.read();
+            file.seek(file.length() - 10);
+            file.write(value ^ 0xff);
+        }
+
+        KeyFile keyFile2 = new KeyFile("kftest10.data", 32);
+
+        Assert.assertTrue(keyFile2.containsKey(key1));
+        Assert.assertFalse(keyFile2.containsKey(key2));
+    }
+
+    @Test
+    public void removeKeysFromPosition() throws IOException {
+        new File("kftest11.data").delete();
+
+        KeyFile keyFile = new KeyFile("kftest11.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key1, 0L, 42);
+        keyFile.writeKey(key2, 42L, 42);
+        keyFile.writeKey(key3, 42L * 2, 42);
+
+        keyFile.removeKeysFrom(42L);
+
+        Assert.assertTrue(keyFile.containsKey(key1));
+        Assert.assertFalse(keyFile.containsKey(key2));
+        Assert.assertFalse(keyFile.containsKey(key3));
+
+        keyFile.close();
+
+        KeyFile keyFile2 = new KeyFile("kftest11.data", 32);
+
+        Assert.assertTrue(keyFile2.containsKey(key1));
+        Assert.assertFalse(keyFile2.containsKey(key2));
+        Assert.assertFalse(keyFile2.containsKey(key3));
+    }
+
+    @Test
+    public void getKeysInOrder() throws IOException {
+        new File("kftest12.data").delete();
+
+        KeyFile keyFile = new KeyFile("kftest12.data", 32);
+        getKeysInOrder(keyFile);
+        keyFile.close();
+
+        KeyFile keyFile2 = new KeyFile("kftest12.data", 32);
+
+        Iterator<byte[]> iterator = keyFile2.getKeys(null, null);
+        int nkeys = 0;
+
+        for (byte[] previous = null; iterator.hasNext(); nkeys++) {
+            byte[] key = iterator.next();
+
+            if (previous != null)
+                Assert.assertTrue(ByteUtils.compare(previous, key) < 0);
+
+            previous = key;
+        }
+
+        Assert.assertEquals(1000, nkeys);
+
+        keyFile2.close();
+    }
+
+    @Test
+    public void forEachKey() throws IOException {
+        new File("kftest13.data").delete();
+
+        KeyFile keyFile = new KeyFile("kftest13.data", 32);
+        forEachKey(keyFile);
+        keyFile.close();
+    }
+
+    static void forEachKey(KeyIndex keyIndex) throws IOException {
+        Set<ByteArrayWrapper> expected = new HashSet<>();
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+
+            keyIndex.writeKey(key, k, 42);
+            expected.add(new ByteArrayWrapper(key));
+        }
+
+        Set<ByteArrayWrapper> result = new HashSet<>();
+
+        keyIndex.forEachKey(key -> result.add(new ByteArrayWrapper(key)));
+
+        Assert.assertEquals(1000, keyIndex.getNoKeys());
+        Assert.assertEquals(expected, result);
+    }
+
+    static void getKeysInOrder(KeyIndex keyIndex) throws IOException {
+        TreeSet<ByteArrayWrapper> expected = new TreeSet<>();
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+
+            keyIndex.writeKey(key, k, 42);
+            expected.add(new ByteArrayWrapper(key));
+        }
+
+        byte[] fromKey = FactoryHelper.createRandomBytes(32);
+        fromKey[0] = 0x40;
+        byte[] toKey = FactoryHelper.createRandomBytes(32);
+        toKey[0] = (byte)0xc0;
+
+        Iterator<byte[]> iterator = keyIndex.getKeys(fromKey, toKey);
+
+        for (ByteArrayWrapper key : expected.subSet(new ByteArrayWrapper(fromKey), new ByteArrayWrapper(toKey))) {
+            Assert.assertTrue(iterator.hasNext());
+            Assert.assertArrayEquals(key.getBytes(), iterator.next());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+
+        iterator = keyIndex.getKeys(null, null);
+
+        for (ByteArrayWrapper key : expected)
+            Assert.assertArrayEquals(key.getBytes(), iterator.next());
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    private static void appendBytes(String name, byte[] bytes) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(name, "rw")) {
+            file.seek(file.length());
+            file.write(bytes);
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class KeyValueDbCompactorTest {
+    @Test
+    public void compactTrieStoreKeepingOneRoot() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("cdata0", 32);
+        TrieStore trieStore = new TrieStore(keyValueDb);
+
+        byte[][] keys = new byte[100][];
+        byte[][] values = new byte[100][];
+
+        Trie trie = new Trie(trieStore);
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+
+            trie = trie.put(keys[k], values[k]);
+            trie.save();
+        }
+
+        Trie otherTrie = trie.put(keys[0], FactoryHelper.createRandomBytes(42));
+        otherTrie.save();
+
+        KeyValueDbCompactor compactor = new KeyValueDbCompactor(keyValueDb, TrieStore::getReferences);
+
+        CompactionResult result = compactor.compact(Collections.singletonList(trie.getHash().getBytes()));
+
+        Assert.assertTrue(result.getNoKeys() > 0);
+        Assert.assertTrue(result.getReclaimedBytes() > 0);
+
+        Assert.assertTrue(trieStore.exists(trie.getHash()));
+        Assert.assertFalse(trieStore.exists(otherTrie.getHash()));
+
+        Trie result2 = trieStore.retrieve(trie.getHash());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], result2.get(keys[k]));
+    }
+
+    @Test
+    public void compactInBackground() throws Exception {
+        KeyValueDb keyValueDb = new KeyValueDb("cdata1", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.setValue(key2, value2);
+
+        KeyValueDbCompactor compactor = new KeyValueDbCompactor(keyValueDb, value -> Collections.emptyList());
+        CompletableFuture<CompactionResult> future = new CompletableFuture<>();
+
+        compactor.onCompacted(future::complete);
+        compactor.start(Collections.singletonList(key1));
+
+        CompactionResult result = future.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, result.getNoKeys());
+        Assert.assertTrue(result.getReclaimedBytes() >= 42);
+
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertNull(keyValueDb.getValue(key2));
+    }
+}
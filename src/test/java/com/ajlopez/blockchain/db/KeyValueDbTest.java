@@ -1,12 +1,24 @@
 package com.ajlopez.blockchain.db;
 
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.WriteBatch;
 import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Created by ajlopez on 30/10/2019.
@@ -70,4 +82,1140 @@ public class KeyValueDbTest {
 
         Assert.assertNull(keyValueDb.getValue(key));
     }
+
+    @Test
+    public void saveAndRetrieveKeyValueUsingMappedIndex() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data4", 32, KeyIndexType.MAPPED);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        Assert.assertNull(keyValueDb.getValue(key));
+
+        keyValueDb.setValue(key, value);
+
+        byte[] result = keyValueDb.getValue(key);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(value, result);
+    }
+
+    @Test
+    public void saveCloseReopenAndRetrieveKeyValuesUsingMappedIndex() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data5", 32, KeyIndexType.MAPPED);
+
+        byte[][] keys = new byte[100][];
+        byte[][] values = new byte[100][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+
+            keyValueDb.setValue(keys[k], values[k]);
+        }
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data5", 32, KeyIndexType.MAPPED);
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb2.getValue(keys[k]));
+    }
+
+    @Test
+    public void writeBatchAndRetrieveKeyValues() throws IOException {
+        writeBatchCloseReopenAndRetrieveKeyValues("data6", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void writeBatchAndRetrieveKeyValuesUsingMappedIndex() throws IOException {
+        writeBatchCloseReopenAndRetrieveKeyValues("data7", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void writeBatchWithRepeatedKeyValues() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data8", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key1, value1);
+        batch.put(key2, value2);
+        batch.put(key2, value2);
+
+        keyValueDb.write(batch);
+
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key2));
+    }
+
+    @Test
+    public void cannotChangeValueForKeyInBatch() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data9", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key, FactoryHelper.createRandomBytes(42));
+        batch.put(key, FactoryHelper.createRandomBytes(42));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("cannot change value for key");
+        keyValueDb.write(batch);
+    }
+
+    @Test
+    public void cannotWriteBatchWithInvalidKey() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data10", 32);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(FactoryHelper.createRandomBytes(42), FactoryHelper.createRandomBytes(42));
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid key");
+        keyValueDb.write(batch);
+    }
+
+    private static void writeBatchCloseReopenAndRetrieveKeyValues(String name, KeyIndexType keyIndexType) throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType);
+
+        byte[][] keys = new byte[100][];
+        byte[][] values = new byte[100][];
+
+        WriteBatch batch = new WriteBatch();
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42 + k);
+
+            batch.put(keys[k], values[k]);
+        }
+
+        keyValueDb.write(batch);
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb.getValue(keys[k]));
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType);
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb2.getValue(keys[k]));
+    }
+
+    @Test
+    public void compactKeepingRootKeys() throws IOException {
+        compactKeepingRootKeys("data11", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void compactKeepingRootKeysUsingMappedIndex() throws IOException {
+        compactKeepingRootKeys("data12", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void compactKeepingReferencedKeys() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data13", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] key4 = FactoryHelper.createRandomBytes(32);
+
+        keyValueDb.setValue(key1, key2);
+        keyValueDb.setValue(key2, key3);
+        keyValueDb.setValue(key3, new byte[0]);
+        keyValueDb.setValue(key4, key1);
+
+        CompactionResult result = keyValueDb.compact(Collections.singletonList(key1), value -> value.length == 0 ? Collections.emptyList() : Collections.singletonList(value));
+
+        Assert.assertEquals(3, result.getNoKeys());
+        Assert.assertTrue(result.getReclaimedBytes() >= 32);
+
+        Assert.assertArrayEquals(key2, keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(key3, keyValueDb.getValue(key2));
+        Assert.assertArrayEquals(new byte[0], keyValueDb.getValue(key3));
+        Assert.assertNull(keyValueDb.getValue(key4));
+    }
+
+    @Test
+    public void keepKeyValuesWrittenWhileCompacting() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data14", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+
+        keyValueDb.compact(Collections.singletonList(key1), value -> {
+            try {
+                keyValueDb.setValue(key2, value2);
+            }
+            catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+
+            return Collections.emptyList();
+        });
+
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key2));
+    }
+
+    @Test
+    public void updateValueForKeyCloseAndReopen() throws IOException {
+        updateValueForKeyCloseAndReopen("data15", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void cannotCreateUpdatableDbUsingMappedIndex() throws IOException {
+        deleteFiles("data16");
+
+        try {
+            new KeyValueDb("data16", 32, KeyIndexType.MAPPED, true);
+            Assert.fail();
+        }
+        catch (IllegalArgumentException ex) {
+            Assert.assertEquals("updatable db requires memory key index", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void restoreValueUpdatedAfterLastCommit() throws IOException {
+        deleteFiles("data50");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data50", 32, KeyIndexType.MEMORY, true, false, false);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key, value1);
+        keyValueDb.flush();
+
+        long length = new File("data50.values").length();
+
+        keyValueDb.setValue(key, value2);
+
+        // the process stops without closing the db, the index keeps the position of a value not written to disk
+        try (RandomAccessFile file = new RandomAccessFile("data50.values", "rw")) {
+            file.setLength(length);
+        }
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data50", 32, KeyIndexType.MEMORY, true, false, false);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key));
+
+        keyValueDb2.close();
+    }
+
+    @Test
+    public void setValueAdvancesCommit() throws IOException {
+        deleteFiles("data51");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data51", 32);
+
+        keyValueDb.setValue(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+
+        CommitFile commitFile = new CommitFile("data51.commit");
+
+        Assert.assertEquals(new File("data51.values").length(), commitFile.readLength());
+        Assert.assertFalse(commitFile.readPending());
+
+        commitFile.close();
+        keyValueDb.close();
+    }
+
+    @Test
+    public void updateValuesInBatch() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data17", 32, KeyIndexType.MEMORY, true);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key, value1);
+        batch.put(key, value2);
+
+        keyValueDb.write(batch);
+
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key));
+    }
+
+    @Test
+    public void compactKeepingUpdatedValue() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data18", 32, KeyIndexType.MEMORY, true);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key, value1);
+        keyValueDb.setValue(key, value2);
+
+        CompactionResult result = keyValueDb.compact(Collections.singletonList(key), value -> Collections.emptyList());
+
+        Assert.assertEquals(1, result.getNoKeys());
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key));
+    }
+
+    @Test
+    public void recoverKeysMissingFromIndex() throws IOException {
+        recoverKeysMissingFromIndex("data19", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void recoverKeysMissingFromIndexUsingMappedIndex() throws IOException {
+        recoverKeysMissingFromIndex("data20", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void discardTornValueRecord() throws IOException {
+        deleteFiles("data21");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data21", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key, value);
+        keyValueDb.close();
+
+        long length = new File("data21.values").length();
+
+        try (RandomAccessFile file = new RandomAccessFile("data21.values", "rw")) {
+            file.seek(length);
+            file.write(FactoryHelper.createRandomBytes(50));
+        }
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data21", 32);
+
+        Assert.assertEquals(length, new File("data21.values").length());
+        Assert.assertArrayEquals(value, keyValueDb2.getValue(key));
+
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb2.setValue(key2, value2);
+        keyValueDb2.close();
+
+        KeyValueDb keyValueDb3 = new KeyValueDb("data21", 32);
+
+        Assert.assertArrayEquals(value, keyValueDb3.getValue(key));
+        Assert.assertArrayEquals(value2, keyValueDb3.getValue(key2));
+    }
+
+    @Test
+    public void discardCorruptedValueRecordAndItsKey() throws IOException {
+        discardCorruptedValueRecordAndItsKey("data22", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void discardCorruptedValueRecordAndItsKeyUsingMappedIndex() throws IOException {
+        discardCorruptedValueRecordAndItsKey("data23", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void writeBatchesWithoutSyncCloseAndReopen() throws IOException {
+        writeBatchesWithoutSyncCloseAndReopen("data43", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void writeBatchesWithoutSyncCloseAndReopenUsingMappedIndex() throws IOException {
+        writeBatchesWithoutSyncCloseAndReopen("data44", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void discardKeysOfValuesLostWithoutSync() throws IOException {
+        discardKeysOfValuesLostWithoutSync("data45", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void discardKeysOfValuesLostWithoutSyncUsingMappedIndex() throws IOException {
+        discardKeysOfValuesLostWithoutSync("data46", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void discardKeysOfValuesSetAfterLastCommit() throws IOException {
+        discardKeysOfValuesSetAfterLastCommit("data47", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void discardKeysOfValuesSetAfterLastCommitUsingMappedIndex() throws IOException {
+        discardKeysOfValuesSetAfterLastCommit("data48", KeyIndexType.MAPPED);
+    }
+
+    private static void discardKeysOfValuesSetAfterLastCommit(String name, KeyIndexType keyIndexType) throws IOException {
+        deleteFiles(name);
+
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.flush();
+
+        long length = new File(name + ".values").length();
+
+        keyValueDb.setValue(key2, value2);
+
+        // the process stops without closing the db, the index keeps a key of a value not written to disk
+        try (RandomAccessFile file = new RandomAccessFile(name + ".values", "rw")) {
+            file.setLength(length);
+        }
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertNull(keyValueDb2.getValue(key2));
+        Assert.assertFalse(keyValueDb2.containsKey(key2));
+
+        keyValueDb2.close();
+    }
+
+    private static void writeBatchesWithoutSyncCloseAndReopen(String name, KeyIndexType keyIndexType) throws IOException {
+        deleteFiles(name);
+
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        byte[][] keys = new byte[10][];
+        byte[][] values = new byte[10][];
+
+        for (int k = 0; k < keys.length; k += 2) {
+            WriteBatch batch = new WriteBatch();
+
+            for (int j = k; j < k + 2; j++) {
+                keys[j] = FactoryHelper.createRandomBytes(32);
+                values[j] = FactoryHelper.createRandomBytes(42);
+                batch.put(keys[j], values[j]);
+            }
+
+            keyValueDb.write(batch);
+        }
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb2.getValue(keys[k]));
+
+        keyValueDb2.close();
+    }
+
+    private static void discardKeysOfValuesLostWithoutSync(String name, KeyIndexType keyIndexType) throws IOException {
+        deleteFiles(name);
+
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        WriteBatch batch1 = new WriteBatch();
+        batch1.put(key1, value1);
+        keyValueDb.write(batch1);
+        keyValueDb.flush();
+
+        long length = new File(name + ".values").length();
+
+        WriteBatch batch2 = new WriteBatch();
+        batch2.put(key2, value2);
+        keyValueDb.write(batch2);
+
+        // the process stops without closing the db, the index keeps a key of a value not written to disk
+        try (RandomAccessFile file = new RandomAccessFile(name + ".values", "rw")) {
+            file.setLength(length);
+        }
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertNull(keyValueDb2.getValue(key2));
+
+        keyValueDb2.write(batch2);
+        keyValueDb2.close();
+
+        KeyValueDb keyValueDb3 = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        Assert.assertArrayEquals(value1, keyValueDb3.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb3.getValue(key2));
+
+        keyValueDb3.close();
+    }
+
+    private static void recoverKeysMissingFromIndex(String name, KeyIndexType keyIndexType) throws IOException {
+        deleteFiles(name);
+
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        byte[][] keys = new byte[3][];
+        byte[][] values = new byte[3][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+            keyValueDb.setValue(keys[k], values[k]);
+        }
+
+        // the process stops without closing the db, and the index loses its unflushed writes
+        new File(name + ".keys").delete();
+        new File(name + ".index").delete();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType);
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb2.getValue(keys[k]));
+    }
+
+    private static void discardCorruptedValueRecordAndItsKey(String name, KeyIndexType keyIndexType) throws IOException {
+        deleteFiles(name);
+
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType, false, false, false);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.flush();
+        keyValueDb.setValue(key2, value2);
+
+        try (RandomAccessFile file = new RandomAccessFile(name + ".values", "rw")) {
+            file.seek(file.length() - 1);
+            int value = file.read();
+            file.seek(file.length() - 1);
+            file.write(value ^ 0xff);
+        }
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertNull(keyValueDb2.getValue(key2));
+
+        keyValueDb2.close();
+
+        KeyValueDb keyValueDb3 = new KeyValueDb(name, 32, keyIndexType);
+
+        Assert.assertArrayEquals(value1, keyValueDb3.getValue(key1));
+        Assert.assertNull(keyValueDb3.getValue(key2));
+    }
+
+    @Test
+    public void getValues() throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb("data24", 32);
+
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        for (int k = 0; k < 10; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            keyValueDb.setValue(key, value);
+
+            keys.add(key);
+            values.add(value);
+        }
+
+        Collections.reverse(keys);
+        Collections.reverse(values);
+
+        keys.add(5, FactoryHelper.createRandomBytes(32));
+        values.add(5, null);
+
+        List<byte[]> result = keyValueDb.getValues(keys);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(keys.size(), result.size());
+
+        for (int k = 0; k < keys.size(); k++)
+            Assert.assertArrayEquals(values.get(k), result.get(k));
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void scanKeyValues() throws IOException {
+        deleteFiles("data25");
+        scanKeyValues("data25", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void scanKeyValuesWithMappedKeyIndex() throws IOException {
+        deleteFiles("data26");
+        scanKeyValues("data26", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void scanPrefix() throws IOException {
+        deleteFiles("data27");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data27", 2);
+
+        keyValueDb.setValue(new byte[] { 0x01, 0x02 }, new byte[] { 0x01 });
+        keyValueDb.setValue(new byte[] { 0x02, 0x01 }, new byte[] { 0x02 });
+        keyValueDb.setValue(new byte[] { 0x01, 0x01 }, new byte[] { 0x03 });
+        keyValueDb.setValue(new byte[] { 0x00, 0x01 }, new byte[] { 0x04 });
+
+        Iterator<KeyValue> iterator = keyValueDb.scanPrefix(new byte[] { 0x01 });
+
+        Assert.assertArrayEquals(new byte[] { 0x03 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x01 }, iterator.next().getValue());
+        Assert.assertFalse(iterator.hasNext());
+
+        keyValueDb.close();
+    }
+
+    private static void scanKeyValues(String name, KeyIndexType keyIndexType) throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType);
+        TreeMap<ByteArrayWrapper, byte[]> expected = new TreeMap<>();
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            keyValueDb.setValue(key, value);
+            expected.put(new ByteArrayWrapper(key), value);
+        }
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType);
+
+        byte[] fromKey = FactoryHelper.createRandomBytes(32);
+        fromKey[0] = 0x40;
+        byte[] toKey = FactoryHelper.createRandomBytes(32);
+        toKey[0] = (byte)0xc0;
+
+        Iterator<KeyValue> iterator = keyValueDb2.scan(fromKey, toKey);
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : expected.subMap(new ByteArrayWrapper(fromKey), new ByteArrayWrapper(toKey)).entrySet()) {
+            Assert.assertTrue(iterator.hasNext());
+
+            KeyValue keyValue = iterator.next();
+
+            Assert.assertArrayEquals(entry.getKey().getBytes(), keyValue.getKey());
+            Assert.assertArrayEquals(entry.getValue(), keyValue.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+
+        keyValueDb2.close();
+    }
+
+    // the files of all the generations are deleted
+    private static void deleteFiles(String name) {
+        File[] files = new File(".").listFiles((dir, filename) -> filename.startsWith(name + "."));
+
+        if (files != null)
+            for (File file : files)
+                file.delete();
+    }
+
+    private static void updateValueForKeyCloseAndReopen(String name, KeyIndexType keyIndexType) throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType, true);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key, value1);
+        keyValueDb.setValue(key, value2);
+
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key));
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType, true);
+
+        Assert.assertArrayEquals(value2, keyValueDb2.getValue(key));
+    }
+
+    private static void compactKeepingRootKeys(String name, KeyIndexType keyIndexType) throws IOException {
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType);
+
+        byte[][] keys = new byte[10][];
+        byte[][] values = new byte[10][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+
+            keyValueDb.setValue(keys[k], values[k]);
+        }
+
+        CompactionResult result = keyValueDb.compact(Arrays.asList(keys[0], keys[1]), value -> Collections.emptyList());
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(2, result.getNoKeys());
+        Assert.assertTrue(result.getReclaimedBytes() >= 42 * 8);
+        Assert.assertTrue(result.getElapsedTime() >= 0);
+
+        Assert.assertArrayEquals(values[0], keyValueDb.getValue(keys[0]));
+        Assert.assertArrayEquals(values[1], keyValueDb.getValue(keys[1]));
+
+        for (int k = 2; k < keys.length; k++)
+            Assert.assertNull(keyValueDb.getValue(keys[k]));
+
+        byte[] newKey = FactoryHelper.createRandomBytes(32);
+        byte[] newValue = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(newKey, newValue);
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType);
+
+        Assert.assertArrayEquals(values[0], keyValueDb2.getValue(keys[0]));
+        Assert.assertArrayEquals(values[1], keyValueDb2.getValue(keys[1]));
+        Assert.assertArrayEquals(newValue, keyValueDb2.getValue(newKey));
+        Assert.assertNull(keyValueDb2.getValue(keys[2]));
+    }
+
+    @Test
+    public void keepKeyValuesWrittenAfterStartingCompaction() throws IOException {
+        deleteFiles("data28");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data28", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value3 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.setValue(key2, value2);
+
+        keyValueDb.startCompaction();
+
+        keyValueDb.setValue(key3, value3);
+
+        CompactionResult result = keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(2, result.getNoKeys());
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertNull(keyValueDb.getValue(key2));
+        Assert.assertArrayEquals(value3, keyValueDb.getValue(key3));
+    }
+
+    @Test
+    public void keepKeyValuesRewrittenWhileCompacting() throws IOException {
+        deleteFiles("data29");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data29", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.setValue(key2, value2);
+
+        keyValueDb.startCompaction();
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key2, value2);
+
+        keyValueDb.write(batch);
+
+        keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key2));
+    }
+
+    @Test
+    public void keepKeysReferencedByValuesWrittenWhileCompacting() throws IOException {
+        deleteFiles("data30");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data30", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        keyValueDb.setValue(key1, new byte[0]);
+        keyValueDb.setValue(key2, new byte[0]);
+
+        keyValueDb.startCompaction();
+
+        keyValueDb.setValue(key3, key2);
+
+        CompactionResult result = keyValueDb.compact(Collections.singletonList(key1), value -> value.length == 0 ? Collections.emptyList() : Collections.singletonList(value));
+
+        Assert.assertEquals(3, result.getNoKeys());
+        Assert.assertArrayEquals(new byte[0], keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(new byte[0], keyValueDb.getValue(key2));
+        Assert.assertArrayEquals(key2, keyValueDb.getValue(key3));
+    }
+
+    @Test
+    public void cannotStartCompactionWhileCompacting() throws IOException {
+        deleteFiles("data31");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data31", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        keyValueDb.setValue(key, new byte[0]);
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("compaction in progress");
+
+        keyValueDb.compact(Collections.singletonList(key), value -> {
+            keyValueDb.startCompaction();
+
+            return Collections.emptyList();
+        });
+    }
+
+    @Test
+    public void setAndGetCompressedValuesCloseAndReopen() throws IOException {
+        setAndGetCompressedValuesCloseAndReopen("data32", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void setAndGetCompressedValuesCloseAndReopenUsingMappedIndex() throws IOException {
+        setAndGetCompressedValuesCloseAndReopen("data33", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void readCompressedValuesWithoutCompression() throws IOException {
+        deleteFiles("data34");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data34", 32, KeyIndexType.MEMORY, false, true);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = new byte[200];
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(200);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data34", 32);
+
+        keyValueDb2.setValue(key2, value2);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb2.getValue(key2));
+
+        List<byte[]> values = keyValueDb2.getValues(Arrays.asList(key1, key2));
+
+        Assert.assertArrayEquals(value1, values.get(0));
+        Assert.assertArrayEquals(value2, values.get(1));
+    }
+
+    @Test
+    public void writeCompressedValuesInBatchAndCompact() throws IOException {
+        deleteFiles("data35");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data35", 32, KeyIndexType.MEMORY, false, true);
+
+        byte[][] keys = new byte[10][];
+        byte[][] values = new byte[10][];
+        WriteBatch batch = new WriteBatch();
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = new byte[100];
+            values[k][k] = (byte)k;
+
+            batch.put(keys[k], values[k]);
+        }
+
+        keyValueDb.write(batch);
+
+        keyValueDb.compact(Arrays.asList(keys[0], keys[1]), value -> Collections.emptyList());
+
+        Assert.assertArrayEquals(values[0], keyValueDb.getValue(keys[0]));
+        Assert.assertArrayEquals(values[1], keyValueDb.getValue(keys[1]));
+        Assert.assertNull(keyValueDb.getValue(keys[2]));
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data35", 32, KeyIndexType.MEMORY, false, true);
+
+        Assert.assertArrayEquals(values[0], keyValueDb2.getValue(keys[0]));
+        Assert.assertArrayEquals(values[1], keyValueDb2.getValue(keys[1]));
+    }
+
+    @Test
+    public void containsKeys() throws IOException {
+        deleteFiles("data36");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data36", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        keyValueDb.setValue(key1, FactoryHelper.createRandomBytes(42));
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key2, FactoryHelper.createRandomBytes(42));
+        keyValueDb.write(batch);
+
+        Assert.assertTrue(keyValueDb.containsKey(key1));
+        Assert.assertTrue(keyValueDb.containsKey(key2));
+        Assert.assertFalse(keyValueDb.containsKey(key3));
+
+        boolean[] result = keyValueDb.containsKeys(Arrays.asList(key1, key2, key3));
+
+        Assert.assertEquals(3, result.length);
+        Assert.assertTrue(result[0]);
+        Assert.assertTrue(result[1]);
+        Assert.assertFalse(result[2]);
+    }
+
+    @Test
+    public void rebuildKeyFilterOnReopen() throws IOException {
+        deleteFiles("data37");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data37", 32);
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < 2000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            keys.add(key);
+            keyValueDb.setValue(key, FactoryHelper.createRandomBytes(10));
+        }
+
+        Assert.assertEquals(2000, keyValueDb.getKeyFilter().getNoKeys());
+        Assert.assertTrue(keyValueDb.getKeyFilter().getCapacity() > 2000);
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data37", 32);
+
+        Assert.assertEquals(2000, keyValueDb2.getKeyFilter().getNoKeys());
+
+        for (byte[] key : keys)
+            Assert.assertTrue(keyValueDb2.containsKey(key));
+    }
+
+    @Test
+    public void loadKeyFilterWithKeysWrittenAfterReopen() throws IOException {
+        deleteFiles("data49");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data49", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        keyValueDb.setValue(key1, FactoryHelper.createRandomBytes(10));
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data49", 32);
+
+        keyValueDb2.setValue(key2, FactoryHelper.createRandomBytes(10));
+
+        Assert.assertTrue(keyValueDb2.containsKey(key1));
+        Assert.assertTrue(keyValueDb2.containsKey(key2));
+        Assert.assertEquals(2, keyValueDb2.getKeyFilter().getNoKeys());
+
+        keyValueDb2.close();
+    }
+
+    @Test
+    public void missingKeysAreDiscardedByKeyFilter() throws IOException {
+        deleteFiles("data38");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data38", 32);
+
+        for (int k = 0; k < 100; k++)
+            keyValueDb.setValue(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(10));
+
+        for (int k = 0; k < 1000; k++) {
+            Assert.assertNull(keyValueDb.getValue(FactoryHelper.createRandomBytes(32)));
+            Assert.assertFalse(keyValueDb.containsKey(FactoryHelper.createRandomBytes(32)));
+        }
+
+        KeyBloomFilter keyFilter = keyValueDb.getKeyFilter();
+
+        Assert.assertEquals(2000, keyFilter.getNoNegatives() + keyFilter.getNoFalsePositives());
+        Assert.assertTrue(keyFilter.getNoNegatives() > 1900);
+        Assert.assertTrue(keyFilter.getFalsePositiveRate() < 0.05);
+    }
+
+    @Test
+    public void rebuildKeyFilterAfterCompaction() throws IOException {
+        deleteFiles("data39");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data39", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        keyValueDb.setValue(key1, FactoryHelper.createRandomBytes(42));
+        keyValueDb.setValue(key2, FactoryHelper.createRandomBytes(42));
+
+        keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(1, keyValueDb.getKeyFilter().getNoKeys());
+        Assert.assertTrue(keyValueDb.containsKey(key1));
+        Assert.assertFalse(keyValueDb.containsKey(key2));
+    }
+
+    private static void setAndGetCompressedValuesCloseAndReopen(String name, KeyIndexType keyIndexType) throws IOException {
+        deleteFiles(name);
+
+        KeyValueDb keyValueDb = new KeyValueDb(name, 32, keyIndexType, false, true);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = new byte[1000];
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(1000);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value3 = new byte[10];
+
+        value1[500] = 1;
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.setValue(key2, value2);
+        keyValueDb.setValue(key3, value3);
+
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key2));
+        Assert.assertArrayEquals(value3, keyValueDb.getValue(key3));
+
+        keyValueDb.close();
+
+        Assert.assertTrue(new File(name + ".values").length() < 3 * (8 + 32) + 1000 + 1000 + 10);
+
+        // the commit file is removed, the records are replayed
+        new File(name + ".commit").delete();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb(name, 32, keyIndexType, false, true);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb2.getValue(key2));
+        Assert.assertArrayEquals(value3, keyValueDb2.getValue(key3));
+
+        Iterator<KeyValue> iterator = keyValueDb2.scan(null, null);
+        int count = 0;
+
+        while (iterator.hasNext()) {
+            KeyValue keyValue = iterator.next();
+
+            if (Arrays.equals(key1, keyValue.getKey()))
+                Assert.assertArrayEquals(value1, keyValue.getValue());
+
+            count++;
+        }
+
+        Assert.assertEquals(3, count);
+    }
+
+    @Test
+    public void keepKeyValuesWrittenAfterLastCompaction() throws IOException {
+        deleteFiles("data40");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data40", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+
+        keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        keyValueDb.setValue(key2, value2);
+
+        CompactionResult result = keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(2, result.getNoKeys());
+        Assert.assertArrayEquals(value1, keyValueDb.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb.getValue(key2));
+
+        result = keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(1, result.getNoKeys());
+        Assert.assertNull(keyValueDb.getValue(key2));
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void compactSeveralTimesCloseAndReopen() throws IOException {
+        deleteFiles("data41");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data41", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key1, value1);
+        keyValueDb.setValue(key2, value2);
+
+        keyValueDb.compact(Arrays.asList(key1, key2), value -> Collections.emptyList());
+        keyValueDb.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        keyValueDb.close();
+
+        Assert.assertFalse(new File("data41.values").exists());
+        Assert.assertFalse(new File("data41.1.values").exists());
+        Assert.assertTrue(new File("data41.2.values").exists());
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data41", 32);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertNull(keyValueDb2.getValue(key2));
+
+        keyValueDb2.close();
+    }
+
+    @Test
+    public void discardFilesOfInterruptedCompaction() throws IOException {
+        deleteFiles("data42");
+
+        KeyValueDb keyValueDb = new KeyValueDb("data42", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        keyValueDb.setValue(key, value);
+        keyValueDb.close();
+
+        try (RandomAccessFile file = new RandomAccessFile("data42.1.values", "rw")) {
+            file.write(FactoryHelper.createRandomBytes(100));
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile("data42.1.keys", "rw")) {
+            file.write(FactoryHelper.createRandomBytes(100));
+        }
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("data42", 32);
+
+        Assert.assertArrayEquals(value, keyValueDb2.getValue(key));
+        Assert.assertFalse(new File("data42.1.values").exists());
+        Assert.assertFalse(new File("data42.1.keys").exists());
+
+        keyValueDb2.compact(Collections.singletonList(key), value2 -> Collections.emptyList());
+
+        Assert.assertArrayEquals(value, keyValueDb2.getValue(key));
+
+        keyValueDb2.close();
+    }
 }
@@ -0,0 +1,239 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+
+public class MappedKeyFileTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void writeAndReadKey() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest1.data", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        Assert.assertFalse(keyFile.containsKey(key));
+        Assert.assertNull(keyFile.readKey(key));
+
+        keyFile.writeKey(key, 0L, 42);
+
+        ValueInfo result = keyFile.readKey(key);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(0L, result.position);
+        Assert.assertEquals(42, result.length);
+        Assert.assertTrue(keyFile.containsKey(key));
+        Assert.assertEquals(1, keyFile.getNoKeys());
+    }
+
+    @Test
+    public void cannotWriteSameKeyTwice() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest2.data", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key, 0L, 42);
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("key already exists");
+        keyFile.writeKey(key, 0L, 42);
+    }
+
+    @Test
+    public void writeThreeKeysCloseAndReopenFileAndReadTheKeys() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest3.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key1, 0L, 42);
+        keyFile.writeKey(key2, 42L, 42 * 2);
+        keyFile.writeKey(key3, 42L * 2, 42 * 3);
+
+        keyFile.close();
+
+        MappedKeyFile keyFile2 = new MappedKeyFile("mkftest3.data", 32);
+
+        Assert.assertEquals(3, keyFile2.getNoKeys());
+
+        ValueInfo result1 = keyFile2.readKey(key1);
+
+        Assert.assertNotNull(result1);
+        Assert.assertEquals(0L, result1.position);
+        Assert.assertEquals(42, result1.length);
+
+        ValueInfo result2 = keyFile2.readKey(key2);
+
+        Assert.assertNotNull(result2);
+        Assert.assertEquals(42L, result2.position);
+        Assert.assertEquals(42 * 2, result2.length);
+
+        ValueInfo result3 = keyFile2.readKey(key3);
+
+        Assert.assertNotNull(result3);
+        Assert.assertEquals(42L * 2, result3.position);
+        Assert.assertEquals(42 * 3, result3.length);
+    }
+
+    @Test
+    public void writeManyKeysGrowingTheTableCloseAndReopen() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest4.data", 32);
+
+        long initialCapacity = keyFile.getCapacity();
+
+        byte[][] keys = new byte[5000][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            keyFile.writeKey(keys[k], k * 10L, k);
+        }
+
+        Assert.assertTrue(keyFile.getCapacity() > initialCapacity);
+        Assert.assertEquals(keys.length, keyFile.getNoKeys());
+
+        for (int k = 0; k < keys.length; k++) {
+            ValueInfo result = keyFile.readKey(keys[k]);
+
+            Assert.assertNotNull(result);
+            Assert.assertEquals(k * 10L, result.position);
+            Assert.assertEquals(k, result.length);
+        }
+
+        keyFile.close();
+
+        MappedKeyFile keyFile2 = new MappedKeyFile("mkftest4.data", 32);
+
+        Assert.assertEquals(keys.length, keyFile2.getNoKeys());
+
+        for (int k = 0; k < keys.length; k++) {
+            ValueInfo result = keyFile2.readKey(keys[k]);
+
+            Assert.assertNotNull(result);
+            Assert.assertEquals(k * 10L, result.position);
+            Assert.assertEquals(k, result.length);
+        }
+
+        Assert.assertNull(keyFile2.readKey(FactoryHelper.createRandomBytes(32)));
+    }
+
+    @Test
+    public void updateKeyCloseAndReopenFile() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest9.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key1, 0L, 42);
+        keyFile.updateKey(key1, 42L, 42 * 2);
+        keyFile.updateKey(key2, 42L * 3, 42);
+
+        Assert.assertEquals(2, keyFile.getNoKeys());
+
+        keyFile.close();
+
+        MappedKeyFile keyFile2 = new MappedKeyFile("mkftest9.data", 32);
+
+        ValueInfo result1 = keyFile2.readKey(key1);
+
+        Assert.assertEquals(42L, result1.position);
+        Assert.assertEquals(42 * 2, result1.length);
+
+        ValueInfo result2 = keyFile2.readKey(key2);
+
+        Assert.assertEquals(42L * 3, result2.position);
+        Assert.assertEquals(42, result2.length);
+    }
+
+    @Test
+    public void removeKeysFromPosition() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest10.data", 32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        keyFile.writeKey(key1, 0L, 42);
+        keyFile.writeKey(key2, 42L, 42);
+        keyFile.writeKey(key3, 42L * 2, 42);
+
+        keyFile.removeKeysFrom(42L);
+
+        Assert.assertTrue(keyFile.containsKey(key1));
+        Assert.assertFalse(keyFile.containsKey(key2));
+        Assert.assertFalse(keyFile.containsKey(key3));
+        Assert.assertEquals(1, keyFile.getNoKeys());
+
+        keyFile.close();
+
+        MappedKeyFile keyFile2 = new MappedKeyFile("mkftest10.data", 32);
+
+        Assert.assertTrue(keyFile2.containsKey(key1));
+        Assert.assertFalse(keyFile2.containsKey(key2));
+        Assert.assertEquals(1, keyFile2.getNoKeys());
+    }
+
+    @Test
+    public void cannotWriteNullKey() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest5.data", 32);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid key");
+
+        keyFile.writeKey(null, 0L, 42);
+    }
+
+    @Test
+    public void cannotWriteKeyWithInvalidLength() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest6.data", 32);
+
+        byte[] key = FactoryHelper.createRandomBytes(42);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid key");
+
+        keyFile.writeKey(key, 0L, 42);
+    }
+
+    @Test
+    public void cannotOpenFileWithOtherKeyLength() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest7.data", 32);
+        keyFile.close();
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("invalid key length");
+
+        new MappedKeyFile("mkftest7.data", 20);
+    }
+
+    @Test
+    public void getKeysInOrder() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest11.data", 32);
+
+        KeyFileTest.getKeysInOrder(keyFile);
+
+        keyFile.close();
+    }
+
+    @Test
+    public void forEachKey() throws IOException {
+        MappedKeyFile keyFile = createKeyFile("mkftest12.data", 32);
+
+        KeyFileTest.forEachKey(keyFile);
+
+        keyFile.close();
+    }
+
+    private static MappedKeyFile createKeyFile(String name, int keyLength) throws IOException {
+        new File(name).delete();
+
+        return new MappedKeyFile(name, keyLength);
+    }
+}
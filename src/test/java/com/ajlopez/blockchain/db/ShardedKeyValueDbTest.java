@@ -0,0 +1,258 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.WriteBatch;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ShardedKeyValueDbTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void saveAndRetrieveKeyValues() throws IOException {
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata0", 32, 4);
+
+        Assert.assertEquals(4, keyValueDb.getNoShards());
+
+        byte[][] keys = new byte[100][];
+        byte[][] values = new byte[100][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+
+            keyValueDb.setValue(keys[k], values[k]);
+        }
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb.getValue(keys[k]));
+
+        Assert.assertNull(keyValueDb.getValue(FactoryHelper.createRandomBytes(32)));
+    }
+
+    @Test
+    public void writeBatchCloseReopenAndRetrieveKeyValues() throws IOException {
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata1", 32, 4, KeyIndexType.MAPPED);
+
+        byte[][] keys = new byte[100][];
+        byte[][] values = new byte[100][];
+
+        WriteBatch batch = new WriteBatch();
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+
+            batch.put(keys[k], values[k]);
+        }
+
+        keyValueDb.write(batch);
+        keyValueDb.close();
+
+        ShardedKeyValueDb keyValueDb2 = new ShardedKeyValueDb("sdata1", 32, 4, KeyIndexType.MAPPED);
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb2.getValue(keys[k]));
+    }
+
+    @Test
+    public void saveAndRetrieveKeyValuesFromManyThreads() throws Exception {
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata2", 32, 8);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++)
+            threads.add(new Thread(() -> {
+                try {
+                    for (int k = 0; k < 100; k++) {
+                        byte[] key = FactoryHelper.createRandomBytes(32);
+                        byte[] value = FactoryHelper.createRandomBytes(42);
+
+                        keyValueDb.setValue(key, value);
+
+                        if (!Arrays.equals(value, keyValueDb.getValue(key)))
+                            throw new IllegalStateException("unexpected value");
+                    }
+                }
+                catch (Exception ex) {
+                    failure.set(ex);
+                }
+            }));
+
+        for (Thread thread : threads)
+            thread.start();
+
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertNull(failure.get());
+    }
+
+    @Test
+    public void getValues() throws IOException {
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata4", 32, 4);
+
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        for (int k = 0; k < 20; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            keyValueDb.setValue(key, value);
+
+            keys.add(key);
+            values.add(value);
+        }
+
+        keys.add(FactoryHelper.createRandomBytes(32));
+        values.add(null);
+
+        List<byte[]> result = keyValueDb.getValues(keys);
+
+        Assert.assertEquals(keys.size(), result.size());
+
+        for (int k = 0; k < keys.size(); k++)
+            Assert.assertArrayEquals(values.get(k), result.get(k));
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void containsKeys() throws IOException {
+        deleteFiles("sdata8");
+
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata8", 32, 4);
+
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < 20; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+
+            if (k % 2 == 0)
+                keyValueDb.setValue(key, FactoryHelper.createRandomBytes(42));
+
+            keys.add(key);
+        }
+
+        boolean[] result = keyValueDb.containsKeys(keys);
+
+        Assert.assertEquals(keys.size(), result.length);
+
+        for (int k = 0; k < keys.size(); k++) {
+            Assert.assertEquals(k % 2 == 0, result[k]);
+            Assert.assertEquals(k % 2 == 0, keyValueDb.containsKey(keys.get(k)));
+        }
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void scanKeysInOrder() throws IOException {
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata5", 1, 4);
+
+        for (int k = 0; k < 256; k++)
+            keyValueDb.setValue(new byte[] { (byte)k }, new byte[] { (byte)k, 0x01 });
+
+        Iterator<KeyValue> iterator = keyValueDb.scan(new byte[] { 0x10 }, new byte[] { (byte)0xf0 });
+
+        for (int k = 0x10; k < 0xf0; k++) {
+            Assert.assertTrue(iterator.hasNext());
+
+            KeyValue keyValue = iterator.next();
+
+            Assert.assertArrayEquals(new byte[] { (byte)k }, keyValue.getKey());
+            Assert.assertArrayEquals(new byte[] { (byte)k, 0x01 }, keyValue.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void spreadKeysWithSameFirstBytes() throws IOException {
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata6", 32, 4);
+        int[] counters = new int[keyValueDb.getNoShards()];
+
+        for (int k = 0; k < 4000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            key[0] = 0x01;
+            key[1] = 0x02;
+
+            counters[keyValueDb.getShardNumber(key)]++;
+        }
+
+        for (int counter : counters)
+            Assert.assertTrue(counter > 800);
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void cannotCreateWithoutShards() throws IOException {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid number of shards");
+
+        new ShardedKeyValueDb("sdata3", 32, 0);
+    }
+
+    @Test
+    public void compactKeepingKeysReferencedFromOtherShards() throws IOException {
+        deleteFiles("sdata7");
+
+        ShardedKeyValueDb keyValueDb = new ShardedKeyValueDb("sdata7", 32, 4);
+
+        byte[][] keys = new byte[20][];
+        byte[][] values = new byte[20][];
+
+        // each value references the key of the next one, the chain crosses the shards
+        for (int k = keys.length; k-- > 0;) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = k == keys.length - 1 ? FactoryHelper.createRandomBytes(16) : keys[k + 1];
+        }
+
+        for (int k = 0; k < keys.length; k++)
+            keyValueDb.setValue(keys[k], values[k]);
+
+        byte[] unreferencedKey = FactoryHelper.createRandomBytes(32);
+        keyValueDb.setValue(unreferencedKey, FactoryHelper.createRandomBytes(16));
+
+        KeyReferences keyReferences = value -> value.length == 32 ? Collections.singletonList(value) : Collections.emptyList();
+
+        keyValueDb.startCompaction();
+
+        CompactionResult result = keyValueDb.compact(Collections.singletonList(keys[0]), keyReferences);
+
+        Assert.assertEquals(keys.length, result.getNoKeys());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], keyValueDb.getValue(keys[k]));
+
+        Assert.assertNull(keyValueDb.getValue(unreferencedKey));
+
+        keyValueDb.close();
+    }
+
+    private static void deleteFiles(String name) {
+        File[] files = new File(".").listFiles((dir, filename) -> filename.startsWith(name + "."));
+
+        if (files != null)
+            for (File file : files)
+                file.delete();
+    }
+}
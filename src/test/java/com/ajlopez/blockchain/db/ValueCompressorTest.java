@@ -0,0 +1,59 @@
+package com.ajlopez.blockchain.db;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+
+public class ValueCompressorTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void compressAndDecompressZeroes() throws IOException {
+        byte[] value = new byte[1000];
+
+        byte[] result = ValueCompressor.compress(value);
+
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.length < 100);
+        Assert.assertArrayEquals(value, ValueCompressor.decompress(result));
+    }
+
+    @Test
+    public void compressAndDecompressRepeatedBytes() throws IOException {
+        byte[] bytes = FactoryHelper.createRandomBytes(32);
+        byte[] value = new byte[bytes.length * 10];
+
+        for (int k = 0; k < 10; k++)
+            System.arraycopy(bytes, 0, value, k * bytes.length, bytes.length);
+
+        byte[] result = ValueCompressor.compress(value);
+
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.length < value.length / 2);
+        Assert.assertArrayEquals(value, ValueCompressor.decompress(result));
+    }
+
+    @Test
+    public void noCompressionForShortValue() {
+        Assert.assertNull(ValueCompressor.compress(new byte[ValueCompressor.MIN_COMPRESSED_LENGTH - 1]));
+    }
+
+    @Test
+    public void noCompressionForRandomValue() {
+        Assert.assertNull(ValueCompressor.compress(FactoryHelper.createRandomBytes(1000)));
+    }
+
+    @Test
+    public void decompressInvalidValue() throws IOException {
+        exception.expect(IOException.class);
+        exception.expectMessage("invalid compressed value");
+
+        ValueCompressor.decompress(new byte[] { (byte)0xff, (byte)0xff, (byte)0xff });
+    }
+}
@@ -72,4 +72,93 @@ public class ValueFileTest {
         Assert.assertEquals(value2.length, nread2);
         Assert.assertArrayEquals(value2, result2);
     }
+
+    @Test
+    public void writeAndReadMappedValue() throws IOException {
+        ValueFile valueFile = new ValueFile("vftest4.data");
+
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        long position = valueFile.writeValue(value);
+
+        byte[] result = valueFile.readValue(position, value.length);
+
+        Assert.assertNotNull(result);
+        Assert.assertArrayEquals(value, result);
+    }
+
+    @Test
+    public void writeCloseReopenAndReadMappedValues() throws IOException {
+        ValueFile valueFile = new ValueFile("vftest5.data");
+
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(100);
+
+        long position1 = valueFile.writeValue(value1);
+        long position2 = valueFile.writeValue(value2);
+        valueFile.close();
+
+        ValueFile valueFile2 = new ValueFile("vftest5.data");
+
+        Assert.assertArrayEquals(value1, valueFile2.readValue(position1, value1.length));
+        Assert.assertArrayEquals(value2, valueFile2.readValue(position2, value2.length));
+    }
+
+    @Test
+    public void readMappedValuesAfterNewWrites() throws IOException {
+        ValueFile valueFile = new ValueFile("vftest6.data");
+
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        long position1 = valueFile.writeValue(value1);
+
+        Assert.assertArrayEquals(value1, valueFile.readValue(position1, value1.length));
+
+        byte[] value2 = FactoryHelper.createRandomBytes(100);
+        long position2 = valueFile.writeValue(value2);
+
+        Assert.assertArrayEquals(value2, valueFile.readValue(position2, value2.length));
+        Assert.assertArrayEquals(value1, valueFile.readValue(position1, value1.length));
+    }
+
+    @Test
+    public void readMappedValuesCrossingSegments() throws IOException {
+        ValueFile valueFile = new ValueFile("vftest7.data", 64);
+
+        byte[][] values = new byte[10][];
+        long[] positions = new long[values.length];
+
+        for (int k = 0; k < values.length; k++) {
+            values[k] = FactoryHelper.createRandomBytes(42);
+            positions[k] = valueFile.writeValue(values[k]);
+        }
+
+        for (int k = 0; k < values.length; k++)
+            Assert.assertArrayEquals(values[k], valueFile.readValue(positions[k], values[k].length));
+    }
+
+    @Test(expected = IOException.class)
+    public void cannotReadMappedValueBeyondEndOfFile() throws IOException {
+        ValueFile valueFile = new ValueFile("vftest8.data");
+
+        long position = valueFile.writeValue(FactoryHelper.createRandomBytes(42));
+
+        valueFile.readValue(position, 1 << 20);
+    }
+
+    @Test
+    public void readTailValuesWhileSegmentIsCompleted() throws IOException {
+        ValueFile valueFile = new ValueFile("vftest9.data", 64);
+        valueFile.truncate(0);
+
+        byte[][] values = new byte[10][];
+        long[] positions = new long[values.length];
+
+        for (int k = 0; k < values.length; k++) {
+            values[k] = FactoryHelper.createRandomBytes(10);
+            positions[k] = valueFile.writeValue(values[k]);
+
+            for (int j = 0; j <= k; j++)
+                Assert.assertArrayEquals(values[j], valueFile.readValue(positions[j], values[j].length));
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.ajlopez.blockchain.net.messages;
+
+import com.ajlopez.blockchain.store.KeyValueStoreType;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class GetStoredValuesMessageTest {
+    @Test
+    public void createMessage() {
+        KeyValueStoreType storeType = KeyValueStoreType.ACCOUNTS;
+        List<byte[]> keys = Arrays.asList(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        GetStoredValuesMessage message = new GetStoredValuesMessage(storeType, keys);
+
+        Assert.assertEquals(MessageType.GET_STORED_VALUES, message.getMessageType());
+        Assert.assertEquals(storeType, message.getStoreType());
+        Assert.assertSame(keys, message.getKeys());
+    }
+}
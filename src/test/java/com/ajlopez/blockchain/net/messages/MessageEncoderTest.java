@@ -13,6 +13,10 @@ import com.ajlopez.blockchain.utils.ByteUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class MessageEncoderTest {
     @Test
     public void encodeBlockMessage() {
@@ -238,6 +242,78 @@ public class MessageEncoderTest {
         Assert.assertArrayEquals(value, skvresult.getValue());
     }
 
+    @Test
+    public void encodeAndDecodeGetStoredValuesMessage() {
+        List<byte[]> keys = Arrays.asList(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        GetStoredValuesMessage message = new GetStoredValuesMessage(KeyValueStoreType.STORAGE, keys);
+
+        byte[] bytes = MessageEncoder.encode(message);
+
+        Assert.assertNotNull(bytes);
+
+        Message result = MessageEncoder.decode(bytes);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(MessageType.GET_STORED_VALUES, result.getMessageType());
+
+        GetStoredValuesMessage gsvresult = (GetStoredValuesMessage)result;
+
+        Assert.assertEquals(KeyValueStoreType.STORAGE, gsvresult.getStoreType());
+        Assert.assertEquals(3, gsvresult.getKeys().size());
+
+        for (int k = 0; k < keys.size(); k++)
+            Assert.assertArrayEquals(keys.get(k), gsvresult.getKeys().get(k));
+    }
+
+    @Test
+    public void encodeAndDecodeStoredKeyValuesMessage() {
+        List<byte[]> keys = Arrays.asList(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+        List<byte[]> values = Arrays.asList(FactoryHelper.createRandomBytes(42), FactoryHelper.createRandomBytes(100));
+
+        StoredKeyValuesMessage message = new StoredKeyValuesMessage(KeyValueStoreType.BLOCKS, keys, values);
+
+        byte[] bytes = MessageEncoder.encode(message);
+
+        Assert.assertNotNull(bytes);
+
+        Message result = MessageEncoder.decode(bytes);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(MessageType.STORED_KEY_VALUES, result.getMessageType());
+
+        StoredKeyValuesMessage skvresult = (StoredKeyValuesMessage)result;
+
+        Assert.assertEquals(KeyValueStoreType.BLOCKS, skvresult.getStoreType());
+        Assert.assertEquals(2, skvresult.getKeys().size());
+        Assert.assertEquals(2, skvresult.getValues().size());
+
+        for (int k = 0; k < keys.size(); k++) {
+            Assert.assertArrayEquals(keys.get(k), skvresult.getKeys().get(k));
+            Assert.assertArrayEquals(values.get(k), skvresult.getValues().get(k));
+        }
+
+        Assert.assertTrue(skvresult.getMissingKeys().isEmpty());
+    }
+
+    @Test
+    public void encodeAndDecodeStoredKeyValuesMessageWithMissingKeys() {
+        List<byte[]> keys = Collections.singletonList(FactoryHelper.createRandomBytes(32));
+        List<byte[]> values = Collections.singletonList(FactoryHelper.createRandomBytes(42));
+        List<byte[]> missingKeys = Arrays.asList(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        StoredKeyValuesMessage message = new StoredKeyValuesMessage(KeyValueStoreType.BLOCKS, keys, values, missingKeys);
+
+        StoredKeyValuesMessage result = (StoredKeyValuesMessage)MessageEncoder.decode(MessageEncoder.encode(message));
+
+        Assert.assertEquals(1, result.getKeys().size());
+        Assert.assertArrayEquals(keys.get(0), result.getKeys().get(0));
+        Assert.assertArrayEquals(values.get(0), result.getValues().get(0));
+        Assert.assertEquals(2, result.getMissingKeys().size());
+        Assert.assertArrayEquals(missingKeys.get(0), result.getMissingKeys().get(0));
+        Assert.assertArrayEquals(missingKeys.get(1), result.getMissingKeys().get(1));
+    }
+
     @Test
     public void encodeAndDecodeGetTrieNodeMessage() {
         Hash topHash = FactoryHelper.createRandomHash();
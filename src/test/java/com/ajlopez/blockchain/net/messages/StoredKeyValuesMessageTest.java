@@ -0,0 +1,40 @@
+package com.ajlopez.blockchain.net.messages;
+
+import com.ajlopez.blockchain.store.KeyValueStoreType;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StoredKeyValuesMessageTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void createMessage() {
+        KeyValueStoreType storeType = KeyValueStoreType.BLOCKS;
+        List<byte[]> keys = Arrays.asList(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+        List<byte[]> values = Arrays.asList(FactoryHelper.createRandomBytes(42), FactoryHelper.createRandomBytes(42));
+
+        StoredKeyValuesMessage message = new StoredKeyValuesMessage(storeType, keys, values);
+
+        Assert.assertEquals(MessageType.STORED_KEY_VALUES, message.getMessageType());
+        Assert.assertEquals(storeType, message.getStoreType());
+        Assert.assertSame(keys, message.getKeys());
+        Assert.assertSame(values, message.getValues());
+    }
+
+    @Test
+    public void keysAndValuesMismatch() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("keys and values mismatch");
+
+        new StoredKeyValuesMessage(KeyValueStoreType.BLOCKS, Collections.singletonList(FactoryHelper.createRandomBytes(32)), Collections.emptyList());
+    }
+}
@@ -20,6 +20,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -502,6 +504,84 @@ public class MessageProcessorTest {
         Assert.assertArrayEquals(value, result);
     }
 
+    @Test
+    public void processGetStoredValuesMessage() throws IOException {
+        Peer sender = FactoryHelper.createRandomPeer();
+        SendProcessor outputProcessor = new SendProcessor(sender);
+
+        Peer receiver = FactoryHelper.createRandomPeer();
+        SimpleMessageChannel channel = new SimpleMessageChannel();
+        outputProcessor.connectToPeer(receiver, channel);
+
+        KeyValueStores stores = new MemoryKeyValueStores();
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value3 = FactoryHelper.createRandomBytes(42);
+
+        stores.getBlockKeyValueStore().setValue(key1, value1);
+        stores.getBlockKeyValueStore().setValue(key3, value3);
+
+        MessageProcessor processor = new MessageProcessor(null, null, null, null, null, outputProcessor, null, stores, null);
+
+        GetStoredValuesMessage message = new GetStoredValuesMessage(KeyValueStoreType.BLOCKS, Arrays.asList(key1, key2, key3));
+
+        processor.processMessage(message, receiver);
+
+        StoredKeyValuesMessage expected = new StoredKeyValuesMessage(KeyValueStoreType.BLOCKS, Arrays.asList(key1, key3), Arrays.asList(value1, value3), Collections.singletonList(key2));
+
+        expectedMessage(channel, sender, expected);
+    }
+
+    @Test
+    public void processStoredKeyValuesMessage() throws ExecutionException, InterruptedException {
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key1 = HashUtils.calculateHash(value1).getBytes();
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = HashUtils.calculateHash(value2).getBytes();
+
+        KeyValueProcessor keyValueProcessor = new KeyValueProcessor();
+
+        MessageProcessor processor = new MessageProcessor(null, null, null, null, null, null, null, null, keyValueProcessor);
+
+        CompletableFuture<byte[]> completableFuture1 = new CompletableFuture<>();
+        CompletableFuture<byte[]> completableFuture2 = new CompletableFuture<>();
+        keyValueProcessor.resolve(KeyValueStoreType.ACCOUNTS, key1, completableFuture1);
+        keyValueProcessor.resolve(KeyValueStoreType.ACCOUNTS, key2, completableFuture2);
+
+        StoredKeyValuesMessage message = new StoredKeyValuesMessage(KeyValueStoreType.ACCOUNTS, Arrays.asList(key1, key2), Arrays.asList(value1, value2));
+
+        processor.processMessage(message, null);
+
+        Assert.assertArrayEquals(value1, completableFuture1.get());
+        Assert.assertArrayEquals(value2, completableFuture2.get());
+    }
+
+    @Test
+    public void processStoredKeyValuesMessageWithMissingKeys() throws ExecutionException, InterruptedException {
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key1 = HashUtils.calculateHash(value1).getBytes();
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        KeyValueProcessor keyValueProcessor = new KeyValueProcessor();
+
+        MessageProcessor processor = new MessageProcessor(null, null, null, null, null, null, null, null, keyValueProcessor);
+
+        CompletableFuture<byte[]> completableFuture1 = new CompletableFuture<>();
+        CompletableFuture<byte[]> completableFuture2 = new CompletableFuture<>();
+        keyValueProcessor.resolve(KeyValueStoreType.ACCOUNTS, key1, completableFuture1);
+        keyValueProcessor.resolve(KeyValueStoreType.ACCOUNTS, key2, completableFuture2);
+
+        StoredKeyValuesMessage message = new StoredKeyValuesMessage(KeyValueStoreType.ACCOUNTS, Collections.singletonList(key1), Collections.singletonList(value1), Collections.singletonList(key2));
+
+        processor.processMessage(message, null);
+
+        Assert.assertArrayEquals(value1, completableFuture1.get());
+        Assert.assertTrue(completableFuture2.isDone());
+        Assert.assertNull(completableFuture2.get());
+    }
+
     public static void expectedMessage(SimpleMessageChannel channel, Peer expectedSender, Message expectedMessage) {
         List<Pair<Peer,Message>> peerMessages = channel.getPeerMessages();
 
@@ -0,0 +1,140 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class MutableTrieTest {
+    @Test
+    public void getUnknownValue() throws IOException {
+        MutableTrie mutableTrie = new MutableTrie(new Trie());
+
+        Assert.assertNull(mutableTrie.get(FactoryHelper.createRandomBytes(32)));
+        Assert.assertFalse(mutableTrie.hasChanges());
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, mutableTrie.getHash());
+    }
+
+    @Test
+    public void putAndGetValues() throws IOException {
+        MutableTrie mutableTrie = new MutableTrie(new Trie());
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(32);
+
+        mutableTrie.put(key1, value1);
+        mutableTrie.put(key2, value2);
+
+        Assert.assertTrue(mutableTrie.hasChanges());
+        Assert.assertArrayEquals(value1, mutableTrie.get(key1));
+        Assert.assertArrayEquals(value2, mutableTrie.get(key2));
+
+        Trie result = mutableTrie.freeze();
+
+        Assert.assertFalse(mutableTrie.hasChanges());
+        Assert.assertEquals(new Trie().put(key1, value1).put(key2, value2).getHash(), result.getHash());
+        Assert.assertArrayEquals(value1, mutableTrie.get(key1));
+        Assert.assertArrayEquals(value2, mutableTrie.get(key2));
+    }
+
+    @Test
+    public void changeValueAfterPut() throws IOException {
+        MutableTrie mutableTrie = new MutableTrie(new Trie());
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(32);
+        byte[] original = value.clone();
+
+        mutableTrie.put(key, value);
+        value[0]++;
+
+        Assert.assertArrayEquals(original, mutableTrie.get(key));
+    }
+
+    @Test
+    public void deleteValues() throws IOException {
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(32);
+
+        Trie trie = new Trie().put(key1, value1).put(key2, value2);
+        MutableTrie mutableTrie = new MutableTrie(trie);
+
+        mutableTrie.delete(key1);
+
+        Assert.assertNull(mutableTrie.get(key1));
+        Assert.assertArrayEquals(value2, mutableTrie.get(key2));
+        Assert.assertArrayEquals(value1, trie.get(key1));
+
+        Assert.assertEquals(new Trie().put(key2, value2).getHash(), mutableTrie.getHash());
+
+        mutableTrie.delete(key2);
+
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, mutableTrie.getHash());
+    }
+
+    @Test
+    public void freezeWithoutChanges() throws IOException {
+        Trie trie = new Trie().put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+        MutableTrie mutableTrie = new MutableTrie(trie);
+
+        Assert.assertSame(trie, mutableTrie.freeze());
+    }
+
+    @Test
+    public void updateSavedTrieAndSave() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+        Trie expected = new Trie();
+
+        byte[][] keys = new byte[1000][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            trie = trie.put(keys[k], value);
+            expected = expected.put(keys[k], value);
+        }
+
+        trie.save();
+
+        MutableTrie mutableTrie = new MutableTrie(store.retrieve(trie.getHash()));
+
+        for (int k = 0; k < keys.length; k += 3) {
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            mutableTrie.put(keys[k], FactoryHelper.createRandomBytes(32));
+            mutableTrie.put(keys[k], value);
+            expected = expected.put(keys[k], value);
+        }
+
+        for (int k = 1; k < keys.length; k += 3) {
+            mutableTrie.delete(keys[k]);
+            expected = expected.delete(keys[k]);
+        }
+
+        for (int k = 0; k < 100; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            mutableTrie.put(key, value);
+            expected = expected.put(key, value);
+        }
+
+        mutableTrie.save();
+
+        Assert.assertEquals(expected.getHash(), mutableTrie.getHash());
+
+        Trie result = store.retrieve(mutableTrie.getHash());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(expected.get(keys[k]), result.get(keys[k]));
+    }
+}
@@ -0,0 +1,188 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+public class TrieDiffTest {
+    @Test
+    public void diffSameTrie() throws IOException {
+        Trie trie = createTrie(new TreeMap<>(), 100, new TrieStore(new HashMapStore()));
+
+        TrieDiff trieDiff = new TrieDiff(trie, trie);
+
+        trieDiff.process();
+
+        Assert.assertTrue(trieDiff.getChanges().isEmpty());
+        Assert.assertTrue(trieDiff.getNewNodeHashes().isEmpty());
+    }
+
+    @Test
+    public void diffFromEmptyTrie() throws IOException {
+        Map<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+        Trie trie = createTrie(entries, 100, new TrieStore(new HashMapStore()));
+
+        TrieDiff trieDiff = new TrieDiff(new Trie(), trie);
+
+        trieDiff.process();
+
+        assertChanges(new TreeMap<>(), entries, trieDiff.getChanges());
+        Assert.assertEquals(getNodeHashes(trie), new HashSet<>(trieDiff.getNewNodeHashes()));
+
+        for (TrieChange change : trieDiff.getChanges())
+            Assert.assertTrue(change.isAdded());
+    }
+
+    @Test
+    public void diffToEmptyTrie() throws IOException {
+        Map<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+        Trie trie = createTrie(entries, 100, new TrieStore(new HashMapStore()));
+
+        TrieDiff trieDiff = new TrieDiff(trie, new Trie());
+
+        trieDiff.process();
+
+        assertChanges(entries, new TreeMap<>(), trieDiff.getChanges());
+        Assert.assertTrue(trieDiff.getNewNodeHashes().isEmpty());
+
+        for (TrieChange change : trieDiff.getChanges())
+            Assert.assertTrue(change.isRemoved());
+    }
+
+    @Test
+    public void diffAddedChangedAndRemovedKeyValues() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Map<ByteArrayWrapper, byte[]> oldEntries = new TreeMap<>();
+        Trie oldTrie = createTrie(oldEntries, 1000, store);
+
+        Map<ByteArrayWrapper, byte[]> newEntries = new TreeMap<>(oldEntries);
+        Trie newTrie = oldTrie;
+        List<ByteArrayWrapper> keys = new ArrayList<>(oldEntries.keySet());
+
+        for (int k = 0; k < 10; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            newEntries.put(new ByteArrayWrapper(key), value);
+            newTrie = newTrie.put(key, value);
+
+            ByteArrayWrapper changedKey = keys.get(k * 2);
+            byte[] changedValue = FactoryHelper.createRandomBytes(32);
+
+            newEntries.put(changedKey, changedValue);
+            newTrie = newTrie.put(changedKey.getBytes(), changedValue);
+
+            ByteArrayWrapper removedKey = keys.get(k * 2 + 1);
+
+            newEntries.remove(removedKey);
+            newTrie = newTrie.delete(removedKey.getBytes());
+        }
+
+        oldTrie.save();
+        newTrie.save();
+
+        TrieDiff trieDiff = new TrieDiff(store.retrieve(oldTrie.getHash()), store.retrieve(newTrie.getHash()));
+
+        trieDiff.process();
+
+        Assert.assertEquals(30, trieDiff.getChanges().size());
+        assertChanges(oldEntries, newEntries, trieDiff.getChanges());
+
+        Set<Hash> expected = getNodeHashes(newTrie);
+        expected.removeAll(getNodeHashes(oldTrie));
+
+        Assert.assertEquals(expected, new HashSet<>(trieDiff.getNewNodeHashes()));
+        Assert.assertEquals(expected.size(), trieDiff.getNewNodeHashes().size());
+    }
+
+    @Test
+    public void diffKeysOfDifferentLengths() throws IOException {
+        Trie oldTrie = new Trie()
+                .put(new byte[] { 0x01, 0x02, 0x03 }, new byte[] { 0x01 })
+                .put(new byte[] { 0x01, 0x02, 0x04 }, new byte[] { 0x02 });
+        Trie newTrie = oldTrie
+                .put(new byte[] { 0x01 }, new byte[] { 0x03 })
+                .put(new byte[] { 0x01, 0x12 }, new byte[] { 0x04 })
+                .put(new byte[] { 0x01, 0x02, 0x03 }, new byte[] { 0x05 });
+
+        TrieDiff trieDiff = new TrieDiff(oldTrie, newTrie);
+
+        trieDiff.process();
+
+        List<TrieChange> changes = trieDiff.getChanges();
+
+        Assert.assertEquals(3, changes.size());
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, changes.get(0).getKey());
+        Assert.assertTrue(changes.get(0).isAdded());
+        Assert.assertArrayEquals(new byte[] { 0x03 }, changes.get(0).getNewValue());
+
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02, 0x03 }, changes.get(1).getKey());
+        Assert.assertArrayEquals(new byte[] { 0x01 }, changes.get(1).getOldValue());
+        Assert.assertArrayEquals(new byte[] { 0x05 }, changes.get(1).getNewValue());
+
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x12 }, changes.get(2).getKey());
+        Assert.assertTrue(changes.get(2).isAdded());
+    }
+
+    private static void assertChanges(Map<ByteArrayWrapper, byte[]> oldEntries, Map<ByteArrayWrapper, byte[]> newEntries, List<TrieChange> changes) {
+        Set<ByteArrayWrapper> keys = new TreeSet<>(oldEntries.keySet());
+        keys.addAll(newEntries.keySet());
+
+        Iterator<TrieChange> iterator = changes.iterator();
+
+        for (ByteArrayWrapper key : keys) {
+            byte[] oldValue = oldEntries.get(key);
+            byte[] newValue = newEntries.get(key);
+
+            if (Arrays.equals(oldValue, newValue))
+                continue;
+
+            Assert.assertTrue(iterator.hasNext());
+
+            TrieChange change = iterator.next();
+
+            Assert.assertArrayEquals(key.getBytes(), change.getKey());
+            Assert.assertArrayEquals(oldValue, change.getOldValue());
+            Assert.assertArrayEquals(newValue, change.getNewValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    private static Trie createTrie(Map<ByteArrayWrapper, byte[]> entries, int nentries, TrieStore store) throws IOException {
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < nentries; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            entries.put(new ByteArrayWrapper(key), value);
+            trie = trie.put(key, value);
+        }
+
+        return trie;
+    }
+
+    private static Set<Hash> getNodeHashes(Trie trie) throws IOException {
+        Set<Hash> hashes = new HashSet<>();
+
+        TrieNodeVisitor visitor = new TrieNodeVisitor() {
+            @Override
+            public void processNode(Trie node) {
+                hashes.add(node.getHash());
+            }
+        };
+
+        visitor.process(trie);
+
+        return hashes;
+    }
+}
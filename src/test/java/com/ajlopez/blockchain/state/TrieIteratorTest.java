@@ -0,0 +1,112 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+public class TrieIteratorTest {
+    @Test
+    public void iterateEmptyTrie() {
+        Iterator<KeyValue> iterator = new Trie().iterator();
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void cannotGetNextKeyValueFromEmptyTrie() {
+        new Trie().iterator().next();
+    }
+
+    @Test
+    public void iterateSingleKeyValue() throws IOException {
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        Iterator<KeyValue> iterator = new Trie().put(key, value).iterator();
+
+        Assert.assertTrue(iterator.hasNext());
+
+        KeyValue keyValue = iterator.next();
+
+        Assert.assertArrayEquals(key, keyValue.getKey());
+        Assert.assertArrayEquals(value, keyValue.getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void iterateKeyValuesInKeyOrder() throws IOException {
+        Map<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+        Trie trie = new Trie();
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            entries.put(new ByteArrayWrapper(key), value);
+            trie = trie.put(key, value);
+        }
+
+        assertKeyValues(entries, trie.iterator());
+    }
+
+    @Test
+    public void iterateKeysOfDifferentLengths() throws IOException {
+        Map<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+        Trie trie = new Trie();
+
+        for (byte[] key : new byte[][] { new byte[] { 0x01 }, new byte[] { 0x01, 0x02 }, new byte[] { 0x01, 0x02, 0x03 }, new byte[] { 0x01, 0x12 }, new byte[] { 0x10 }, new byte[0] }) {
+            byte[] value = FactoryHelper.createRandomBytes(10);
+
+            entries.put(new ByteArrayWrapper(key), value);
+            trie = trie.put(key, value);
+        }
+
+        assertKeyValues(entries, trie.iterator());
+    }
+
+    @Test
+    public void iterateRetrievedTrieWithoutKeepingLoadedNodes() throws IOException {
+        Map<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            entries.put(new ByteArrayWrapper(key), value);
+            trie = trie.put(key, value);
+        }
+
+        trie.save();
+
+        Trie retrieved = store.retrieve(trie.getHash());
+
+        assertKeyValues(entries, retrieved.iterator());
+
+        Assert.assertEquals(0, retrieved.getLoadedSubNodes().length);
+    }
+
+    private static void assertKeyValues(Map<ByteArrayWrapper, byte[]> entries, Iterator<KeyValue> iterator) {
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : entries.entrySet()) {
+            Assert.assertTrue(iterator.hasNext());
+
+            KeyValue keyValue = iterator.next();
+
+            Assert.assertArrayEquals(entry.getKey().getBytes(), keyValue.getKey());
+            Assert.assertArrayEquals(entry.getValue(), keyValue.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+}
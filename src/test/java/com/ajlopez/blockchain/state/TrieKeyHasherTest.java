@@ -0,0 +1,68 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.HashUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TrieKeyHasherTest {
+    @Test
+    public void hashKey() {
+        TrieKeyHasher keyHasher = new TrieKeyHasher();
+        byte[] key = FactoryHelper.createRandomBytes(20);
+
+        Assert.assertFalse(keyHasher.hasPreimageStore());
+        Assert.assertArrayEquals(HashUtils.keccak256(key), keyHasher.hashKey(key));
+    }
+
+    @Test
+    public void putKeyWithoutPreimageStore() throws IOException {
+        TrieKeyHasher keyHasher = new TrieKeyHasher();
+        byte[] key = FactoryHelper.createRandomBytes(20);
+
+        byte[] result = keyHasher.putKey(key);
+
+        Assert.assertArrayEquals(HashUtils.keccak256(key), result);
+        Assert.assertNull(keyHasher.getPreimage(result));
+    }
+
+    @Test
+    public void putKeyAndGetPreimage() throws IOException {
+        HashMapStore preimageStore = new HashMapStore();
+        TrieKeyHasher keyHasher = new TrieKeyHasher(preimageStore);
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        Assert.assertTrue(keyHasher.hasPreimageStore());
+
+        byte[] hashedKey = keyHasher.hashKey(key);
+
+        Assert.assertNull(keyHasher.getPreimage(hashedKey));
+
+        Assert.assertArrayEquals(hashedKey, keyHasher.putKey(key));
+        Assert.assertArrayEquals(key, keyHasher.getPreimage(hashedKey));
+        Assert.assertArrayEquals(key, preimageStore.getValue(hashedKey));
+    }
+
+    @Test
+    public void putKeyTwice() throws IOException {
+        int[] nwrites = new int[1];
+        HashMapStore preimageStore = new HashMapStore() {
+            @Override
+            public void setValue(byte[] key, byte[] value) {
+                nwrites[0]++;
+                super.setValue(key, value);
+            }
+        };
+
+        TrieKeyHasher keyHasher = new TrieKeyHasher(preimageStore);
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        keyHasher.putKey(key);
+        keyHasher.putKey(key);
+
+        Assert.assertEquals(1, nwrites[0]);
+    }
+}
@@ -58,6 +58,9 @@ public class TrieKeyUtilsTest {
         Assert.assertEquals(3, TrieKeyUtils.getSharedLength(skey33, 3, key, 3));
         Assert.assertEquals(2, TrieKeyUtils.getSharedLength(skey33, 2, key, 3));
         Assert.assertEquals(0, TrieKeyUtils.getSharedLength(skey33, 3, key, 0));
+
+        Assert.assertEquals(3, TrieKeyUtils.getSharedLength(new byte[] { (byte)0x99, 0x20 }, 3, new byte[] { (byte)0x99, 0x20 }, 0));
+        Assert.assertEquals(1, TrieKeyUtils.getSharedLength(new byte[] { 0x12 }, 2, new byte[] { 0x01 }, 1));
     }
 
     @Test
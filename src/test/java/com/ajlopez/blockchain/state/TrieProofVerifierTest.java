@@ -0,0 +1,161 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TrieProofVerifierTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void verifyKeyValue() throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        Trie trie = createTrie(keys, values, 1000);
+
+        List<byte[]> proof = trie.getProof(keys.get(42));
+
+        Assert.assertFalse(proof.isEmpty());
+        Assert.assertArrayEquals(trie.getEncoded(), proof.get(0));
+
+        Assert.assertTrue(TrieProofVerifier.verify(trie.getHash(), keys.get(42), values.get(42), proof));
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), keys.get(42), values.get(41), proof));
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), keys.get(42), null, proof));
+        Assert.assertFalse(TrieProofVerifier.verify(FactoryHelper.createRandomHash(), keys.get(42), values.get(42), proof));
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), keys.get(41), values.get(41), proof));
+    }
+
+    @Test
+    public void verifyKeyValueInRetrievedTrie() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(32);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        trie = trie.put(key, value);
+        trie.save();
+
+        List<byte[]> proof = store.retrieve(trie.getHash()).getProof(key);
+
+        Assert.assertTrue(TrieProofVerifier.verify(trie.getHash(), key, value, proof));
+    }
+
+    @Test
+    public void verifyMissingKey() throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        Trie trie = createTrie(keys, values, 1000);
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        List<byte[]> proof = trie.getProof(key);
+
+        Assert.assertTrue(TrieProofVerifier.verify(trie.getHash(), key, null, proof));
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), key, values.get(0), proof));
+    }
+
+    @Test
+    public void verifyMissingKeyInEmptyTrie() throws IOException {
+        Trie trie = new Trie();
+        byte[] key = FactoryHelper.createRandomBytes(32);
+
+        List<byte[]> proof = trie.getProof(key);
+
+        Assert.assertEquals(1, proof.size());
+        Assert.assertTrue(TrieProofVerifier.verify(Trie.EMPTY_TRIE_HASH, key, null, proof));
+    }
+
+    @Test
+    public void verifyKeyValueWithIncompleteProof() throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        Trie trie = createTrie(keys, values, 1000);
+
+        List<byte[]> proof = trie.getProof(keys.get(0));
+
+        proof.remove(proof.size() - 1);
+
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), keys.get(0), values.get(0), proof));
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), keys.get(0), null, proof));
+    }
+
+    @Test
+    public void verifyKeyValueWithTamperedProof() throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        Trie trie = createTrie(keys, values, 1000);
+
+        List<byte[]> proof = trie.getProof(keys.get(0));
+        byte[] last = proof.get(proof.size() - 1).clone();
+
+        last[last.length - 1] ^= 0x01;
+        proof.set(proof.size() - 1, last);
+
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), keys.get(0), values.get(0), proof));
+    }
+
+    @Test
+    public void verifyMultipleKeyValues() throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        Trie trie = createTrie(keys, values, 1000);
+
+        List<byte[]> proofKeys = new ArrayList<>(keys.subList(0, 10));
+        List<byte[]> proofValues = new ArrayList<>(values.subList(0, 10));
+        int nnodes = 0;
+
+        for (byte[] key : proofKeys)
+            nnodes += trie.getProof(key).size();
+
+        byte[] missingKey = FactoryHelper.createRandomBytes(32);
+
+        proofKeys.add(missingKey);
+        proofValues.add(null);
+        nnodes += trie.getProof(missingKey).size();
+
+        List<byte[]> proof = trie.getProof(proofKeys);
+
+        Assert.assertTrue(proof.size() < nnodes);
+        Assert.assertTrue(TrieProofVerifier.verify(trie.getHash(), proofKeys, proofValues, proof));
+
+        proofValues.set(5, values.get(20));
+
+        Assert.assertFalse(TrieProofVerifier.verify(trie.getHash(), proofKeys, proofValues, proof));
+    }
+
+    @Test
+    public void cannotVerifyKeysAndValuesOfDifferentSizes() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("keys and values have different sizes");
+
+        TrieProofVerifier.verify(Trie.EMPTY_TRIE_HASH, Collections.singletonList(FactoryHelper.createRandomBytes(32)), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static Trie createTrie(List<byte[]> keys, List<byte[]> values, int nentries) throws IOException {
+        Trie trie = new Trie();
+
+        for (int k = 0; k < nentries; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            keys.add(key);
+            values.add(value);
+            trie = trie.put(key, value);
+        }
+
+        return trie;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ajlopez.blockchain.state;
+
+import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.KeyValue;
+import com.ajlopez.blockchain.store.TrieStore;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+
+public class TrieSnapshotTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void writeAndReadEmptyTrie() throws IOException {
+        new File("tstest1.data").delete();
+
+        Assert.assertEquals(0, TrieSnapshot.write(new Trie(), "tstest1.data"));
+
+        Trie result = TrieSnapshot.read("tstest1.data", new TrieStore(new HashMapStore()));
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, result.getHash());
+    }
+
+    @Test
+    public void writeAndReadTrie() throws IOException {
+        new File("tstest2.data").delete();
+
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 1000; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(k % 100 + 1));
+
+        trie.save();
+
+        Assert.assertEquals(1000, TrieSnapshot.write(store.retrieve(trie.getHash()), "tstest2.data"));
+
+        TrieStore newStore = new TrieStore(new HashMapStore());
+        Trie result = TrieSnapshot.read("tstest2.data", newStore);
+
+        Assert.assertEquals(trie.getHash(), result.getHash());
+
+        Iterator<KeyValue> iterator = trie.iterator();
+        Iterator<KeyValue> resultIterator = result.iterator();
+
+        while (iterator.hasNext()) {
+            KeyValue keyValue = iterator.next();
+            KeyValue resultKeyValue = resultIterator.next();
+
+            Assert.assertArrayEquals(keyValue.getKey(), resultKeyValue.getKey());
+            Assert.assertArrayEquals(keyValue.getValue(), resultKeyValue.getValue());
+        }
+
+        Assert.assertFalse(resultIterator.hasNext());
+    }
+
+    @Test
+    public void cannotReadInvalidSnapshot() throws IOException {
+        new File("tstest3.data").delete();
+
+        try (FileOutputStream output = new FileOutputStream("tstest3.data")) {
+            output.write(FactoryHelper.createRandomBytes(100));
+        }
+
+        exception.expect(IOException.class);
+        exception.expectMessage("invalid snapshot");
+
+        TrieSnapshot.read("tstest3.data", new TrieStore(new HashMapStore()));
+    }
+
+    @Test
+    public void cannotReadTruncatedSnapshot() throws IOException {
+        new File("tstest4.data").delete();
+
+        Trie trie = new Trie();
+
+        for (int k = 0; k < 10; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        TrieSnapshot.write(trie, "tstest4.data");
+
+        try (RandomAccessFile file = new RandomAccessFile("tstest4.data", "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        exception.expect(IOException.class);
+
+        TrieSnapshot.read("tstest4.data", new TrieStore(new HashMapStore()));
+    }
+}
@@ -3,15 +3,24 @@ package com.ajlopez.blockchain.state;
 import com.ajlopez.blockchain.core.types.Address;
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.store.HashMapStore;
+import com.ajlopez.blockchain.store.KeyValue;
 import com.ajlopez.blockchain.store.TrieStore;
 import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
 import com.ajlopez.blockchain.utils.HashUtils;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
 /**
  * Created by ajlopez on 12/08/2017.
@@ -19,6 +28,109 @@ import java.util.Random;
 public class TrieTest {
     private static Random random = new Random();
 
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void putKeysSharingOddNumberOfNibbles() throws IOException {
+        byte[] key1 = new byte[] { (byte)0x99, 0x20 };
+        byte[] key2 = new byte[] { (byte)0x99, 0x2c };
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        Trie trie = new Trie().put(key1, value1).put(key2, value2);
+
+        Assert.assertArrayEquals(value1, trie.get(key1));
+        Assert.assertArrayEquals(value2, trie.get(key2));
+    }
+
+    @Test
+    public void putKeysSharingOddNumberOfNibblesInAnyOrder() throws IOException {
+        byte[] key1 = new byte[] { (byte)0x99, 0x20 };
+        byte[] key2 = new byte[] { (byte)0x99, 0x2c };
+        byte[] key3 = new byte[] { (byte)0x99, 0x21 };
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        byte[] value3 = FactoryHelper.createRandomBytes(42);
+
+        Trie trie1 = new Trie().put(key1, value1).put(key2, value2).put(key3, value3);
+        Trie trie2 = new Trie().put(key3, value3).put(key2, value2).put(key1, value1);
+
+        Assert.assertEquals(trie1.getHash(), trie2.getHash());
+
+        Assert.assertArrayEquals(value1, trie2.get(key1));
+        Assert.assertArrayEquals(value2, trie2.get(key2));
+        Assert.assertArrayEquals(value3, trie2.get(key3));
+    }
+
+    @Test
+    public void keepEncodingOfHashedTrieUntilSaved() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+
+        Hash hash = trie.getHash();
+        byte[] encoded = trie.getEncoded();
+
+        Assert.assertSame(encoded, trie.getEncoded());
+
+        trie.save();
+
+        Assert.assertNotSame(encoded, trie.getEncoded());
+        Assert.assertArrayEquals(encoded, trie.getEncoded());
+        Assert.assertTrue(store.exists(hash));
+    }
+
+    @Test
+    public void detachTrie() throws IOException {
+        byte[][] keys = new byte[10][];
+        byte[][] values = new byte[10][];
+
+        Trie trie = new Trie();
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+            trie = trie.put(keys[k], values[k]);
+        }
+
+        trie.save();
+
+        Trie result = trie.detach();
+
+        Assert.assertNotSame(trie, result);
+        Assert.assertEquals(trie.getHash(), result.getHash());
+        Assert.assertArrayEquals(trie.getSubHashes(), result.getSubHashes());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], result.get(keys[k]));
+    }
+
+    @Test
+    public void getSubNodes() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+
+        trie.save();
+
+        Trie result = store.retrieve(trie.getHash());
+        Hash[] subhashes = result.getSubHashes();
+        Trie[] subnodes = result.getSubNodes();
+
+        Assert.assertEquals(Trie.ARITY, subnodes.length);
+
+        for (int k = 0; k < Trie.ARITY; k++)
+            if (subhashes[k] == null)
+                Assert.assertNull(subnodes[k]);
+            else {
+                Assert.assertEquals(subhashes[k], subnodes[k].getHash());
+                Assert.assertSame(subnodes[k], result.getSubNode(k));
+            }
+    }
+
     @Test
     public void getUnknownValueAsNull() throws IOException {
         Trie trie = new Trie();
@@ -558,6 +670,375 @@ public class TrieTest {
         Assert.assertEquals(1, getNodeSize(trie));
     }
 
+    @Test
+    public void saveOnlyNewNodesAfterRetrieve() throws IOException {
+        List<byte[]> savedKeys = new ArrayList<>();
+        HashMapStore keyValueStore = new HashMapStore() {
+            @Override
+            public void setValue(byte[] key, byte[] value) {
+                savedKeys.add(key);
+                super.setValue(key, value);
+            }
+        };
+
+        TrieStore store = new TrieStore(keyValueStore);
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 1000; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        trie.save();
+
+        int nsaved = savedKeys.size();
+
+        Assert.assertEquals(getNodeSize(trie), nsaved);
+
+        Trie trie2 = store.retrieve(trie.getHash()).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        trie2.save();
+
+        Assert.assertTrue(savedKeys.size() - nsaved < 10);
+
+        for (int k = 0; k < savedKeys.size(); k++)
+            for (int j = k + 1; j < savedKeys.size(); j++)
+                Assert.assertFalse(Arrays.equals(savedKeys.get(k), savedKeys.get(j)));
+    }
+
+    @Test
+    public void saveUsingParallelCommit() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore(), 0, true);
+        Trie trie = new Trie(store);
+        Trie trie2 = new Trie();
+
+        byte[][] keys = new byte[5000][];
+        byte[][] values = new byte[5000][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(32);
+
+            trie = trie.put(keys[k], values[k]);
+            trie2 = trie2.put(keys[k], values[k]);
+        }
+
+        trie.save();
+
+        Assert.assertEquals(trie2.getHash(), trie.getHash());
+
+        Trie result = store.retrieve(trie.getHash());
+
+        Assert.assertEquals(trie.getHash(), result.getHash());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], result.get(keys[k]));
+    }
+
+    @Test
+    public void getParallelHash() throws IOException {
+        Trie trie = new Trie();
+        Trie trie2 = new Trie();
+
+        for (int k = 0; k < 10_000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            trie = trie.put(key, value);
+            trie2 = trie2.put(key, value);
+        }
+
+        Hash result = trie.getParallelHash();
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(trie2.getHash(), result);
+        Assert.assertEquals(result, trie.getHash());
+    }
+
+    @Test
+    public void getParallelHashOfSmallTrie() throws IOException {
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(32);
+
+        Trie trie = new Trie().put(key, value);
+
+        Assert.assertEquals(new Trie().put(key, value).getHash(), trie.getParallelHash());
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, new Trie().getParallelHash());
+    }
+
+    @Test
+    public void getParallelHashAfterChangingSavedTrie() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 5000; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        trie.save();
+
+        Trie trie2 = store.retrieve(trie.getHash());
+        Trie trie3 = store.retrieve(trie.getHash());
+
+        for (int k = 0; k < 2000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            trie2 = trie2.put(key, value);
+            trie3 = trie3.put(key, value);
+        }
+
+        Assert.assertEquals(trie3.getHash(), trie2.getParallelHash());
+    }
+
+    @Test
+    public void bulkLoadSortedKeyValues() throws IOException {
+        Trie trie = new Trie();
+        TreeMap<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+
+        for (int k = 0; k < 1000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(32);
+
+            entries.put(new ByteArrayWrapper(key), value);
+            trie = trie.put(key, value);
+        }
+
+        Trie result = Trie.bulkLoad(toKeyValues(entries).iterator(), new TrieStore(new HashMapStore()));
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(trie.getHash(), result.getHash());
+        Assert.assertEquals(getNodeSize(trie), getNodeSize(result));
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : entries.entrySet())
+            Assert.assertArrayEquals(entry.getValue(), result.get(entry.getKey().getBytes()));
+    }
+
+    @Test
+    public void bulkLoadKeysOfDifferentLengths() throws IOException {
+        byte[][] keys = new byte[][] {
+                new byte[] { 0x01 },
+                new byte[] { 0x01, 0x02 },
+                new byte[] { 0x01, 0x02, 0x03 },
+                new byte[] { 0x01, 0x12 },
+                new byte[] { 0x02 },
+                new byte[] { (byte)0xab, (byte)0xcd }
+        };
+
+        Trie trie = new Trie();
+        List<KeyValue> keyValues = new ArrayList<>();
+
+        for (int k = 0; k < keys.length; k++) {
+            byte[] value = FactoryHelper.createRandomBytes(10);
+
+            keyValues.add(new KeyValue(keys[k], value));
+            trie = trie.put(keys[k], value);
+        }
+
+        Trie result = Trie.bulkLoad(keyValues.iterator(), new TrieStore(new HashMapStore()));
+
+        Assert.assertEquals(trie.getHash(), result.getHash());
+
+        for (KeyValue keyValue : keyValues)
+            Assert.assertArrayEquals(keyValue.getValue(), result.get(keyValue.getKey()));
+    }
+
+    @Test
+    public void bulkLoadRepeatedAndDeletedKeys() throws IOException {
+        byte[] key1 = new byte[] { 0x01, 0x02 };
+        byte[] key2 = new byte[] { 0x01, 0x03 };
+        byte[] key3 = new byte[] { 0x02, 0x03 };
+        byte[] value1 = FactoryHelper.createRandomBytes(10);
+        byte[] value2 = FactoryHelper.createRandomBytes(10);
+
+        List<KeyValue> keyValues = Arrays.asList(
+                new KeyValue(key1, FactoryHelper.createRandomBytes(10)),
+                new KeyValue(key1, value1),
+                new KeyValue(key2, value2),
+                new KeyValue(key3, FactoryHelper.createRandomBytes(10)),
+                new KeyValue(key3, null));
+
+        Trie result = Trie.bulkLoad(keyValues.iterator(), new TrieStore(new HashMapStore()));
+
+        Assert.assertEquals(new Trie().put(key1, value1).put(key2, value2).getHash(), result.getHash());
+        Assert.assertNull(result.get(key3));
+    }
+
+    @Test
+    public void bulkLoadWithoutKeyValues() throws IOException {
+        Trie result = Trie.bulkLoad(Collections.emptyIterator(), new TrieStore(new HashMapStore()));
+
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, result.getHash());
+    }
+
+    @Test
+    public void bulkLoadAndSave() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        TreeMap<ByteArrayWrapper, byte[]> entries = new TreeMap<>();
+
+        for (int k = 0; k < 100; k++)
+            entries.put(new ByteArrayWrapper(FactoryHelper.createRandomBytes(32)), FactoryHelper.createRandomBytes(32));
+
+        Trie trie = new Trie(store).putAll(toKeyValues(entries).iterator());
+
+        trie.save();
+
+        Trie result = store.retrieve(trie.getHash());
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : entries.entrySet())
+            Assert.assertArrayEquals(entry.getValue(), result.get(entry.getKey().getBytes()));
+    }
+
+    @Test
+    public void putAllInNonEmptyTrie() throws IOException {
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(32);
+
+        Trie trie = new Trie().put(key1, value1);
+
+        Trie result = trie.putAll(Collections.singletonList(new KeyValue(key2, value2)).iterator());
+
+        Assert.assertEquals(new Trie().put(key1, value1).put(key2, value2).getHash(), result.getHash());
+    }
+
+    @Test
+    public void putAllChangingAndDeletingKeysOfDifferentLengths() throws IOException {
+        byte[][] keys = new byte[][] {
+                new byte[] { 0x01 },
+                new byte[] { 0x01, 0x02 },
+                new byte[] { 0x01, 0x02, 0x03 },
+                new byte[] { 0x01, 0x12 },
+                new byte[] { 0x02 },
+                new byte[] { 0x02, 0x34, 0x56 },
+                new byte[] { (byte)0xab, (byte)0xcd }
+        };
+
+        for (int n = 0; n < 100; n++) {
+            Trie trie = new Trie();
+
+            for (int k = 0; k < keys.length; k++)
+                if (random.nextBoolean())
+                    trie = trie.put(keys[k], FactoryHelper.createRandomBytes(10));
+
+            Trie expected = trie;
+            List<KeyValue> keyValues = new ArrayList<>();
+
+            for (int k = 0; k < keys.length; k++) {
+                int option = random.nextInt(3);
+
+                if (option == 0)
+                    continue;
+
+                byte[] value = option == 1 ? null : FactoryHelper.createRandomBytes(10);
+
+                keyValues.add(new KeyValue(keys[k], value));
+                expected = expected.put(keys[k], value);
+            }
+
+            Trie result = trie.putAll(keyValues.iterator());
+
+            Assert.assertEquals(expected.getHash(), result.getHash());
+
+            for (int k = 0; k < keys.length; k++)
+                Assert.assertArrayEquals(expected.get(keys[k]), result.get(keys[k]));
+        }
+    }
+
+    @Test
+    public void putAllWithoutChanges() throws IOException {
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(32);
+
+        Trie trie = new Trie().put(key, value);
+
+        Assert.assertSame(trie, trie.putAll(Collections.singletonList(new KeyValue(key, value)).iterator()));
+        Assert.assertSame(trie, trie.putAll(Collections.singletonList(new KeyValue(FactoryHelper.createRandomBytes(32), null)).iterator()));
+    }
+
+    @Test
+    public void cannotBulkLoadUnsortedKeys() {
+        List<KeyValue> keyValues = Arrays.asList(
+                new KeyValue(new byte[] { 0x02 }, FactoryHelper.createRandomBytes(10)),
+                new KeyValue(new byte[] { 0x01 }, FactoryHelper.createRandomBytes(10)));
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("keys are not sorted");
+
+        Trie.bulkLoad(keyValues.iterator(), new TrieStore(new HashMapStore()));
+    }
+
+    @Test
+    public void getEncodedAfterCalculatingHash() throws IOException {
+        Trie trie = new Trie().put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32)).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        Hash hash = trie.getHash();
+        byte[] encoded = trie.getEncoded();
+
+        Assert.assertEquals(hash, HashUtils.calculateHash(encoded));
+        Assert.assertEquals(hash, Trie.fromEncoded(encoded, null).getHash());
+    }
+
+    @Test
+    public void getSubHashesOfLeafNode() throws IOException {
+        Trie trie = new Trie().put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        Hash[] subhashes = trie.getSubHashes();
+
+        Assert.assertEquals(Trie.ARITY, subhashes.length);
+
+        for (int k = 0; k < Trie.ARITY; k++)
+            Assert.assertNull(subhashes[k]);
+
+        Assert.assertEquals(trie.getHash(), Trie.fromEncoded(trie.getEncoded(), null).getHash());
+    }
+
+    @Test
+    public void getSubHashesAfterEncodingAndDecoding() throws IOException {
+        Trie trie = new Trie();
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(32));
+
+        Trie result = Trie.fromEncoded(trie.getEncoded(), null);
+
+        Assert.assertArrayEquals(trie.getSubHashes(), result.getSubHashes());
+        Assert.assertArrayEquals(trie.getSubHashes(), trie.detach().getSubHashes());
+        Assert.assertArrayEquals(trie.getEncoded(), result.getEncoded());
+    }
+
+    @Test
+    public void putAndRemoveInPartiallyLoadedTrie() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(store);
+        List<byte[]> keys = new ArrayList<>();
+
+        for (int k = 0; k < 100; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            keys.add(key);
+            trie = trie.put(key, key);
+        }
+
+        trie.save();
+
+        Trie trie2 = store.retrieve(trie.getHash());
+
+        Assert.assertArrayEquals(keys.get(0), trie2.get(keys.get(0)));
+
+        byte[] newKey = FactoryHelper.createRandomBytes(32);
+        Trie trie3 = trie2.put(newKey, newKey).delete(keys.get(1));
+
+        Assert.assertEquals(trie.put(newKey, newKey).delete(keys.get(1)).getHash(), trie3.getHash());
+        Assert.assertEquals(trie.getHash(), trie3.delete(newKey).put(keys.get(1), keys.get(1)).getHash());
+    }
+
+    private static List<KeyValue> toKeyValues(Map<ByteArrayWrapper, byte[]> entries) {
+        List<KeyValue> keyValues = new ArrayList<>();
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : entries.entrySet())
+            keyValues.add(new KeyValue(entry.getKey().getBytes(), entry.getValue()));
+
+        return keyValues;
+    }
+
     private static int getNodeSize(Trie trie) throws IOException {
         TrieNodeCounterVisitor visitor = new TrieNodeCounterVisitor();
 
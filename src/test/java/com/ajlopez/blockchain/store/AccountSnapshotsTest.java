@@ -0,0 +1,232 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.core.types.Hash;
+import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AccountSnapshotsTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void createWithEmptyBaseSnapshot() {
+        AccountSnapshots snapshots = new AccountSnapshots();
+
+        Assert.assertEquals(AccountSnapshots.DEFAULT_MAX_DEPTH, snapshots.getMaxDepth());
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, snapshots.getBaseRoot());
+        Assert.assertEquals(1, snapshots.getNoSnapshots());
+
+        AccountSnapshot snapshot = snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH);
+
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, snapshot.getRoot());
+        Assert.assertEquals(0, snapshot.getDepth());
+        Assert.assertFalse(snapshot.isStale());
+        Assert.assertNull(snapshot.getValue(FactoryHelper.createRandomBytes(20)));
+    }
+
+    @Test
+    public void getUnknownSnapshot() {
+        AccountSnapshots snapshots = new AccountSnapshots();
+
+        Assert.assertNull(snapshots.getSnapshot(FactoryHelper.createRandomHash()));
+    }
+
+    @Test
+    public void addSnapshotsAndGetValues() {
+        AccountSnapshots snapshots = new AccountSnapshots();
+        byte[] key1 = FactoryHelper.createRandomBytes(20);
+        byte[] key2 = FactoryHelper.createRandomBytes(20);
+        Hash root1 = FactoryHelper.createRandomHash();
+        Hash root2 = FactoryHelper.createRandomHash();
+
+        Assert.assertTrue(snapshots.addSnapshot(snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH), root1, createValues(key1, new byte[] { 0x01 })));
+
+        AccountSnapshot snapshot1 = snapshots.getSnapshot(root1);
+
+        Assert.assertTrue(snapshots.addSnapshot(snapshot1, root2, createValues(key2, new byte[] { 0x02 }, key1, new byte[] { 0x03 })));
+
+        AccountSnapshot snapshot2 = snapshots.getSnapshot(root2);
+
+        Assert.assertEquals(3, snapshots.getNoSnapshots());
+        Assert.assertEquals(1, snapshot1.getDepth());
+        Assert.assertEquals(2, snapshot2.getDepth());
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, snapshot1.getValue(key1));
+        Assert.assertNull(snapshot1.getValue(key2));
+        Assert.assertArrayEquals(new byte[] { 0x03 }, snapshot2.getValue(key1));
+        Assert.assertArrayEquals(new byte[] { 0x02 }, snapshot2.getValue(key2));
+    }
+
+    @Test
+    public void addSnapshotTwice() {
+        AccountSnapshots snapshots = new AccountSnapshots();
+        AccountSnapshot base = snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH);
+        Hash root = FactoryHelper.createRandomHash();
+
+        Assert.assertTrue(snapshots.addSnapshot(base, root, createValues(FactoryHelper.createRandomBytes(20), new byte[] { 0x01 })));
+        Assert.assertFalse(snapshots.addSnapshot(base, root, createValues(FactoryHelper.createRandomBytes(20), new byte[] { 0x01 })));
+
+        Assert.assertEquals(2, snapshots.getNoSnapshots());
+    }
+
+    @Test
+    public void removeSnapshotWithoutChildren() {
+        AccountSnapshots snapshots = new AccountSnapshots();
+        Hash root1 = FactoryHelper.createRandomHash();
+        Hash root2 = FactoryHelper.createRandomHash();
+
+        snapshots.addSnapshot(snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH), root1, new HashMap<>());
+        snapshots.addSnapshot(snapshots.getSnapshot(root1), root2, new HashMap<>());
+
+        AccountSnapshot snapshot2 = snapshots.getSnapshot(root2);
+
+        Assert.assertFalse(snapshots.removeSnapshot(Trie.EMPTY_TRIE_HASH));
+        Assert.assertFalse(snapshots.removeSnapshot(root1));
+        Assert.assertTrue(snapshots.removeSnapshot(root2));
+        Assert.assertFalse(snapshots.removeSnapshot(root2));
+
+        Assert.assertTrue(snapshot2.isStale());
+        Assert.assertNull(snapshots.getSnapshot(root2));
+
+        Assert.assertTrue(snapshots.removeSnapshot(root1));
+        Assert.assertEquals(1, snapshots.getNoSnapshots());
+    }
+
+    @Test
+    public void flattenSnapshotsOverMaxDepth() {
+        AccountSnapshots snapshots = new AccountSnapshots(2);
+        byte[] key = FactoryHelper.createRandomBytes(20);
+        Hash[] roots = new Hash[4];
+
+        AccountSnapshot base = snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH);
+        AccountSnapshot parent = base;
+
+        Hash forkRoot = FactoryHelper.createRandomHash();
+        snapshots.addSnapshot(base, forkRoot, createValues(key, new byte[] { 0x10 }));
+        AccountSnapshot fork = snapshots.getSnapshot(forkRoot);
+
+        for (int k = 0; k < roots.length; k++) {
+            roots[k] = FactoryHelper.createRandomHash();
+            snapshots.addSnapshot(parent, roots[k], createValues(key, new byte[] { (byte)k }));
+            parent = snapshots.getSnapshot(roots[k]);
+        }
+
+        Assert.assertEquals(roots[1], snapshots.getBaseRoot());
+        Assert.assertEquals(3, snapshots.getNoSnapshots());
+
+        Assert.assertTrue(fork.isStale());
+        Assert.assertNull(snapshots.getSnapshot(forkRoot));
+        Assert.assertNull(snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH));
+        Assert.assertNull(snapshots.getSnapshot(roots[0]));
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, snapshots.getSnapshot(roots[1]).getValue(key));
+        Assert.assertArrayEquals(new byte[] { 0x02 }, snapshots.getSnapshot(roots[2]).getValue(key));
+        Assert.assertArrayEquals(new byte[] { 0x03 }, snapshots.getSnapshot(roots[3]).getValue(key));
+
+        Assert.assertEquals(1, snapshots.getSnapshot(roots[2]).getDepth());
+        Assert.assertEquals(2, snapshots.getSnapshot(roots[3]).getDepth());
+
+        Assert.assertTrue(base.isStale());
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, base.getRoot());
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("stale snapshot");
+
+        fork.getValue(key);
+    }
+
+    @Test
+    public void rebuildAndVerifySnapshot() throws IOException {
+        TrieStore trieStore = new TrieStore(new HashMapStore());
+        Trie trie = new Trie(trieStore);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(20), FactoryHelper.createRandomBytes(40));
+
+        trie.save();
+
+        AccountSnapshots snapshots = new AccountSnapshots();
+        AccountSnapshot base = snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH);
+
+        Assert.assertFalse(snapshots.verify(trie.getHash(), trieStore));
+
+        snapshots.rebuild(trie.getHash(), trieStore);
+
+        Assert.assertTrue(base.isStale());
+        Assert.assertEquals(trie.getHash(), snapshots.getBaseRoot());
+        Assert.assertTrue(snapshots.verify(trie.getHash(), trieStore));
+
+        byte[] key = FactoryHelper.createRandomBytes(20);
+        byte[] value = FactoryHelper.createRandomBytes(40);
+        Trie trie2 = trie.put(key, value);
+        trie2.save();
+
+        snapshots.addSnapshot(snapshots.getSnapshot(trie.getHash()), trie2.getHash(), createValues(key, value));
+
+        Assert.assertTrue(snapshots.verify(trie2.getHash(), trieStore));
+
+        Trie trie3 = trie.put(key, value).put(FactoryHelper.createRandomBytes(20), value);
+        trie3.save();
+
+        snapshots.addSnapshot(snapshots.getSnapshot(trie.getHash()), trie3.getHash(), createValues(key, value));
+
+        Assert.assertFalse(snapshots.verify(trie3.getHash(), trieStore));
+    }
+
+    @Test
+    public void cannotCreateWithInvalidMaxDepth() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid max depth");
+
+        new AccountSnapshots(0);
+    }
+
+    private static Map<ByteArrayWrapper, byte[]> createValues(byte[]... keyValues) {
+        Map<ByteArrayWrapper, byte[]> values = new HashMap<>();
+
+        for (int k = 0; k < keyValues.length; k += 2)
+            values.put(new ByteArrayWrapper(keyValues[k]), keyValues[k + 1]);
+
+        return values;
+    }
+
+    @Test
+    public void flattenHalfOfTheLayersIntoNewBase() {
+        AccountSnapshots snapshots = new AccountSnapshots(8);
+        byte[][] keys = new byte[10][];
+        Hash[] roots = new Hash[10];
+
+        AccountSnapshot base = snapshots.getSnapshot(Trie.EMPTY_TRIE_HASH);
+        AccountSnapshot parent = base;
+
+        for (int k = 0; k < roots.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(20);
+            roots[k] = FactoryHelper.createRandomHash();
+            snapshots.addSnapshot(parent, roots[k], createValues(keys[k], new byte[] { (byte)(k + 1) }));
+            parent = snapshots.getSnapshot(roots[k]);
+        }
+
+        Assert.assertEquals(roots[3], snapshots.getBaseRoot());
+        Assert.assertEquals(7, snapshots.getNoSnapshots());
+        Assert.assertTrue(base.isStale());
+        Assert.assertTrue(base.getValues().isEmpty());
+        Assert.assertEquals(0, snapshots.getSnapshot(roots[3]).getDepth());
+        Assert.assertEquals(6, snapshots.getSnapshot(roots[9]).getDepth());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(new byte[] { (byte)(k + 1) }, snapshots.getSnapshot(roots[9]).getValue(keys[k]));
+
+        Assert.assertNull(snapshots.getSnapshot(roots[3]).getValue(keys[4]));
+    }
+}
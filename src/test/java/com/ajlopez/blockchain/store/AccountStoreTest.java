@@ -3,8 +3,10 @@ package com.ajlopez.blockchain.store;
 import com.ajlopez.blockchain.core.Account;
 import com.ajlopez.blockchain.core.types.Address;
 import com.ajlopez.blockchain.core.types.Coin;
+import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.encoding.AccountEncoder;
 import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -60,4 +62,109 @@ public class AccountStoreTest {
 
         store.putAccount(address, account);
     }
+
+    @Test
+    public void saveAndRetrieveAccountsUsingSnapshots() throws IOException {
+        TrieStore trieStore = new TrieStore(new HashMapStore());
+        AccountSnapshots snapshots = new AccountSnapshots();
+        AccountStoreProvider provider = new AccountStoreProvider(trieStore, snapshots);
+        Address address = new Address(new byte[] { 0x01, 0x02 });
+
+        AccountStore store = provider.retrieve(Trie.EMPTY_TRIE_HASH);
+
+        store.putAccount(address, new Account(Coin.TEN, 42, 0, null, null));
+        store.save();
+
+        AccountSnapshot snapshot = snapshots.getSnapshot(store.getRootHash());
+
+        Assert.assertNotNull(snapshot);
+        Assert.assertNotNull(snapshot.getValue(address.getBytes()));
+        Assert.assertTrue(snapshots.verify(store.getRootHash(), trieStore));
+
+        Account result = provider.retrieve(store.getRootHash()).getAccount(address);
+
+        Assert.assertEquals(Coin.TEN, result.getBalance());
+        Assert.assertEquals(42, result.getNonce());
+    }
+
+    @Test
+    public void saveTwiceReplacingSnapshot() throws IOException {
+        AccountSnapshots snapshots = new AccountSnapshots();
+        AccountStoreProvider provider = new AccountStoreProvider(new TrieStore(new HashMapStore()), snapshots);
+        Address address1 = new Address(new byte[] { 0x01, 0x02 });
+        Address address2 = new Address(new byte[] { 0x03, 0x04 });
+
+        AccountStore store = provider.retrieve(Trie.EMPTY_TRIE_HASH);
+
+        store.putAccount(address1, new Account(Coin.TEN, 1, 0, null, null));
+        store.save();
+
+        Hash root1 = store.getRootHash();
+
+        store.putAccount(address2, new Account(Coin.ONE, 2, 0, null, null));
+        store.save();
+
+        Assert.assertEquals(2, snapshots.getNoSnapshots());
+        Assert.assertNull(snapshots.getSnapshot(root1));
+
+        AccountStore result = provider.retrieve(store.getRootHash());
+
+        Assert.assertEquals(1, result.getAccount(address1).getNonce());
+        Assert.assertEquals(2, result.getAccount(address2).getNonce());
+    }
+
+    @Test
+    public void getAccountFromTrieWhenSnapshotIsStale() throws IOException {
+        TrieStore trieStore = new TrieStore(new HashMapStore());
+        AccountSnapshots snapshots = new AccountSnapshots();
+        AccountStoreProvider provider = new AccountStoreProvider(trieStore, snapshots);
+        Address address = new Address(new byte[] { 0x01, 0x02 });
+
+        AccountStore store = provider.retrieve(Trie.EMPTY_TRIE_HASH);
+
+        store.putAccount(address, new Account(Coin.TEN, 42, 0, null, null));
+        store.save();
+
+        AccountStore store2 = provider.retrieve(store.getRootHash());
+
+        snapshots.rebuild(Trie.EMPTY_TRIE_HASH, trieStore);
+
+        Assert.assertEquals(42, store2.getAccount(address).getNonce());
+
+        store2.putAccount(address, new Account(Coin.TEN, 43, 0, null, null));
+        store2.save();
+
+        Assert.assertEquals(43, store2.getAccount(address).getNonce());
+        Assert.assertNull(snapshots.getSnapshot(store2.getRootHash()));
+    }
+
+    @Test
+    public void putAndGetAccountUsingHashedKeys() throws IOException {
+        TrieStore trieStore = new TrieStore(new HashMapStore());
+        AccountSnapshots snapshots = new AccountSnapshots();
+        TrieKeyHasher keyHasher = new TrieKeyHasher(new HashMapStore());
+        AccountStoreProvider provider = new AccountStoreProvider(trieStore, snapshots, keyHasher);
+        Address address = new Address(new byte[] { 0x01, 0x02 });
+        Account account = new Account(Coin.TEN, 42, 0, null, null);
+
+        AccountStore store = provider.retrieve(Trie.EMPTY_TRIE_HASH);
+
+        store.putAccount(address, account);
+        store.save();
+
+        AccountStore rawStore = new AccountStore(new Trie());
+        rawStore.putAccount(address, account);
+
+        Assert.assertNotEquals(rawStore.getRootHash(), store.getRootHash());
+
+        byte[] hashedKey = keyHasher.hashKey(address.getBytes());
+        Trie trie = trieStore.retrieve(store.getRootHash());
+
+        Assert.assertArrayEquals(AccountEncoder.encode(account), trie.get(hashedKey));
+        Assert.assertArrayEquals(address.getBytes(), keyHasher.getPreimage(hashedKey));
+        Assert.assertTrue(snapshots.verify(store.getRootHash(), trieStore));
+
+        Assert.assertEquals(42, provider.retrieve(store.getRootHash()).getAccount(address).getNonce());
+        Assert.assertEquals(42, new AccountStore(trieStore.retrieve(store.getRootHash()), null, keyHasher).getAccount(address).getNonce());
+    }
 }
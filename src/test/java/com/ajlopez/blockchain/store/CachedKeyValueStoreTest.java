@@ -0,0 +1,236 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+public class CachedKeyValueStoreTest {
+    @Test
+    public void getUnknownValueAsNull() throws IOException {
+        CachedKeyValueStore store = new CachedKeyValueStore(new HashMapStore(), 1000);
+
+        Assert.assertNull(store.getValue(FactoryHelper.createRandomBytes(32)));
+        Assert.assertEquals(0, store.getHits());
+        Assert.assertEquals(1, store.getMisses());
+    }
+
+    @Test
+    public void setValueWritesToStoreAndCache() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 1000);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key, value);
+
+        Assert.assertArrayEquals(value, innerStore.getValue(key));
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(32 + 42, store.getBytes());
+        Assert.assertEquals(1, store.getHits());
+        Assert.assertEquals(0, store.getMisses());
+    }
+
+    @Test
+    public void cacheValueReadFromStore() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 1000);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        innerStore.setValue(key, value);
+
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(1, store.getHits());
+        Assert.assertEquals(1, store.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedValuesToKeepByteBudget() throws IOException {
+        CachedKeyValueStore store = new CachedKeyValueStore(new HashMapStore(), (32 + 42) * 2);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        store.setValue(key1, FactoryHelper.createRandomBytes(42));
+        store.setValue(key2, FactoryHelper.createRandomBytes(42));
+        store.getValue(key1);
+        store.setValue(key3, FactoryHelper.createRandomBytes(42));
+
+        Assert.assertEquals((32 + 42) * 2, store.getBytes());
+
+        store.getValue(key1);
+        store.getValue(key3);
+
+        Assert.assertEquals(3, store.getHits());
+        Assert.assertEquals(0, store.getMisses());
+
+        store.getValue(key2);
+
+        Assert.assertEquals(3, store.getHits());
+        Assert.assertEquals(1, store.getMisses());
+    }
+
+    @Test
+    public void writeBatchToStoreAndCache() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 1000);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key, value);
+
+        store.write(batch);
+
+        Assert.assertArrayEquals(value, innerStore.getValue(key));
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(1, store.getHits());
+    }
+
+    @Test
+    public void getValuesFromCacheAndStore() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 1000);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        innerStore.setValue(key2, value2);
+
+        List<byte[]> result = store.getValues(Arrays.asList(key1, key2, key3));
+
+        Assert.assertEquals(3, result.size());
+        Assert.assertArrayEquals(value1, result.get(0));
+        Assert.assertArrayEquals(value2, result.get(1));
+        Assert.assertNull(result.get(2));
+        Assert.assertEquals(1, store.getHits());
+        Assert.assertEquals(2, store.getMisses());
+
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+        Assert.assertEquals(2, store.getHits());
+    }
+
+    @Test
+    public void scanInnerStore() throws IOException {
+        SortedMapStore innerStore = new SortedMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 1000);
+
+        store.setValue(new byte[] { 0x02 }, new byte[] { 0x02 });
+        innerStore.setValue(new byte[] { 0x01 }, new byte[] { 0x01 });
+
+        Iterator<KeyValue> iterator = store.scan(null, null);
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, iterator.next().getKey());
+        Assert.assertArrayEquals(new byte[] { 0x02 }, iterator.next().getKey());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void containsKeys() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 1000);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        store.setValue(key1, FactoryHelper.createRandomBytes(42));
+        innerStore.setValue(key2, FactoryHelper.createRandomBytes(42));
+
+        Assert.assertTrue(store.containsKey(key1));
+        Assert.assertTrue(store.containsKey(key2));
+        Assert.assertFalse(store.containsKey(key3));
+
+        boolean[] result = store.containsKeys(Arrays.asList(key1, key2, key3));
+
+        Assert.assertEquals(3, result.length);
+        Assert.assertTrue(result[0]);
+        Assert.assertTrue(result[1]);
+        Assert.assertFalse(result[2]);
+    }
+
+    @Test
+    public void compactRemovesPrunedValuesFromCache() throws IOException {
+        HashKeyValueStore innerStore = new HashKeyValueStore(32);
+        CachedCompactableKeyValueStore store = new CachedCompactableKeyValueStore(innerStore, 1000);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+
+        store.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(0, store.getBytes());
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertNull(store.getValue(key2));
+        Assert.assertFalse(store.containsKey(key2));
+    }
+
+    @Test
+    public void doNotCacheValueReadBeforeConcurrentWrite() throws IOException {
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        CachedKeyValueStore[] stores = new CachedKeyValueStore[1];
+
+        // the new value is written after reading the old one from the inner store
+        HashMapStore innerStore = new HashMapStore() {
+            @Override
+            public byte[] getValue(byte[] key) {
+                byte[] value = super.getValue(key);
+
+                try {
+                    if (Arrays.equals(value1, value))
+                        stores[0].setValue(key, value2);
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+
+                return value;
+            }
+        };
+
+        innerStore.setValue(key, value1);
+        stores[0] = new CachedKeyValueStore(innerStore, 1000);
+
+        Assert.assertArrayEquals(value1, stores[0].getValue(key));
+        Assert.assertArrayEquals(value2, stores[0].getValue(key));
+    }
+
+    @Test
+    public void removeCachedValueWhenNewValueIsTooLarge() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        CachedKeyValueStore store = new CachedKeyValueStore(innerStore, 100);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(200);
+
+        store.setValue(key, value1);
+        store.setValue(key, value2);
+
+        Assert.assertEquals(0, store.getBytes());
+        Assert.assertArrayEquals(value2, store.getValue(key));
+    }
+}
@@ -0,0 +1,48 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CachedKeyValueStoresTest {
+    @Test
+    public void cacheConfiguredStoreTypes() {
+        KeyValueStores memoryKeyValueStores = new MemoryKeyValueStores();
+        Map<KeyValueStoreType, Long> cacheSizes = new HashMap<>();
+
+        cacheSizes.put(KeyValueStoreType.ACCOUNTS, 1000L);
+        cacheSizes.put(KeyValueStoreType.STORAGE, 2000L);
+
+        KeyValueStores keyValueStores = new CachedKeyValueStores(memoryKeyValueStores, cacheSizes);
+
+        Assert.assertTrue(keyValueStores.getAccountKeyValueStore() instanceof CachedKeyValueStore);
+        Assert.assertTrue(keyValueStores.getStorageKeyValueStore() instanceof CachedKeyValueStore);
+        Assert.assertTrue(keyValueStores.getAccountKeyValueStore() instanceof CompactableKeyValueStore);
+        Assert.assertTrue(keyValueStores.getStorageKeyValueStore() instanceof CompactableKeyValueStore);
+        Assert.assertSame(memoryKeyValueStores.getBlockKeyValueStore(), keyValueStores.getBlockKeyValueStore());
+        Assert.assertSame(memoryKeyValueStores.getCodeKeyValueStore(), keyValueStores.getCodeKeyValueStore());
+        Assert.assertSame(memoryKeyValueStores.getBlockInformationKeyValueStore(), keyValueStores.getBlockInformationKeyValueStore());
+    }
+
+    @Test
+    public void getValues() throws IOException {
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        Map<KeyValueStoreType, Long> cacheSizes = new HashMap<>();
+        cacheSizes.put(KeyValueStoreType.ACCOUNTS, 1000L);
+
+        KeyValueStores keyValueStores = new CachedKeyValueStores(new MemoryKeyValueStores(), cacheSizes);
+
+        keyValueStores.getAccountKeyValueStore().setValue(key, value1);
+        keyValueStores.getBlockKeyValueStore().setValue(key, value2);
+
+        Assert.assertArrayEquals(value1, keyValueStores.getValue(KeyValueStoreType.ACCOUNTS, key));
+        Assert.assertArrayEquals(value2, keyValueStores.getValue(KeyValueStoreType.BLOCKS, key));
+    }
+}
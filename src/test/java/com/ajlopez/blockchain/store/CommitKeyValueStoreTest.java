@@ -0,0 +1,81 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.KeyIndexType;
+import com.ajlopez.blockchain.db.KeyValueDb;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CommitKeyValueStoreTest {
+    @Test
+    public void flushStoresBeforeSettingValue() throws IOException {
+        deleteFiles("cdata1");
+
+        List<byte[]> flushedValues = new ArrayList<>();
+        KeyValueDb keyValueDb = new KeyValueDb("cdata1", 32, KeyIndexType.MEMORY, true, false, false);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        Flushable flushable = () -> flushedValues.add(keyValueDb.getValue(key));
+        CommitKeyValueStore store = new CommitKeyValueStore(keyValueDb, Collections.singletonList(flushable));
+
+        store.setValue(key, value);
+
+        Assert.assertEquals(1, flushedValues.size());
+        Assert.assertNull(flushedValues.get(0));
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertTrue(store.containsKey(key));
+
+        keyValueDb.close();
+    }
+
+    @Test
+    public void flushStoresBeforeWritingBatch() throws IOException {
+        deleteFiles("cdata2");
+
+        List<byte[]> flushedValues = new ArrayList<>();
+        KeyValueDb keyValueDb = new KeyValueDb("cdata2", 32, KeyIndexType.MEMORY, true, false, false);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        Flushable flushable = () -> flushedValues.add(keyValueDb.getValue(key1));
+        CommitKeyValueStore store = new CommitKeyValueStore(keyValueDb, Collections.singletonList(flushable));
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key1, value1);
+        batch.put(key2, value2);
+
+        store.write(batch);
+
+        Assert.assertEquals(1, flushedValues.size());
+        Assert.assertNull(flushedValues.get(0));
+
+        keyValueDb.close();
+
+        KeyValueDb keyValueDb2 = new KeyValueDb("cdata2", 32, KeyIndexType.MEMORY, true, false, false);
+
+        Assert.assertArrayEquals(value1, keyValueDb2.getValue(key1));
+        Assert.assertArrayEquals(value2, keyValueDb2.getValue(key2));
+
+        keyValueDb2.close();
+    }
+
+    private static void deleteFiles(String name) {
+        File[] files = new File(".").listFiles((dir, filename) -> filename.startsWith(name + "."));
+
+        if (files != null)
+            for (File file : files)
+                file.delete();
+    }
+}
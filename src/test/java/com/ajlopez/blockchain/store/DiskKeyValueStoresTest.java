@@ -0,0 +1,145 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.bc.BlockChain;
+import com.ajlopez.blockchain.bc.BlocksInformationStore;
+import com.ajlopez.blockchain.bc.GenesisGenerator;
+import com.ajlopez.blockchain.bc.ObjectContext;
+import com.ajlopez.blockchain.core.Block;
+import com.ajlopez.blockchain.db.KeyIndexType;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+
+public class DiskKeyValueStoresTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void setAndGetValues() throws IOException {
+        DiskKeyValueStores keyValueStores = new DiskKeyValueStores("dkvstest1");
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values()) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            if (keyValueStoreType == KeyValueStoreType.BLOCKS_INFORMATION)
+                key = FactoryHelper.createRandomBytes(8);
+
+            keyValueStores.getKeyValueStore(keyValueStoreType).setValue(key, value);
+
+            Assert.assertArrayEquals(value, keyValueStores.getValue(keyValueStoreType, key));
+        }
+
+        keyValueStores.close();
+    }
+
+    @Test
+    public void updateBestHeightCloseAndReopen() throws IOException {
+        DiskKeyValueStores keyValueStores = new DiskKeyValueStores("dkvstest2");
+        BlocksInformationStore blocksInformationStore = new BlocksInformationStore(keyValueStores.getBlockInformationKeyValueStore());
+
+        long bestHeight = blocksInformationStore.getBestHeight();
+
+        blocksInformationStore.putBestHeight(bestHeight + 1);
+        blocksInformationStore.putBestHeight(bestHeight + 2);
+
+        Assert.assertEquals(bestHeight + 2, blocksInformationStore.getBestHeight());
+
+        keyValueStores.close();
+
+        DiskKeyValueStores keyValueStores2 = new DiskKeyValueStores("dkvstest2");
+        BlocksInformationStore blocksInformationStore2 = new BlocksInformationStore(keyValueStores2.getBlockInformationKeyValueStore());
+
+        Assert.assertEquals(bestHeight + 2, blocksInformationStore2.getBestHeight());
+
+        keyValueStores2.close();
+    }
+
+    @Test
+    public void resumeBlockChainAfterReopen() throws IOException {
+        resumeBlockChainAfterReopen("dkvstest3", KeyIndexType.MEMORY);
+    }
+
+    @Test
+    public void resumeBlockChainAfterReopenUsingMappedIndex() throws IOException {
+        resumeBlockChainAfterReopen("dkvstest4", KeyIndexType.MAPPED);
+    }
+
+    @Test
+    public void resumeBlockChainAfterReopenUsingCompression() throws IOException {
+        resumeBlockChainAfterReopen("dkvstest5", KeyIndexType.MEMORY, true);
+    }
+
+    @Test
+    public void resumeBlockChainAfterReopenUsingShards() throws IOException {
+        resumeBlockChainAfterReopen("dkvstest10", KeyIndexType.MEMORY, false, 4);
+    }
+
+    @Test
+    public void resumeBlockChainAfterReopenUsingGroupCommit() throws IOException {
+        resumeBlockChainAfterReopen("dkvstest11", KeyIndexType.MEMORY, false, 1, false);
+    }
+
+    @Test
+    public void resumeBlockChainAfterReopenUsingGroupCommitAndMappedIndex() throws IOException {
+        resumeBlockChainAfterReopen("dkvstest12", KeyIndexType.MAPPED, false, 4, false);
+    }
+
+    @Test
+    public void checkSettingWrittenWithData() throws IOException {
+        new File("dkvstest9", "securekeys.setting").delete();
+
+        DiskKeyValueStores.checkSetting("dkvstest9", "securekeys", "true");
+        DiskKeyValueStores.checkSetting("dkvstest9", "securekeys", "true");
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("data written with securekeys true");
+
+        DiskKeyValueStores.checkSetting("dkvstest9", "securekeys", "false");
+    }
+
+    private static void resumeBlockChainAfterReopen(String directory, KeyIndexType keyIndexType) throws IOException {
+        resumeBlockChainAfterReopen(directory, keyIndexType, false);
+    }
+
+    private static void resumeBlockChainAfterReopen(String directory, KeyIndexType keyIndexType, boolean compressed) throws IOException {
+        resumeBlockChainAfterReopen(directory, keyIndexType, compressed, 1);
+    }
+
+    private static void resumeBlockChainAfterReopen(String directory, KeyIndexType keyIndexType, boolean compressed, int nshards) throws IOException {
+        resumeBlockChainAfterReopen(directory, keyIndexType, compressed, nshards, true);
+    }
+
+    private static void resumeBlockChainAfterReopen(String directory, KeyIndexType keyIndexType, boolean compressed, int nshards, boolean syncWrites) throws IOException {
+        DiskKeyValueStores keyValueStores = new DiskKeyValueStores(directory, keyIndexType, compressed, nshards, syncWrites);
+        BlockChain blockChain = new ObjectContext(keyValueStores).getBlockChain();
+
+        if (blockChain.getBestBlockInformation() == null)
+            blockChain.connectBlock(GenesisGenerator.generateGenesis());
+
+        FactoryHelper.extendBlockChainWithBlocks(blockChain, 10);
+
+        Block bestBlock = blockChain.getBestBlockInformation().getBlock();
+
+        keyValueStores.close();
+
+        DiskKeyValueStores keyValueStores2 = new DiskKeyValueStores(directory, keyIndexType, compressed, nshards, syncWrites);
+        ObjectContext objectContext2 = new ObjectContext(keyValueStores2, 100, 10);
+        BlockChain blockChain2 = objectContext2.getBlockChain();
+
+        Assert.assertEquals(bestBlock.getNumber(), objectContext2.getStores().getBlocksInformationStore().getBestHeight());
+        Assert.assertNotNull(blockChain2.getBestBlockInformation());
+        Assert.assertEquals(bestBlock.getHash(), blockChain2.getBestBlockInformation().getBlock().getHash());
+
+        for (long k = 0; k <= bestBlock.getNumber(); k++)
+            Assert.assertNotNull(blockChain2.getBlockByNumber(k));
+
+        keyValueStores2.close();
+    }
+}
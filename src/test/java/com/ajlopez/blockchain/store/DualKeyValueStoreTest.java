@@ -5,6 +5,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by ajlopez on 19/04/2020.
@@ -36,4 +39,76 @@ public class DualKeyValueStoreTest {
         for (int k = 0; k < keys.length; k++)
             Assert.assertArrayEquals(values[k], newStore.getValue(keys[k]));
     }
+
+    @Test
+    public void copyKeyValuesUsingGetValues() throws IOException {
+        KeyValueStore originalStore = new HashMapStore();
+        KeyValueStore newStore = new HashMapStore();
+
+        List<byte[]> keys = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        for (int k = 0; k < 16; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            if (k % 2 == 0)
+                originalStore.setValue(key, value);
+            else
+                newStore.setValue(key, value);
+
+            keys.add(key);
+            values.add(value);
+        }
+
+        keys.add(FactoryHelper.createRandomBytes(32));
+        values.add(null);
+
+        DualKeyValueStore copierStore = new DualKeyValueStore(originalStore, newStore);
+
+        List<byte[]> result = copierStore.getValues(keys);
+
+        Assert.assertEquals(keys.size(), result.size());
+
+        for (int k = 0; k < keys.size(); k++) {
+            Assert.assertArrayEquals(values.get(k), result.get(k));
+            Assert.assertArrayEquals(values.get(k), newStore.getValue(keys.get(k)));
+        }
+    }
+
+    @Test
+    public void scanBothStores() throws IOException {
+        KeyValueStore originalStore = new SortedMapStore();
+        KeyValueStore newStore = new SortedMapStore();
+
+        originalStore.setValue(new byte[] { 0x01 }, new byte[] { 0x01 });
+        originalStore.setValue(new byte[] { 0x02 }, new byte[] { 0x02 });
+        newStore.setValue(new byte[] { 0x02 }, new byte[] { 0x03 });
+        newStore.setValue(new byte[] { 0x03 }, new byte[] { 0x04 });
+
+        DualKeyValueStore store = new DualKeyValueStore(originalStore, newStore);
+
+        Iterator<KeyValue> iterator = store.scan(null, null);
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x03 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x04 }, iterator.next().getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void containsKeyWithoutCopyingValue() throws IOException {
+        KeyValueStore originalStore = new HashMapStore();
+        HashMapStore newStore = new HashMapStore();
+        DualKeyValueStore store = new DualKeyValueStore(originalStore, newStore);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        originalStore.setValue(key1, FactoryHelper.createRandomBytes(42));
+
+        Assert.assertTrue(store.containsKey(key1));
+        Assert.assertFalse(store.containsKey(key2));
+        Assert.assertTrue(newStore.isEmpty());
+    }
 }
@@ -0,0 +1,330 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteArrayWrapper;
+import com.ajlopez.blockchain.utils.ByteUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class HashKeyValueStoreTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void getUnknownValueAsNull() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        Assert.assertNull(store.getValue(FactoryHelper.createRandomBytes(32)));
+        Assert.assertNull(store.getValue(FactoryHelper.createRandomBytes(20)));
+        Assert.assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void setAndGetValue() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key, value);
+
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertArrayEquals(value, store.getValue(key.clone()));
+        Assert.assertEquals(1, store.size());
+        Assert.assertFalse(store.isEmpty());
+    }
+
+    @Test
+    public void replaceValue() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key, FactoryHelper.createRandomBytes(42));
+        store.setValue(key, value);
+
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void setAndGetManyValues() {
+        setAndGetManyValues(new HashKeyValueStore(32));
+    }
+
+    @Test
+    public void setAndGetManyValuesOffHeap() {
+        setAndGetManyValues(new HashKeyValueStore(32, true));
+    }
+
+    @Test
+    public void setAndGetValuesWithSameFirstBytes() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[][] keys = new byte[100][];
+        byte[][] values = new byte[100][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            System.arraycopy(keys[0], 0, keys[k], 0, 8);
+            values[k] = FactoryHelper.createRandomBytes(42);
+            store.setValue(keys[k], values[k]);
+        }
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], store.getValue(keys[k]));
+    }
+
+    @Test
+    public void cannotSetValueWithInvalidKey() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid key");
+
+        store.setValue(FactoryHelper.createRandomBytes(20), FactoryHelper.createRandomBytes(42));
+    }
+
+    private static void setAndGetManyValues(HashKeyValueStore store) {
+        byte[][] keys = new byte[10000][];
+        byte[][] values = new byte[10000][];
+
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(k % 100);
+            store.setValue(keys[k], values[k]);
+        }
+
+        Assert.assertEquals(keys.length, store.size());
+
+        for (int k = 0; k < keys.length; k++)
+            Assert.assertArrayEquals(values[k], store.getValue(keys[k]));
+    }
+
+    @Test
+    public void scanKeysInOrder() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+        scanKeysInOrder(store);
+    }
+
+    @Test
+    public void scanKeysInOrderOffHeap() {
+        HashKeyValueStore store = new HashKeyValueStore(32, true);
+        scanKeysInOrder(store);
+    }
+
+    private static void scanKeysInOrder(HashKeyValueStore store) {
+        TreeMap<ByteArrayWrapper, byte[]> expected = new TreeMap<>();
+
+        for (int k = 0; k < 2000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            store.setValue(key, value);
+            expected.put(new ByteArrayWrapper(key), value);
+        }
+
+        byte[] fromKey = FactoryHelper.createRandomBytes(32);
+        fromKey[0] = 0x40;
+        byte[] toKey = FactoryHelper.createRandomBytes(32);
+        toKey[0] = (byte)0xc0;
+
+        Iterator<KeyValue> iterator = store.scan(fromKey, toKey);
+
+        for (Map.Entry<ByteArrayWrapper, byte[]> entry : expected.subMap(new ByteArrayWrapper(fromKey), new ByteArrayWrapper(toKey)).entrySet()) {
+            Assert.assertTrue(iterator.hasNext());
+
+            KeyValue keyValue = iterator.next();
+
+            Assert.assertArrayEquals(entry.getKey().getBytes(), keyValue.getKey());
+            Assert.assertArrayEquals(entry.getValue(), keyValue.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void compactKeepingReferencedKeys() {
+        compactKeepingReferencedKeys(false);
+    }
+
+    @Test
+    public void compactKeepingReferencedKeysOffHeap() {
+        compactKeepingReferencedKeys(true);
+    }
+
+    @Test
+    public void keepKeyValuesWrittenAfterStartingCompaction() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value3 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+
+        store.startCompaction();
+
+        store.setValue(key3, value3);
+
+        CompactionResult result = store.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(2, result.getNoKeys());
+        Assert.assertEquals(32 + 42, result.getReclaimedBytes());
+        Assert.assertEquals(2, store.size());
+
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertNull(store.getValue(key2));
+        Assert.assertArrayEquals(value3, store.getValue(key3));
+    }
+
+    @Test
+    public void keepKeysReferencedByValuesWrittenWhileCompacting() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        store.setValue(key1, new byte[0]);
+        store.setValue(key2, new byte[0]);
+
+        store.compact(Collections.singletonList(key1), value -> {
+            if (store.getValue(key3) == null)
+                store.setValue(key3, key2);
+
+            return value.length == 0 ? Collections.emptyList() : Collections.singletonList(value);
+        });
+
+        Assert.assertEquals(3, store.size());
+        Assert.assertArrayEquals(new byte[0], store.getValue(key1));
+        Assert.assertArrayEquals(new byte[0], store.getValue(key2));
+        Assert.assertArrayEquals(key2, store.getValue(key3));
+    }
+
+    @Test
+    public void compactManyKeys() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+        List<byte[]> roots = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+
+        for (int k = 0; k < 2000; k++) {
+            byte[] key = FactoryHelper.createRandomBytes(32);
+            byte[] value = FactoryHelper.createRandomBytes(42);
+
+            store.setValue(key, value);
+
+            if (k % 2 == 0) {
+                roots.add(key);
+                values.add(value);
+            }
+        }
+
+        CompactionResult result = store.compact(roots, value -> Collections.emptyList());
+
+        Assert.assertEquals(1000, result.getNoKeys());
+        Assert.assertEquals(1000, store.size());
+
+        for (int k = 0; k < roots.size(); k++)
+            Assert.assertArrayEquals(values.get(k), store.getValue(roots.get(k)));
+    }
+
+    private static void compactKeepingReferencedKeys(boolean offHeap) {
+        HashKeyValueStore store = new HashKeyValueStore(32, offHeap);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] key4 = FactoryHelper.createRandomBytes(32);
+
+        store.setValue(key1, key2);
+        store.setValue(key2, key3);
+        store.setValue(key3, new byte[0]);
+        store.setValue(key4, key1);
+
+        CompactionResult result = store.compact(Collections.singletonList(key1), value -> value.length == 0 ? Collections.emptyList() : Collections.singletonList(value));
+
+        Assert.assertEquals(3, result.getNoKeys());
+        Assert.assertEquals(64, result.getReclaimedBytes());
+        Assert.assertEquals(3, store.size());
+
+        Assert.assertArrayEquals(key2, store.getValue(key1));
+        Assert.assertArrayEquals(key3, store.getValue(key2));
+        Assert.assertArrayEquals(new byte[0], store.getValue(key3));
+        Assert.assertNull(store.getValue(key4));
+    }
+
+    @Test
+    public void containsKey() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+
+        store.setValue(key1, FactoryHelper.createRandomBytes(42));
+
+        Assert.assertTrue(store.containsKey(key1));
+        Assert.assertFalse(store.containsKey(key2));
+        Assert.assertFalse(store.containsKey(FactoryHelper.createRandomBytes(20)));
+    }
+
+    @Test
+    public void keepKeyValuesWrittenAfterLastCompaction() {
+        HashKeyValueStore store = new HashKeyValueStore(32);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+
+        store.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        store.setValue(key2, value2);
+
+        CompactionResult result = store.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(2, result.getNoKeys());
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+
+        result = store.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(1, result.getNoKeys());
+        Assert.assertNull(store.getValue(key2));
+    }
+
+    @Test
+    public void setAndGetValuesInSeveralKeySegments() {
+        HashKeyValueStore store = new HashKeyValueStore(8);
+        byte[] value = FactoryHelper.createRandomBytes(4);
+        int nkeys = 1 << 20;
+
+        for (int k = 0; k < nkeys; k++)
+            store.setValue(ByteUtils.longToBytes(k * 0x9e3779b97f4a7c15L), value);
+
+        Assert.assertEquals(nkeys, store.size());
+
+        for (int k = 0; k < nkeys; k += 1021)
+            Assert.assertArrayEquals(value, store.getValue(ByteUtils.longToBytes(k * 0x9e3779b97f4a7c15L)));
+
+        Assert.assertNull(store.getValue(ByteUtils.longToBytes(nkeys * 0x9e3779b97f4a7c15L)));
+    }
+}
@@ -3,6 +3,11 @@ package com.ajlopez.blockchain.store;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * Created by ajlopez on 06/01/2018.
  */
@@ -24,4 +29,71 @@ public class HashMapStoreTest {
         store.setValue(key, value);
         Assert.assertArrayEquals(value, store.getValue(key));
     }
+
+    @Test
+    public void getValues() throws IOException {
+        HashMapStore store = new HashMapStore();
+
+        byte[] key1 = new byte[] { 0x01, 0x02, 0x03 };
+        byte[] key2 = new byte[] { 0x04, 0x05, 0x06 };
+        byte[] value1 = new byte[] { 0x07, 0x08, 0x09 };
+
+        store.setValue(key1, value1);
+
+        List<byte[]> result = store.getValues(Arrays.asList(key1, key2));
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertArrayEquals(value1, result.get(0));
+        Assert.assertNull(result.get(1));
+    }
+
+    @Test
+    public void scanKeysInOrder() {
+        HashMapStore store = new HashMapStore();
+
+        for (int k = 0; k < 256; k++)
+            store.setValue(new byte[] { (byte)k }, new byte[] { (byte)k, 0x01 });
+
+        Iterator<KeyValue> iterator = store.scan(new byte[] { 0x10 }, null);
+
+        for (int k = 0x10; k < 256; k++) {
+            Assert.assertTrue(iterator.hasNext());
+
+            KeyValue keyValue = iterator.next();
+
+            Assert.assertArrayEquals(new byte[] { (byte)k }, keyValue.getKey());
+            Assert.assertArrayEquals(new byte[] { (byte)k, 0x01 }, keyValue.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void scanPrefix() throws IOException {
+        HashMapStore store = new HashMapStore();
+
+        store.setValue(new byte[] { 0x01, 0x02, 0x03 }, new byte[] { 0x03 });
+        store.setValue(new byte[] { 0x01, 0x03 }, new byte[] { 0x04 });
+        store.setValue(new byte[] { 0x01, 0x02 }, new byte[] { 0x02 });
+        store.setValue(new byte[] { 0x01 }, new byte[] { 0x01 });
+
+        Iterator<KeyValue> iterator = store.scanPrefix(new byte[] { 0x01, 0x02 });
+
+        Assert.assertArrayEquals(new byte[] { 0x02 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x03 }, iterator.next().getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void containsKey() {
+        HashMapStore store = new HashMapStore();
+
+        byte[] key1 = new byte[] { 0x01, 0x02, 0x03 };
+        byte[] key2 = new byte[] { 0x04, 0x05, 0x06 };
+
+        store.setValue(key1, new byte[] { 0x07, 0x08, 0x09 });
+
+        Assert.assertTrue(store.containsKey(key1));
+        Assert.assertFalse(store.containsKey(key2));
+    }
 }
@@ -0,0 +1,65 @@
+package com.ajlopez.blockchain.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyRangeTest {
+    @Test
+    public void unboundedRangeContainsAnyKey() {
+        KeyRange keyRange = new KeyRange(null, null);
+
+        Assert.assertTrue(keyRange.contains(new byte[0]));
+        Assert.assertTrue(keyRange.contains(new byte[] { (byte)0xff, (byte)0xff }));
+    }
+
+    @Test
+    public void fromKeyIsInclusiveAndToKeyIsExclusive() {
+        KeyRange keyRange = new KeyRange(new byte[] { 0x10 }, new byte[] { 0x20 });
+
+        Assert.assertFalse(keyRange.contains(new byte[] { 0x0f, (byte)0xff }));
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x10 }));
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x10, 0x00 }));
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x1f, (byte)0xff }));
+        Assert.assertFalse(keyRange.contains(new byte[] { 0x20 }));
+        Assert.assertFalse(keyRange.contains(new byte[] { (byte)0x80 }));
+    }
+
+    @Test
+    public void prefixRange() {
+        KeyRange keyRange = KeyRange.prefix(new byte[] { 0x01, 0x02 });
+
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02 }, keyRange.getFromKey());
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x03 }, keyRange.getToKey());
+
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x01, 0x02 }));
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x01, 0x02, (byte)0xff }));
+        Assert.assertFalse(keyRange.contains(new byte[] { 0x01, 0x03 }));
+        Assert.assertFalse(keyRange.contains(new byte[] { 0x01 }));
+    }
+
+    @Test
+    public void prefixRangeEndingWithMaximumBytes() {
+        KeyRange keyRange = KeyRange.prefix(new byte[] { 0x01, (byte)0xff, (byte)0xff });
+
+        Assert.assertArrayEquals(new byte[] { 0x02 }, keyRange.getToKey());
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x01, (byte)0xff, (byte)0xff, 0x00 }));
+        Assert.assertFalse(keyRange.contains(new byte[] { 0x02 }));
+    }
+
+    @Test
+    public void prefixRangeWithOnlyMaximumBytesIsUnbounded() {
+        KeyRange keyRange = KeyRange.prefix(new byte[] { (byte)0xff });
+
+        Assert.assertNull(keyRange.getToKey());
+        Assert.assertTrue(keyRange.contains(new byte[] { (byte)0xff, (byte)0xff }));
+    }
+
+    @Test
+    public void emptyPrefixIsUnbounded() {
+        KeyRange keyRange = KeyRange.prefix(new byte[0]);
+
+        Assert.assertNull(keyRange.getToKey());
+        Assert.assertTrue(keyRange.contains(new byte[0]));
+        Assert.assertTrue(keyRange.contains(new byte[] { 0x01 }));
+    }
+}
@@ -13,6 +13,7 @@ public class KeyValueStoresTest {
     @Test
     public void getValues() throws IOException {
         byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] informationKey = FactoryHelper.createRandomBytes(Long.BYTES);
         byte[] value1 = FactoryHelper.createRandomBytes(42);
         byte[] value2 = FactoryHelper.createRandomBytes(42);
         byte[] value3 = FactoryHelper.createRandomBytes(42);
@@ -25,12 +26,34 @@ public class KeyValueStoresTest {
         keyValueStores.getAccountKeyValueStore().setValue(key, value2);
         keyValueStores.getCodeKeyValueStore().setValue(key, value3);
         keyValueStores.getStorageKeyValueStore().setValue(key, value4);
-        keyValueStores.getBlockInformationKeyValueStore().setValue(key, value5);
+        keyValueStores.getBlockInformationKeyValueStore().setValue(informationKey, value5);
 
         Assert.assertArrayEquals(value1, keyValueStores.getValue(KeyValueStoreType.BLOCKS, key));
         Assert.assertArrayEquals(value2, keyValueStores.getValue(KeyValueStoreType.ACCOUNTS, key));
         Assert.assertArrayEquals(value3, keyValueStores.getValue(KeyValueStoreType.CODES, key));
         Assert.assertArrayEquals(value4, keyValueStores.getValue(KeyValueStoreType.STORAGE, key));
-        Assert.assertArrayEquals(value5, keyValueStores.getValue(KeyValueStoreType.BLOCKS_INFORMATION, key));
+        Assert.assertArrayEquals(value5, keyValueStores.getValue(KeyValueStoreType.BLOCKS_INFORMATION, informationKey));
+    }
+
+    @Test
+    public void getKeyValueStores() {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+
+        Assert.assertSame(keyValueStores.getBlockKeyValueStore(), keyValueStores.getKeyValueStore(KeyValueStoreType.BLOCKS));
+        Assert.assertSame(keyValueStores.getAccountKeyValueStore(), keyValueStores.getKeyValueStore(KeyValueStoreType.ACCOUNTS));
+        Assert.assertSame(keyValueStores.getCodeKeyValueStore(), keyValueStores.getKeyValueStore(KeyValueStoreType.CODES));
+        Assert.assertSame(keyValueStores.getStorageKeyValueStore(), keyValueStores.getKeyValueStore(KeyValueStoreType.STORAGE));
+        Assert.assertSame(keyValueStores.getBlockInformationKeyValueStore(), keyValueStores.getKeyValueStore(KeyValueStoreType.BLOCKS_INFORMATION));
+    }
+
+    @Test
+    public void useHashKeyValueStoresForHashKeys() {
+        KeyValueStores keyValueStores = new MemoryKeyValueStores();
+
+        Assert.assertTrue(keyValueStores.getBlockKeyValueStore() instanceof HashKeyValueStore);
+        Assert.assertTrue(keyValueStores.getAccountKeyValueStore() instanceof HashKeyValueStore);
+        Assert.assertTrue(keyValueStores.getCodeKeyValueStore() instanceof HashKeyValueStore);
+        Assert.assertTrue(keyValueStores.getStorageKeyValueStore() instanceof HashKeyValueStore);
+        Assert.assertTrue(keyValueStores.getBlockInformationKeyValueStore() instanceof PaddedKeyValueStore);
     }
 }
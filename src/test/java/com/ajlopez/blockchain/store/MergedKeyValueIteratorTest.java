@@ -0,0 +1,70 @@
+package com.ajlopez.blockchain.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class MergedKeyValueIteratorTest {
+    @Test
+    public void mergeEmptyIterators() {
+        MergedKeyValueIterator iterator = new MergedKeyValueIterator(Arrays.asList(Collections.emptyIterator(), Collections.emptyIterator()));
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void nextWithoutElements() {
+        new MergedKeyValueIterator(Collections.emptyList()).next();
+    }
+
+    @Test
+    public void mergeOrderedIterators() {
+        Iterator<KeyValue> iterator1 = createIterator(0x01, 0x04, 0x05);
+        Iterator<KeyValue> iterator2 = createIterator(0x02, 0x03, 0x06, 0x07);
+
+        List<byte[]> keys = getKeys(new MergedKeyValueIterator(Arrays.asList(iterator1, iterator2)));
+
+        Assert.assertEquals(7, keys.size());
+
+        for (int k = 0; k < keys.size(); k++)
+            Assert.assertArrayEquals(new byte[] { (byte)(k + 1) }, keys.get(k));
+    }
+
+    @Test
+    public void firstIteratorWinsOnDuplicatedKeys() {
+        Iterator<KeyValue> iterator1 = Collections.singletonList(new KeyValue(new byte[] { 0x01 }, new byte[] { 0x0a })).iterator();
+        Iterator<KeyValue> iterator2 = Arrays.asList(new KeyValue(new byte[] { 0x01 }, new byte[] { 0x0b }), new KeyValue(new byte[] { 0x02 }, new byte[] { 0x0c })).iterator();
+
+        MergedKeyValueIterator iterator = new MergedKeyValueIterator(Arrays.asList(iterator1, iterator2));
+
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertArrayEquals(new byte[] { 0x0a }, iterator.next().getValue());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertArrayEquals(new byte[] { 0x0c }, iterator.next().getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    private static Iterator<KeyValue> createIterator(int... keys) {
+        List<KeyValue> keyValues = new ArrayList<>();
+
+        for (int key : keys)
+            keyValues.add(new KeyValue(new byte[] { (byte)key }, new byte[] { (byte)key }));
+
+        return keyValues.iterator();
+    }
+
+    private static List<byte[]> getKeys(Iterator<KeyValue> iterator) {
+        List<byte[]> keys = new ArrayList<>();
+
+        while (iterator.hasNext())
+            keys.add(iterator.next().getKey());
+
+        return keys;
+    }
+}
@@ -0,0 +1,155 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import com.ajlopez.blockchain.utils.ByteUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class PaddedKeyValueStoreTest {
+    // https://www.infoq.com/news/2009/07/junit-4.7-rules
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void setAndGetValuesWithKeysOfDifferentLengths() throws IOException {
+        HashMapStore innerStore = new HashMapStore();
+        PaddedKeyValueStore store = new PaddedKeyValueStore(innerStore, 8);
+
+        byte[] key1 = ByteUtils.EMPTY_BYTE_ARRAY;
+        byte[] key2 = new byte[] { 0x01 };
+        byte[] key3 = new byte[] { 0x01, 0x00 };
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        byte[] value3 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+        store.setValue(key3, value3);
+
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+        Assert.assertArrayEquals(value3, store.getValue(key3));
+        Assert.assertNull(store.getValue(new byte[] { 0x02 }));
+
+        byte[] paddedKey = new byte[9];
+        paddedKey[0] = 1;
+        paddedKey[1] = 1;
+
+        Assert.assertArrayEquals(value2, innerStore.getValue(paddedKey));
+    }
+
+    @Test
+    public void getValues() throws IOException {
+        PaddedKeyValueStore store = new PaddedKeyValueStore(new HashMapStore(), 8);
+
+        byte[] key1 = new byte[] { 0x01 };
+        byte[] key2 = new byte[] { 0x01, 0x00 };
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+
+        List<byte[]> result = store.getValues(Arrays.asList(key1, key2));
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertArrayEquals(value1, result.get(0));
+        Assert.assertNull(result.get(1));
+    }
+
+    @Test
+    public void scanKeysByLengthAndBytes() throws IOException {
+        PaddedKeyValueStore store = new PaddedKeyValueStore(new SortedMapStore(), 8);
+
+        byte[] key1 = ByteUtils.EMPTY_BYTE_ARRAY;
+        byte[] key2 = new byte[] { 0x02 };
+        byte[] key3 = new byte[] { 0x01, 0x00 };
+        byte[] key4 = new byte[] { 0x01, 0x01 };
+
+        store.setValue(key4, new byte[] { 0x04 });
+        store.setValue(key3, new byte[] { 0x03 });
+        store.setValue(key2, new byte[] { 0x02 });
+        store.setValue(key1, new byte[] { 0x01 });
+
+        Iterator<KeyValue> iterator = store.scan(key2, key4);
+
+        KeyValue keyValue = iterator.next();
+        Assert.assertArrayEquals(key2, keyValue.getKey());
+        Assert.assertArrayEquals(new byte[] { 0x02 }, keyValue.getValue());
+
+        keyValue = iterator.next();
+        Assert.assertArrayEquals(key3, keyValue.getKey());
+        Assert.assertArrayEquals(new byte[] { 0x03 }, keyValue.getValue());
+
+        Assert.assertFalse(iterator.hasNext());
+
+        iterator = store.scan(null, null);
+
+        Assert.assertArrayEquals(key1, iterator.next().getKey());
+        Assert.assertArrayEquals(key2, iterator.next().getKey());
+        Assert.assertArrayEquals(key3, iterator.next().getKey());
+        Assert.assertArrayEquals(key4, iterator.next().getKey());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void scanPrefix() throws IOException {
+        PaddedKeyValueStore store = new PaddedKeyValueStore(new SortedMapStore(), 8);
+
+        store.setValue(new byte[] { 0x01 }, new byte[] { 0x01 });
+        store.setValue(new byte[] { 0x02 }, new byte[] { 0x02 });
+        store.setValue(new byte[] { 0x01, 0x02 }, new byte[] { 0x03 });
+        store.setValue(new byte[] { 0x02, 0x02 }, new byte[] { 0x04 });
+        store.setValue(new byte[] { 0x01, 0x02, 0x03 }, new byte[] { 0x05 });
+
+        Iterator<KeyValue> iterator = store.scanPrefix(new byte[] { 0x01 });
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x03 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x05 }, iterator.next().getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void writeBatch() throws IOException {
+        PaddedKeyValueStore store = new PaddedKeyValueStore(new HashMapStore(), 8);
+
+        byte[] key = new byte[] { 0x01, 0x02, 0x03 };
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key, value);
+
+        store.write(batch);
+
+        Assert.assertArrayEquals(value, store.getValue(key));
+    }
+
+    @Test
+    public void cannotSetValueWithTooLongKey() throws IOException {
+        PaddedKeyValueStore store = new PaddedKeyValueStore(new HashMapStore(), 8);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("invalid key");
+
+        store.setValue(FactoryHelper.createRandomBytes(9), FactoryHelper.createRandomBytes(42));
+    }
+
+    @Test
+    public void containsKeysOfDifferentLengths() throws IOException {
+        PaddedKeyValueStore store = new PaddedKeyValueStore(new HashMapStore(), 8);
+
+        byte[] key1 = new byte[] { 0x01 };
+        byte[] key2 = new byte[] { 0x01, 0x00 };
+
+        store.setValue(key1, FactoryHelper.createRandomBytes(42));
+
+        Assert.assertTrue(store.containsKey(key1));
+        Assert.assertFalse(store.containsKey(key2));
+    }
+}
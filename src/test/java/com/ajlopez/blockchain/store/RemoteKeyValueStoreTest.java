@@ -1,8 +1,10 @@
 package com.ajlopez.blockchain.store;
 
+import com.ajlopez.blockchain.net.messages.GetStoredValuesMessage;
 import com.ajlopez.blockchain.net.messages.Message;
 import com.ajlopez.blockchain.net.messages.MessageType;
 import com.ajlopez.blockchain.net.peers.Peer;
+import com.ajlopez.blockchain.processors.KeyValueProcessor;
 import com.ajlopez.blockchain.processors.SendProcessor;
 import com.ajlopez.blockchain.test.simples.SimpleMessageChannel;
 import com.ajlopez.blockchain.test.utils.FactoryHelper;
@@ -10,6 +12,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -45,4 +49,77 @@ public class RemoteKeyValueStoreTest {
         Assert.assertNotNull(msg);
         Assert.assertEquals(MessageType.GET_STORED_VALUE, msg.getMessageType());
     }
+
+    @Test
+    public void getValuesWithOneMessage() throws IOException {
+        SendProcessor sendProcessor = new SendProcessor(FactoryHelper.createRandomPeer());
+        Peer receiver = FactoryHelper.createRandomPeer();
+        SimpleMessageChannel channel = new SimpleMessageChannel();
+        sendProcessor.connectToPeer(receiver, channel);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        KeyValueResolver keyValueResolver = new KeyValueResolver() {
+            @Override
+            public void resolve(KeyValueStoreType storeType, byte[] key, CompletableFuture<byte[]> future) {
+                new Thread(() -> { future.complete(Arrays.equals(key, key1) ? value1 : value2); }).start();
+            }
+        };
+
+        RemoteKeyValueStore delayedKeyValueStore = new RemoteKeyValueStore(KeyValueStoreType.BLOCKS, sendProcessor, keyValueResolver);
+
+        List<byte[]> result = delayedKeyValueStore.getValues(Arrays.asList(key1, key2));
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(2, result.size());
+        Assert.assertArrayEquals(value1, result.get(0));
+        Assert.assertArrayEquals(value2, result.get(1));
+
+        Assert.assertEquals(1, channel.getPeerMessages().size());
+
+        Message msg = channel.getPeerMessages().get(0).getValue();
+
+        Assert.assertNotNull(msg);
+        Assert.assertEquals(MessageType.GET_STORED_VALUES, msg.getMessageType());
+        Assert.assertEquals(2, ((GetStoredValuesMessage)msg).getKeys().size());
+    }
+
+    @Test
+    public void getValuesWithMissingKey() throws IOException {
+        SendProcessor sendProcessor = new SendProcessor(FactoryHelper.createRandomPeer());
+        Peer receiver = FactoryHelper.createRandomPeer();
+        SimpleMessageChannel channel = new SimpleMessageChannel();
+        sendProcessor.connectToPeer(receiver, channel);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+
+        KeyValueProcessor keyValueProcessor = new KeyValueProcessor();
+
+        // the reply resolves the first key, and reports the second one as missing
+        KeyValueResolver keyValueResolver = (storeType, key, future) -> {
+            keyValueProcessor.resolve(storeType, key, future);
+
+            if (Arrays.equals(key, key2))
+                new Thread(() -> {
+                    keyValueProcessor.resolving(storeType, key1, value1);
+                    keyValueProcessor.resolvingMissing(storeType, key2);
+                }).start();
+        };
+
+        RemoteKeyValueStore remoteKeyValueStore = new RemoteKeyValueStore(KeyValueStoreType.BLOCKS_INFORMATION, sendProcessor, keyValueResolver);
+
+        long millis = System.currentTimeMillis();
+
+        List<byte[]> result = remoteKeyValueStore.getValues(Arrays.asList(key1, key2));
+
+        Assert.assertTrue(System.currentTimeMillis() - millis < 5000);
+        Assert.assertEquals(2, result.size());
+        Assert.assertArrayEquals(value1, result.get(0));
+        Assert.assertNull(result.get(1));
+    }
 }
@@ -0,0 +1,69 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+public class SortedMapStoreTest {
+    @Test
+    public void getNullForUndefinedKey() {
+        SortedMapStore store = new SortedMapStore();
+
+        Assert.assertNull(store.getValue(new byte[12]));
+        Assert.assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void setAndGetValue() {
+        SortedMapStore store = new SortedMapStore();
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key, value);
+
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(1, store.size());
+        Assert.assertFalse(store.isEmpty());
+    }
+
+    @Test
+    public void scanKeysInOrder() {
+        SortedMapStore store = new SortedMapStore();
+
+        for (int k = 255; k >= 0; k--)
+            store.setValue(new byte[] { (byte)k }, new byte[] { (byte)k, 0x01 });
+
+        Iterator<KeyValue> iterator = store.scan(new byte[] { 0x10 }, new byte[] { (byte)0x90 });
+
+        for (int k = 0x10; k < 0x90; k++) {
+            Assert.assertTrue(iterator.hasNext());
+
+            KeyValue keyValue = iterator.next();
+
+            Assert.assertArrayEquals(new byte[] { (byte)k }, keyValue.getKey());
+            Assert.assertArrayEquals(new byte[] { (byte)k, 0x01 }, keyValue.getValue());
+        }
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void scanPrefix() throws IOException {
+        SortedMapStore store = new SortedMapStore();
+
+        store.setValue(new byte[] { 0x01 }, new byte[] { 0x01 });
+        store.setValue(new byte[] { 0x01, 0x02 }, new byte[] { 0x02 });
+        store.setValue(new byte[] { 0x01, 0x02, 0x03 }, new byte[] { 0x03 });
+        store.setValue(new byte[] { 0x01, 0x03 }, new byte[] { 0x04 });
+
+        Iterator<KeyValue> iterator = store.scanPrefix(new byte[] { 0x01, 0x02 });
+
+        Assert.assertArrayEquals(new byte[] { 0x02 }, iterator.next().getValue());
+        Assert.assertArrayEquals(new byte[] { 0x03 }, iterator.next().getValue());
+        Assert.assertFalse(iterator.hasNext());
+    }
+}
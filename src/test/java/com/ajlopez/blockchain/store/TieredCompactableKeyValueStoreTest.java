@@ -0,0 +1,60 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.CompactionResult;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class TieredCompactableKeyValueStoreTest {
+    @Test
+    public void compactWritesPendingValuesAndRemovesPrunedHotValues() throws IOException {
+        HashKeyValueStore coldStore = new HashKeyValueStore(32);
+        TieredCompactableKeyValueStore store = new TieredCompactableKeyValueStore(coldStore, 1000, AdmissionPolicy.all(), Integer.MAX_VALUE);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+
+        Assert.assertEquals(2, store.getNoPendingEntries());
+
+        store.startCompaction();
+
+        CompactionResult result = store.compact(Collections.singletonList(key1), value -> Collections.emptyList());
+
+        Assert.assertEquals(1, result.getNoKeys());
+        Assert.assertEquals(0, store.getNoPendingEntries());
+        Assert.assertEquals(0, store.getHotBytes());
+
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertNull(store.getValue(key2));
+        Assert.assertFalse(store.containsKey(key2));
+    }
+
+    @Test
+    public void keepValuesWrittenAfterCompacting() throws IOException {
+        HashKeyValueStore coldStore = new HashKeyValueStore(32);
+        TieredCompactableKeyValueStore store = new TieredCompactableKeyValueStore(coldStore, 1000, AdmissionPolicy.all(), Integer.MAX_VALUE);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        store.compact(Collections.emptyList(), value -> Collections.emptyList());
+
+        store.setValue(key2, value2);
+        store.flush();
+
+        Assert.assertNull(store.getValue(key1));
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+        Assert.assertArrayEquals(value2, coldStore.getValue(key2));
+    }
+}
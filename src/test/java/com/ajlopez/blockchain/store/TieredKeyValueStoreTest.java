@@ -0,0 +1,313 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.db.KeyValueDb;
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class TieredKeyValueStoreTest {
+    @Test
+    public void getUnknownValueAsNull() throws IOException {
+        TieredKeyValueStore store = new TieredKeyValueStore(new HashMapStore(), 1000);
+
+        Assert.assertNull(store.getValue(FactoryHelper.createRandomBytes(32)));
+        Assert.assertEquals(0, store.getHotHits());
+        Assert.assertEquals(1, store.getHotMisses());
+        Assert.assertEquals(0, store.getColdHits());
+        Assert.assertEquals(1, store.getColdMisses());
+        Assert.assertEquals(0, store.getHotHitRate(), 0);
+    }
+
+    @Test
+    public void setValueIsWrittenToColdStoreOnFlush() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key, value);
+
+        Assert.assertNull(coldStore.getValue(key));
+        Assert.assertEquals(1, store.getNoPendingEntries());
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(32 + 42, store.getHotBytes());
+
+        store.flush();
+
+        Assert.assertArrayEquals(value, coldStore.getValue(key));
+        Assert.assertEquals(0, store.getNoPendingEntries());
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertEquals(2, store.getHotHits());
+        Assert.assertEquals(0, store.getHotMisses());
+    }
+
+    @Test
+    public void promoteValueReadFromColdStore() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        coldStore.setValue(key, value);
+
+        Assert.assertArrayEquals(value, store.getValue(key));
+        Assert.assertArrayEquals(value, store.getValue(key));
+
+        Assert.assertEquals(1, store.getHotHits());
+        Assert.assertEquals(1, store.getHotMisses());
+        Assert.assertEquals(1, store.getColdHits());
+        Assert.assertEquals(0, store.getColdMisses());
+        Assert.assertEquals(0.5, store.getHotHitRate(), 0.0001);
+        Assert.assertEquals(1.0, store.getColdHitRate(), 0.0001);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedValuesToKeepHotBytes() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, (32 + 42) * 2);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        byte[] value3 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+        store.getValue(key1);
+        store.setValue(key3, value3);
+
+        Assert.assertEquals((32 + 42) * 2, store.getHotBytes());
+        Assert.assertEquals(1, store.getEvictions());
+
+        // evicted value not written yet is read from pending entries
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+        Assert.assertEquals(2, store.getHotHits());
+
+        store.flush();
+
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+        Assert.assertEquals(2, store.getHotHits());
+        Assert.assertEquals(1, store.getHotMisses());
+        Assert.assertEquals(1, store.getColdHits());
+    }
+
+    @Test
+    public void admissionPolicyKeepsLargeValuesInColdStore() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000, AdmissionPolicy.maxValueLength(100));
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(200);
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+        store.flush();
+
+        Assert.assertEquals(32 + 42, store.getHotBytes());
+
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+
+        Assert.assertEquals(32 + 42, store.getHotBytes());
+        Assert.assertEquals(0, store.getHotHits());
+        Assert.assertEquals(2, store.getHotMisses());
+        Assert.assertEquals(2, store.getColdHits());
+    }
+
+    @Test
+    public void writeBatch() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(key1, value1);
+        batch.put(key2, value2);
+
+        store.write(batch);
+
+        Assert.assertEquals(2, store.getNoPendingEntries());
+
+        store.flush();
+
+        Assert.assertArrayEquals(value1, coldStore.getValue(key1));
+        Assert.assertArrayEquals(value2, coldStore.getValue(key2));
+    }
+
+    @Test
+    public void writeBehindToKeyValueDb() throws IOException, InterruptedException {
+        KeyValueDb coldStore = new KeyValueDb("tkvstest1", 32);
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 32 + 42);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.start();
+
+        store.setValue(key1, value1);
+        store.setValue(key2, value2);
+
+        for (int k = 0; k < 100 && store.getNoPendingEntries() > 0; k++)
+            Thread.sleep(20);
+
+        store.stop();
+
+        Assert.assertEquals(0, store.getNoPendingEntries());
+        Assert.assertArrayEquals(value1, coldStore.getValue(key1));
+        Assert.assertArrayEquals(value2, coldStore.getValue(key2));
+
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertEquals(1, store.getColdHits());
+
+        coldStore.close();
+    }
+
+    @Test
+    public void getValuesFromHotAndColdStores() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key1, value1);
+        coldStore.setValue(key2, value2);
+
+        List<byte[]> result = store.getValues(Arrays.asList(key1, key2, key3));
+
+        Assert.assertEquals(3, result.size());
+        Assert.assertArrayEquals(value1, result.get(0));
+        Assert.assertArrayEquals(value2, result.get(1));
+        Assert.assertNull(result.get(2));
+
+        Assert.assertEquals(1, store.getHotHits());
+        Assert.assertEquals(2, store.getHotMisses());
+        Assert.assertEquals(1, store.getColdHits());
+        Assert.assertEquals(1, store.getColdMisses());
+        Assert.assertEquals((32 + 42) * 2, store.getHotBytes());
+    }
+
+    @Test
+    public void scanIncludesPendingEntries() throws IOException {
+        SortedMapStore coldStore = new SortedMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        store.setValue(new byte[] { 0x02 }, new byte[] { 0x02 });
+        coldStore.setValue(new byte[] { 0x01 }, new byte[] { 0x01 });
+
+        Iterator<KeyValue> iterator = store.scan(null, null);
+
+        Assert.assertArrayEquals(new byte[] { 0x01 }, iterator.next().getKey());
+        Assert.assertArrayEquals(new byte[] { 0x02 }, iterator.next().getKey());
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertEquals(0, store.getNoPendingEntries());
+    }
+
+    @Test
+    public void containsPendingAndColdKeys() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] key3 = FactoryHelper.createRandomBytes(32);
+
+        store.setValue(key1, FactoryHelper.createRandomBytes(42));
+        coldStore.setValue(key2, FactoryHelper.createRandomBytes(42));
+
+        Assert.assertTrue(store.containsKey(key1));
+        Assert.assertTrue(store.containsKey(key2));
+        Assert.assertFalse(store.containsKey(key3));
+        Assert.assertEquals(0, store.getHotHits() + store.getHotMisses());
+    }
+
+    @Test
+    public void doNotAdmitColdValueReadBeforeConcurrentWrite() throws IOException {
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+        TieredKeyValueStore[] stores = new TieredKeyValueStore[1];
+
+        // the new value is written after reading the old one from the cold store
+        HashMapStore coldStore = new HashMapStore() {
+            @Override
+            public byte[] getValue(byte[] key) {
+                byte[] value = super.getValue(key);
+
+                try {
+                    if (Arrays.equals(value1, value))
+                        stores[0].setValue(key, value2);
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+
+                return value;
+            }
+        };
+
+        coldStore.setValue(key, value1);
+        stores[0] = new TieredKeyValueStore(coldStore, 1000);
+
+        Assert.assertArrayEquals(value1, stores[0].getValue(key));
+        Assert.assertArrayEquals(value2, stores[0].getValue(key));
+    }
+
+    @Test
+    public void keepValueWrittenWhileFlushing() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        store.setValue(key, value1);
+
+        WriteBatch batch = store.getPendingBatch();
+
+        store.setValue(key, value2);
+        store.writePendingBatch(batch);
+
+        Assert.assertArrayEquals(value1, coldStore.getValue(key));
+        Assert.assertEquals(1, store.getNoPendingEntries());
+
+        store.flush();
+
+        Assert.assertArrayEquals(value2, coldStore.getValue(key));
+        Assert.assertEquals(0, store.getNoPendingEntries());
+    }
+
+    @Test
+    public void flushOnlyByWriteBehind() throws IOException {
+        HashMapStore coldStore = new HashMapStore();
+        TieredKeyValueStore store = new TieredKeyValueStore(coldStore, 1000, AdmissionPolicy.all(), Integer.MAX_VALUE);
+
+        for (int k = 0; k < TieredKeyValueStore.MAX_PENDING_ENTRIES; k++)
+            store.setValue(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(1));
+
+        Assert.assertEquals(TieredKeyValueStore.MAX_PENDING_ENTRIES, store.getNoPendingEntries());
+        Assert.assertTrue(coldStore.isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class TieredKeyValueStoresTest {
+    @Test
+    public void getTieredKeyValueStores() {
+        TieredKeyValueStores keyValueStores = new TieredKeyValueStores(new MemoryKeyValueStores(), createHotSizes(1000));
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values())
+            Assert.assertTrue(keyValueStores.getKeyValueStore(keyValueStoreType) instanceof TieredKeyValueStore);
+
+        Assert.assertTrue(keyValueStores.getAccountKeyValueStore() instanceof CompactableKeyValueStore);
+        Assert.assertTrue(keyValueStores.getStorageKeyValueStore() instanceof CompactableKeyValueStore);
+        Assert.assertFalse(keyValueStores.getBlockInformationKeyValueStore() instanceof CompactableKeyValueStore);
+    }
+
+    @Test
+    public void flushPendingValues() throws IOException {
+        MemoryKeyValueStores coldStores = new MemoryKeyValueStores();
+        TieredKeyValueStores keyValueStores = new TieredKeyValueStores(coldStores, createHotSizes(1000));
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] informationKey = FactoryHelper.createRandomBytes(Long.BYTES);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values())
+            keyValueStores.getKeyValueStore(keyValueStoreType).setValue(keyValueStoreType == KeyValueStoreType.BLOCKS_INFORMATION ? informationKey : key, value);
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values())
+            Assert.assertNull(coldStores.getValue(keyValueStoreType, keyValueStoreType == KeyValueStoreType.BLOCKS_INFORMATION ? informationKey : key));
+
+        keyValueStores.flush();
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values())
+            Assert.assertArrayEquals(value, coldStores.getValue(keyValueStoreType, keyValueStoreType == KeyValueStoreType.BLOCKS_INFORMATION ? informationKey : key));
+    }
+
+    @Test
+    public void writeBehindAndStop() throws IOException, InterruptedException {
+        MemoryKeyValueStores coldStores = new MemoryKeyValueStores();
+        TieredKeyValueStores keyValueStores = new TieredKeyValueStores(coldStores, createHotSizes(0));
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        keyValueStores.start();
+
+        keyValueStores.getAccountKeyValueStore().setValue(key1, value);
+
+        for (int k = 0; k < 100 && coldStores.getValue(KeyValueStoreType.ACCOUNTS, key1) == null; k++)
+            Thread.sleep(20);
+
+        Assert.assertArrayEquals(value, coldStores.getValue(KeyValueStoreType.ACCOUNTS, key1));
+
+        keyValueStores.stop();
+
+        keyValueStores.getAccountKeyValueStore().setValue(key2, value);
+
+        Assert.assertNull(coldStores.getValue(KeyValueStoreType.ACCOUNTS, key2));
+    }
+
+    private static Map<KeyValueStoreType, Long> createHotSizes(long size) {
+        Map<KeyValueStoreType, Long> hotSizes = new EnumMap<>(KeyValueStoreType.class);
+
+        for (KeyValueStoreType keyValueStoreType : KeyValueStoreType.values())
+            hotSizes.put(keyValueStoreType, size);
+
+        return hotSizes;
+    }
+}
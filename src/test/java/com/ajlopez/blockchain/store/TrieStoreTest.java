@@ -1,12 +1,17 @@
 package com.ajlopez.blockchain.store;
 
+import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.state.Trie;
 import com.ajlopez.blockchain.test.utils.FactoryHelper;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by ajlopez on 04/03/2018.
@@ -97,6 +102,93 @@ public class TrieStoreTest {
             Assert.assertArrayEquals(values[k], result.get(keys[k]));
     }
 
+    @Test
+    public void retrieveAllSubnodesWithOneCall() throws IOException {
+        AtomicInteger nmultigets = new AtomicInteger();
+
+        KeyValueStore keyValueStore = new HashMapStore() {
+            @Override
+            public List<byte[]> getValues(List<byte[]> keys) throws IOException {
+                nmultigets.incrementAndGet();
+                return super.getValues(keys);
+            }
+        };
+
+        TrieStore store = new TrieStore(keyValueStore);
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+
+        trie.save();
+
+        Trie root = store.retrieve(trie.getHash());
+        Hash[] subhashes = root.getSubHashes();
+
+        Trie[] result = store.retrieveAll(subhashes);
+
+        Assert.assertNotNull(result);
+        Assert.assertEquals(subhashes.length, result.length);
+        Assert.assertEquals(1, nmultigets.get());
+
+        for (int k = 0; k < subhashes.length; k++)
+            if (subhashes[k] == null)
+                Assert.assertNull(result[k]);
+            else
+                Assert.assertEquals(subhashes[k], result[k].getHash());
+    }
+
+    @Test
+    public void retrieveAllUsingCache() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore(), 100);
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+
+        trie.save();
+
+        Hash[] hashes = new Hash[] { trie.getHash(), null, Trie.EMPTY_TRIE_HASH, trie.getHash() };
+
+        Trie[] result = store.retrieveAll(hashes);
+
+        Assert.assertEquals(4, result.length);
+        Assert.assertEquals(trie.getHash(), result[0].getHash());
+        Assert.assertNull(result[1]);
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, result[2].getHash());
+        Assert.assertEquals(trie.getHash(), result[3].getHash());
+        Assert.assertEquals(0, store.getCacheHits());
+        Assert.assertEquals(2, store.getCacheMisses());
+
+        store.retrieveAll(hashes);
+
+        Assert.assertEquals(2, store.getCacheHits());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void retrieveAllWithUnknownTrie() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+
+        store.retrieveAll(new Hash[] { FactoryHelper.createRandomHash() });
+    }
+
+    @Test
+    public void existAll() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+
+        Trie trie = new Trie(store).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+
+        trie.save();
+
+        boolean[] result = store.existAll(new Hash[] { trie.getHash(), FactoryHelper.createRandomHash(), null, Trie.EMPTY_TRIE_HASH });
+
+        Assert.assertEquals(4, result.length);
+        Assert.assertTrue(result[0]);
+        Assert.assertFalse(result[1]);
+        Assert.assertTrue(result[2]);
+        Assert.assertTrue(result[3]);
+    }
+
     @Test
     public void unknownHashDoesNotExists() throws IOException {
         TrieStore store = new TrieStore(new HashMapStore());
@@ -126,4 +218,104 @@ public class TrieStoreTest {
         Assert.assertTrue(store.exists(null));
         Assert.assertTrue(store.exists(Trie.EMPTY_TRIE_HASH));
     }
+
+    @Test
+    public void saveAndRetrieveTries() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+
+        List<Trie> tries = new ArrayList<>();
+
+        for (int k = 0; k < 10; k++)
+            tries.add(new Trie(store).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42)));
+
+        store.save(tries);
+
+        for (Trie trie : tries) {
+            Assert.assertTrue(store.exists(trie.getHash()));
+            Assert.assertEquals(trie.getHash(), store.retrieve(trie.getHash()).getHash());
+        }
+    }
+
+    @Test
+    public void retrieveCachedTrie() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore(), 100);
+
+        byte[] key = FactoryHelper.createRandomBytes(32);
+        byte[] value = FactoryHelper.createRandomBytes(42);
+
+        Trie trie = new Trie(store).put(key, value);
+        trie.save();
+
+        Trie result1 = store.retrieve(trie.getHash());
+        Trie result2 = store.retrieve(trie.getHash());
+
+        Assert.assertNotSame(result1, result2);
+        Assert.assertEquals(trie.getHash(), result1.getHash());
+        Assert.assertEquals(trie.getHash(), result2.getHash());
+        Assert.assertArrayEquals(value, result2.get(key));
+
+        Assert.assertEquals(1, store.getCacheHits());
+        Assert.assertEquals(1, store.getCacheMisses());
+    }
+
+    @Test
+    public void retrieveCachedTrieWithOneHundredKeyValues() throws IOException {
+        byte[][] values = new byte[100][];
+        byte[][] keys = new byte[100][];
+
+        for (int k = 0; k < 100; k++) {
+            keys[k] = FactoryHelper.createRandomBytes(32);
+            values[k] = FactoryHelper.createRandomBytes(42);
+        }
+
+        TrieStore store = new TrieStore(new HashMapStore(), 1000);
+
+        Trie trie = new Trie(store);
+
+        for (int k = 0; k < 100; k++)
+            trie = trie.put(keys[k], values[k]);
+
+        trie.save();
+
+        for (int n = 0; n < 2; n++) {
+            Trie result = store.retrieve(trie.getHash());
+
+            for (int k = 0; k < 100; k++)
+                Assert.assertArrayEquals(values[k], result.get(keys[k]));
+        }
+
+        Assert.assertTrue(store.getCacheHits() > 0);
+    }
+
+    @Test
+    public void noCacheCounters() throws IOException {
+        TrieStore store = new TrieStore(new HashMapStore());
+
+        Trie trie = new Trie(store).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+        trie.save();
+
+        store.retrieve(trie.getHash());
+
+        Assert.assertEquals(0, store.getCacheHits());
+        Assert.assertEquals(0, store.getCacheMisses());
+    }
+
+    @Test
+    public void clearCacheAfterCompaction() throws IOException {
+        HashKeyValueStore keyValueStore = new HashKeyValueStore(Hash.HASH_BYTES);
+        TrieStore store = new TrieStore(keyValueStore, 100);
+
+        Trie trie = new Trie(store).put(FactoryHelper.createRandomBytes(32), FactoryHelper.createRandomBytes(42));
+        trie.save();
+
+        store.retrieve(trie.getHash());
+
+        keyValueStore.compact(Collections.emptyList(), TrieStore::getReferences);
+
+        Assert.assertTrue(store.exists(trie.getHash()));
+
+        store.clearCache();
+
+        Assert.assertFalse(store.exists(trie.getHash()));
+    }
 }
@@ -0,0 +1,37 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ValueArenaTest {
+    @Test
+    public void putAndGetValues() {
+        ValueArena arena = new ValueArena(100);
+
+        byte[][] values = new byte[10][];
+        long[] references = new long[10];
+
+        for (int k = 0; k < values.length; k++) {
+            values[k] = FactoryHelper.createRandomBytes(42);
+            references[k] = arena.put(values[k]);
+        }
+
+        for (int k = 0; k < values.length; k++)
+            Assert.assertArrayEquals(values[k], arena.get(references[k], values[k].length));
+
+        Assert.assertEquals(100 * 5, arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void putValueLargerThanChunk() {
+        ValueArena arena = new ValueArena(100);
+
+        byte[] value = FactoryHelper.createRandomBytes(1000);
+
+        long reference = arena.put(value);
+
+        Assert.assertArrayEquals(value, arena.get(reference, value.length));
+        Assert.assertEquals(1000, arena.getAllocatedBytes());
+    }
+}
@@ -0,0 +1,56 @@
+package com.ajlopez.blockchain.store;
+
+import com.ajlopez.blockchain.test.utils.FactoryHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class WriteBatchTest {
+    @Test
+    public void createEmptyBatch() {
+        WriteBatch batch = new WriteBatch();
+
+        Assert.assertTrue(batch.isEmpty());
+        Assert.assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void putKeyValues() {
+        WriteBatch batch = new WriteBatch();
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        batch.put(key1, value1);
+        batch.put(key2, value2);
+
+        Assert.assertFalse(batch.isEmpty());
+        Assert.assertEquals(2, batch.size());
+        Assert.assertArrayEquals(key1, batch.getKey(0));
+        Assert.assertArrayEquals(value1, batch.getValue(0));
+        Assert.assertArrayEquals(key2, batch.getKey(1));
+        Assert.assertArrayEquals(value2, batch.getValue(1));
+    }
+
+    @Test
+    public void writeBatchToHashMapStore() throws IOException {
+        KeyValueStore store = new HashMapStore();
+        WriteBatch batch = new WriteBatch();
+
+        byte[] key1 = FactoryHelper.createRandomBytes(32);
+        byte[] value1 = FactoryHelper.createRandomBytes(42);
+        byte[] key2 = FactoryHelper.createRandomBytes(32);
+        byte[] value2 = FactoryHelper.createRandomBytes(42);
+
+        batch.put(key1, value1);
+        batch.put(key2, value2);
+
+        store.write(batch);
+
+        Assert.assertArrayEquals(value1, store.getValue(key1));
+        Assert.assertArrayEquals(value2, store.getValue(key2));
+    }
+}
@@ -33,4 +33,15 @@ public class ByteArrayWrapperTest {
         Assert.assertFalse(wrapper1.equals(null));
         Assert.assertFalse(wrapper1.equals("foo"));
     }
+
+    @Test
+    public void compareWrappers() {
+        ByteArrayWrapper wrapper1 = new ByteArrayWrapper(new byte[] { 0x01, 0x02 });
+        ByteArrayWrapper wrapper2 = new ByteArrayWrapper(new byte[] { 0x01, 0x02 });
+        ByteArrayWrapper wrapper3 = new ByteArrayWrapper(new byte[] { (byte)0x81 });
+
+        Assert.assertEquals(0, wrapper1.compareTo(wrapper2));
+        Assert.assertTrue(wrapper1.compareTo(wrapper3) < 0);
+        Assert.assertTrue(wrapper3.compareTo(wrapper1) > 0);
+    }
 }
@@ -0,0 +1,59 @@
+package com.ajlopez.blockchain.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LruCacheTest {
+    @Test
+    public void getUnknownKeyAsNull() {
+        LruCache<String, Integer> cache = new LruCache<>(10);
+
+        Assert.assertNull(cache.get("foo"));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void putAndGetValue() {
+        LruCache<String, Integer> cache = new LruCache<>(10);
+
+        cache.put("foo", 42);
+
+        Assert.assertEquals(42, (int)cache.get("foo"));
+        Assert.assertTrue(cache.containsKey("foo"));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedValue() {
+        LruCache<String, Integer> cache = new LruCache<>(2);
+
+        cache.put("one", 1);
+        cache.put("two", 2);
+
+        Assert.assertEquals(1, (int)cache.get("one"));
+
+        cache.put("three", 3);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.containsKey("one"));
+        Assert.assertFalse(cache.containsKey("two"));
+        Assert.assertTrue(cache.containsKey("three"));
+    }
+
+    @Test
+    public void clear() {
+        LruCache<String, Integer> cache = new LruCache<>(10);
+
+        cache.put("one", 1);
+        cache.put("two", 2);
+
+        cache.clear();
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertFalse(cache.containsKey("one"));
+        Assert.assertNull(cache.get("two"));
+    }
+}
@@ -4,6 +4,7 @@ import com.ajlopez.blockchain.core.types.DataWord;
 import com.ajlopez.blockchain.core.types.Hash;
 import com.ajlopez.blockchain.execution.AccountState;
 import com.ajlopez.blockchain.state.Trie;
+import com.ajlopez.blockchain.state.TrieKeyHasher;
 import com.ajlopez.blockchain.store.HashMapStore;
 import com.ajlopez.blockchain.store.TrieStore;
 import org.junit.Assert;
@@ -101,4 +102,36 @@ public class TrieStorageTest {
         Assert.assertNotNull(result2);
         Assert.assertEquals(value, result2);
     }
+
+    @Test
+    public void setAndGetValueUsingHashedKeys() throws IOException {
+        HashMapStore preimageStore = new HashMapStore();
+        TrieKeyHasher keyHasher = new TrieKeyHasher(preimageStore);
+        TrieStore trieStore = new TrieStore(new HashMapStore());
+        TrieStorage storage = new TrieStorage(new Trie(trieStore), keyHasher);
+        DataWord address = DataWord.fromUnsignedInteger(1);
+        DataWord value = DataWord.fromHexadecimalString("2a");
+
+        storage.setValue(address, value);
+        storage.commit();
+
+        Assert.assertEquals(value, storage.getValue(address));
+
+        Trie trie = trieStore.retrieve(storage.getRootHash());
+        byte[] hashedKey = keyHasher.hashKey(address.getBytes());
+
+        Assert.assertNull(trie.get(address.getBytes()));
+        Assert.assertArrayEquals(value.toNormalizedBytes(), trie.get(hashedKey));
+        Assert.assertArrayEquals(address.getBytes(), keyHasher.getPreimage(hashedKey));
+
+        TrieStorage rawStorage = new TrieStorage(new Trie());
+        rawStorage.setValue(address, value);
+
+        Assert.assertNotEquals(rawStorage.getRootHash(), storage.getRootHash());
+        Assert.assertEquals(value, new TrieStorageProvider(trieStore, keyHasher).retrieve(storage.getRootHash()).getValue(address));
+
+        storage.setValue(address, DataWord.ZERO);
+
+        Assert.assertEquals(Trie.EMPTY_TRIE_HASH, storage.getRootHash());
+    }
 }